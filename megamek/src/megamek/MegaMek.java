@@ -38,6 +38,7 @@ import megamek.client.ui.IMegaMekGUI;
 import megamek.client.ui.swing.ButtonOrderPreferences;
 import megamek.common.Aero;
 import megamek.common.BattleArmor;
+import megamek.common.Compute;
 import megamek.common.Configuration;
 import megamek.common.Entity;
 import megamek.common.GunEmplacement;
@@ -71,7 +72,7 @@ public class MegaMek {
 
     private static final NumberFormat commafy = NumberFormat.getInstance();
     private static final String INCORRECT_ARGUMENTS_MESSAGE = "Incorrect arguments:"; //$NON-NLS-1$
-    private static final String ARGUMENTS_DESCRIPTION_MESSAGE = "Arguments syntax:\n\t MegaMek [-log <logfile>] [(-gui <guiname>)|(-dedicated)|(-validate)|(-export)|(-eqdb)|(-eqedb) (-oul)] [<args>]"; //$NON-NLS-1$
+    private static final String ARGUMENTS_DESCRIPTION_MESSAGE = "Arguments syntax:\n\t MegaMek [-log <logfile>] [-seed <number>] [(-gui <guiname>)|(-dedicated)|(-validate)|(-export)|(-eqdb)|(-eqedb) (-oul)] [<args>]"; //$NON-NLS-1$
     private static final String UNKNOWN_GUI_MESSAGE = "Unknown GUI:"; //$NON-NLS-1$
     private static final String GUI_CLASS_NOT_FOUND_MESSAGE = "Couldn't find the GUI Class:"; //$NON-NLS-1$
     private static final String DEFAULT_LOG_FILE_NAME = "megameklog.txt"; //$NON-NLS-1$
@@ -404,6 +405,7 @@ public class MegaMek {
         private static final String OPTION_DEDICATED = "dedicated"; //$NON-NLS-1$
         private static final String OPTION_GUI = "gui"; //$NON-NLS-1$
         private static final String OPTION_LOG = "log"; //$NON-NLS-1$
+        private static final String OPTION_SEED = "seed"; //$NON-NLS-1$
         private static final String OPTION_EQUIPMENT_DB = "eqdb"; //$NON-NLS-1$
         private static final String OPTION_EQUIPMENT_EXTENDED_DB = "eqedb"; //$NON-NLS-1$
         private static final String OPTION_UNIT_VALIDATOR = "validate"; //$NON-NLS-1$
@@ -462,6 +464,11 @@ public class MegaMek {
                 nextToken();
                 parseLog();
             }
+            if ((getToken() == TOK_OPTION)
+                    && getTokenValue().equals(OPTION_SEED)) {
+                nextToken();
+                parseSeed();
+            }
             if ((getToken() == TOK_OPTION)
                     && getTokenValue().equals(OPTION_EQUIPMENT_DB)) {
                 nextToken();
@@ -523,6 +530,19 @@ public class MegaMek {
             }
         }
 
+        private void parseSeed() throws ParseException {
+            if (getToken() == TOK_LITERAL) {
+                try {
+                    Compute.setSeed(Long.parseLong(getTokenValue()));
+                } catch (NumberFormatException e) {
+                    error("seed must be a number"); //$NON-NLS-1$
+                }
+                nextToken();
+            } else {
+                error("seed expected"); //$NON-NLS-1$
+            }
+        }
+
         private void parseGUI() throws ParseException {
             if (getToken() == TOK_LITERAL) {
                 guiName = getTokenValue();
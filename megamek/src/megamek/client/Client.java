@@ -18,13 +18,13 @@ package megamek.client;
 
 import java.io.BufferedOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Enumeration;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Hashtable;
 import java.util.Iterator;
@@ -34,7 +34,6 @@ import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
 import java.util.Vector;
-import java.util.zip.GZIPInputStream;
 
 import javax.swing.SwingUtilities;
 
@@ -75,6 +74,7 @@ import megamek.common.Mounted;
 import megamek.common.MovePath;
 import megamek.common.PlanetaryConditions;
 import megamek.common.Report;
+import megamek.common.SavedGame;
 import megamek.common.SpecialHexDisplay;
 import megamek.common.TagInfo;
 import megamek.common.UnitLocation;
@@ -94,20 +94,21 @@ import megamek.common.event.GamePlayerDisconnectedEvent;
 import megamek.common.event.GameReportEvent;
 import megamek.common.event.GameSettingsChangeEvent;
 import megamek.common.event.GameVictoryEvent;
+import megamek.common.net.CompressionPolicy;
 import megamek.common.net.ConnectionFactory;
 import megamek.common.net.ConnectionListenerAdapter;
 import megamek.common.net.DisconnectedEvent;
+import megamek.common.net.EntityDelta;
 import megamek.common.net.IConnection;
 import megamek.common.net.Packet;
 import megamek.common.net.PacketReceivedEvent;
+import megamek.common.net.marshall.PacketMarshaller;
 import megamek.common.options.GameOptions;
 import megamek.common.options.IBasicOption;
 import megamek.common.preference.PreferenceManager;
 import megamek.common.util.StringUtil;
 import megamek.server.SmokeCloud;
 
-import com.thoughtworks.xstream.XStream;
-
 /**
  * This class is instanciated for each client and for each bot running on that
  * client. non-local clients are not also instantiated on the local server.
@@ -145,6 +146,12 @@ public class Client implements IClientCommandHandler {
     // we might want to keep a game log...
     private GameLog log;
 
+    // set while the game log waits for earlier rounds to arrive
+    private boolean rebuildGameLog;
+
+    // what to do when requested round reports arrive
+    private final Map<Integer, List<Runnable>> reportRequests = new HashMap<Integer, List<Runnable>>();
+
     private Set<BoardDimensions> availableSizes = new TreeSet<BoardDimensions>();
 
     private Vector<Coords> artilleryAutoHitHexes = null;
@@ -153,6 +160,12 @@ public class Client implements IClientCommandHandler {
 
     private Hashtable<String, Integer> duplicateNameHash = new Hashtable<String, Integer>();
 
+    /**
+     * The last serialized state of each entity the server sent as an
+     * {@link EntityDelta}
+     */
+    private Map<Integer, byte[]> entityStates = new HashMap<Integer, byte[]>();
+
     public Map<String, Client> bots = new TreeMap<String, Client>(
             StringUtil.stringComparator());
 
@@ -213,9 +226,16 @@ public class Client implements IClientCommandHandler {
             //  Client.handlePacket should play well with the AWT event queue,
             //  but nothing appears to really be designed to be thread safe, so
             //  this is a reasonable hack for now
+            // Entity deltas have to be applied in the order they arrive
+            final Packet packet = applyEntityDelta(e.getPacket());
+            if (packet == null) {
+                // a delta that could not be applied; the whole entity has
+                // been asked for instead
+                return;
+            }
             Runnable handlePacketEvent = new Runnable() {
                 public void run() {
-                    handlePacket(e.getPacket());
+                    handlePacket(packet);
                 }
             };
             SwingUtilities.invokeLater(handlePacketEvent);
@@ -271,15 +291,27 @@ public class Client implements IClientCommandHandler {
      * Attempt to connect to the specified host
      */
     public boolean connect() {
-        connection = ConnectionFactory.getInstance().createClientConnection(
-                host, port, 1);
+        return connect(ConnectionFactory.getInstance().createClientConnection(
+                host, port, 1));
+    }
+
+    /**
+     * Attempt to connect through the given connection, like one returned by
+     * {@link megamek.server.Server#connectLocal()}
+     */
+    public boolean connect(IConnection connection) {
+        this.connection = connection;
+        // Listen before opening, NIO connections start reading right away
+        connection.addConnectionListener(connectionListener);
         boolean result = connection.open();
         if (result) {
-            connection.addConnectionListener(connectionListener);
             packetUpdate = new ConnectionHandler();
             connThread = new Thread(packetUpdate, "Client Connection, Player "
                     + name);
-            connThread.start();
+            // NIO connections are serviced by the selector loop
+            if (!ConnectionFactory.getInstance().isSelectorDriven(connection)) {
+                connThread.start();
+            }
         }
         return result;
     }
@@ -308,14 +340,7 @@ public class Client implements IClientCommandHandler {
             closeClientListeners.elementAt(i).clientClosed();
         }
 
-        if (log != null) {
-            try {
-                log.close();
-            } catch (IOException e) {
-                System.err.print("Exception closing logfile: "); //$NON-NLS-1$
-                e.printStackTrace();
-            }
-        }
+        closeGameLog();
         System.out.println("client: died"); //$NON-NLS-1$
         System.out.flush();
     }
@@ -344,6 +369,7 @@ public class Client implements IClientCommandHandler {
     }
 
     private void initGameLog() {
+        closeGameLog();
         // log = new GameLog(
         // PreferenceManager.getClientPreferences().getGameLogFilename(),
         // false,
@@ -355,6 +381,18 @@ public class Client implements IClientCommandHandler {
         log.append("<html><body>");
     }
 
+    private void closeGameLog() {
+        if (log != null) {
+            try {
+                log.close();
+            } catch (IOException e) {
+                System.err.print("Exception closing logfile: "); //$NON-NLS-1$
+                e.printStackTrace();
+            }
+            log = null;
+        }
+    }
+
     private boolean keepGameLog() {
         return PreferenceManager.getClientPreferences().keepGameLog()
                && !(this instanceof BotClient);
@@ -908,11 +946,8 @@ public class Client implements IClientCommandHandler {
      */
     public void sendLoadGame(File f) {
         try {
-            XStream xstream = new XStream();
-
             game.reset();
-            IGame newGame = (IGame) xstream.fromXML(new GZIPInputStream(
-                    new FileInputStream(f)));
+            IGame newGame = SavedGame.load(f);
 
             send(new Packet(Packet.COMMAND_LOAD_GAME, new Object[]{newGame}));
         } catch (Exception e) {
@@ -984,6 +1019,41 @@ public class Client implements IClientCommandHandler {
         game.setEntity(eindex, entity, movePath);
     }
 
+    /**
+     * Turns an entity update that carries an {@link EntityDelta} into a
+     * regular one carrying the whole entity, so everything downstream sees
+     * the same packets as before. Other packets are returned as they are.
+     * Returns <code>null</code> if the delta could not be applied, after
+     * asking the server for the whole entity. Only called by the thread
+     * reading the connection.
+     */
+    private Packet applyEntityDelta(Packet packet) {
+        if ((packet == null)
+                || (packet.getCommand() != Packet.COMMAND_ENTITY_UPDATE)
+                || !(packet.getObject(1) instanceof EntityDelta)) {
+            return packet;
+        }
+        int entityId = packet.getIntValue(0);
+        EntityDelta delta = (EntityDelta) packet.getObject(1);
+        try {
+            byte[] state = delta.apply(entityStates.get(entityId));
+            entityStates.put(entityId, state);
+            Object[] data = new Object[3];
+            data[0] = entityId;
+            data[1] = EntityDelta.deserialize(state);
+            data[2] = packet.getObject(2);
+            return new Packet(Packet.COMMAND_ENTITY_UPDATE, data);
+        } catch (IOException ex) {
+            System.err.println("client: could not apply update of entity " //$NON-NLS-1$
+                    + entityId + ": " + ex.getMessage()); //$NON-NLS-1$
+            entityStates.remove(entityId);
+            // the server keeps making deltas against the state we dropped,
+            // until it is asked for the whole entity
+            send(new Packet(Packet.COMMAND_ENTITY_UPDATE_REQUEST, entityId));
+            return null;
+        }
+    }
+
     protected void receiveEntityAdd(Packet packet) {
         @SuppressWarnings("unchecked")
         List<Integer> entityIds = (List<Integer>) packet.getObject(0);
@@ -1123,6 +1193,90 @@ public class Client implements IClientCommandHandler {
         return report.toString();
     }
 
+    /**
+     * Asks the server for the reports of a past round. They are only sent
+     * once, however often they are asked for before they arrive.
+     *
+     * @param onArrival called from the packet thread once the reports have
+     *                  been added to the game, or <code>null</code>
+     */
+    public void requestReports(int round, Runnable onArrival) {
+        boolean first;
+        synchronized (reportRequests) {
+            List<Runnable> waiting = reportRequests.get(round);
+            first = (waiting == null);
+            if (first) {
+                waiting = new ArrayList<Runnable>();
+                reportRequests.put(round, waiting);
+            }
+            if (onArrival != null) {
+                waiting.add(onArrival);
+            }
+        }
+        if (first) {
+            send(new Packet(Packet.COMMAND_REQUEST_REPORTS, round));
+        }
+    }
+
+    /**
+     * Stores the reports of a single round. The server answers every request,
+     * with no reports for a round it doesn't have. When they are the reports
+     * of the current round, we have just connected to a game in progress and
+     * the game log has to be written again once the earlier rounds are here.
+     */
+    private void receiveRoundReports(int round, Vector<Report> reports) {
+        if (round >= 1) {
+            game.setReports(round, reports);
+        }
+        if (round == game.getRoundCount()) {
+            roundReport = receiveReport(reports);
+            // We don't really have a copy of the phase report at this point,
+            // so we'll just use the round report until the next phase
+            // actually completes.
+            phaseReport = roundReport;
+            if (keepGameLog()) {
+                closeGameLog();
+                rebuildGameLog = true;
+                for (int r = 1; r < round; r++) {
+                    if (!game.hasReports(r)) {
+                        requestReports(r, null);
+                    }
+                }
+            }
+        }
+        List<Runnable> waiting;
+        synchronized (reportRequests) {
+            waiting = reportRequests.remove(round);
+        }
+        if (waiting != null) {
+            for (Runnable onArrival : waiting) {
+                onArrival.run();
+            }
+        }
+        if (rebuildGameLog) {
+            rebuildGameLog();
+        }
+    }
+
+    /**
+     * Re-writes gamelog.txt from scratch if the reports of all rounds are
+     * here
+     */
+    private void rebuildGameLog() {
+        for (int r = 1; r <= game.getRoundCount(); r++) {
+            if (!game.hasReports(r)) {
+                return;
+            }
+        }
+        rebuildGameLog = false;
+        initGameLog();
+        if (log != null) {
+            for (int r = 1; r <= game.getRoundCount(); r++) {
+                log.append(r, null, game.getReports(r));
+            }
+        }
+    }
+
     /**
      * Saves server entity status data to a local file
      */
@@ -1208,9 +1362,15 @@ public class Client implements IClientCommandHandler {
             case Packet.COMMAND_SERVER_GREETING:
                 connected = true;
                 send(new Packet(Packet.COMMAND_CLIENT_NAME, name));
-                Object[] versionData = new Object[2];
+                Object[] versionData = new Object[5];
                 versionData[0] = MegaMek.VERSION;
                 versionData[1] = MegaMek.getMegaMekSHA256();
+                // the marshalling we would like the server to send us
+                versionData[2] = PacketMarshaller.COMPACT_BINARY_MARSHALING;
+                // and the compression
+                versionData[3] = CompressionPolicy.FAST_DICTIONARY.getId();
+                // we can apply entity deltas
+                versionData[4] = Boolean.TRUE;
                 send(new Packet(Packet.COMMAND_CLIENT_VERSIONS, versionData));
                 break;
             case Packet.COMMAND_SERVER_CORRECT_NAME:
@@ -1243,7 +1403,8 @@ public class Client implements IClientCommandHandler {
                     initGameLog();
                 }
                 if ((log != null) && keepGameLog()) {
-                    log.append((String) c.getObject(0));
+                    log.append(game.getRoundCount(), game.getPhase(),
+                               (String) c.getObject(0));
                 }
                 game.processGameEvent(new GamePlayerChatEvent(this, null,
                                                               (String) c.getObject(0)));
@@ -1328,7 +1489,8 @@ public class Client implements IClientCommandHandler {
                         initGameLog();
                     }
                     if (log != null) {
-                        log.append(phaseReport);
+                        log.append(game.getRoundCount(), game.getPhase(),
+                                   (Vector<Report>) c.getObject(0));
                     }
                 }
                 game.addReports((Vector<Report>) c.getObject(0));
@@ -1351,7 +1513,7 @@ public class Client implements IClientCommandHandler {
                     initGameLog();
                     if (log != null) {
                         for (int i = 0; i < allReports.size(); i++) {
-                            log.append(receiveReport(allReports.elementAt(i)));
+                            log.append(i + 1, null, allReports.elementAt(i));
                         }
                     }
                 }
@@ -1362,6 +1524,10 @@ public class Client implements IClientCommandHandler {
                 // until the next phase actually completes.
                 phaseReport = roundReport;
                 break;
+            case Packet.COMMAND_SENDING_REPORTS_ROUND:
+                receiveRoundReports(c.getIntValue(0),
+                                    (Vector<Report>) c.getObject(1));
+                break;
             case Packet.COMMAND_ENTITY_ATTACK:
                 receiveAttack(c);
                 break;
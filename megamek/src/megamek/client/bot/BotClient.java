@@ -267,7 +267,7 @@ public abstract class BotClient extends Client {
                         die();
                     }
 
-                    if (Compute.randomInt(4) == 1) {
+                    if (Compute.randomInt(Compute.RandomStream.BOT, 4) == 1) {
                         String message = getRandomBotMessage();
                         if (message != null) {
                             sendChat(message);
@@ -353,7 +353,8 @@ public abstract class BotClient extends Client {
                 unMoved.add(e);
             }
         }
-        return unMoved.get(Compute.randomInt(unMoved.size()));
+        return unMoved.get(Compute.randomInt(Compute.RandomStream.BOT,
+                unMoved.size()));
     }
 
     synchronized protected void calculateMyTurn() {
@@ -927,7 +928,7 @@ public abstract class BotClient extends Client {
                             // heat), consider shutting
                             // off the armor
 
-                            trigger_range = 13 + Compute.randomInt(7);
+                            trigger_range = 13 + Compute.randomInt(Compute.RandomStream.BOT, 7);
                             if (check_ent.heat > trigger_range) {
                                 new_stealth = 0;
                             } else {
@@ -994,7 +995,7 @@ public abstract class BotClient extends Client {
             BufferedReader dis = new BufferedReader(new InputStreamReader(fis));
             while (dis.ready()) {
                 message = dis.readLine();
-                if (Compute.randomInt(10) == 1) {
+                if (Compute.randomInt(Compute.RandomStream.BOT, 10) == 1) {
                     break;
                 }
             }
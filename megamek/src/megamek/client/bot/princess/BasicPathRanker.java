@@ -18,6 +18,7 @@ import java.text.DecimalFormatSymbols;
 import java.text.NumberFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -62,20 +63,37 @@ import megamek.common.options.OptionsConstants;
  */
 public class BasicPathRanker extends PathRanker {
 
-    protected final DecimalFormat LOG_DECIMAL = new DecimalFormat("0.00", DecimalFormatSymbols.getInstance());
-    protected final NumberFormat LOG_INT = NumberFormat.getIntegerInstance();
-    protected final NumberFormat LOG_PERCENT = NumberFormat.getPercentInstance();
+    // Formats are not thread safe, and paths are ranked on several threads at once.
+    protected final ThreadLocal<DecimalFormat> LOG_DECIMAL = new ThreadLocal<DecimalFormat>() {
+        @Override
+        protected DecimalFormat initialValue() {
+            return new DecimalFormat("0.00", DecimalFormatSymbols.getInstance());
+        }
+    };
+    protected final ThreadLocal<NumberFormat> LOG_INT = new ThreadLocal<NumberFormat>() {
+        @Override
+        protected NumberFormat initialValue() {
+            return NumberFormat.getIntegerInstance();
+        }
+    };
+    protected final ThreadLocal<NumberFormat> LOG_PERCENT = new ThreadLocal<NumberFormat>() {
+        @Override
+        protected NumberFormat initialValue() {
+            return NumberFormat.getPercentInstance();
+        }
+    };
 
     private FireControl fireControl;
     private PathEnumerator pathEnumerator;
 
     // the best damage enemies could expect were I not here. Used to determine whether they will target me.
-    private Map<Integer, Double> bestDamageByEnemies;
+    // Replaced as a whole, never changed, so that paths can be ranked on several threads while reading it.
+    private volatile Map<Integer, Double> bestDamageByEnemies;
 
     public BasicPathRanker(Princess owningPrincess) {
         super(owningPrincess);
         final String METHOD_NAME = "BasicPathRanker(Princess)";
-        bestDamageByEnemies = new TreeMap<>();
+        bestDamageByEnemies = Collections.emptyMap();
         getOwner().log(
                 getClass(),
                 METHOD_NAME,
@@ -240,9 +258,11 @@ public class BasicPathRanker extends PathRanker {
         double pilotingFailure = (1 - successProbability);
         double fallShame = getOwner().getBehaviorSettings().getFallShameValue();
         double fallMod = pilotingFailure * (pilotingFailure == 1 ? -1000 : fallShame);
-        formula.append("fall mod [").append(LOG_DECIMAL.format(fallMod)).append(" = ")
-               .append(LOG_DECIMAL.format(pilotingFailure)).append(" * ").append(LOG_DECIMAL.format(fallShame))
-               .append("]");
+        if (formula != null) {
+            formula.append("fall mod [").append(LOG_DECIMAL.get().format(fallMod)).append(" = ")
+                   .append(LOG_DECIMAL.get().format(pilotingFailure)).append(" * ").append(LOG_DECIMAL.get().format(fallShame))
+                   .append("]");
+        }
         return fallMod;
     }
 
@@ -373,25 +393,31 @@ public class BasicPathRanker extends PathRanker {
         }
         double aggression = getOwner().getBehaviorSettings().getHyperAggressionValue();
         double aggressionMod = distToEnemy * aggression;
-        formula.append(" - aggressionMod [").append(LOG_DECIMAL.format(aggressionMod)).append(" = ")
-               .append(LOG_DECIMAL.format(distToEnemy)).append(" * ").append(LOG_DECIMAL.format(aggression))
-               .append("]");
+        if (formula != null) {
+            formula.append(" - aggressionMod [").append(LOG_DECIMAL.get().format(aggressionMod)).append(" = ")
+                   .append(LOG_DECIMAL.get().format(distToEnemy)).append(" * ").append(LOG_DECIMAL.get().format(aggression))
+                   .append("]");
+        }
         return aggressionMod;
     }
 
     // The further I am from my teammates, the lower this path ranks (weighted by Herd Mentality).
     private double calculateHerdingMod(Coords friendsCoords, MovePath path, StringBuilder formula) {
         if (friendsCoords == null) {
-            formula.append(" - herdingMod [0 no friends]");
+            if (formula != null) {
+                formula.append(" - herdingMod [0 no friends]");
+            }
             return 0;
         }
 
         double distanceToAllies = friendsCoords.distance(path.getFinalCoords());
         double herding = getOwner().getBehaviorSettings().getHerdMentalityValue();
         double herdingMod = distanceToAllies * herding;
-        formula.append(" - herdingMod [").append(LOG_DECIMAL.format(herdingMod)).append(" = ")
-               .append(LOG_DECIMAL.format(distanceToAllies)).append(" * ").append(LOG_DECIMAL.format(herding))
-               .append("]");
+        if (formula != null) {
+            formula.append(" - herdingMod [").append(LOG_DECIMAL.get().format(herdingMod)).append(" = ")
+                   .append(LOG_DECIMAL.get().format(distanceToAllies)).append(" * ").append(LOG_DECIMAL.get().format(herding))
+                   .append("]");
+        }
         return herdingMod;
     }
 
@@ -417,9 +443,11 @@ public class BasicPathRanker extends PathRanker {
             facingDiff = 3;
         }
         double facingMod = Math.max(0.0, 50 * (facingDiff - 1));
-        formula.append(" - facingMod [").append(LOG_DECIMAL.format(facingMod)).append(" = max(")
-               .append(LOG_INT.format(0)).append(", ").append(LOG_INT.format(50)).append(" * {")
-               .append(LOG_INT.format(facingDiff)).append(" - ").append(LOG_INT.format(1)).append("})]");
+        if (formula != null) {
+            formula.append(" - facingMod [").append(LOG_DECIMAL.get().format(facingMod)).append(" = max(")
+                   .append(LOG_INT.get().format(0)).append(", ").append(LOG_INT.get().format(50)).append(" * {")
+                   .append(LOG_INT.get().format(facingDiff)).append(" - ").append(LOG_INT.get().format(1)).append("})]");
+        }
         return facingMod;
     }
 
@@ -429,9 +457,11 @@ public class BasicPathRanker extends PathRanker {
             int newDistanceToHome = distanceToHomeEdge(path.getFinalCoords(), getOwner().getHomeEdge(), game);
             double selfPreservation = getOwner().getBehaviorSettings().getSelfPreservationValue();
             double selfPreservationMod = newDistanceToHome * selfPreservation;
-            formula.append(" - selfPreservationMod [").append(LOG_DECIMAL.format(selfPreservationMod))
-                   .append(" = ").append(LOG_DECIMAL.format(newDistanceToHome)).append(" * ")
-                   .append(LOG_DECIMAL.format(selfPreservation)).append("]");
+            if (formula != null) {
+                formula.append(" - selfPreservationMod [").append(LOG_DECIMAL.get().format(selfPreservationMod))
+                       .append(" = ").append(LOG_DECIMAL.get().format(newDistanceToHome)).append(" * ")
+                       .append(LOG_DECIMAL.get().format(selfPreservation)).append("]");
+            }
             return selfPreservationMod;
         }
         return 0.0;
@@ -448,7 +478,8 @@ public class BasicPathRanker extends PathRanker {
         getOwner().methodBegin(getClass(), METHOD_NAME);
 
         Entity movingUnit = path.getEntity();
-        StringBuilder formula = new StringBuilder("Calculation: {");
+        StringBuilder formula = getOwner().isLoggable(LogLevel.DEBUG) ? new StringBuilder(
+                "Calculation: {") : null;
 
         try {
 
@@ -550,11 +581,13 @@ public class BasicPathRanker extends PathRanker {
             // how much damage I can do (weighted by bravery), less the damage I might take.
             double braveryValue = getOwner().getBehaviorSettings().getBraveryValue();
             double braveryMod = successProbability * ((maximumDamageDone * braveryValue) - expectedDamageTaken);
-            formula.append(" + braveryMod [").append(LOG_DECIMAL.format(braveryMod)).append(" = ")
-                   .append(LOG_PERCENT.format(successProbability)).append(" * ((")
-                   .append(LOG_DECIMAL.format(maximumDamageDone)).append(" * ")
-                   .append(LOG_DECIMAL.format(braveryValue)).append(") - ")
-                   .append(LOG_DECIMAL.format(expectedDamageTaken)).append("]");
+            if (formula != null) {
+                formula.append(" + braveryMod [").append(LOG_DECIMAL.get().format(braveryMod)).append(" = ")
+                       .append(LOG_PERCENT.get().format(successProbability)).append(" * ((")
+                       .append(LOG_DECIMAL.get().format(maximumDamageDone)).append(" * ")
+                       .append(LOG_DECIMAL.get().format(braveryValue)).append(") - ")
+                       .append(LOG_DECIMAL.get().format(expectedDamageTaken)).append("]");
+            }
             utility += braveryMod;
 
             //noinspection StatementWithEmptyBody
@@ -573,14 +606,16 @@ public class BasicPathRanker extends PathRanker {
             // Try to face the enemy.
             double facingMod = calculateFacingMod(movingUnit, game, pathCopy, formula);
             if (facingMod == -10000) {
-                return new RankedPath(facingMod, pathCopy, formula.toString());
+                return new RankedPath(facingMod, pathCopy, (formula == null) ? null
+                        : formula.toString());
             }
             utility -= facingMod;
 
             // If I need to flee the board, I want to get closer to my home edge.
             utility -= calculateSelfPreservationMod(movingUnit, pathCopy, game, formula);
 
-            return new RankedPath(utility, pathCopy, formula.toString());
+            return new RankedPath(utility, pathCopy, (formula == null) ? null
+                    : formula.toString());
         } finally {
             getOwner().methodEnd(getClass(), METHOD_NAME);
         }
@@ -601,7 +636,7 @@ public class BasicPathRanker extends PathRanker {
         getOwner().methodBegin(getClass(), METHOD_NAME);
 
         try {
-            bestDamageByEnemies.clear();
+            Map<Integer, Double> damageByEnemies = new TreeMap<>();
             List<Entity> enemies = getOwner().getEnemyEntities();
             List<Entity> friends = getOwner().getFriendEntities();
             for (Entity e : enemies) {
@@ -616,8 +651,9 @@ public class BasicPathRanker extends PathRanker {
                     }
 
                 }
-                bestDamageByEnemies.put(e.getId(), max_damage);
+                damageByEnemies.put(e.getId(), max_damage);
             }
+            bestDamageByEnemies = Collections.unmodifiableMap(damageByEnemies);
         } finally {
             getOwner().methodEnd(getClass(), METHOD_NAME);
         }
@@ -704,8 +740,6 @@ public class BasicPathRanker extends PathRanker {
         getOwner().methodBegin(BasicPathRanker.class, METHOD_NAME);
 
         try {
-            String msg = "Getting distance to home edge: " + homeEdge.toString();
-
             int width = game.getBoard().getWidth();
             int height = game.getBoard().getHeight();
 
@@ -733,8 +767,8 @@ public class BasicPathRanker extends PathRanker {
                 }
             }
 
-            msg += " -> " + distance;
-            getOwner().log(BasicPathRanker.class, METHOD_NAME, msg);
+            getOwner().log(BasicPathRanker.class, METHOD_NAME, LogLevel.DEBUG,
+                           "Getting distance to home edge: %s -> %d", homeEdge, distance);
             return distance;
         } finally {
             getOwner().methodEnd(BasicPathRanker.class, METHOD_NAME);
@@ -744,7 +778,10 @@ public class BasicPathRanker extends PathRanker {
     protected double checkPathForHazards(MovePath path, Entity movingUnit, IGame game) {
         final String METHOD_NAME = "checkPathForHazards(MovePath, Entity, IGame)";
 
-        StringBuilder logMsg = new StringBuilder("Checking Path (").append(path.toString()).append(") for hazards.");
+        StringBuilder logMsg = null;
+        if (getOwner().isLoggable(LogLevel.DEBUG)) {
+            logMsg = new StringBuilder("Checking Path (").append(path.toString()).append(") for hazards.");
+        }
 
         try {
             // If we're flying or swimming, we don't care about ground hazards.
@@ -756,14 +793,18 @@ public class BasicPathRanker extends PathRanker {
                 EntityMovementType.MOVE_SUBMARINE_WALK.equals(path.getLastStepMovementType()) ||
                 EntityMovementType.MOVE_SUBMARINE_RUN.equals(path.getLastStepMovementType())) {
 
-                logMsg.append("\n\tMove Type (").append(path.getLastStepMovementType().toString())
-                      .append(") ignores ground hazards.");
+                if (logMsg != null) {
+                    logMsg.append("\n\tMove Type (").append(path.getLastStepMovementType().toString())
+                          .append(") ignores ground hazards.");
+                }
                 return 0;
             }
 
             // If we're jumping, we only care about where we land.
             if (path.isJumping()) {
-                logMsg.append("\n\tJumping");
+                if (logMsg != null) {
+                    logMsg.append("\n\tJumping");
+                }
                 Coords endCoords = path.getFinalCoords();
                 IHex endHex = game.getBoard().getHex(endCoords);
                 return checkHexForHazards(endHex, movingUnit, true, path.getLastStep(), true, path, game.getBoard(),
@@ -786,13 +827,17 @@ public class BasicPathRanker extends PathRanker {
 
             return totalHazard;
         } finally {
-            getOwner().log(getClass(), METHOD_NAME, LogLevel.DEBUG, logMsg);
+            if (logMsg != null) {
+                getOwner().log(getClass(), METHOD_NAME, LogLevel.DEBUG, logMsg);
+            }
         }
     }
 
     private double checkHexForHazards(IHex hex, Entity movingUnit, boolean endHex, MoveStep step, boolean jumpLanding,
                                       MovePath movePath, IBoard board, StringBuilder logMsg) {
-        logMsg.append("\n\tHex ").append(hex.getCoords().toFriendlyString());
+        if (logMsg != null) {
+            logMsg.append("\n\tHex ").append(hex.getCoords().toFriendlyString());
+        }
 
         final List<Integer> HAZARDS = new ArrayList<>(Arrays.asList(Terrains.FIRE, Terrains.MAGMA, Terrains.ICE,
                                                                     Terrains.WATER, Terrains.BUILDING));
@@ -807,7 +852,9 @@ public class BasicPathRanker extends PathRanker {
 
         // No hazards were found, so nothing to worry about.
         if (hazards.isEmpty()) {
-            logMsg.append(" has no hazards.");
+            if (logMsg != null) {
+                logMsg.append(" has no hazards.");
+            }
             return 0;
         }
 
@@ -834,7 +881,9 @@ public class BasicPathRanker extends PathRanker {
                     break;
             }
         }
-        logMsg.append("\n\tTotal Hazard = ").append(LOG_DECIMAL.format(hazardValue));
+        if (logMsg != null) {
+            logMsg.append("\n\tTotal Hazard = ").append(LOG_DECIMAL.get().format(hazardValue));
+        }
 
         return hazardValue;
     }
@@ -842,11 +891,15 @@ public class BasicPathRanker extends PathRanker {
     // Building collapse and basements are handled in PathRanker.validatePaths.
     private double calcBuildingHazard(MoveStep step, Entity movingUnit, MovePath movePath, IBoard board,
                                       StringBuilder logMsg) {
-        logMsg.append("\n\tCalculating building hazard:  ");
+        if (logMsg != null) {
+            logMsg.append("\n\tCalculating building hazard:  ");
+        }
 
         // Protos, BA and Infantry move through buildings freely.
         if (movingUnit instanceof Protomech || movingUnit instanceof Infantry) {
-            logMsg.append("Safe for infantry and protos.");
+            if (logMsg != null) {
+                logMsg.append("Safe for infantry and protos.");
+            }
             return 0;
         }
 
@@ -857,75 +910,103 @@ public class BasicPathRanker extends PathRanker {
 
         // Get the odds of failing the piloting roll while moving through the building.
         double odds = (1.0 - (Compute.oddsAbove(movingUnit.getCrew().getPiloting()) / 100));
-        logMsg.append("\n\t\tChance to fail piloting roll: ").append(LOG_PERCENT.format(odds));
+        if (logMsg != null) {
+            logMsg.append("\n\t\tChance to fail piloting roll: ").append(LOG_PERCENT.get().format(odds));
+        }
 
         // Hazard is based on potential damage taken.
         double dmg = board.getBuildingAt(step.getPosition()).getCurrentCF(step.getPosition()) / 10D;
-        logMsg.append("\n\t\tPotential building damage: ").append(LOG_DECIMAL.format(dmg));
+        if (logMsg != null) {
+            logMsg.append("\n\t\tPotential building damage: ").append(LOG_DECIMAL.get().format(dmg));
+        }
 
         double hazard = dmg * odds;
-        logMsg.append("\n\t\tHazard value (").append(LOG_DECIMAL.format(hazard)).append(").");
+        if (logMsg != null) {
+            logMsg.append("\n\t\tHazard value (").append(LOG_DECIMAL.get().format(hazard)).append(").");
+        }
         return hazard;
     }
 
     private double calcIceHazard(Entity movingUnit, IHex hex, MoveStep step, boolean jumpLanding,
                                  StringBuilder logMsg) {
-        logMsg.append("\n\tCalculating ice hazard:  ");
+        if (logMsg != null) {
+            logMsg.append("\n\tCalculating ice hazard:  ");
+        }
 
         // Hover units are above the surface.
         if (EntityMovementMode.HOVER == movingUnit.getMovementMode() ||
             EntityMovementMode.WIGE == movingUnit.getMovementMode()) {
-            logMsg.append("Hovering above ice (0).");
+            if (logMsg != null) {
+                logMsg.append("Hovering above ice (0).");
+            }
             return 0;
         }
 
         // If there is no water under the ice, don't worry about breaking through.
         if (hex.depth() < 1) {
-            logMsg.append("No water under ice (0).");
+            if (logMsg != null) {
+                logMsg.append("No water under ice (0).");
+            }
             return 0;
         }
 
         // Hazard is based on chance to break through to the water underneath.
         double breakthroughMod = jumpLanding ? 0.5 : 0.1667;
-        logMsg.append("\n\t\tChance to break through ice: ").append(LOG_PERCENT.format(breakthroughMod));
+        if (logMsg != null) {
+            logMsg.append("\n\t\tChance to break through ice: ").append(LOG_PERCENT.get().format(breakthroughMod));
+        }
 
         double hazard = calcWaterHazard(movingUnit, hex, step, logMsg) * breakthroughMod;
-        logMsg.append("\n\t\tHazard value (").append(LOG_DECIMAL.format(hazard)).append(").");
+        if (logMsg != null) {
+            logMsg.append("\n\t\tHazard value (").append(LOG_DECIMAL.get().format(hazard)).append(").");
+        }
         return hazard;
     }
 
     private double calcWaterHazard(Entity movingUnit, IHex hex, MoveStep step, StringBuilder logMsg) {
-        logMsg.append("\n\tCalculating water hazard:  ");
+        if (logMsg != null) {
+            logMsg.append("\n\tCalculating water hazard:  ");
+        }
 
         // Puddles don't count.
         if (hex.depth() == 0) {
-            logMsg.append("Puddles don't count (0).");
+            if (logMsg != null) {
+                logMsg.append("Puddles don't count (0).");
+            }
             return 0;
         }
 
         // Hover units are above the surface.
         if (EntityMovementMode.HOVER == movingUnit.getMovementMode() ||
             EntityMovementMode.WIGE == movingUnit.getMovementMode()) {
-            logMsg.append("Hovering above water (0).");
+            if (logMsg != null) {
+                logMsg.append("Hovering above water (0).");
+            }
             return 0;
         }
 
         // Amphibious units are safe (kind of the point).
         if (movingUnit.hasWorkingMisc(MiscType.F_FULLY_AMPHIBIOUS) ||
             movingUnit.hasWorkingMisc(MiscType.F_AMPHIBIOUS)) {
-            logMsg.append("Amphibious unit (0).");
+            if (logMsg != null) {
+                logMsg.append("Amphibious unit (0).");
+            }
             return 0;
         }
 
         // Most other units are automatically destroyed.
         if (!(movingUnit instanceof Mech || movingUnit instanceof Protomech || movingUnit instanceof BattleArmor)) {
-            logMsg.append("Ill drown (1000).");
+            if (logMsg != null) {
+                logMsg.append("Ill drown (1000).");
+            }
             return 1000;
         }
 
         // Unsealed unit will drown.
         if (movingUnit instanceof Mech && ((Mech) movingUnit).isIndustrial()) {
-            logMsg.append("Industrial mechs drown too (1000).");
+            if (logMsg != null) {
+                logMsg.append("Industrial mechs drown too (1000).");
+            }
             return 1000;
         }
 
@@ -950,15 +1031,21 @@ public class BasicPathRanker extends PathRanker {
                 submergedLocations.add(loc);
             }
         }
-        logMsg.append("\n\t\tSubmerged locations: ").append(submergedLocations.size());
+        if (logMsg != null) {
+            logMsg.append("\n\t\tSubmerged locations: ").append(submergedLocations.size());
+        }
 
         int hazardValue = 0;
         for (int loc : submergedLocations) {
-            logMsg.append("\n\t\t\tLocation ").append(loc).append(" is ");
+            if (logMsg != null) {
+                logMsg.append("\n\t\t\tLocation ").append(loc).append(" is ");
+            }
 
             // Only locations withou armor can breach in movement phase.
             if (movingUnit.getArmor(loc) > 0) {
-                logMsg.append(" not breached (0).");
+                if (logMsg != null) {
+                    logMsg.append(" not breached (0).");
+                }
                 continue;
             }
 
@@ -969,12 +1056,16 @@ public class BasicPathRanker extends PathRanker {
                 Protomech.LOC_HEAD == loc ||
                 Protomech.LOC_TORSO == loc ||
                 (!(movingUnit instanceof Mech) && !(movingUnit instanceof Protomech))) {
-                logMsg.append(" breached and critical (1000).");
+                if (logMsg != null) {
+                    logMsg.append(" breached and critical (1000).");
+                }
                 return 1000;
             }
 
             // Add 50 points per potential breach location.
-            logMsg.append(" breached (50).");
+            if (logMsg != null) {
+                logMsg.append(" breached (50).");
+            }
             hazardValue += 50;
         }
 
@@ -982,38 +1073,50 @@ public class BasicPathRanker extends PathRanker {
     }
 
     private double calcFireHazard(Entity movingUnit, boolean endHex, StringBuilder logMsg) {
-        logMsg.append("\n\tCalculating fire hazard:  ");
+        if (logMsg != null) {
+            logMsg.append("\n\tCalculating fire hazard:  ");
+        }
 
         double hazardValue = 0;
 
         // Fireproof BA ignores fire.
         if ((movingUnit instanceof BattleArmor) && ((BattleArmor) movingUnit).isFireResistant()) {
-            logMsg.append("Ignored by fire resistant armor (0).");
+            if (logMsg != null) {
+                logMsg.append("Ignored by fire resistant armor (0).");
+            }
             return 0;
         }
 
         // Tanks risk critical hits.
         if (movingUnit instanceof Tank) {
-            logMsg.append("Possible crit on tank (25).");
+            if (logMsg != null) {
+                logMsg.append("Possible crit on tank (25).");
+            }
             return 25;
         }
 
         // Protomechs risk location destruction.
         if (movingUnit instanceof Protomech) {
-            logMsg.append("Possible location destruction (50).");
+            if (logMsg != null) {
+                logMsg.append("Possible location destruction (50).");
+            }
             return 50;
         }
 
         // Infantry and BA risk total destruction.
         if (movingUnit instanceof Infantry) {
-            logMsg.append(("Possible unit destruction (1000)."));
+            if (logMsg != null) {
+                logMsg.append(("Possible unit destruction (1000)."));
+            }
             return 1000;
         }
 
         // If this unit tracks heat, add the heat gain to the hazard value.
         if (movingUnit.getHeatCapacity() != Entity.DOES_NOT_TRACK_HEAT) {
             hazardValue += endHex ? 5 : 2;
-            logMsg.append("Heat gain (").append(hazardValue).append(").");
+            if (logMsg != null) {
+                logMsg.append("Heat gain (").append(hazardValue).append(").");
+            }
         }
 
         return hazardValue;
@@ -1021,12 +1124,16 @@ public class BasicPathRanker extends PathRanker {
 
     private double calcMagmaHazard(IHex hex, boolean endHex, Entity movingUnit, boolean jumpLanding, MoveStep step,
                                    StringBuilder logMsg) {
-        logMsg.append("\n\tCalculating magma hazard:  ");
+        if (logMsg != null) {
+            logMsg.append("\n\tCalculating magma hazard:  ");
+        }
 
         // Hovers are unaffected.
         if (EntityMovementMode.HOVER == movingUnit.getMovementMode() ||
             EntityMovementMode.WIGE == movingUnit.getMovementMode()) {
-            logMsg.append("Hovering above magma (0).");
+            if (logMsg != null) {
+                logMsg.append("Hovering above magma (0).");
+            }
             return 0;
         }
 
@@ -1038,18 +1145,24 @@ public class BasicPathRanker extends PathRanker {
             return calcLavaHazard(endHex, movingUnit, step, logMsg);
         } else {
             double breakThroughMod = jumpLanding ? 0.5 : 0.1667;
-            logMsg.append("\n\t\tChance to break through crust = ").append(LOG_PERCENT.format(breakThroughMod));
+            if (logMsg != null) {
+                logMsg.append("\n\t\tChance to break through crust = ").append(LOG_PERCENT.get().format(breakThroughMod));
+            }
 
             // Factor in the chance to break through.
             double lavalHazard = calcLavaHazard(endHex, movingUnit, step, logMsg) * breakThroughMod;
-            logMsg.append("\n\t\t\tLava hazard (").append(LOG_DECIMAL.format(lavalHazard)).append(").");
+            if (logMsg != null) {
+                logMsg.append("\n\t\t\tLava hazard (").append(LOG_DECIMAL.get().format(lavalHazard)).append(").");
+            }
             hazardValue += lavalHazard;
 
             // Factor in heat.
             if (movingUnit.getHeatCapacity() != Entity.DOES_NOT_TRACK_HEAT) {
                 double heatMod = (endHex ? 5 : 2) * (1 - breakThroughMod);
                 hazardValue += heatMod;
-                logMsg.append("\n\t\tHeat gain (").append(LOG_DECIMAL.format(heatMod)).append(").");
+                if (logMsg != null) {
+                    logMsg.append("\n\t\tHeat gain (").append(LOG_DECIMAL.get().format(heatMod)).append(").");
+                }
             }
         }
 
@@ -1057,19 +1170,25 @@ public class BasicPathRanker extends PathRanker {
     }
 
     private double calcLavaHazard(boolean endHex, Entity movingUnit, MoveStep step, StringBuilder logMsg) {
-        logMsg.append("\n\tCalculating laval hazard:  ");
+        if (logMsg != null) {
+            logMsg.append("\n\tCalculating laval hazard:  ");
+        }
 
 
         // Hovers are unaffected.
         if (EntityMovementMode.HOVER == movingUnit.getMovementMode() ||
             EntityMovementMode.WIGE == movingUnit.getMovementMode()) {
-            logMsg.append("Hovering above lava (0).");
+            if (logMsg != null) {
+                logMsg.append("Hovering above lava (0).");
+            }
             return 0;
         }
 
         // Non-mech units auto-destroyed.
         if (!(movingUnit instanceof Mech)) {
-            logMsg.append("Non-mech instant destruction (1000).");
+            if (logMsg != null) {
+                logMsg.append("Non-mech instant destruction (1000).");
+            }
             return 1000;
         }
 
@@ -1078,25 +1197,39 @@ public class BasicPathRanker extends PathRanker {
         // Factor in heat.
         double heat = endHex ? 10.0 : 5.0;
         hazardValue += heat;
-        logMsg.append("\n\t\tHeat gain (").append(heat).append(LOG_DECIMAL.format(heat)).append(").");
+        if (logMsg != null) {
+            logMsg.append("\n\t\tHeat gain (").append(heat).append(LOG_DECIMAL.get().format(heat)).append(").");
+        }
 
         // Factor in potential damage.
         double dmg;
-        logMsg.append("\n\t\tDamage to ");
+        if (logMsg != null) {
+            logMsg.append("\n\t\tDamage to ");
+        }
         if (step.isProne()) {
             dmg = 7 * movingUnit.locations();
-            logMsg.append("everything [prone] (");
+            if (logMsg != null) {
+                logMsg.append("everything [prone] (");
+            }
         } else if (movingUnit instanceof BipedMech) {
             dmg = 14;
-            logMsg.append("legs (");
+            if (logMsg != null) {
+                logMsg.append("legs (");
+            }
         } else if (movingUnit instanceof TripodMech) {
             dmg = 21;
-            logMsg.append("legs (");
+            if (logMsg != null) {
+                logMsg.append("legs (");
+            }
         } else {
             dmg = 28;
-            logMsg.append("legs (");
+            if (logMsg != null) {
+                logMsg.append("legs (");
+            }
+        }
+        if (logMsg != null) {
+            logMsg.append(LOG_DECIMAL.get().format(dmg)).append(").");
         }
-        logMsg.append(LOG_DECIMAL.format(dmg)).append(").");
         hazardValue += dmg;
 
         return hazardValue;
@@ -106,6 +106,7 @@ public class BehaviorSettings {
     private final Set<Integer> priorityUnitTargets = new HashSet<>(); // What units do I especially want to blow up?
     private int herdMentalityIndex = 5; // How close do I want to stick to my teammates?
     private int braveryIndex = 5; // How quickly will I try to escape once damaged?
+    private int rankingParallelism = 0; // How many paths do I rank at once? 0 uses every processor.
 
     public BehaviorSettings() {
     }
@@ -126,6 +127,7 @@ public class BehaviorSettings {
         copy.setHerdMentalityIndex(getHerdMentalityIndex());
         copy.setHyperAggressionIndex(getHyperAggressionIndex());
         copy.setSelfPreservationIndex(getSelfPreservationIndex());
+        copy.setRankingParallelism(getRankingParallelism());
         for (String t : getStrategicBuildingTargets()) {
             copy.addStrategicTarget(t);
         }
@@ -441,6 +443,48 @@ public class BehaviorSettings {
         }
     }
 
+    /**
+     * How many paths do I rank at the same time?
+     *
+     * @return The number of threads used to rank paths, or 0 to use one per available processor.
+     */
+    public int getRankingParallelism() {
+        return rankingParallelism;
+    }
+
+    /**
+     * How many paths do I rank at the same time?  Only the speed of path ranking depends on this, never the result.
+     *
+     * @param rankingParallelism The number of threads used to rank paths, or 0 to use one per available processor.
+     */
+    public void setRankingParallelism(int rankingParallelism) {
+        this.rankingParallelism = Math.max(0, rankingParallelism);
+    }
+
+    /**
+     * How many paths do I rank at the same time?
+     *
+     * @param rankingParallelism The number ["0"-] of threads used to rank paths.
+     */
+    public void setRankingParallelism(String rankingParallelism) throws PrincessException {
+        try {
+            setRankingParallelism(Integer.parseInt(rankingParallelism));
+        } catch (NumberFormatException ex) {
+            throw new PrincessException(ex);
+        }
+    }
+
+    /**
+     * Returns the number of threads that actually rank paths, resolving 0 to the number of available processors.
+     * Firing plans at different targets are looked for on as many threads.
+     */
+    public int getEffectiveRankingParallelism() {
+        if (rankingParallelism > 0) {
+            return rankingParallelism;
+        }
+        return Runtime.getRuntime().availableProcessors();
+    }
+
     /**
      * Princess's home edge.
      *
@@ -619,6 +663,8 @@ public class BehaviorSettings {
                 setHerdMentalityIndex(child.getTextContent());
             } else if ("braveryIndex".equalsIgnoreCase(child.getNodeName())) {
                 setBraveryIndex(child.getTextContent());
+            } else if ("rankingParallelism".equalsIgnoreCase(child.getNodeName())) {
+                setRankingParallelism(child.getTextContent());
             } else if ("strategicTargets".equalsIgnoreCase(child.getNodeName())) {
                 NodeList targets = child.getChildNodes();
                 for (int j = 0; j < targets.getLength(); j++) {
@@ -691,6 +737,10 @@ public class BehaviorSettings {
             braveryNode.setTextContent("" + getBraveryIndex());
             behavior.appendChild(braveryNode);
 
+            Element rankingParallelismNode = doc.createElement("rankingParallelism");
+            rankingParallelismNode.setTextContent("" + getRankingParallelism());
+            behavior.appendChild(rankingParallelismNode);
+
             Element targetsNode = doc.createElement("strategicBuildingTargets");
             if (includeTargets) {
                 for (String t : getStrategicBuildingTargets()) {
@@ -726,6 +776,7 @@ public class BehaviorSettings {
         out += "\n\tFall Shame: " + getFallShameIndex();
         out += "\n\tBravery: " + getBraveryIndex();
         out += "\n\tHerd Mentality: " + getHerdMentalityIndex();
+        out += "\n\tRanking Parallelism: " + getRankingParallelism();
         out += "\n\tTargets:";
         out += "\n\t\tCoords: ";
         for (String t : getStrategicBuildingTargets()) {
@@ -753,6 +804,7 @@ public class BehaviorSettings {
         if (herdMentalityIndex != that.herdMentalityIndex) return false;
         if (hyperAggressionIndex != that.hyperAggressionIndex) return false;
         if (selfPreservationIndex != that.selfPreservationIndex) return false;
+        if (rankingParallelism != that.rankingParallelism) return false;
         if (!description.equals(that.description)) return false;
         if (homeEdge != that.homeEdge) return false;
         if (strategicBuildingTargets != null ? !strategicBuildingTargets.equals(that.strategicBuildingTargets) : that
@@ -781,6 +833,7 @@ public class BehaviorSettings {
         result = 31 * result + (priorityUnitTargets != null ? priorityUnitTargets.hashCode() : 0);
         result = 31 * result + herdMentalityIndex;
         result = 31 * result + braveryIndex;
+        result = 31 * result + rankingParallelism;
         return result;
     }
 }
@@ -17,9 +17,13 @@ import java.text.DecimalFormat;
 import java.text.NumberFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Enumeration;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import megamek.common.Aero;
 import megamek.common.AmmoType;
@@ -233,6 +237,10 @@ public class FireControl {
 
     private final Princess owner;
 
+    private ForkJoinPool firingPlanPool;
+
+    private final ToHitModifierCache toHitModifierCache = new ToHitModifierCache();
+
     /**
      * Constructor
      *
@@ -242,6 +250,17 @@ public class FireControl {
         owner = owningPrincess;
     }
 
+    /**
+     * Forgets the to hit modifiers remembered during the last turn, logging how often they were looked up.  Call this
+     * at the start of every turn.
+     */
+    void clearToHitModifierCache() {
+        final String METHOD_NAME = "clearToHitModifierCache()";
+        owner.log(getClass(), METHOD_NAME, LogLevel.DEBUG, "To hit modifier cache: %d hits, %d misses, %d entries",
+                  toHitModifierCache.getHits(), toHitModifierCache.getMisses(), toHitModifierCache.size());
+        toHitModifierCache.clear();
+    }
+
     /**
      * Returns the movement modifier calculated by {@link Compute#getAttackerMovementModifier(IGame, int,
      * EntityMovementType)}.
@@ -679,6 +698,57 @@ public class FireControl {
                (targetMech.getCockpitType() == Mech.COCKPIT_SUPERHEAVY_TRIPOD);
     }
 
+    /**
+     * Guesses the to hit modifiers that are the same for every weapon the shooter fires at the target: gunnery skill,
+     * the modifiers that apply to all attacks, line of sight and sensor damage.
+     *
+     * @return The modifiers, or the reason the target can't be hit at all.
+     */
+    private ToHitData guessToHitModifierForAnyWeapon(Entity shooter, EntityState shooterState, Targetable target,
+                                                     EntityState targetState, int distance, IGame game) {
+
+        // Get the mods that apply to all attacks.
+        ToHitData baseMods = guessToHitModifierHelperForAnyAttack(shooter,
+                shooterState, target, targetState, distance, game);
+        if (baseMods.getValue() == TargetRoll.IMPOSSIBLE || baseMods.getValue() == TargetRoll.AUTOMATIC_FAIL) {
+            return baseMods;
+        }
+
+        // Base to hit is gunnery skill
+        ToHitData toHit = new ToHitData(shooter.getCrew().getGunnery(), TH_GUNNERY);
+        toHit.append(baseMods);
+
+        // There is kindly already a class that will calculate line of sight for me
+        // todo take into account spotting for indirect fire.
+        LosEffects losEffects = getLosEffects(game, shooter.getId(), target, shooterState.getPosition(),
+                                              targetState.getPosition(), false);
+
+        // water is a separate los effect
+        IHex targetHex = game.getBoard().getHex(targetState.getPosition());
+        if (target instanceof Entity) {
+            if (targetHex.containsTerrain(Terrains.WATER)
+                && (targetHex.terrainLevel(Terrains.WATER) == 1)
+                && (((Entity) target).height() > 0)) {
+                losEffects.setTargetCover(losEffects.getTargetCover() | LosEffects.COVER_HORIZONTAL);
+            }
+        }
+
+        // Can we still hit after taking into account LoS?
+        toHit.append(losEffects.losModifiers(game));
+        if ((toHit.getValue() == TargetRoll.IMPOSSIBLE) || (toHit.getValue() == TargetRoll.AUTOMATIC_FAIL)) {
+            return toHit; // you can't hit what you can't see
+        }
+
+        // Handle sensor damage.  Mek sensor damage is handled under general damage mods.
+        if (shooter instanceof Tank) {
+            int sensors = ((Tank) shooter).getSensorHits();
+            if (sensors > 0) {
+                toHit.addModifier(sensors, TH_SENSORS);
+            }
+        }
+        return toHit;
+    }
+
     /**
      * Makes an educated guess as to the to hit modifier with a weapon attack.
      * Does not actually place unit into desired position, because that is
@@ -792,49 +862,21 @@ public class FireControl {
             }
         }
 
-        // Get the mods that apply to all attacks.
-        ToHitData baseMods = guessToHitModifierHelperForAnyAttack(shooter,
-                shooterState, target, targetState, distance, game);
-        if (baseMods.getValue() == TargetRoll.IMPOSSIBLE || baseMods.getValue() == TargetRoll.AUTOMATIC_FAIL) {
-            return baseMods;
+        // The mods that don't depend on the weapon are only worked out once for these states.
+        ToHitModifierCache.Key key = new ToHitModifierCache.Key(shooter, shooterState, target, targetState, distance);
+        ToHitData toHit = toHitModifierCache.get(key);
+        if (toHit == null) {
+            toHit = guessToHitModifierForAnyWeapon(shooter, shooterState, target, targetState, distance, game);
+            toHitModifierCache.put(key, toHit);
+        }
+        if ((toHit.getValue() == TargetRoll.IMPOSSIBLE) || (toHit.getValue() == TargetRoll.AUTOMATIC_FAIL)) {
+            return toHit;
         }
 
-        // Base to hit is gunnery skill
-        ToHitData toHit = new ToHitData(shooter.getCrew().getGunnery(), TH_GUNNERY);
-        toHit.append(baseMods);
-
-        // There is kindly already a class that will calculate line of sight for me
-        // todo take into account spotting for indirect fire.
-        LosEffects losEffects = getLosEffects(game, shooter.getId(), target, shooterState.getPosition(),
-                                              targetState.getPosition(), false);
-
-        // water is a separate los effect
-        IHex targetHex = game.getBoard().getHex(targetState.getPosition());
         Entity targetEntity = null;
         if (target instanceof Entity) {
             targetEntity = (Entity) target;
         }
-        if (targetEntity != null) {
-            if (targetHex.containsTerrain(Terrains.WATER)
-                && (targetHex.terrainLevel(Terrains.WATER) == 1)
-                && (targetEntity.height() > 0)) {
-                losEffects.setTargetCover(losEffects.getTargetCover() | LosEffects.COVER_HORIZONTAL);
-            }
-        }
-
-        // Can we still hit after taking into account LoS?
-        toHit.append(losEffects.losModifiers(game));
-        if ((toHit.getValue() == TargetRoll.IMPOSSIBLE) || (toHit.getValue() == TargetRoll.AUTOMATIC_FAIL)) {
-            return toHit; // you can't hit what you can't see
-        }
-
-        // Handle sensor damage.  Mek sensor damage is handled under general damage mods.
-        if (shooter instanceof Tank) {
-            int sensors = ((Tank) shooter).getSensorHits();
-            if (sensors > 0) {
-                toHit.addModifier(sensors, TH_SENSORS);
-            }
-        }
 
         // Handle mechs being swarmed.
         if (targetEntity instanceof Mech) {
@@ -1601,9 +1643,14 @@ public class FireControl {
      */
     FiringPlan getFullFiringPlan(Entity shooter, Targetable target,
                                  Map<Mounted, Double> ammoConservation, IGame game) {
+        return getFullFiringPlan(new ShooterInfo(shooter, ammoConservation), target, game);
+    }
+
+    private FiringPlan getFullFiringPlan(ShooterInfo shooterInfo, Targetable target, IGame game) {
         final String METHOD_NAME = "getFullFiringPlan(Entity, Targetable, IGame)";
         final NumberFormat DECF = new DecimalFormat("0.000");
 
+        Entity shooter = shooterInfo.shooter;
         FiringPlan myPlan = new FiringPlan(target);
 
         // Shooting isn't possible if one of us isn't on the board.
@@ -1618,20 +1665,22 @@ public class FireControl {
         }
 
         // cycle through my weapons
-        for (Mounted weapon : shooter.getWeaponList()) {
-            double toHitThreshold = ammoConservation.get(weapon);
+        for (Mounted weapon : shooterInfo.weapons) {
+            double toHitThreshold = shooterInfo.ammoConservation.get(weapon);
             WeaponFireInfo shoot = buildWeaponFireInfo(shooter, target, weapon, game, false);
             if ((shoot.getProbabilityToHit() > toHitThreshold)) {
                 myPlan.add(shoot);
                 continue;
             }
-            owner.log(getClass(), METHOD_NAME, LogLevel.DEBUG,
-                      "\nTo Hit Chance (" + DECF.format(shoot.getProbabilityToHit()) + ") for " + weapon.getName() +
-                      " is less than threshold (" + DECF.format(toHitThreshold) + ")");
+            if (owner.isLoggable(LogLevel.DEBUG)) {
+                owner.log(getClass(), METHOD_NAME, LogLevel.DEBUG,
+                          "\nTo Hit Chance (" + DECF.format(shoot.getProbabilityToHit()) + ") for " + weapon.getName() +
+                          " is less than threshold (" + DECF.format(toHitThreshold) + ")");
+            }
         }
 
         // Rank how useful this plan is.
-        calculateUtility(myPlan, calcHeatTolerance(shooter, null), (shooter instanceof Aero));
+        calculateUtility(myPlan, shooterInfo.heatTolerance, shooterInfo.isAero);
         return myPlan;
     }
 
@@ -1667,6 +1716,12 @@ public class FireControl {
      * @return
      */
     FiringPlan[] calcFiringPlansUnderHeat(Entity shooter, FiringPlan alphaStrike) {
+        boolean isAero = (shooter instanceof Aero);
+        return calcFiringPlansUnderHeat(shooter, alphaStrike, calcHeatTolerance(shooter, isAero), isAero);
+    }
+
+    private FiringPlan[] calcFiringPlansUnderHeat(Entity shooter, FiringPlan alphaStrike, int heatTolerance,
+                                                  boolean isAero) {
 
         // can't be lower than zero heat
         int maxHeat = alphaStrike.getHeat();
@@ -1676,9 +1731,6 @@ public class FireControl {
 
         Targetable target = alphaStrike.getTarget();
 
-        boolean isAero = (shooter instanceof Aero);
-        int heatTolerance = calcHeatTolerance(shooter, isAero);
-
         // How many plans do I need to compute?
         FiringPlan [] bestPlans;
         if (shooter instanceof Infantry || shooter instanceof BattleArmor) {
@@ -1786,25 +1838,24 @@ public class FireControl {
      */
     FiringPlan getBestFiringPlan(Entity shooter, Targetable target, IGame game,
             Map<Mounted, Double> ammoConservation) {
+        return getBestFiringPlan(new ShooterInfo(shooter, ammoConservation), target, game);
+    }
+
+    private FiringPlan getBestFiringPlan(ShooterInfo shooterInfo, Targetable target, IGame game) {
 
         // Start with an alpha strike.
-        FiringPlan alphaStrike = getFullFiringPlan(shooter, target,
-                ammoConservation, game);
-        // Although they don't track heat, infantry/BA do need to make tradeoffs
-        // between firing different weapons, because swarm/leg attacks are
-        // mutually exclusive with normal firing, so we treat them similarly to
-        // heat-tracking units.
-        if (shooter.getHeatCapacity() == 999 && !(shooter instanceof Infantry)
-                && !(shooter instanceof BattleArmor)) {
+        FiringPlan alphaStrike = getFullFiringPlan(shooterInfo, target, game);
+        if (!shooterInfo.weighsHeat) {
             return alphaStrike; // No need to worry about heat if the unit
                                 // doesn't track it.
         }
 
         // Get all the best plans that generate less heat than an alpha strike.
-        FiringPlan allPlans[] = calcFiringPlansUnderHeat(shooter, alphaStrike);
+        FiringPlan allPlans[] = calcFiringPlansUnderHeat(shooterInfo.shooter, alphaStrike,
+                shooterInfo.heatTolerance, shooterInfo.isAero);
 
         // Determine the best plan taking into account our heat tolerance.
-        return getBestFiringPlanUnderHeat(target, shooter, allPlans);
+        return getBestFiringPlanUnderHeat(target, allPlans, shooterInfo.heatTolerance, shooterInfo.isAero);
     }
 
     /**
@@ -1895,11 +1946,15 @@ public class FireControl {
 
     private FiringPlan getBestFiringPlanUnderHeat(Targetable target,
             Entity shooter, FiringPlan[] allPlans) {
+        boolean isAero = (shooter instanceof Aero);
+        return getBestFiringPlanUnderHeat(target, allPlans, calcHeatTolerance(shooter, isAero), isAero);
+    }
+
+    private FiringPlan getBestFiringPlanUnderHeat(Targetable target, FiringPlan[] allPlans, int heatTolerance,
+                                                  boolean isAero) {
 
         // Determine the best plan taking into account our heat tolerance.
         FiringPlan bestPlan = new FiringPlan(target);
-        boolean isAero = (shooter instanceof Aero);
-        int heatTolerance = calcHeatTolerance(shooter, isAero);
         calculateUtility(bestPlan, heatTolerance, isAero);
         for (FiringPlan firingPlan : allPlans) {
             calculateUtility(firingPlan, heatTolerance, isAero);
@@ -1925,13 +1980,13 @@ public class FireControl {
      */
     FiringPlan getBestFiringPlanWithTwists(Entity shooter, Targetable target,
             IGame game, Map<Mounted, Double> ammoConservation) {
+        ShooterInfo shooterInfo = new ShooterInfo(shooter, ammoConservation);
 
         // Keep track of our original facing so we can go back to it.
         int originalFacing = shooter.getSecondaryFacing();
 
         // Get the best plan without any twists.
-        FiringPlan noTwistPlan = getBestFiringPlan(shooter, target, game,
-                ammoConservation);
+        FiringPlan noTwistPlan = getBestFiringPlan(shooterInfo, target, game);
 
         // If we can't change facing, we're done.
         if (!shooter.canChangeSecondaryFacing()) {
@@ -1940,12 +1995,12 @@ public class FireControl {
 
         // Turn to the right.
         shooter.setSecondaryFacing(correctFacing(originalFacing + 1));
-        FiringPlan rightTwistPlan = getBestFiringPlan(shooter, target, game, ammoConservation);
+        FiringPlan rightTwistPlan = getBestFiringPlan(shooterInfo, target, game);
         rightTwistPlan.setTwist(1);
 
         // Turn to the left.
         shooter.setSecondaryFacing(correctFacing(originalFacing - 1));
-        FiringPlan leftTwistPlan = getBestFiringPlan(shooter, target, game, ammoConservation);
+        FiringPlan leftTwistPlan = getBestFiringPlan(shooterInfo, target, game);
         leftTwistPlan.setTwist(-1);
 
         // todo extended torso twist.
@@ -1953,7 +2008,15 @@ public class FireControl {
         // Back to where we started.
         shooter.setSecondaryFacing(originalFacing);
 
-        // Return the highest utility plan.
+        return getBestTwist(noTwistPlan, rightTwistPlan, leftTwistPlan);
+    }
+
+    /**
+     * Returns the highest utility plan.  Not twisting wins only if it beats both twists, and twisting left only if it
+     * beats twisting right.
+     */
+    private static FiringPlan getBestTwist(FiringPlan noTwistPlan, FiringPlan rightTwistPlan,
+                                           FiringPlan leftTwistPlan) {
         if ((noTwistPlan.getUtility() > rightTwistPlan.getUtility()) &&
             (noTwistPlan.getUtility() > leftTwistPlan.getUtility())) {
             return noTwistPlan;
@@ -1965,7 +2028,11 @@ public class FireControl {
     }
 
     /**
-     * Guesses the 'best' firing plan under a certain heat includes the option  of twisting
+     * Guesses the 'best' firing plan under a certain heat includes the option  of twisting.
+     * <p>
+     * The shooter itself is never turned; the twists are tried on copies of its state, so that several paths can be
+     * ranked at the same time.  A given shooter state keeps its own secondary facing, so twisting only makes a
+     * difference when the state is taken from the shooter.
      *
      * @param shooter      The unit doing the shooting.
      * @param shooterState The current state of the shooting unit.
@@ -1988,26 +2055,18 @@ public class FireControl {
             return noTwistPlan;
         }
 
-        // Keep track of our original facing so we can go back to it.
-        int originalFacing = shooter.getSecondaryFacing();
-
         // Turn to the right.
-        shooter.setSecondaryFacing(correctFacing(originalFacing + 1));
         FiringPlan rightTwistPlan = guessBestFiringPlanUnderHeat(shooter,
-                shooterState, target, targetState, maxHeat, game);
+                getTwistedState(shooter, shooterState, 1), target, targetState, maxHeat, game);
         rightTwistPlan.setTwist(1);
 
         // Turn to the left.
-        shooter.setSecondaryFacing(correctFacing(originalFacing - 1));
         FiringPlan leftTwistPlan = guessBestFiringPlanUnderHeat(shooter,
-                shooterState, target, targetState, maxHeat, game);
+                getTwistedState(shooter, shooterState, -1), target, targetState, maxHeat, game);
         leftTwistPlan.setTwist(-1);
 
         // todo extended torso twist.
 
-        // Back to where we started.
-        shooter.setSecondaryFacing(originalFacing);
-
         // Return the highest utility plan.
         if ((noTwistPlan.getUtility() > rightTwistPlan.getUtility()) &&
             (noTwistPlan.getUtility() > leftTwistPlan.getUtility())) {
@@ -2020,7 +2079,9 @@ public class FireControl {
     }
 
     /**
-     * Guesses the 'best' firing plan under a certain heat includes the option of twisting
+     * Guesses the 'best' firing plan under a certain heat includes the option of twisting.  Like
+     * {@link #guessBestFiringPlanUnderHeatWithTwists(Entity, EntityState, Targetable, EntityState, int, IGame)},
+     * this never turns the shooter itself.
      */
     FiringPlan guessBestFiringPlanWithTwists(Entity shooter,
             @Nullable EntityState shooterState, Targetable target,
@@ -2035,26 +2096,18 @@ public class FireControl {
             return noTwistPlan;
         }
 
-        // Keep track of our original facing so we can go back to it.
-        int originalFacing = shooter.getSecondaryFacing();
-
         // Turn to the right.
-        shooter.setSecondaryFacing(correctFacing(originalFacing + 1));
-        FiringPlan rightTwistPlan = guessBestFiringPlan(shooter, shooterState,
+        FiringPlan rightTwistPlan = guessBestFiringPlan(shooter, getTwistedState(shooter, shooterState, 1),
                 target, targetState, game);
         rightTwistPlan.setTwist(1);
 
         // Turn to the left.
-        shooter.setSecondaryFacing(correctFacing(originalFacing - 1));
-        FiringPlan leftTwistPlan = guessBestFiringPlan(shooter, shooterState,
+        FiringPlan leftTwistPlan = guessBestFiringPlan(shooter, getTwistedState(shooter, shooterState, -1),
                 target, targetState, game);
         leftTwistPlan.setTwist(-1);
 
         // todo extended torso twist.
 
-        // Back to where we started.
-        shooter.setSecondaryFacing(originalFacing);
-
         // Return the highest utility plan.
         if ((noTwistPlan.getUtility() > rightTwistPlan.getUtility()) &&
             (noTwistPlan.getUtility() > leftTwistPlan.getUtility())) {
@@ -2066,6 +2119,19 @@ public class FireControl {
         return rightTwistPlan;
     }
 
+    /**
+     * Returns the state the shooter would be in after twisting its torso, without turning the shooter itself.  A
+     * given state keeps its own secondary facing, just as it did when the shooter was turned.
+     */
+    private EntityState getTwistedState(Entity shooter, @Nullable EntityState shooterState, int twist) {
+        if (shooterState != null) {
+            return shooterState;
+        }
+        EntityState twistedState = new EntityState(shooter);
+        twistedState.setSecondaryFacing(correctFacing(shooter.getSecondaryFacing() + twist));
+        return twistedState;
+    }
+
     /**
      * Gets all the entities that are potential targets
      *
@@ -2141,13 +2207,9 @@ public class FireControl {
                                  Map<Mounted, Double> ammoConservation) {
         final String METHOD_NAME = "getBestFiringPlan(Entity, IGame)";
 
-        FiringPlan bestPlan = null;
-
         // Get a list of potential targets.
-        List<Targetable> enemies = getTargetableEnemyEntities(shooter, game);
-
-        // Loop through each enemy and find the best plan for attacking them.
-        for (Targetable enemy : enemies) {
+        List<Targetable> targets = new ArrayList<>();
+        for (Targetable enemy : getTargetableEnemyEntities(shooter, game)) {
 
             boolean priorityTarget = owner.getPriorityUnitTargets().contains(enemy.getTargetId());
 
@@ -2155,14 +2217,47 @@ public class FireControl {
             int playerId = (enemy instanceof Entity) ? ((Entity) enemy).getOwnerId() : -1;
             if (!priorityTarget && honorUtil.isEnemyBroken(enemy.getTargetId(), playerId,
                                                            owner.getForcedWithdrawal())) {
-                owner.log(getClass(), METHOD_NAME, LogLevel.INFO, enemy.getDisplayName() + " is broken - ignoring");
+                owner.log(getClass(), METHOD_NAME, LogLevel.INFO, "%s is broken - ignoring", enemy.getDisplayName());
                 continue;
             }
+            targets.add(enemy);
+        }
+        if (targets.isEmpty()) {
+            return null;
+        }
 
-            FiringPlan plan = getBestFiringPlanWithTwists(shooter, enemy,
-                                                          game, ammoConservation);
-            owner.log(getClass(), METHOD_NAME, LogLevel.INFO, shooter.getDisplayName() + " at " + enemy
-                    .getDisplayName() + " - Best Firing Plan: " + plan.getDebugDescription(true));
+        // Find the best plan at every target, first without twisting and then twisted to either side.  The shooter is
+        // turned for each twist, so the targets are only looked at in parallel while it faces one way.
+        ShooterInfo shooterInfo = new ShooterInfo(shooter, ammoConservation);
+        int[] twists = shooter.canChangeSecondaryFacing() ? new int[] { 0, 1, -1 } : new int[] { 0 };
+        FiringPlan[][] plans = new FiringPlan[twists.length][];
+        int originalFacing = shooter.getSecondaryFacing();
+        try {
+            for (int i = 0; i < twists.length; i++) {
+                if (twists[i] != 0) {
+                    shooter.setSecondaryFacing(correctFacing(originalFacing + twists[i]));
+                }
+                plans[i] = getBestFiringPlans(shooterInfo, targets, game);
+                if (twists[i] != 0) {
+                    for (FiringPlan plan : plans[i]) {
+                        plan.setTwist(twists[i]);
+                    }
+                }
+            }
+        } finally {
+            if (twists.length > 1) {
+                shooter.setSecondaryFacing(originalFacing);
+            }
+        }
+
+        // Pick the best plan for each target in turn, so ties go the same way however many threads were used.
+        FiringPlan bestPlan = null;
+        for (int i = 0; i < targets.size(); i++) {
+            FiringPlan plan = (twists.length == 1) ? plans[0][i] : getBestTwist(plans[0][i], plans[1][i], plans[2][i]);
+            if (owner.isLoggable(LogLevel.INFO)) {
+                owner.log(getClass(), METHOD_NAME, LogLevel.INFO, shooter.getDisplayName() + " at " + targets.get(i)
+                        .getDisplayName() + " - Best Firing Plan: " + plan.getDebugDescription(true));
+            }
             if ((bestPlan == null) || (plan.getUtility() > bestPlan.getUtility())) {
                 bestPlan = plan;
             }
@@ -2172,6 +2267,120 @@ public class FireControl {
         return bestPlan;
     }
 
+    /**
+     * Finds the best plan, without twisting, at each of the targets.  The targets are split up between the threads of
+     * a {@link ForkJoinPool}, as many as path ranking uses.
+     *
+     * @return The plans, in the order of the targets.
+     */
+    private FiringPlan[] getBestFiringPlans(ShooterInfo shooterInfo, List<Targetable> targets, IGame game) {
+        FiringPlanTask task = new FiringPlanTask(shooterInfo, targets, game);
+        int parallelism = owner.getBehaviorSettings().getEffectiveRankingParallelism();
+
+        // To fire multi-purpose missiles from under water, the to-hit rules briefly bring the shooter to the
+        // surface, so a submerged shooter is only ever looked at from one thread.
+        if ((parallelism <= 1) || (targets.size() <= 1) || (shooterInfo.shooter.getElevation() < 0)) {
+            task.plan(0, targets.size());
+        } else {
+            getFiringPlanPool(parallelism).invoke(task);
+        }
+        return task.getPlans();
+    }
+
+    /**
+     * Returns the pool that finds firing plans with the given number of threads.
+     */
+    private synchronized ForkJoinPool getFiringPlanPool(int parallelism) {
+        if ((firingPlanPool == null) || (firingPlanPool.getParallelism() != parallelism)) {
+            if (firingPlanPool != null) {
+                firingPlanPool.shutdown();
+            }
+            firingPlanPool = new ForkJoinPool(parallelism);
+        }
+        return firingPlanPool;
+    }
+
+    /**
+     * What finding a firing plan needs to know about the shooter that is the same for every target and twist.  It is
+     * worked out once per shooter and only read afterwards, so the threads looking at different targets can share it.
+     */
+    private class ShooterInfo {
+        final Entity shooter;
+        final List<Mounted> weapons;
+        final Map<Mounted, Double> ammoConservation;
+        final boolean isAero;
+        final int heatTolerance;
+
+        /**
+         * Although they don't track heat, infantry/BA do need to make tradeoffs between firing different weapons,
+         * because swarm/leg attacks are mutually exclusive with normal firing, so we treat them similarly to
+         * heat-tracking units.
+         */
+        final boolean weighsHeat;
+
+        ShooterInfo(Entity shooter, Map<Mounted, Double> ammoConservation) {
+            this.shooter = shooter;
+            weapons = Collections.unmodifiableList(new ArrayList<>(shooter.getWeaponList()));
+            this.ammoConservation = Collections.unmodifiableMap(new HashMap<>(ammoConservation));
+            isAero = (shooter instanceof Aero);
+            heatTolerance = calcHeatTolerance(shooter, isAero);
+            weighsHeat = (shooter.getHeatCapacity() != 999) || (shooter instanceof Infantry)
+                         || (shooter instanceof BattleArmor);
+        }
+    }
+
+    /**
+     * Finds the best plan at each of a list of targets, splitting the list up between the threads of a
+     * {@link ForkJoinPool}.  Each plan is stored at the index of its target, so the result doesn't depend on which
+     * thread found what.
+     */
+    private class FiringPlanTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 6236472853520947417L;
+
+        private final ShooterInfo shooterInfo;
+        private final List<Targetable> targets;
+        private final FiringPlan[] plans;
+        private final int from;
+        private final int to;
+        private final IGame game;
+
+        FiringPlanTask(ShooterInfo shooterInfo, List<Targetable> targets, IGame game) {
+            this(shooterInfo, targets, new FiringPlan[targets.size()], 0, targets.size(), game);
+        }
+
+        private FiringPlanTask(ShooterInfo shooterInfo, List<Targetable> targets, FiringPlan[] plans, int from,
+                               int to, IGame game) {
+            this.shooterInfo = shooterInfo;
+            this.targets = targets;
+            this.plans = plans;
+            this.from = from;
+            this.to = to;
+            this.game = game;
+        }
+
+        @Override
+        protected void compute() {
+            if ((to - from) <= 1) {
+                plan(from, to);
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new FiringPlanTask(shooterInfo, targets, plans, from, middle, game),
+                      new FiringPlanTask(shooterInfo, targets, plans, middle, to, game));
+        }
+
+        void plan(int planFrom, int planTo) {
+            for (int i = planFrom; i < planTo; i++) {
+                plans[i] = getBestFiringPlan(shooterInfo, targets.get(i), game);
+            }
+        }
+
+        FiringPlan[] getPlans() {
+            return plans;
+        }
+    }
+
     /**
      * Calculates the maximum damage a unit can do at a given range.  Chance to hit is not a factor.
      *
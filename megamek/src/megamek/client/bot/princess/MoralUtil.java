@@ -150,10 +150,10 @@ public class MoralUtil implements IMoralUtil {
     }
 
     /**
-     * @return The result of a 2d6 roll from {@link Compute#d6(int)}
+     * @return The result of a 2d6 roll from the bot stream of {@link Compute}
      */
     protected int rollDice() {
-        return Compute.d6(2);
+        return Compute.d6(Compute.RandomStream.BOT, 2);
     }
 
     private int calcBvRatioMod(IPlayer player, IGame game, StringBuilder logMsg) {
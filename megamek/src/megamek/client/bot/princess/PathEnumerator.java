@@ -14,12 +14,18 @@
 package megamek.client.bot.princess;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import megamek.client.bot.princess.BotGeometry.ConvexBoardArea;
@@ -28,6 +34,7 @@ import megamek.common.Aero;
 import megamek.common.Compute;
 import megamek.common.Coords;
 import megamek.common.Entity;
+import megamek.common.IBoard;
 import megamek.common.IGame;
 import megamek.common.MovePath;
 import megamek.common.MovePath.MoveStepType;
@@ -45,6 +52,9 @@ public class PathEnumerator {
     private final Map<Integer, ConvexBoardArea> unitMovableAreas = new ConcurrentHashMap<>();
     private final Map<Integer, Set<CoordFacingCombo>> unitPotentialLocations = new ConcurrentHashMap<>();
     private final Map<Integer, CoordFacingCombo> lastKnownLocations = new ConcurrentHashMap<>();
+    private final Map<Integer, MovementEnvelope> unitEnvelopes = new ConcurrentHashMap<>();
+
+    private ForkJoinPool enumerationPool;
 
     private AtomicBoolean mapHasBridges = null;
     private final Object BRIDGE_LOCK = new Object();
@@ -91,6 +101,24 @@ public class PathEnumerator {
             getUnitPaths().clear();
             getUnitPotentialLocations().clear();
             getLastKnownLocations().clear();
+            getUnitEnvelopes().clear();
+        } finally {
+            getOwner().methodEnd(getClass(), METHOD_NAME);
+        }
+    }
+
+    /**
+     * Forgets everything known about the movement of a single unit, for example because it has left the game.
+     */
+    void clearUnit(Integer entityId) {
+        final String METHOD_NAME = "clearUnit(Integer)";
+        getOwner().methodBegin(getClass(), METHOD_NAME);
+        try {
+            getLastKnownLocations().remove(entityId);
+            getUnitMovableAreas().remove(entityId);
+            getUnitPaths().remove(entityId);
+            getUnitPotentialLocations().remove(entityId);
+            getUnitEnvelopes().remove(entityId);
         } finally {
             getOwner().methodEnd(getClass(), METHOD_NAME);
         }
@@ -165,7 +193,72 @@ public class PathEnumerator {
     }
 
     /**
-     * calculates all moves for a given unit, keeping the shortest path to each hex/facing pair
+     * Calculates all moves for several units at once, spreading the units over the processors.  Each unit is
+     * handled just like {@link #recalculateMovesFor(Entity)} does, so units whose moves are still up to date are
+     * skipped.
+     *
+     * @param movers The units whose moves are to be calculated.
+     */
+    public void recalculateMovesFor(Collection<Entity> movers) {
+        final String METHOD_NAME = "recalculateMovesFor(Collection<Entity>)";
+        getOwner().methodBegin(getClass(), METHOD_NAME);
+        try {
+            int parallelism = getOwner().getBehaviorSettings().getEffectiveRankingParallelism();
+            if ((parallelism <= 1) || (movers.size() <= 1)) {
+                for (Entity mover : movers) {
+                    recalculateMovesFor(mover);
+                }
+                return;
+            }
+
+            List<Callable<Void>> tasks = new ArrayList<>(movers.size());
+            for (final Entity mover : movers) {
+                tasks.add(new Callable<Void>() {
+                    @Override
+                    public Void call() {
+                        recalculateMovesFor(mover);
+                        return null;
+                    }
+                });
+            }
+            for (Future<Void> result : getEnumerationPool(parallelism).invokeAll(tasks)) {
+                try {
+                    result.get();
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof RuntimeException) {
+                        throw (RuntimeException) e.getCause();
+                    }
+                    if (e.getCause() instanceof Error) {
+                        throw (Error) e.getCause();
+                    }
+                    throw new IllegalStateException(e.getCause());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        } finally {
+            getOwner().methodEnd(getClass(), METHOD_NAME);
+        }
+    }
+
+    /**
+     * Returns the pool that calculates moves with the given number of threads, as many as path ranking uses.
+     */
+    private synchronized ForkJoinPool getEnumerationPool(int parallelism) {
+        if ((enumerationPool == null) || (enumerationPool.getParallelism() != parallelism)) {
+            if (enumerationPool != null) {
+                enumerationPool.shutdown();
+            }
+            enumerationPool = new ForkJoinPool(parallelism);
+        }
+        return enumerationPool;
+    }
+
+    /**
+     * calculates all moves for a given unit, keeping the shortest path to each hex/facing pair.  If neither the unit,
+     * the hexes it could reach nor the units in them have changed since the last time, the moves calculated then are
+     * kept.
      */
     public void recalculateMovesFor(final Entity mover) {
         final String METHOD_NAME = "recalculateMovesFor(IGame, Entity)";
@@ -178,9 +271,45 @@ public class PathEnumerator {
                     CoordFacingCombo.createCoordFacingCombo(
                             mover.getPosition(), mover.getFacing()));
 
+            // Nothing to do if the moves we already know are still valid.
+            MovementEnvelope envelope = getUnitEnvelopes().get(mover.getId());
+            if ((envelope != null) && getUnitPaths().containsKey(mover.getId()) && envelope.isValidFor(mover)) {
+                getOwner().log(getClass(), METHOD_NAME, "keeping paths for " + mover.getDisplayName());
+                return;
+            }
+            getUnitEnvelopes().remove(mover.getId());
+
             // Clear out any already calculated paths.
             getUnitPaths().remove(mover.getId());
 
+            List<MovePath> paths = calculateMoves(mover);
+
+            // Update our locations and add the computed paths.
+            updateUnitLocations(mover, paths);
+            getUnitPaths().put(mover.getId(), paths);
+
+            // calculate bounding area for move
+            ConvexBoardArea myArea = new ConvexBoardArea(owner);
+            myArea.addCoordFacingCombos(getUnitPotentialLocations().get(
+                    mover.getId()).iterator());
+            getUnitMovableAreas().put(mover.getId(), myArea);
+
+            // Aerospace moves depend on velocity and altitude as well, so they are always recalculated.
+            if (!(mover instanceof Aero)) {
+                getUnitEnvelopes().put(mover.getId(), new MovementEnvelope(mover, paths));
+            }
+        } finally {
+            getOwner().methodEnd(getClass(), METHOD_NAME);
+        }
+    }
+
+    /**
+     * Finds the legal moves of a unit, without looking at the moves calculated before.
+     */
+    protected List<MovePath> calculateMoves(final Entity mover) {
+        final String METHOD_NAME = "calculateMoves(Entity)";
+        getOwner().methodBegin(getClass(), METHOD_NAME);
+        try {
             // Start constructing the new list of paths.
             List<MovePath> paths = new ArrayList<>();
             if (mover instanceof Aero) {
@@ -276,16 +405,7 @@ public class PathEnumerator {
                 };
                 paths = new ArrayList<>(filter.doFilter(paths));
             }
-
-            // Update our locations and add the computed paths.
-            updateUnitLocations(mover, paths);
-            getUnitPaths().put(mover.getId(), paths);
-
-            // calculate bounding area for move
-            ConvexBoardArea myArea = new ConvexBoardArea(owner);
-            myArea.addCoordFacingCombos(getUnitPotentialLocations().get(
-                    mover.getId()).iterator());
-            getUnitMovableAreas().put(mover.getId(), myArea);
+            return paths;
         } finally {
             getOwner().methodEnd(getClass(), METHOD_NAME);
         }
@@ -399,6 +519,10 @@ public class PathEnumerator {
         return lastKnownLocations;
     }
 
+    protected Map<Integer, MovementEnvelope> getUnitEnvelopes() {
+        return unitEnvelopes;
+    }
+
     protected IGame getGame() {
         return game;
     }
@@ -419,4 +543,80 @@ public class PathEnumerator {
 
         return mapHasBridges.get();
     }
+
+    /**
+     * Everything the moves of a unit were calculated from: the state of the unit itself, the hexes it could reach
+     * along with their neighbours, and the other units standing in them.  As long as none of these change, the
+     * calculated moves stay valid.
+     */
+    private class MovementEnvelope {
+        private final IBoard board;
+        private final List<Object> moverState;
+        private final Coords[] hexes;
+        private final long[] hexVersions;
+        private final Map<Integer, Coords> occupants;
+
+        MovementEnvelope(Entity mover, List<MovePath> paths) {
+            board = getGame().getBoard();
+            moverState = getMoverState(mover);
+            Set<Coords> reachable = new HashSet<>();
+            reachable.add(mover.getPosition());
+            for (MovePath path : paths) {
+                reachable.addAll(path.getCoordsSet());
+            }
+            // A change next to a reachable hex may open up a new way into it.
+            Set<Coords> affecting = new HashSet<>(reachable);
+            for (Coords coords : reachable) {
+                for (int direction = 0; direction < 6; direction++) {
+                    affecting.add(coords.translated(direction));
+                }
+            }
+            hexes = affecting.toArray(new Coords[affecting.size()]);
+            hexVersions = new long[hexes.length];
+            for (int i = 0; i < hexes.length; i++) {
+                hexVersions[i] = board.getHexVersion(hexes[i]);
+            }
+            occupants = getOccupants(mover, affecting);
+        }
+
+        boolean isValidFor(Entity mover) {
+            if ((getGame().getBoard() != board) || !moverState.equals(getMoverState(mover))) {
+                return false;
+            }
+            for (int i = 0; i < hexes.length; i++) {
+                if (board.getHexVersion(hexes[i]) != hexVersions[i]) {
+                    return false;
+                }
+            }
+            Set<Coords> affecting = new HashSet<>(hexes.length);
+            for (Coords coords : hexes) {
+                affecting.add(coords);
+            }
+            return occupants.equals(getOccupants(mover, affecting));
+        }
+
+        private List<Object> getMoverState(Entity mover) {
+            List<Object> state = new ArrayList<>();
+            state.add(mover.getPosition());
+            state.add(mover.getFacing());
+            state.add(mover.getElevation());
+            state.add(mover.getWalkMP());
+            state.add(mover.getRunMPwithoutMASC());
+            state.add(mover.getJumpMP());
+            state.add(mover.isProne());
+            state.add(mover.isHullDown());
+            state.add(mover.getMovementMode());
+            return state;
+        }
+
+        private Map<Integer, Coords> getOccupants(Entity mover, Set<Coords> area) {
+            Map<Integer, Coords> result = new HashMap<>();
+            for (Entity entity : getGame().getEntitiesVector()) {
+                if ((entity.getId() != mover.getId()) && area.contains(entity.getPosition())) {
+                    result.put(entity.getId(), entity.getPosition());
+                }
+            }
+            return result;
+        }
+    }
 }
@@ -13,14 +13,19 @@
  */
 package megamek.client.bot.princess;
 
-import java.math.BigDecimal;
-import java.math.MathContext;
-import java.math.RoundingMode;
 import java.text.NumberFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Enumeration;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import megamek.client.ui.SharedUtility;
 import megamek.common.Aero;
@@ -40,8 +45,20 @@ import megamek.common.util.StringUtil;
 
 public abstract class PathRanker {
 
+    /**
+     * The number of paths a ranking thread takes on at once
+     */
+    private static final int RANKING_BATCH_SIZE = 16;
+
+    /**
+     * How often, in milliseconds, ranking progress is checked
+     */
+    private static final long PROGRESS_INTERVAL = 250;
+
     private Princess owner;
 
+    private ForkJoinPool rankingPool;
+
     public PathRanker(Princess princess) {
         owner = princess;
     }
@@ -84,28 +101,148 @@ public abstract class PathRanker {
 
             Coords allyCenter = calcAllyCenter(movePaths.get(0).getEntity().getId(), friends, game);
 
-            ArrayList<RankedPath> returnPaths = new ArrayList<>(validPaths.size());
-            final BigDecimal numberPaths = new BigDecimal(validPaths.size());
-            BigDecimal count = BigDecimal.ZERO;
-            BigDecimal interval = new BigDecimal(5);
-            for (MovePath path : validPaths) {
-                count = count.add(BigDecimal.ONE);
-                returnPaths.add(rankPath(path, game, maxRange, fallTollerance, startingHomeDistance, enemies,
-                                         allyCenter));
-                BigDecimal percent = count.divide(numberPaths, 2, RoundingMode.DOWN).multiply(new BigDecimal(100))
-                                          .round(new MathContext(0, RoundingMode.DOWN));
-                if ((percent.compareTo(interval) >= 0)
-                    && (LogLevel.INFO.getLevel() <= getOwner().getVerbosity().getLevel())) {
-                    getOwner().sendChat("... " + percent.intValue() + "% complete.");
-                    interval = percent.add(new BigDecimal(5));
+            // The paths are ranked on several threads, which must not see the enemy list change under them.
+            RankingTask task = new RankingTask(validPaths, game, maxRange, fallTollerance, startingHomeDistance,
+                                               Collections.unmodifiableList(new ArrayList<>(enemies)), allyCenter);
+            boolean reportProgress = LogLevel.INFO.getLevel() <= getOwner().getVerbosity().getLevel();
+            int parallelism = getOwner().getBehaviorSettings().getEffectiveRankingParallelism();
+            if ((parallelism <= 1) || (validPaths.size() <= RANKING_BATCH_SIZE)) {
+                int interval = 5;
+                for (int i = 0; i < validPaths.size(); i++) {
+                    task.rank(i, i + 1);
+                    if (reportProgress) {
+                        interval = reportProgress(task.getRankedCount(), validPaths.size(), interval);
+                    }
                 }
+            } else if (!reportProgress) {
+                getRankingPool(parallelism).invoke(task);
+            } else {
+                ForkJoinTask<Void> future = getRankingPool(parallelism).submit(task);
+                int interval = 5;
+                while (!future.isDone()) {
+                    try {
+                        future.get(PROGRESS_INTERVAL, TimeUnit.MILLISECONDS);
+                    } catch (TimeoutException ignored) {
+                        // still ranking
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        break;
+                    } catch (ExecutionException ignored) {
+                        // rethrown by join() below
+                    }
+                    interval = reportProgress(task.getRankedCount(), validPaths.size(), interval);
+                }
+                future.join();
             }
-            return returnPaths;
+
+            // Ranked paths are kept in the order of the valid paths, however many threads ranked them.
+            return new ArrayList<>(Arrays.asList(task.getResults()));
         } finally {
             getOwner().methodEnd(getClass(), METHOD_NAME);
         }
     }
 
+    /**
+     * Tells the players how far ranking has come, in steps of five percent.
+     *
+     * @return the percentage at which progress is to be reported next
+     */
+    private int reportProgress(int ranked, int total, int interval) {
+        int percent = (int) ((ranked * 100L) / total);
+        if (percent >= interval) {
+            getOwner().sendChat("... " + percent + "% complete.");
+            return percent + 5;
+        }
+        return interval;
+    }
+
+    /**
+     * Returns the pool that ranks paths with the given number of threads.
+     */
+    private synchronized ForkJoinPool getRankingPool(int parallelism) {
+        if ((rankingPool == null) || (rankingPool.getParallelism() != parallelism)) {
+            if (rankingPool != null) {
+                rankingPool.shutdown();
+            }
+            rankingPool = new ForkJoinPool(parallelism);
+        }
+        return rankingPool;
+    }
+
+    /**
+     * Ranks a list of paths, splitting it up between the threads of a {@link ForkJoinPool}.  Each ranked path is
+     * stored at the index of its path, so the result doesn't depend on which thread ranked what.
+     */
+    private class RankingTask extends RecursiveAction {
+
+        private static final long serialVersionUID = -4513227390178530128L;
+
+        private final List<MovePath> paths;
+        private final RankedPath[] results;
+        private final AtomicInteger rankedCount;
+        private final int from;
+        private final int to;
+        private final IGame game;
+        private final int maxRange;
+        private final double fallTolerance;
+        private final int startingHomeDistance;
+        private final List<Entity> enemies;
+        private final Coords allyCenter;
+
+        RankingTask(List<MovePath> paths, IGame game, int maxRange, double fallTolerance, int startingHomeDistance,
+                    List<Entity> enemies, Coords allyCenter) {
+            this(paths, new RankedPath[paths.size()], new AtomicInteger(), 0, paths.size(), game, maxRange,
+                 fallTolerance, startingHomeDistance, enemies, allyCenter);
+        }
+
+        private RankingTask(List<MovePath> paths, RankedPath[] results, AtomicInteger rankedCount, int from, int to,
+                            IGame game, int maxRange, double fallTolerance, int startingHomeDistance,
+                            List<Entity> enemies, Coords allyCenter) {
+            this.paths = paths;
+            this.results = results;
+            this.rankedCount = rankedCount;
+            this.from = from;
+            this.to = to;
+            this.game = game;
+            this.maxRange = maxRange;
+            this.fallTolerance = fallTolerance;
+            this.startingHomeDistance = startingHomeDistance;
+            this.enemies = enemies;
+            this.allyCenter = allyCenter;
+        }
+
+        @Override
+        protected void compute() {
+            if ((to - from) <= RANKING_BATCH_SIZE) {
+                rank(from, to);
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(split(from, middle), split(middle, to));
+        }
+
+        private RankingTask split(int splitFrom, int splitTo) {
+            return new RankingTask(paths, results, rankedCount, splitFrom, splitTo, game, maxRange, fallTolerance,
+                                   startingHomeDistance, enemies, allyCenter);
+        }
+
+        void rank(int rankFrom, int rankTo) {
+            for (int i = rankFrom; i < rankTo; i++) {
+                results[i] = rankPath(paths.get(i), game, maxRange, fallTolerance, startingHomeDistance, enemies,
+                                      allyCenter);
+                rankedCount.incrementAndGet();
+            }
+        }
+
+        int getRankedCount() {
+            return rankedCount.get();
+        }
+
+        RankedPath[] getResults() {
+            return results;
+        }
+    }
+
     private List<MovePath> validatePaths(List<MovePath> startingPathList, IGame game, int maxRange,
                                          double fallTolerance, int startingHomeDistance) {
         final String METHOD_NAME = "validatePaths(List<MovePath>, IGame, Targetable, int, double, int, int)";
@@ -140,7 +277,10 @@ public abstract class PathRanker {
         }
 
         for (MovePath path : startingPathList) {
-            StringBuilder msg = new StringBuilder("Validating Path: ").append(path.toString());
+            StringBuilder msg = null;
+            if (getOwner().isLoggable(LogLevel.INFO)) {
+                msg = new StringBuilder("Validating Path: ").append(path.toString());
+            }
 
             try {
                 Coords finalCoords = path.getFinalCoords();
@@ -148,7 +288,9 @@ public abstract class PathRanker {
                 // If fleeing, skip any paths that don't get me closer to home.
                 if (fleeing && (distanceToHomeEdge(finalCoords, homeEdge, game) >= startingHomeDistance)) {
                     logLevel = LogLevel.INFO;
-                    msg.append("\n\tINVALID: Running away in wrong direction.");
+                    if (msg != null) {
+                        msg.append("\n\tINVALID: Running away in wrong direction.");
+                    }
                     continue;
                 }
 
@@ -156,14 +298,18 @@ public abstract class PathRanker {
                 Targetable closestToEnd = findClosestEnemy(mover, finalCoords, game);
                 String validation = validRange(finalCoords, closestToEnd, startingTargetDistance, maxRange, inRange);
                 if (!StringUtil.isNullOrEmpty(validation)) {
-                    msg.append("\n\t").append(validation);
+                    if (msg != null) {
+                        msg.append("\n\t").append(validation);
+                    }
                     continue;
                 }
 
                 // Don't move on/through buildings that will not support our weight.
                 if (willBuildingCollapse(path, game)) {
                     logLevel = LogLevel.INFO;
-                    msg.append("\n\tINVALID: Building in path will collapse.");
+                    if (msg != null) {
+                        msg.append("\n\tINVALID: Building in path will collapse.");
+                    }
                     continue;
                 }
 
@@ -171,16 +317,22 @@ public abstract class PathRanker {
                 double chance = getMovePathSuccessProbability(path, msg);
                 if (chance < fallTolerance) {
                     logLevel = LogLevel.INFO;
-                    msg.append("\n\tINVALID: Too likely to fall on my face.");
+                    if (msg != null) {
+                        msg.append("\n\tINVALID: Too likely to fall on my face.");
+                    }
                     continue;
                 }
 
                 // If all the above checks have passed, this is a valid path.
-                msg.append("\n\tVALID.");
+                if (msg != null) {
+                    msg.append("\n\tVALID.");
+                }
                 returnPaths.add(path);
 
             } finally {
-                getOwner().log(getClass(), METHOD_NAME, logLevel, msg.toString());
+                if (msg != null) {
+                    getOwner().log(getClass(), METHOD_NAME, logLevel, msg);
+                }
             }
         }
 
@@ -256,7 +408,9 @@ public abstract class PathRanker {
         MovePath pathCopy = movePath.clone();
         List<TargetRoll> pilotingRolls = getPSRList(pathCopy);
         double successProbability = 1.0;
-        msg.append("\n\tCalculating Move Path Success");
+        if (msg != null) {
+            msg.append("\n\tCalculating Move Path Success");
+        }
         for (TargetRoll roll : pilotingRolls) {
 
             // Skip the getting up check.  That's handled when checking for being immobile.
@@ -269,26 +423,37 @@ public abstract class PathRanker {
             boolean naturalAptPilot = movePath.getEntity().getCrew().getOptions()
                                               .booleanOption(OptionsConstants.PILOT_APTITUDE_GUNNERY);
             if (naturalAptPilot) {
-                msg.append("\n\t\tPilot has Natural Aptitude Piloting");
+                if (msg != null) {
+                    msg.append("\n\t\tPilot has Natural Aptitude Piloting");
+                }
             }
 
-            msg.append("\n\t\tRoll ").append(roll.getDesc()).append(" ").append(roll.getValue());
+            if (msg != null) {
+                msg.append("\n\t\tRoll ").append(roll.getDesc()).append(" ").append(roll.getValue());
+            }
             double odds = Compute.oddsAbove(roll.getValue(), naturalAptPilot) / 100;
-            msg.append(" (").append(NumberFormat.getPercentInstance().format(odds)).append(")");
+            if (msg != null) {
+                msg.append(" (").append(NumberFormat.getPercentInstance().format(odds)).append(")");
+            }
             successProbability *= odds;
         }
 
         // Account for MASC
         if (pathCopy.hasActiveMASC()) {
-            msg.append("\n\t\tMASC ");
             int target = pathCopy.getEntity().getMASCTarget();
-            msg.append(target);
+            if (msg != null) {
+                msg.append("\n\t\tMASC ").append(target);
+            }
             // todo Does Natural Aptitude Piloting apply to this?  I assume not.
             double odds = Compute.oddsAbove(target) / 100;
-            msg.append(" (").append(NumberFormat.getPercentInstance().format(odds)).append(")");
+            if (msg != null) {
+                msg.append(" (").append(NumberFormat.getPercentInstance().format(odds)).append(")");
+            }
             successProbability *= odds;
         }
-        msg.append("\n\t\tTotal = ").append(NumberFormat.getPercentInstance().format(successProbability));
+        if (msg != null) {
+            msg.append("\n\t\tTotal = ").append(NumberFormat.getPercentInstance().format(successProbability));
+        }
 
         return successProbability;
     }
@@ -305,30 +470,28 @@ public abstract class PathRanker {
             Coords edgeCoords;
             int boardHeight = game.getBoard().getHeight();
             int boardWidth = game.getBoard().getWidth();
-            StringBuilder msg = new StringBuilder("Getting distance to home edge: ");
+            String edgeName;
             if (HomeEdge.NORTH.equals(homeEdge)) {
-                msg.append("North");
+                edgeName = "North";
                 edgeCoords = new Coords(position.getX(), 0);
             } else if (HomeEdge.SOUTH.equals(homeEdge)) {
-                msg.append("South");
+                edgeName = "South";
                 edgeCoords = new Coords(position.getX(), boardHeight);
             } else if (HomeEdge.WEST.equals(homeEdge)) {
-                msg.append("West");
+                edgeName = "West";
                 edgeCoords = new Coords(0, position.getY());
             } else if (HomeEdge.EAST.equals(homeEdge)) {
-                msg.append("East");
+                edgeName = "East";
                 edgeCoords = new Coords(boardWidth, position.getY());
             } else {
-                msg.append("Default");
+                edgeName = "Default";
                 getOwner().log(getClass(), METHOD_NAME, LogLevel.WARNING, "Invalid home edge.  Defaulting to NORTH.");
                 edgeCoords = new Coords(boardWidth / 2, 0);
             }
-            msg.append(edgeCoords.toFriendlyString());
 
             int distance = edgeCoords.distance(position);
-            msg.append(" dist = ").append(NumberFormat.getInstance().format(distance));
-
-            getOwner().log(getClass(), METHOD_NAME, LogLevel.DEBUG, msg.toString());
+            getOwner().log(getClass(), METHOD_NAME, LogLevel.DEBUG, "Getting distance to home edge: %s(%d, %d) dist = %d",
+                           edgeName, edgeCoords.getX() + 1, edgeCoords.getY() + 1, distance);
             return distance;
         } finally {
             getOwner().methodEnd(getClass(), METHOD_NAME);
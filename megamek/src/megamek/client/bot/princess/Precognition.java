@@ -244,6 +244,10 @@ public class Precognition implements Runnable {
                         .getObject(0);
                 getGame().setAllReports(allReports);
                 break;
+            case Packet.COMMAND_SENDING_REPORTS_ROUND:
+                getGame().setReports(c.getIntValue(0),
+                        (Vector<Report>) c.getObject(1));
+                break;
             case Packet.COMMAND_ENTITY_ATTACK:
                 receiveAttack(c);
                 break;
@@ -384,15 +388,12 @@ public class Precognition implements Runnable {
                 if (getDone().get()) {
                     return;
                 }
-                
-                Integer entityId = getDirtyUnits().pollFirst();
-                Entity entity = getGame().getEntity(entityId);
-                if (entity != null) {
-                    getOwner().log(getClass(), METHOD_NAME, "recalculating paths for " + entity.getDisplayName());
-                    getPathEnumerator().recalculateMovesFor(entity);
-                    getOwner().log(getClass(), METHOD_NAME, "finished recalculating paths for " + entity
-                            .getDisplayName());
-                }
+
+                List<Entity> entities = pollDirtyEntities();
+                getOwner().log(getClass(), METHOD_NAME, "recalculating paths for " + entities.size() + " units");
+                getPathEnumerator().recalculateMovesFor(entities);
+                getOwner().log(getClass(), METHOD_NAME, "finished recalculating paths for " + entities.size()
+                                                        + " units");
             }
         } finally {
             getOwner().methodEnd(getClass(), METHOD_NAME);
@@ -412,13 +413,14 @@ public class Precognition implements Runnable {
                     ecmInfo = ComputeECM.computeAllEntitiesECMInfo(
                             getGame().getEntitiesVector());
                 } else if (!getDirtyUnits().isEmpty()) {
-                    Entity entity = getGame().getEntity(getDirtyUnits().pollFirst());
-                    if (entity != null) {
+                    List<Entity> entities = pollDirtyEntities();
+                    if (!entities.isEmpty()) {
                         unPause();
-                        getOwner().log(getClass(), METHOD_NAME, "recalculating paths for " + entity.getDisplayName());
-                        getPathEnumerator().recalculateMovesFor(entity);
-                        getOwner().log(getClass(), METHOD_NAME, "finished recalculating paths for " + entity
-                                .getDisplayName());
+                        getOwner().log(getClass(), METHOD_NAME, "recalculating paths for " + entities.size()
+                                                                + " units");
+                        getPathEnumerator().recalculateMovesFor(entities);
+                        getOwner().log(getClass(), METHOD_NAME, "finished recalculating paths for " + entities.size()
+                                                                + " units");
                     }
                 } else if (getWaitWhenDone().get()) {
                     waitForUnpause(); // paused for a reason
@@ -431,6 +433,21 @@ public class Precognition implements Runnable {
         }
     }
 
+    /**
+     * Takes all units off the dirty list, so their paths can be recalculated together.
+     */
+    private List<Entity> pollDirtyEntities() {
+        List<Entity> entities = new ArrayList<>();
+        Integer entityId;
+        while ((entityId = getDirtyUnits().pollFirst()) != null) {
+            Entity entity = getGame().getEntity(entityId);
+            if (entity != null) {
+                entities.add(entity);
+            }
+        }
+        return entities;
+    }
+
     public void signalDone() {
         getDone().set(true);
     }
@@ -523,14 +540,21 @@ public class Precognition implements Runnable {
                     getOwner().log(getClass(), METHOD_NAME, "Phase change detected: " + phaseChange.getNewPhase()
                                                                                                    .name());
                     // this marks when I can all I can start recalculating paths.
-                    // All units are dirty
+                    // All units are dirty, but the path enumerator keeps the
+                    // paths of those that are still up to date.
                     if (phaseChange.getNewPhase() == IGame.Phase.PHASE_MOVEMENT) {
-                        getPathEnumerator().clear();
+                        Set<Integer> activeIds = new HashSet<>();
                         for (Entity entity : getGame().getEntitiesVector()) {
                             if (entity.isActive() && entity.isDeployed() && entity.getPosition() != null) {
-                                getDirtyUnits().add(entity.getId());
+                                activeIds.add(entity.getId());
+                            }
+                        }
+                        for (Integer id : new ArrayList<>(getPathEnumerator().getLastKnownLocations().keySet())) {
+                            if (!activeIds.contains(id)) {
+                                getPathEnumerator().clearUnit(id);
                             }
                         }
+                        getDirtyUnits().addAll(activeIds);
                     }
                 }
             }
@@ -552,10 +576,7 @@ public class Precognition implements Runnable {
             // first of all, if a unit has been removed, remove it from the list and
             // stop
             if (getGame().getEntity(id) == null) {
-                getPathEnumerator().getLastKnownLocations().remove(id);
-                getPathEnumerator().getUnitMovableAreas().remove(id);
-                getPathEnumerator().getUnitPaths().remove(id);
-                getPathEnumerator().getUnitPotentialLocations().remove(id);
+                getPathEnumerator().clearUnit(id);
                 return;
             }
             // if a unit has moved or deployed, then it becomes dirty, and any units
@@ -326,8 +326,10 @@ public class Princess extends BotClient {
                 fireControl.loadAmmo(shooter, plan);
                 plan.sortPlan();
 
-                log(getClass(), METHOD_NAME, LogLevel.INFO, shooter.getDisplayName() + " - Best Firing Plan: " +
-                                                            plan.getDebugDescription(LogLevel.DEBUG == getVerbosity()));
+                if (isLoggable(LogLevel.INFO)) {
+                    log(getClass(), METHOD_NAME, LogLevel.INFO, shooter.getDisplayName() + " - Best Firing Plan: " +
+                                                                plan.getDebugDescription(LogLevel.DEBUG == getVerbosity()));
+                }
 
                 // Add expected damage from the chosen FiringPlan to the damageMap for the target enemy.
                 Integer targetId = new Integer(plan.getTarget().getTargetId());
@@ -898,6 +900,7 @@ public class Princess extends BotClient {
 
         try {
             initialize();
+            fireControl.clearToHitModifierCache();
 
             // ----Debugging: print out any errors made in guessing to hit
             // values-----
@@ -1033,6 +1036,7 @@ public class Princess extends BotClient {
 
         try {
             initialize();
+            fireControl.clearToHitModifierCache();
             checkMoral();
 
             // reset strategic targets
@@ -1158,10 +1162,24 @@ public class Princess extends BotClient {
     }
 
     public void log(Class<?> callingClass, String methodName, LogLevel level, StringBuilder msg) {
-        if (msg == null) {
-            return;
-        }
-        log(callingClass, methodName, level, msg.toString());
+        logger.log(callingClass, methodName, level, msg);
+    }
+
+    /**
+     * Logs a message that is only formatted if the level is logged, see
+     * {@link Logger#log(Class, String, LogLevel, String, Object...)}
+     */
+    public void log(Class<?> callingClass, String methodName, LogLevel level,
+                    String format, Object... args) {
+        logger.log(callingClass, methodName, level, format, args);
+    }
+
+    /**
+     * Returns true if messages of the given level are logged. Descriptions
+     * that take work to build should only be built if this is true.
+     */
+    public boolean isLoggable(LogLevel level) {
+        return logger.isLoggable(level);
     }
 
     public void log(Class<?> callingClass, String methodName, String msg) {
@@ -1178,11 +1196,11 @@ public class Princess extends BotClient {
     }
 
     public void methodBegin(Class<?> callingClass, String methodName) {
-        log(callingClass, methodName, LogLevel.DEBUG, "method begin");
+        logger.methodBegin(callingClass, methodName);
     }
 
     public void methodEnd(Class<?> callingClass, String methodName) {
-        log(callingClass, methodName, LogLevel.DEBUG, "method end");
+        logger.methodEnd(callingClass, methodName);
     }
 
     public HomeEdge getHomeEdge() {
@@ -1257,6 +1275,10 @@ public class Princess extends BotClient {
     
     protected void handlePacket(Packet c) {
         final String METHOD_NAME = "handlePacket()";
+        if (c == null) {
+            log(getClass(), METHOD_NAME, LogLevel.WARNING, "Received null packet");
+            return;
+        }
         StringBuilder msg = new StringBuilder("Received packet, cmd: "
                 + c.getCommand());
         try {
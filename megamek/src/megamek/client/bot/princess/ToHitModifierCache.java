@@ -0,0 +1,166 @@
+/*
+ * MegaMek - Copyright (C) 2016 The MegaMek Team
+ *
+ *  This program is free software; you can redistribute it and/or modify it
+ *  under the terms of the GNU General Public License as published by the Free
+ *  Software Foundation; either version 2 of the License, or (at your option)
+ *  any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ *  or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ *  for more details.
+ */
+package megamek.client.bot.princess;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import megamek.common.Coords;
+import megamek.common.Entity;
+import megamek.common.EntityMovementType;
+import megamek.common.Targetable;
+import megamek.common.ToHitData;
+
+/**
+ * Remembers the to-hit modifiers guessed for a shooter and a target that are the same for every weapon: gunnery,
+ * movement, terrain, line of sight and sensor damage.  Princess guesses to-hit numbers for every weapon at every
+ * enemy from every path she ranks, so most of the time these have been worked out already.
+ * <p>
+ * Entries are keyed on the shooter and target objects themselves, which the game replaces when a unit is updated, and
+ * on the parts of their states and positions the modifiers depend on.  The cache is meant to be cleared every turn, as
+ * terrain can change as well.  Several threads can use it at once.
+ */
+class ToHitModifierCache {
+
+    private final Map<Key, ToHitData> modifiers = new ConcurrentHashMap<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Returns a copy of the modifiers stored for the key, which the caller may change, or null if there are none.
+     */
+    ToHitData get(Key key) {
+        ToHitData stored = modifiers.get(key);
+        if (stored == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return copy(stored);
+    }
+
+    /**
+     * Stores a copy of the modifiers for the key.
+     */
+    void put(Key key, ToHitData toHit) {
+        modifiers.put(key, copy(toHit));
+    }
+
+    /**
+     * Forgets all modifiers and resets the counters.
+     */
+    void clear() {
+        modifiers.clear();
+        hits.set(0);
+        misses.set(0);
+    }
+
+    int size() {
+        return modifiers.size();
+    }
+
+    long getHits() {
+        return hits.get();
+    }
+
+    long getMisses() {
+        return misses.get();
+    }
+
+    private static ToHitData copy(ToHitData toHit) {
+        ToHitData copy = new ToHitData();
+        copy.append(toHit);
+        return copy;
+    }
+
+    /**
+     * The shooter and target, and what the weapon independent modifiers depend on of their states.
+     */
+    static class Key {
+        private final Entity shooter;
+        private final Targetable target;
+        private final Coords shooterPosition;
+        private final EntityMovementType shooterMovementType;
+        private final boolean shooterAero;
+        private final boolean shooterProne;
+        private final Coords targetPosition;
+        private final EntityMovementType targetMovementType;
+        private final int targetHexesMoved;
+        private final boolean targetJumping;
+        private final boolean targetProne;
+        private final boolean targetImmobile;
+        private final boolean targetAirborneAero;
+        private final int distance;
+        private final int hash;
+
+        Key(Entity shooter, EntityState shooterState, Targetable target, EntityState targetState, int distance) {
+            this.shooter = shooter;
+            this.target = target;
+            shooterPosition = shooterState.getPosition();
+            shooterMovementType = shooterState.getMovementType();
+            shooterAero = shooterState.isAero();
+            shooterProne = shooterState.isProne();
+            targetPosition = targetState.getPosition();
+            targetMovementType = targetState.getMovementType();
+            targetHexesMoved = targetState.getHexesMoved();
+            targetJumping = targetState.isJumping();
+            targetProne = targetState.isProne();
+            targetImmobile = targetState.isImmobile();
+            targetAirborneAero = targetState.isAirborneAero();
+            this.distance = distance;
+
+            int result = System.identityHashCode(shooter);
+            result = 31 * result + System.identityHashCode(target);
+            result = 31 * result + (shooterPosition != null ? shooterPosition.hashCode() : 0);
+            result = 31 * result + (targetPosition != null ? targetPosition.hashCode() : 0);
+            result = 31 * result + targetHexesMoved;
+            result = 31 * result + distance;
+            hash = result;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return (shooter == key.shooter)
+                   && (target == key.target)
+                   && (hash == key.hash)
+                   && (distance == key.distance)
+                   && (targetHexesMoved == key.targetHexesMoved)
+                   && (shooterAero == key.shooterAero)
+                   && (shooterProne == key.shooterProne)
+                   && (targetJumping == key.targetJumping)
+                   && (targetProne == key.targetProne)
+                   && (targetImmobile == key.targetImmobile)
+                   && (targetAirborneAero == key.targetAirborneAero)
+                   && (shooterMovementType == key.shooterMovementType)
+                   && (targetMovementType == key.targetMovementType)
+                   && (shooterPosition != null ? shooterPosition.equals(key.shooterPosition)
+                                               : key.shooterPosition == null)
+                   && (targetPosition != null ? targetPosition.equals(key.targetPosition)
+                                              : key.targetPosition == null);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -228,6 +228,7 @@ public class ChatterBox2 implements KeyListener, IDisplayable {
         setIdleTime(0, false);
         slidingUp = true;
         slidingDown = false;
+        bv.startAnimation();
     }
 
     public void slideDown() {
@@ -235,6 +236,7 @@ public class ChatterBox2 implements KeyListener, IDisplayable {
         slidingUp = false;
         slidingDown = true;
         bv.setChatterBoxActive(false);
+        bv.startAnimation();
     }
 
     private void stopSliding() {
@@ -27,6 +27,7 @@ import javax.swing.JFrame;
 import javax.swing.JScrollPane;
 import javax.swing.JTabbedPane;
 import javax.swing.JTextPane;
+import javax.swing.SwingUtilities;
 import javax.swing.UIManager;
 import javax.swing.text.html.HTMLEditorKit;
 
@@ -89,10 +90,9 @@ public class MiniReportDisplay extends JDialog implements ActionListener {
         
         int numRounds = c.getGame().getRoundCount();
         for (int round = 1; round < numRounds; round++) {
-            String text =  c.receiveReport(c.getGame().getReports(round));
             JTextPane ta = new JTextPane();
             setupStylesheet(ta);
-            ta.setText("<pre>" + text + "</pre>");
+            setRoundReport(ta, c, round);
             ta.setEditable(false);
             ta.setOpaque(false);
             tabs.add("Round " + round, new JScrollPane(ta));
@@ -112,6 +112,30 @@ public class MiniReportDisplay extends JDialog implements ActionListener {
         getContentPane().add(BorderLayout.CENTER, tabs);
     }
     
+    /**
+     * Shows the reports of a past round. If the client doesn't have them, they
+     * are requested from the server and shown once they arrive.
+     */
+    public static void setRoundReport(final JTextPane pane, final Client c,
+            final int round) {
+        if (c.getGame().hasReports(round)) {
+            pane.setText("<pre>" + c.receiveReport(c.getGame().getReports(round))
+                    + "</pre>");
+            return;
+        }
+        pane.setText("<pre>" + Messages.getString("MiniReportDisplay.loading")
+                + "</pre>");
+        c.requestReports(round, new Runnable() {
+            public void run() {
+                SwingUtilities.invokeLater(new Runnable() {
+                    public void run() {
+                        setRoundReport(pane, c, round);
+                    }
+                });
+            }
+        });
+    }
+
     public static void setupStylesheet(JTextPane pane) {
         pane.setContentType("text/html");
         Font font = UIManager.getFont("Label.font");
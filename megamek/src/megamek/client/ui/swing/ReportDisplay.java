@@ -181,17 +181,17 @@ public class ReportDisplay extends AbstractPhaseDisplay implements
             // TODO: we should remove the use of client
             for (int catchup = phaseTab + 1; catchup <= round; catchup++) {
                 if (tabs.indexOfTab("Round " + catchup) != -1) {
-                    ((JTextPane) ((JScrollPane) tabs.getComponentAt(tabs.indexOfTab("Round " + catchup))).getViewport().getView()).setText(
-                            "<pre>" + clientgui.getClient().receiveReport(clientgui.getClient().getGame().getReports(catchup)) + "</pre>");
+                    MiniReportDisplay.setRoundReport((JTextPane) ((JScrollPane) tabs.getComponentAt(tabs.indexOfTab("Round " + catchup))).getViewport().getView(),
+                            clientgui.getClient(), catchup);
                     continue;
                 }
-                String text = roundText;
-                if (catchup != round) {
-                    text = clientgui.getClient().receiveReport(clientgui.getClient().getGame().getReports(catchup));
-                }
                 ta = new JTextPane();
                 setupStylesheet(ta);
-                ta.setText("<pre>" + text + "</pre>");
+                if (catchup != round) {
+                    MiniReportDisplay.setRoundReport(ta, clientgui.getClient(), catchup);
+                } else {
+                    ta.setText("<pre>" + roundText + "</pre>");
+                }
                 ta.setEditable(false);
                 ta.setOpaque(false);
                 tabs.add("Round " + catchup, new JScrollPane(ta));
@@ -381,6 +381,21 @@ public class BoardView1 extends JPanel implements IBoardView, Scrollable,
     // reference to our timertask for redraw
     private TimerTask ourTask = null;
 
+    /**
+     * How often the redraw worker runs while something is animated, in
+     * milliseconds
+     */
+    private static final long ANIMATION_INTERVAL = 20;
+
+    /**
+     * How often the redraw worker runs while nothing is animated, only to
+     * tell the displayables how long they have been idle
+     */
+    private static final long IDLE_INTERVAL = 1000;
+
+    // whether the redraw worker runs at the animation interval
+    private boolean animating = false;
+
     BufferedImage bvBgBuffer = null;
     ImageIcon bvBgIcon = null;
     BufferedImage scrollPaneBgBuffer = null;
@@ -418,6 +433,13 @@ public class BoardView1 extends JPanel implements IBoardView, Scrollable,
     * Cache that stores hex images for different coords
     */
     ImageCache<Coords, HexImageCacheEntry> hexImageCache;
+
+    /**
+     * Incremented whenever a view setting that changes every hex image
+     * changes, like the zoom or the field of view. Cached images of an older
+     * generation are drawn again when they are needed next.
+     */
+    private volatile int hexImageGeneration;
     
     
     /**
@@ -441,7 +463,7 @@ public class BoardView1 extends JPanel implements IBoardView, Scrollable,
 
         game.addGameListener(gameListener);
         game.getBoard().addBoardListener(this);
-        ourTask = scheduleRedrawTimer();// call only once
+        ourTask = scheduleRedrawTimer(IDLE_INTERVAL);
         clearSprites();
         addMouseListener(this);
         addMouseWheelListener(new MouseWheelListener() {
@@ -888,10 +910,10 @@ public class BoardView1 extends JPanel implements IBoardView, Scrollable,
     protected final RedrawWorker redrawWorker = new RedrawWorker();
 
     /**
-     * this should only be called once!! this will cause a timer to schedule
-     * constant screen updates every 20 milliseconds!
+     * Schedules the redraw worker to run on the event thread at a fixed
+     * interval. Cancel the previous task before scheduling a new one.
      */
-    protected TimerTask scheduleRedrawTimer() {
+    protected TimerTask scheduleRedrawTimer(long interval) {
         final TimerTask redraw = new TimerTask() {
             @Override
             public void run() {
@@ -905,10 +927,35 @@ public class BoardView1 extends JPanel implements IBoardView, Scrollable,
                 }
             }
         };
-        TimerSingleton.getInstance().schedule(redraw, 20, 20);
+        TimerSingleton.getInstance().schedule(redraw, interval, interval);
         return redraw;
     }
 
+    /**
+     * Makes the redraw worker run often enough to animate sliding
+     * displayables and moving units. It slows down again by itself once
+     * nothing is animated anymore.
+     */
+    public void startAnimation() {
+        synchronized (redrawWorker) {
+            if (!animating && (ourTask != null)) {
+                animating = true;
+                ourTask.cancel();
+                ourTask = scheduleRedrawTimer(ANIMATION_INTERVAL);
+            }
+        }
+    }
+
+    private void stopAnimation() {
+        synchronized (redrawWorker) {
+            if (animating && (ourTask != null)) {
+                animating = false;
+                ourTask.cancel();
+                ourTask = scheduleRedrawTimer(IDLE_INTERVAL);
+            }
+        }
+    }
+
     protected void scheduleRedraw() {
         try {
             SwingUtilities.invokeLater(redrawWorker);
@@ -1000,6 +1047,7 @@ public class BoardView1 extends JPanel implements IBoardView, Scrollable,
             // Center on the starting hex of the moving unit.
             UnitLocation loc = movePath.get(0);
             centerOnHex(loc.getCoords());
+            startAnimation();
         }
     }
 
@@ -1822,9 +1870,13 @@ public class BoardView1 extends JPanel implements IBoardView, Scrollable,
         int drawX = hexLoc.x;
         int drawY = hexLoc.y;
 
-        // Check the cache to see if we already have the image
+        // Check the cache to see if we already have the image, drawn for the
+        // hex as it is now
+        final long hexVersion = game.getBoard().getHexVersion(c);
+        final int generation = hexImageGeneration;
         HexImageCacheEntry cacheEntry = hexImageCache.get(c);
-        if ((cacheEntry != null) && !cacheEntry.needsUpdating) {
+        if ((cacheEntry != null)
+                && cacheEntry.isValid(hexVersion, generation)) {
             boardGraph.drawImage(cacheEntry.hexImage, drawX, drawY, this);
             return;
         }
@@ -2235,7 +2287,7 @@ public class BoardView1 extends JPanel implements IBoardView, Scrollable,
             g.drawImage(GrayedOut, drawX, drawY, null);
         }        
 
-        cacheEntry = new HexImageCacheEntry(hexImage);
+        cacheEntry = new HexImageCacheEntry(hexImage, hexVersion, generation);
         if (!dontCache) {
             hexImageCache.put(c, cacheEntry);
         }
@@ -2611,6 +2663,7 @@ public class BoardView1 extends JPanel implements IBoardView, Scrollable,
         HashMap<List<Integer>, IsometricSprite> newIsoSpriteIds;
 
         if (sprite != null) {
+            repaintSprite(sprite);
             newSprites = new ArrayList<EntitySprite>(entitySprites);
             newSpriteIds = new HashMap<>(entitySpriteIds);
 
@@ -2622,6 +2675,7 @@ public class BoardView1 extends JPanel implements IBoardView, Scrollable,
         }
 
         if (isoSprite != null) {
+            repaintSprite(isoSprite);
             isoSprites = new ArrayList<IsometricSprite>(isometricSprites);
             newIsoSpriteIds = new HashMap<>(isometricSpriteIds);
 
@@ -2639,6 +2693,7 @@ public class BoardView1 extends JPanel implements IBoardView, Scrollable,
                 movingEntitySpriteIds);
 
         if (mSprite != null) {
+            repaintSprite(mSprite);
             newMovingSprites.remove(mSprite);
         }
 
@@ -2647,6 +2702,7 @@ public class BoardView1 extends JPanel implements IBoardView, Scrollable,
                                              elevation);
             newMovingSprites.add(mSprite);
             newMovingSpriteIds.put(entityId, mSprite);
+            repaintSprite(mSprite);
         }
 
         movingEntitySprites = newMovingSprites;
@@ -2657,6 +2713,23 @@ public class BoardView1 extends JPanel implements IBoardView, Scrollable,
         return movingUnits.size() > 0;
     }
 
+    /**
+     * Marks the area a sprite was last drawn at as needing to be painted
+     * again. Sprites that work out their bounds when asked may be somewhere
+     * else by now.
+     */
+    private void repaintSprite(Sprite sprite) {
+        if (useIsometric()) {
+            // isometric sprites are drawn again over the hexes in front of
+            // them
+            repaint();
+        } else if (sprite.bounds != null) {
+            repaintBoard(sprite.bounds);
+        } else {
+            repaintBoard(sprite.getBounds());
+        }
+    }
+
     /**
      * Clears the sprite for an entity and prepares it to be re-drawn. Replaces
      * the old sprite with the new! Try to prevent annoying
@@ -2699,6 +2772,13 @@ public class BoardView1 extends JPanel implements IBoardView, Scrollable,
             oldEntity = entity;
         }
 
+        // The areas the old sprites were drawn at need to be painted again
+        for (EntitySprite oldSprite : entitySprites) {
+            if (oldSprite.entity.getId() == entity.getId()) {
+                repaintSprite(oldSprite);
+            }
+        }
+
         // If the entity we are updating doesn't have a position, ensure we
         // remove all of its old sprites
         if (entity.getPosition() == null) {
@@ -2824,6 +2904,14 @@ public class BoardView1 extends JPanel implements IBoardView, Scrollable,
         entitySpriteIds = newSpriteIds;
         isometricSprites = isoSprites;
         isometricSpriteIds = newIsoSpriteIds;
+        for (EntitySprite newSprite : newSprites) {
+            if (newSprite.entity.getId() == entity.getId()) {
+                repaintSprite(newSprite);
+            }
+        }
+
+        // C3 links and flyover paths can cross the whole board
+        boolean repaintAll = false;
 
         // Remove C3 sprites
         for (Iterator<C3Sprite> i = c3Sprites.iterator(); i.hasNext(); ) {
@@ -2831,12 +2919,14 @@ public class BoardView1 extends JPanel implements IBoardView, Scrollable,
             if ((c3sprite.entityId == entity.getId())
                 || (c3sprite.masterId == entity.getId())) {
                 i.remove();
+                repaintAll = true;
             }
         }
         
         // Update C3 link, if necessary
         if (entity.hasC3() || entity.hasC3i() || entity.hasActiveNovaCEWS()) {
             addC3Link(entity);
+            repaintAll = true;
         }
 
         // Remove Flyover Sprites
@@ -2845,15 +2935,20 @@ public class BoardView1 extends JPanel implements IBoardView, Scrollable,
             final FlyOverSprite flyOverSprite = flyOverIt.next();
             if (flyOverSprite.getEntityId() == entity.getId()) {
                 flyOverIt.remove();
+                repaintAll = true;
             }
         }
         
         // Add Flyover path, if necessary
         if (entity.isAirborne() && (entity.getPassedThrough().size() > 1)) {
             addFlyOverPath(entity);
+            repaintAll = true;
         }
 
         updateEcmList();
+        if (repaintAll) {
+            repaint();
+        }
         scheduleRedraw();
     }
 
@@ -2956,6 +3051,7 @@ public class BoardView1 extends JPanel implements IBoardView, Scrollable,
         // Update ECM list, to ensure that Sprites are updated with ECM info
         updateEcmList();
         
+        repaint();
         scheduleRedraw();
     }
 
@@ -2981,8 +3077,8 @@ public class BoardView1 extends JPanel implements IBoardView, Scrollable,
             cursor.setOffScreen();
         }
         // repaint affected area
-        repaint(oldBounds);
-        repaint(cursor.getBounds());
+        repaintBoard(oldBounds);
+        repaintBoard(cursor.getBounds());
     }
     
     public void centerOnHex(Coords c) {
@@ -3865,6 +3961,7 @@ public class BoardView1 extends JPanel implements IBoardView, Scrollable,
                     movingEntitySpriteIds.clear();
                     movingEntitySprites.clear();
                     ghostEntitySprites.clear();
+                    repaint();
                     processBoardViewEvent(new BoardViewEvent(this,
                             BoardViewEvent.FINISHED_MOVING_UNITS));
                 }
@@ -4216,11 +4313,16 @@ public class BoardView1 extends JPanel implements IBoardView, Scrollable,
      * megamek.common.BoardListener#boardChangedHex(megamek.common.BoardEvent)
      */
     public synchronized void boardChangedHex(BoardEvent b) {
-        hexImageCache.remove(b.getCoords());
-        IHex hex = game.getBoard().getHex(b.getCoords());
+        Coords c = b.getCoords();
+        IHex hex = game.getBoard().getHex(c);
         tileManager.clearHex(hex);
         tileManager.waitForHex(hex);
-        repaint();
+        // The image of the hex itself is outdated by its new version, but
+        // the neighbours draw elevation shadows and isometric sides for it
+        for (int dir = 0; dir < 6; dir++) {
+            invalidateHexImage(c.translated(dir));
+        }
+        repaintHex(c);
     }
 
     /*
@@ -4270,6 +4372,9 @@ public class BoardView1 extends JPanel implements IBoardView, Scrollable,
             }
             if (game.getPhase() == IGame.Phase.PHASE_MOVEMENT) {
                 refreshMoveVectors();
+                if (game.useVectorMove()) {
+                    repaint();
+                }
             }
             if ((mp != null) && (mp.size() > 0) && guip.getShowMoveStep()
                     && !gopts.booleanOption("simultaneous_movement")) {
@@ -4372,7 +4477,9 @@ public class BoardView1 extends JPanel implements IBoardView, Scrollable,
 
     /**
      * the old redrawworker converted to a runnable which is called now and then
-     * from the event thread
+     * from the event thread. Moving units mark the areas they change
+     * themselves; sliding displayables repaint the view. When nothing is
+     * animated anymore the worker slows down to the idle interval.
      */
     protected class RedrawWorker implements Runnable {
 
@@ -4382,6 +4489,7 @@ public class BoardView1 extends JPanel implements IBoardView, Scrollable,
 
         public void run() {
             currentTime = System.currentTimeMillis();
+            boolean animated = false;
             if (isShowing()) {
                 boolean redraw = false;
                 for (int i = 0; i < displayables.size(); i++) {
@@ -4389,13 +4497,20 @@ public class BoardView1 extends JPanel implements IBoardView, Scrollable,
                     if (!disp.isSliding()) {
                         disp.setIdleTime(currentTime - lastTime, true);
                     } else {
-                        redraw = redraw || disp.slide();
+                        redraw = disp.slide() || redraw;
                     }
+                    animated = animated || disp.isSliding();
                 }
-                redraw = redraw || doMoveUnits(currentTime - lastTime);
                 if (redraw) {
                     repaint();
                 }
+                doMoveUnits(currentTime - lastTime);
+            }
+            animated = animated || isMovingUnits();
+            if (animated) {
+                startAnimation();
+            } else {
+                stopAnimation();
             }
             lastTime = currentTime;
         }
@@ -4408,6 +4523,7 @@ public class BoardView1 extends JPanel implements IBoardView, Scrollable,
         // entity
         selectedWeapon = null;
         updateEcmList();
+        repaint();
     }
 
     public synchronized void weaponSelected(MechDisplayEvent b) {
@@ -4463,8 +4579,10 @@ public class BoardView1 extends JPanel implements IBoardView, Scrollable,
                     secondaryIdx));
             if (eSprite != null) {
                 Coords pos = e.getPosition();
-                eSprite.setAffectedByECM(ComputeECM.isAffectedByECM(e, pos,
-                        pos, allEcmInfo));
+                if (eSprite.setAffectedByECM(ComputeECM.isAffectedByECM(e,
+                        pos, pos, allEcmInfo))) {
+                    repaintBoard(eSprite.getBounds());
+                }
             }
         }
 
@@ -4521,13 +4639,42 @@ public class BoardView1 extends JPanel implements IBoardView, Scrollable,
             }
         }
 
+        // Only the hexes whose shading changed need to be drawn again
+        Set<Coords> changed = new HashSet<Coords>();
         synchronized (this) {
+            addChangedCoords(ecmHexes, newECMHexes, changed);
+            addChangedCoords(ecmCenters, newECMCenters, changed);
+            addChangedCoords(eccmHexes, newECCMHexes, changed);
+            addChangedCoords(eccmCenters, newECCMCenters, changed);
             ecmHexes    = newECMHexes;
             ecmCenters  = newECMCenters;
             eccmHexes   = newECCMHexes;
             eccmCenters = newECCMCenters;
         }
-        repaint();
+        for (Coords c : changed) {
+            invalidateHexImage(c);
+        }
+    }
+
+    /**
+     * Adds the coords that have a different color in the new map than in the
+     * old one, or are in only one of them
+     */
+    private static void addChangedCoords(Map<Coords, Color> oldColors,
+            Map<Coords, Color> newColors, Set<Coords> changed) {
+        if (oldColors != null) {
+            for (Map.Entry<Coords, Color> entry : oldColors.entrySet()) {
+                if (!entry.getValue().equals(newColors.get(entry.getKey()))) {
+                    changed.add(entry.getKey());
+                }
+            }
+        }
+        for (Map.Entry<Coords, Color> entry : newColors.entrySet()) {
+            if ((oldColors == null)
+                    || !entry.getValue().equals(oldColors.get(entry.getKey()))) {
+                changed.add(entry.getKey());
+            }
+        }
     }
 
     public Dimension getPreferredScrollableViewportSize() {
@@ -5306,7 +5453,10 @@ public class BoardView1 extends JPanel implements IBoardView, Scrollable,
     }
 
     public void die() {
-        ourTask.cancel();
+        synchronized (redrawWorker) {
+            ourTask.cancel();
+            ourTask = null;
+        }
         fovHighlightingAndDarkening.die();
     }
 
@@ -5342,8 +5492,51 @@ public class BoardView1 extends JPanel implements IBoardView, Scrollable,
         return super.imageUpdate(img, flags, x, y, w, h);
     }
 
+    /**
+     * Has every hex image drawn again when it is needed next. Use
+     * {@link #invalidateHexImage(Coords)} when only some hexes changed.
+     */
     public void clearHexImageCache() {
-        hexImageCache.clear();
+        hexImageGeneration++;
+    }
+
+    /**
+     * Has the image of a hex drawn again and repaints it. Changes to the hex
+     * itself are noticed through its version; this is for things drawn into
+     * the image that don't belong to the hex, like E(C)CM shading.
+     */
+    public void invalidateHexImage(Coords c) {
+        HexImageCacheEntry cacheEntry = hexImageCache.get(c);
+        if (cacheEntry != null) {
+            cacheEntry.needsUpdating = true;
+        }
+        repaintHex(c);
+    }
+
+    /**
+     * Marks the area of a hex as needing to be painted again
+     */
+    public void repaintHex(Coords c) {
+        if (useIsometric()) {
+            // elevated hexes, their orthographs and the sprites on them reach
+            // well beyond the hex
+            repaint();
+            return;
+        }
+        Point hexLoc = getHexLocation(c);
+        repaint(hexLoc.x + HEX_W, hexLoc.y + HEX_H,
+                (int) (HEX_W * scale) + 1, (int) (HEX_H * scale) + 1);
+    }
+
+    /**
+     * Marks an area as needing to be painted again. The rectangle is given in
+     * the coordinates hexes and sprites are drawn at, without the padding
+     * around the board.
+     */
+    void repaintBoard(Rectangle r) {
+        if (r != null) {
+            repaint(r.x + HEX_W, r.y + HEX_H, r.width + 1, r.height + 1);
+        }
     }
 
     /**
@@ -5358,6 +5551,7 @@ public class BoardView1 extends JPanel implements IBoardView, Scrollable,
         if ((game.getPhase() == Phase.PHASE_MOVEMENT)
                 && (darken || highlight)) {
             clearHexImageCache();
+            repaint();
         }
     }
 
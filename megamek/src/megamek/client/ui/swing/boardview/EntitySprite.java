@@ -1046,13 +1046,17 @@ class EntitySprite extends Sprite {
         return isAffectedByECM;
     }
 
-    public void setAffectedByECM(boolean isAffectedByECM) {
+    /**
+     * @return true if the value changed and the sprite has to be painted again
+     */
+    public boolean setAffectedByECM(boolean isAffectedByECM) {
         boolean changed = isAffectedByECM != this.isAffectedByECM;
         this.isAffectedByECM = isAffectedByECM;
         // We need to prepare the icon again if the value changed
         if (changed) {
             prepare();
         }
+        return changed;
     }
 }
 
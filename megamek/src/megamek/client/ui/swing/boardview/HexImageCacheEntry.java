@@ -12,10 +12,33 @@ public class HexImageCacheEntry {
     public Image hexImage;
     
     public boolean needsUpdating;
+
+    /**
+     * The version of the hex the image was drawn for, see
+     * {@link megamek.common.IBoard#getHexVersion(megamek.common.Coords)}
+     */
+    public long hexVersion;
+
+    /**
+     * The generation of the cache the image was drawn in; images of earlier
+     * generations were drawn for other view settings
+     */
+    public int generation;
     
-    HexImageCacheEntry(Image h) {
+    HexImageCacheEntry(Image h, long hexVersion, int generation) {
         hexImage = h;
         needsUpdating = false;
+        this.hexVersion = hexVersion;
+        this.generation = generation;
+    }
+
+    /**
+     * Returns true if the image can still be drawn for a hex of the given
+     * version in the given generation
+     */
+    public boolean isValid(long hexVersion, int generation) {
+        return !needsUpdating && (this.hexVersion == hexVersion)
+                && (this.generation == generation);
     }
 
 }
@@ -3867,6 +3867,10 @@ public class Aero extends Entity {
         setOutCtrlHeat(false);
         setRandomMove(false);
         delta_distance = 0;
+        // a landed dropship blocks line of sight
+        if (game != null) {
+            game.updateEntityPositionLookup(this, getOccupiedCoords());
+        }
     }
 
     public int getTakeOffLength() {
@@ -30,6 +30,7 @@ import java.io.Reader;
 import java.io.Serializable;
 import java.io.StreamTokenizer;
 import java.io.Writer;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Enumeration;
 import java.util.Hashtable;
@@ -95,6 +96,16 @@ public class Board implements Serializable, IBoard {
 
     protected transient Vector<BoardListener> boardListeners = new Vector<BoardListener>();
 
+    /**
+     * The version of each hex, bumped whenever the hex is replaced or its
+     * building is updated. Versions are never reused, even when the board
+     * changes its size.
+     */
+    private transient volatile int[] hexVersions;
+    private transient int lastHexVersion;
+
+    private transient LosCache losCache;
+
     /**
      * Record the infernos placed on the board.
      */
@@ -428,6 +439,7 @@ public class Board implements Serializable, IBoard {
             IHex other = getHexInDir(x, y, i);
             hex.setExits(other, i, roadsAutoExit);
         }
+        hexChanged(x, y);
         if (event) {
             processBoardEvent(new BoardEvent(this, new Coords(x, y),
                                              BoardEvent.BOARD_CHANGED_HEX));
@@ -1251,6 +1263,7 @@ public class Board implements Serializable, IBoard {
                 bldg.setArmor(other.getArmor(coords), coords);
                 bldg.setBasement(coords, BasementType.getType(getHex(coords).terrainLevel(Terrains.BLDG_BASEMENT_TYPE)));
                 bldg.setBasementCollapsed(coords, other.getBasementCollapsed(coords));
+                hexChanged(coords.getX(), coords.getY());
             }
         } // Handle the next building.
 
@@ -1528,4 +1541,52 @@ public class Board implements Serializable, IBoard {
         }
         return false;
     }
+
+    /**
+     * Gives the hex at the given position a new version
+     */
+    private synchronized void hexChanged(int x, int y) {
+        if (contains(x, y)) {
+            getHexVersions()[(y * width) + x] = ++lastHexVersion;
+        }
+    }
+
+    private synchronized int[] getHexVersions() {
+        if ((hexVersions == null) || (hexVersions.length != (width * height))) {
+            hexVersions = new int[width * height];
+            Arrays.fill(hexVersions, ++lastHexVersion);
+        }
+        return hexVersions;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see megamek.common.IBoard#getHexVersion(megamek.common.Coords)
+     */
+    public long getHexVersion(Coords c) {
+        IHex hex = getHex(c);
+        if (hex == null) {
+            return -1;
+        }
+        int[] versions = hexVersions;
+        if ((versions == null) || (versions.length != (width * height))) {
+            versions = getHexVersions();
+        }
+        int version = versions[(c.getY() * width) + c.getX()];
+        return ((long) version << 32)
+                | (hex.getModificationCount() & 0xffffffffL);
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see megamek.common.IBoard#getLosCache()
+     */
+    public synchronized LosCache getLosCache() {
+        if (losCache == null) {
+            losCache = new LosCache(this);
+        }
+        return losCache;
+    }
 }
@@ -0,0 +1,272 @@
+/*
+ * MegaMek - Copyright (C) 2016 The MegaMek Team
+ *
+ *  This program is free software; you can redistribute it and/or modify it
+ *  under the terms of the GNU General Public License as published by the Free
+ *  Software Foundation; either version 2 of the License, or (at your option)
+ *  any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ *  or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ *  for more details.
+ */
+
+package megamek.common;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * An index of the board files in the boards directory and their sizes, so the
+ * boards of a size can be listed without opening every board file.
+ * <p>
+ * The index is kept in the file <code>boards.cache</code> in the boards
+ * directory. Each time it is asked, the catalogue checks the modification
+ * time and length of every board file and only reads the files that are new
+ * or have changed since they were last read. Implemented as a Singleton so a
+ * client and server running in the same process can share it.
+ */
+public class BoardCatalogue {
+
+    private static final String FILENAME_BOARDS_CACHE = "boards.cache"; //$NON-NLS-1$
+
+    /**
+     * Changed whenever the layout of the cache file changes
+     */
+    private static final int CACHE_VERSION = 1;
+
+    private static BoardCatalogue instance;
+
+    /**
+     * The board files by their path relative to the boards directory, without
+     * the '.board' extension
+     */
+    private final Map<String, BoardFile> boards = new HashMap<String, BoardFile>();
+
+    private final File boardDir;
+
+    private boolean loaded = false;
+
+    public static synchronized BoardCatalogue getInstance() {
+        File boardDir = Configuration.boardsDir();
+        if ((instance == null) || !instance.boardDir.equals(boardDir)) {
+            instance = new BoardCatalogue(boardDir);
+        }
+        return instance;
+    }
+
+    BoardCatalogue(File boardDir) {
+        this.boardDir = boardDir;
+    }
+
+    /**
+     * Lists the boards of the given size.
+     *
+     * @param dimensions The desired board dimensions.
+     * @return The paths of the boards relative to the boards directory, each
+     * starting with a separator, without the '.board' extension, in no
+     * particular order.
+     */
+    public synchronized List<String> getBoards(BoardDimensions dimensions) {
+        if (dimensions == null) {
+            throw new IllegalArgumentException("must provide dimensions");
+        }
+        update();
+        List<String> result = new ArrayList<String>();
+        for (Map.Entry<String, BoardFile> entry : boards.entrySet()) {
+            if (dimensions.equals(entry.getValue().dimensions)) {
+                result.add(entry.getKey());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Get the available board sizes.
+     *
+     * @return A Set containing the sizes of all boards.
+     */
+    public synchronized Set<BoardDimensions> getBoardSizes() {
+        update();
+        Set<BoardDimensions> sizes = new TreeSet<BoardDimensions>();
+        for (BoardFile board : boards.values()) {
+            if (board.dimensions != null) {
+                sizes.add(board.dimensions);
+            }
+        }
+        return sizes;
+    }
+
+    /**
+     * Brings the index up to date with the boards directory, and saves it if
+     * anything changed.
+     */
+    private void update() {
+        if (!loaded) {
+            loaded = true;
+            load();
+        }
+        if (!boardDir.isDirectory()) {
+            boards.clear();
+            return;
+        }
+        Set<String> found = new HashSet<String>();
+        boolean changed = updateDir(boardDir, "", found); //$NON-NLS-1$
+        for (Iterator<String> i = boards.keySet().iterator(); i.hasNext(); ) {
+            if (!found.contains(i.next())) {
+                i.remove();
+                changed = true;
+            }
+        }
+        if (changed) {
+            save();
+        }
+    }
+
+    private boolean updateDir(File dir, String basePath, Set<String> found) {
+        boolean changed = false;
+        String[] fileList = dir.list();
+        if (fileList == null) {
+            return false;
+        }
+        for (String filename : fileList) {
+            File filepath = new File(dir, filename);
+            if (filepath.isDirectory()) {
+                changed |= updateDir(filepath, basePath.concat(File.separator)
+                        .concat(filename), found);
+            } else if (filename.endsWith(".board")) { //$NON-NLS-1$
+                String name = basePath.concat(File.separator).concat(
+                        filename.substring(0, filename.lastIndexOf(".")));
+                found.add(name);
+                long lastModified = filepath.lastModified();
+                long length = filepath.length();
+                BoardFile board = boards.get(name);
+                if ((board == null) || (board.lastModified != lastModified)
+                        || (board.length != length)) {
+                    boards.put(name, new BoardFile(lastModified, length,
+                            readDimensions(filepath)));
+                    changed = true;
+                }
+            }
+        }
+        return changed;
+    }
+
+    private static BoardDimensions readDimensions(File filepath) {
+        BoardDimensions size = null;
+        try {
+            size = Board.getSize(filepath);
+        } catch (IllegalArgumentException e) {
+            // no size line, or not a positive one
+        }
+        if (size == null) {
+            System.out.println("Error parsing board: "
+                    + filepath.getAbsolutePath());
+        }
+        return size;
+    }
+
+    private void load() {
+        File cacheFile = new File(boardDir, FILENAME_BOARDS_CACHE);
+        if (!cacheFile.exists()) {
+            return;
+        }
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(
+                    new FileInputStream(cacheFile)));
+            if (in.readInt() != CACHE_VERSION) {
+                return;
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String name = in.readUTF();
+                long lastModified = in.readLong();
+                long length = in.readLong();
+                int width = in.readInt();
+                int height = in.readInt();
+                BoardDimensions dimensions = ((width > 0) && (height > 0))
+                        ? new BoardDimensions(width, height) : null;
+                boards.put(name, new BoardFile(lastModified, length,
+                        dimensions));
+            }
+        } catch (IOException e) {
+            System.out.println("Unable to load board cache: " + e.getMessage());
+            boards.clear();
+        } finally {
+            close(in);
+        }
+    }
+
+    private void save() {
+        File cacheFile = new File(boardDir, FILENAME_BOARDS_CACHE);
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(
+                    new FileOutputStream(cacheFile)));
+            out.writeInt(CACHE_VERSION);
+            out.writeInt(boards.size());
+            for (Map.Entry<String, BoardFile> entry : boards.entrySet()) {
+                BoardFile board = entry.getValue();
+                out.writeUTF(entry.getKey());
+                out.writeLong(board.lastModified);
+                out.writeLong(board.length);
+                out.writeInt((board.dimensions == null) ? 0
+                        : board.dimensions.width());
+                out.writeInt((board.dimensions == null) ? 0
+                        : board.dimensions.height());
+            }
+        } catch (IOException e) {
+            // the boards directory may not be writable; the index still works
+            // for this session
+            System.out.println("Unable to save board cache: " + e.getMessage());
+        } finally {
+            close(out);
+        }
+    }
+
+    private static void close(Closeable stream) {
+        if (stream != null) {
+            try {
+                stream.close();
+            } catch (IOException e) {
+                // nothing to do
+            }
+        }
+    }
+
+    /**
+     * What is known of one board file
+     */
+    private static class BoardFile {
+        final long lastModified;
+        final long length;
+
+        /**
+         * <code>null</code> if the file has no valid size
+         */
+        final BoardDimensions dimensions;
+
+        BoardFile(long lastModified, long length, BoardDimensions dimensions) {
+            this.lastModified = lastModified;
+            this.length = length;
+            this.dimensions = dimensions;
+        }
+    }
+}
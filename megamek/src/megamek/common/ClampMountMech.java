@@ -77,7 +77,9 @@ package megamek.common;
 
     @Override
     public int getCargoMpReduction() {
-        return getLoadedUnits().size();
+        // Asked for whenever movement points are worked out, so don't build
+        // the list of loaded units just to count them
+        return (troopers != Entity.NONE) ? 1 : 0;
     }
 
     @Override
@@ -16,6 +16,7 @@
 package megamek.common;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Enumeration;
 import java.util.Hashtable;
 import java.util.Iterator;
@@ -38,6 +39,8 @@ import megamek.common.actions.PushAttackAction;
 import megamek.common.actions.ThrashAttackAction;
 import megamek.common.actions.TripAttackAction;
 import megamek.common.actions.WeaponAttackAction;
+import megamek.common.logging.LogLevel;
+import megamek.common.logging.Logger;
 import megamek.common.options.OptionsConstants;
 import megamek.common.weapons.ArtilleryCannonWeapon;
 import megamek.common.weapons.BayWeapon;
@@ -54,6 +57,25 @@ import megamek.server.SmokeCloud;
  */
 public class Compute {
 
+    /**
+     * The users of random numbers that get a generator of their own, so that
+     * one of them doesn't change the numbers another one gets
+     */
+    public enum RandomStream {
+        /**
+         * The dice of the game rules, rolled by the server
+         */
+        DICE,
+        /**
+         * The choices of the bots
+         */
+        BOT,
+        /**
+         * Random map generation
+         */
+        MAP
+    }
+
     public static final int ARC_360 = 0;
     public static final int ARC_FORWARD = 1;
     public static final int ARC_LEFTARM = 2;
@@ -93,7 +115,25 @@ public class Compute {
     public static final int ARC_HEXSIDE_4 = 36;
     public static final int ARC_HEXSIDE_5 = 37;
 
-    private static MMRandom random = MMRandom.generate(MMRandom.R_DEFAULT);
+    private static volatile MMRandom random = MMRandom.generate(MMRandom.R_DEFAULT);
+
+    private static int randomType = MMRandom.R_DEFAULT;
+
+    private static volatile MMRandom botRandom = new MMRandom.SplitMixRandom(
+            MMRandom.randomSeed());
+
+    private static volatile MMRandom mapRandom = new MMRandom.SplitMixRandom(
+            MMRandom.randomSeed());
+
+    /**
+     * The seed all generators were set up from, or <code>null</code>
+     */
+    private static Long seed;
+
+    /**
+     * Generators that replace the common one for the dice rolled on a thread
+     */
+    private static final ThreadLocal<MMRandom> threadRandom = new ThreadLocal<MMRandom>();
 
     private static final int[][] clusterHitsTable = new int[][]{
             {1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1},
@@ -132,7 +172,7 @@ public class Compute {
      * Wrapper to random#d6(n)
      */
     public static int d6(int dice) {
-        Roll roll = random.d6(dice);
+        Roll roll = getRandom().d6(dice);
         if (Server.getServerInstance() != null) {
             if (Server.getServerInstance().getGame().getOptions()
                       .booleanOption("rng_log")) {
@@ -146,7 +186,7 @@ public class Compute {
      * Wrapper to random#d6(n)
      */
     public static int d6(int dice, int keep) {
-        Roll roll = random.d6(dice, keep);
+        Roll roll = getRandom().d6(dice, keep);
         if (Server.getServerInstance() != null) {
             if (Server.getServerInstance().getGame().getOptions()
                       .booleanOption("rng_log")) {
@@ -160,7 +200,7 @@ public class Compute {
      * Wrapper to random#d6()
      */
     public static int d6() {
-        Roll roll = random.d6();
+        Roll roll = getRandom().d6();
         if (Server.getServerInstance() != null) {
             if (Server.getServerInstance().getGame().getOptions()
                       .booleanOption("rng_log")) {
@@ -174,17 +214,181 @@ public class Compute {
      * Wrapper to random#randomInt(n)
      */
     public static int randomInt(int maxValue) {
-        Roll roll = new MMRoll(random, maxValue);
+        Roll roll = new MMRoll(getRandom(), maxValue);
         return roll.getIntValue();
     }
 
     /**
-     * Sets the RNG to the desired type
+     * Returns a random <code>int</code> from the given stream, in the range
+     * from 0 to one less than the supplied max value
+     */
+    public static int randomInt(RandomStream stream, int maxValue) {
+        return new MMRoll(getRandom(stream), maxValue).getIntValue();
+    }
+
+    /**
+     * Rolls dice from the given stream. These rolls are never logged.
      */
-    public static void setRNG(int type) {
+    public static int d6(RandomStream stream, int dice) {
+        return getRandom(stream).d6(dice).getIntValue();
+    }
+
+    /**
+     * Returns a random <code>long</code>, for seeding other generators
+     */
+    public static long randomLong() {
+        return ((long) randomInt(Integer.MAX_VALUE) << 32)
+                ^ randomInt(Integer.MAX_VALUE);
+    }
+
+    /**
+     * Sets the RNG to the desired type. Once a seed has been set, the seeded
+     * generators are kept, as the game couldn't be replayed otherwise.
+     */
+    public static synchronized void setRNG(int type) {
+        if ((seed != null) || (type == randomType)) {
+            return;
+        }
+        randomType = type;
         random = MMRandom.generate(type);
     }
 
+    /**
+     * Sets up the generators of all streams from the seed, so that the same
+     * seed gives the same numbers again, and logs the seed. The rng_type
+     * game option is ignored from then on.
+     */
+    public static synchronized void setSeed(long seed) {
+        MMRandom.SplitMixRandom root = new MMRandom.SplitMixRandom(seed);
+        random = root.split();
+        botRandom = root.split();
+        mapRandom = root.split();
+        randomType = MMRandom.R_SPLITMIX;
+        Compute.seed = seed;
+        new Logger().log(Compute.class, "setSeed(long)", LogLevel.INFO,
+                "random numbers seeded with %d", seed);
+    }
+
+    /**
+     * Forgets the seed and goes back to unseeded generators of the default
+     * type, so that tests don't leave a seed behind for the tests after them
+     */
+    static synchronized void clearSeed() {
+        seed = null;
+        randomType = MMRandom.R_DEFAULT;
+        random = MMRandom.generate(MMRandom.R_DEFAULT);
+        botRandom = new MMRandom.SplitMixRandom(MMRandom.randomSeed());
+        mapRandom = new MMRandom.SplitMixRandom(MMRandom.randomSeed());
+    }
+
+    /**
+     * Returns the seed the generators were set up from, or <code>null</code>
+     * if they weren't
+     */
+    public static synchronized Long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Returns the state of the seeded generators, to be saved with the game,
+     * or <code>null</code> if they weren't seeded
+     */
+    public static synchronized long[] getRandomState() {
+        if (seed == null) {
+            return null;
+        }
+        long[] state = new long[13];
+        state[0] = seed;
+        System.arraycopy(((MMRandom.SplitMixRandom) random).getState(), 0,
+                state, 1, 4);
+        System.arraycopy(((MMRandom.SplitMixRandom) botRandom).getState(), 0,
+                state, 5, 4);
+        System.arraycopy(((MMRandom.SplitMixRandom) mapRandom).getState(), 0,
+                state, 9, 4);
+        return state;
+    }
+
+    /**
+     * Restores the seeded generators from a state returned by
+     * {@link #getRandomState()}, so they go on with the numbers they would
+     * have given
+     */
+    public static synchronized void setRandomState(long[] state) {
+        if ((state == null) || (state.length != 13)) {
+            return;
+        }
+        seed = state[0];
+        random = new MMRandom.SplitMixRandom(Arrays.copyOfRange(state, 1, 5));
+        botRandom = new MMRandom.SplitMixRandom(Arrays.copyOfRange(state, 5, 9));
+        mapRandom = new MMRandom.SplitMixRandom(Arrays.copyOfRange(state, 9, 13));
+        randomType = MMRandom.R_SPLITMIX;
+        new Logger().log(Compute.class, "setRandomState(long[])",
+                LogLevel.INFO, "random numbers seeded with %d, restored", seed);
+    }
+
+    /**
+     * Returns <code>true</code> if the common dice come from the seedable
+     * generator, either because it was chosen as rng_type or because a seed
+     * was set. Only then may dice be rolled from generators of their own
+     * seeded from it, as the other types have properties of their own that
+     * such generators wouldn't keep.
+     */
+    public static boolean isSeedable() {
+        return random instanceof MMRandom.SplitMixRandom;
+    }
+
+    /**
+     * Returns <code>true</code> if the common dice may be rolled on several
+     * threads at once. Pool36 draws its rolls from a pool that isn't guarded.
+     */
+    public static boolean isThreadSafe() {
+        return !(random instanceof MMRandom.Pool36Random);
+    }
+
+    /**
+     * Makes the dice rolled on the current thread come from the given
+     * generator instead of the common one, until this is called again with
+     * <code>null</code>.
+     *
+     * @return the generator the thread used before
+     */
+    public static MMRandom setThreadRNG(MMRandom rng) {
+        MMRandom old = threadRandom.get();
+        if (rng == null) {
+            threadRandom.remove();
+        } else {
+            threadRandom.set(rng);
+        }
+        return old;
+    }
+
+    /**
+     * Makes the dice rolled on the current thread come from the given stream,
+     * like {@link #setThreadRNG(MMRandom)}
+     *
+     * @return the generator the thread used before
+     */
+    public static MMRandom useStream(RandomStream stream) {
+        return setThreadRNG(getRandom(stream));
+    }
+
+    private static MMRandom getRandom() {
+        MMRandom rng = threadRandom.get();
+        return (rng == null) ? random : rng;
+    }
+
+    private static MMRandom getRandom(RandomStream stream) {
+        switch (stream) {
+            case BOT:
+                return botRandom;
+            case MAP:
+                return mapRandom;
+            case DICE:
+            default:
+                return random;
+        }
+    }
+
     /**
      * Returns the odds that a certain number or above will be rolled on 2d6.
      */
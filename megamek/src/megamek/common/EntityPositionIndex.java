@@ -0,0 +1,234 @@
+/*
+ * MegaMek - Copyright (C) 2016 The MegaMek Team
+ *
+ *  This program is free software; you can redistribute it and/or modify it
+ *  under the terms of the GNU General Public License as published by the Free
+ *  Software Foundation; either version 2 of the License, or (at your option)
+ *  any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ *  or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ *  for more details.
+ */
+
+package megamek.common;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Knows which entities occupy each hex of the board. Every hex has an array
+ * of the ids of the entities in it, sorted by id, so looking up a hex and
+ * going through its entities allocates nothing. Units that take up several
+ * hexes are found in each of them.
+ * <p>
+ * The arrays are never changed once they are stored; a move replaces the
+ * arrays of the hexes involved. Lookups therefore need no lock and always
+ * see a consistent hex, while changes are made by one thread at a time.
+ */
+public class EntityPositionIndex {
+
+    private static final int[] NO_IDS = new int[0];
+
+    private final int width;
+
+    private final int height;
+
+    private final AtomicReferenceArray<int[]> cells;
+
+    /**
+     * Positions that are not on the board
+     */
+    private final ConcurrentMap<Coords, int[]> outside = new ConcurrentHashMap<Coords, int[]>();
+
+    /**
+     * The hexes each entity has been indexed at
+     */
+    private final Map<Integer, Coords[]> indexed = new HashMap<Integer, Coords[]>();
+
+    private volatile int entityCount;
+
+    public EntityPositionIndex(int width, int height) {
+        this.width = width;
+        this.height = height;
+        cells = new AtomicReferenceArray<int[]>(width * height);
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Returns the ids of the entities in the given hex, in ascending order.
+     * The returned array must not be changed.
+     */
+    public int[] getIds(Coords c) {
+        if (c == null) {
+            return NO_IDS;
+        }
+        int[] ids;
+        if (contains(c.getX(), c.getY())) {
+            ids = cells.get((c.getY() * width) + c.getX());
+        } else {
+            ids = outside.get(c);
+        }
+        return (ids == null) ? NO_IDS : ids;
+    }
+
+    /**
+     * Returns <code>true</code> if no entity is in any hex
+     */
+    public boolean isEmpty() {
+        return entityCount == 0;
+    }
+
+    /**
+     * Indexes the entity at the given hexes, removing it from the hexes it
+     * was at before.
+     */
+    public synchronized void update(int id, Collection<Coords> positions) {
+        Coords[] old = indexed.get(id);
+        Coords[] current = positions.toArray(new Coords[positions.size()]);
+        if ((old != null) && sameHexes(old, current)) {
+            return;
+        }
+        if (old != null) {
+            for (Coords c : old) {
+                setIds(c, without(getIds(c), id));
+            }
+        }
+        if (current.length > 0) {
+            for (Coords c : current) {
+                setIds(c, with(getIds(c), id));
+            }
+            indexed.put(id, current);
+        } else {
+            indexed.remove(id);
+        }
+        entityCount = indexed.size();
+    }
+
+    /**
+     * Removes the entity from every hex it is in
+     */
+    public synchronized void remove(int id) {
+        Coords[] old = indexed.remove(id);
+        if (old != null) {
+            for (Coords c : old) {
+                setIds(c, without(getIds(c), id));
+            }
+        }
+        entityCount = indexed.size();
+    }
+
+    /**
+     * Removes all entities
+     */
+    public synchronized void clear() {
+        for (int i = 0; i < cells.length(); i++) {
+            cells.set(i, null);
+        }
+        outside.clear();
+        indexed.clear();
+        entityCount = 0;
+    }
+
+    /**
+     * Calls the visitor with the ids of the entities in every board hex
+     * within the given distance of the center, and in every position off the
+     * board that is. Units in several of these hexes are visited once for
+     * each hex.
+     */
+    public void visitWithin(Coords center, int range, IdVisitor visitor) {
+        int cx = center.getX();
+        int cy = center.getY();
+        for (int x = Math.max(0, cx - range); x <= Math.min(width - 1, cx + range); x++) {
+            // the y range of the hexes at this distance in x, following
+            // Coords.distance
+            int xd = Math.abs(x - cx);
+            int yo = (xd / 2) + (((cx & 1) == 0) && ((x & 1) == 1) ? 1 : 0);
+            int ymin = (cy - yo) - (range - xd);
+            int ymax = ((cy - yo) + xd) + (range - xd);
+            for (int y = Math.max(0, ymin); y <= Math.min(height - 1, ymax); y++) {
+                int[] ids = cells.get((y * width) + x);
+                if (ids != null) {
+                    visitor.visit(ids);
+                }
+            }
+        }
+        for (Map.Entry<Coords, int[]> entry : outside.entrySet()) {
+            if (center.distance(entry.getKey()) <= range) {
+                visitor.visit(entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * Gets the ids of the entities in a group of hexes
+     */
+    public interface IdVisitor {
+        /**
+         * @param ids the ids of the entities in one hex, which must not be
+         *            changed
+         */
+        void visit(int[] ids);
+    }
+
+    private boolean contains(int x, int y) {
+        return (x >= 0) && (y >= 0) && (x < width) && (y < height);
+    }
+
+    private void setIds(Coords c, int[] ids) {
+        if (contains(c.getX(), c.getY())) {
+            cells.set((c.getY() * width) + c.getX(), (ids.length == 0) ? null : ids);
+        } else if (ids.length == 0) {
+            outside.remove(c);
+        } else {
+            outside.put(c, ids);
+        }
+    }
+
+    private static boolean sameHexes(Coords[] a, Coords[] b) {
+        if (a.length != b.length) {
+            return false;
+        }
+        return (a.length == 1) ? a[0].equals(b[0])
+                : new HashSet<Coords>(Arrays.asList(a))
+                        .equals(new HashSet<Coords>(Arrays.asList(b)));
+    }
+
+    private static int[] with(int[] ids, int id) {
+        int index = Arrays.binarySearch(ids, id);
+        if (index >= 0) {
+            return ids;
+        }
+        index = -index - 1;
+        int[] result = new int[ids.length + 1];
+        System.arraycopy(ids, 0, result, 0, index);
+        result[index] = id;
+        System.arraycopy(ids, index, result, index + 1, ids.length - index);
+        return result;
+    }
+
+    private static int[] without(int[] ids, int id) {
+        int index = Arrays.binarySearch(ids, id);
+        if (index < 0) {
+            return ids;
+        }
+        int[] result = new int[ids.length - 1];
+        System.arraycopy(ids, 0, result, 0, index);
+        System.arraycopy(ids, index + 1, result, index, ids.length - index - 1);
+        return result;
+    }
+}
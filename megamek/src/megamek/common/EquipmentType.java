@@ -408,7 +408,21 @@ public class EquipmentType {
     }
 
     public boolean hasFlag(BigInteger flag) {
-        return !(flags.and(flag)).equals(BigInteger.valueOf(0));
+        // Called for every piece of equipment whenever movement points are
+        // worked out, so test the bits instead of building flags.and(flag)
+        if ((flag.signum() < 0) || (flags.signum() < 0)) {
+            return !(flags.and(flag)).equals(BigInteger.valueOf(0));
+        }
+        if (flag.bitCount() == 1) {
+            return flags.testBit(flag.getLowestSetBit());
+        }
+        for (int bit = flag.getLowestSetBit(); (bit >= 0)
+                && (bit < flag.bitLength()); bit++) {
+            if (flag.testBit(bit) && flags.testBit(bit)) {
+                return true;
+            }
+        }
+        return false;
     }
 
     public double getBV(Entity entity) {
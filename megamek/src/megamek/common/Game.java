@@ -17,6 +17,7 @@ package megamek.common;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Enumeration;
 import java.util.HashMap;
@@ -25,7 +26,10 @@ import java.util.Hashtable;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
 import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 
 import megamek.common.GameTurn.SpecificEntityTurn;
@@ -86,7 +90,19 @@ public class Game implements Serializable, IGame {
 
     private Hashtable<Integer, IPlayer> playerIds = new Hashtable<Integer, IPlayer>();
 
-    private final Map<Coords, HashSet<Integer>> entityPosLookup = new HashMap<>();
+    /**
+     * Which entities are in which hexes; built again when the game is loaded
+     * or the board size changes
+     */
+    private transient volatile EntityPositionIndex positionIndex;
+
+    /**
+     * The ids of the dropships on the ground, kept up to date as entities are
+     * added, moved and removed; built again when the game is loaded
+     */
+    private transient volatile Set<Integer> groundedDropships;
+
+    private transient volatile int groundedDropshipsVersion;
 
     /**
      * have the entities been deployed?
@@ -133,6 +149,12 @@ public class Game implements Serializable, IGame {
     private GameReports gameReports = new GameReports();
 
     private boolean forceVictory = false;
+
+    /**
+     * The state of the seeded random number generators when the game was
+     * saved, see {@link Compute#getRandomState()}
+     */
+    private long[] randomState;
     private int victoryPlayerId = Player.PLAYER_NONE;
     private int victoryTeam = Player.TEAM_NONE;
 
@@ -925,11 +947,11 @@ public class Game implements Serializable, IGame {
     }
 
     public synchronized void setEntitiesVector(List<Entity> entities) {
-        //checkPositionCacheConsistency();
         this.entities.clear();
         this.entities.addAll(entities);
         reindexEntities();
-        resetEntityPositionLookup();
+        positionIndex = null;
+        groundedDropships = null;
         processGameEvent(new GameEntityNewEvent(this, entities));
     }
 
@@ -1063,37 +1085,36 @@ public class Game implements Serializable, IGame {
      * each unit in this <code>Game</code> to a <code>Vector</code> of
      * <code>Entity</code>s at that positions. Units that have no position (e.g.
      * loaded units) will not be in the map.
+     * <p>
+     * The map is filled from the position index one position at a time as it
+     * is asked for, so getting it doesn't walk through every entity. Each
+     * position holds the entities that were there when it was first asked
+     * for.
      *
      * @return a <code>Hashtable</code> that maps the <code>Coords</code>
      * positions or each unit in the game to a <code>Vector</code> of
      * <code>Entity</code>s at that position.
      */
     public Hashtable<Coords, Vector<Entity>> getPositionMap() {
-        Hashtable<Coords, Vector<Entity>> positionMap = new Hashtable<Coords, Vector<Entity>>();
-        Vector<Entity> atPos = null;
-
-        // Walk through the entities in this game.
-        for (Entity entity : entities) {
-            // Get the vector for this entity's position.
-            final Coords coords = entity.getPosition();
-            if (coords != null) {
-                atPos = positionMap.get(coords);
+        return new PositionMap(this);
+    }
 
-                // If this is the first entity at this position,
-                // create the vector and add it to the map.
+    /**
+     * Returns a new <code>Vector</code> of the entities whose position is the
+     * given hex, or <code>null</code> if there are none.
+     */
+    private Vector<Entity> getEntitiesAtPosition(Coords c) {
+        Vector<Entity> atPos = null;
+        for (int id : getPositionIndex().getIds(c)) {
+            Entity entity = getEntity(id);
+            if ((entity != null) && c.equals(entity.getPosition())) {
                 if (atPos == null) {
                     atPos = new Vector<Entity>();
-                    positionMap.put(coords, atPos);
                 }
-
-                // Add the entity to the vector for this position.
                 atPos.addElement(entity);
-
             }
-        } // Handle the next entity.
-
-        // Return the map.
-        return positionMap;
+        }
+        return atPos;
     }
 
     /**
@@ -1428,7 +1449,8 @@ public class Game implements Serializable, IGame {
 
         entities.clear();
         entityIds.clear();
-        entityPosLookup.clear();
+        positionIndex = null;
+        groundedDropships = null;
 
         vOutOfGame.removeAllElements();
 
@@ -1509,8 +1531,10 @@ public class Game implements Serializable, IGame {
      * @param c the coordinates to search at
      */
     public Entity getFirstEntity(Coords c) {
-        for (Entity entity : entities) {
-            if (c.equals(entity.getPosition()) && entity.isTargetable()) {
+        for (int id : getPositionIndex().getIds(c)) {
+            Entity entity = getEntity(id);
+            if ((entity != null) && c.equals(entity.getPosition())
+                && entity.isTargetable()) {
                 return entity;
             }
         }
@@ -1525,9 +1549,10 @@ public class Game implements Serializable, IGame {
      * @param currentEntity the entity that is firing
      */
     public Entity getFirstEnemyEntity(Coords c, Entity currentEntity) {
-        for (Entity entity : entities) {
-            if (c.equals(entity.getPosition()) && entity.isTargetable()
-                && entity.isEnemyOf(currentEntity)) {
+        for (int id : getPositionIndex().getIds(c)) {
+            Entity entity = getEntity(id);
+            if ((entity != null) && c.equals(entity.getPosition())
+                && entity.isTargetable() && entity.isEnemyOf(currentEntity)) {
                 return entity;
             }
         }
@@ -1566,33 +1591,72 @@ public class Game implements Serializable, IGame {
      *            Flag that determines whether the ability to target is ignored
      * @return <code>Vector<Entity></code>
      */
-    public synchronized List<Entity> getEntitiesVector(Coords c, boolean ignore) {
-        //checkPositionCacheConsistency();
-        // Make sure the look-up is initialized
-        if (entityPosLookup == null
-                || (entityPosLookup.size() < 1 && entities.size() > 0)) {
-            resetEntityPositionLookup();
-        }
-        HashSet<Integer> posEntities = entityPosLookup.get(c);
-        ArrayList<Entity> vector = new ArrayList<Entity>();
-        if (posEntities != null) {
-            for (Integer eId : posEntities) {
-                Entity e = getEntity(eId);
-                if (e.isTargetable() || ignore) {
-                    vector.add(e);
-
-                    // Sanity check
-                    HashSet<Coords> positions = e.getOccupiedCoords();
-                    if (!positions.contains(c)) {
-                        System.out.println("Game.getEntitiesVector(1) Error! "
-                                + e.getDisplayName() + " is not in " + c + "!");
-                    }
-                }
+    public List<Entity> getEntitiesVector(Coords c, boolean ignore) {
+        int[] ids = getPositionIndex().getIds(c);
+        if (ids.length == 0) {
+            // Most hexes are empty, and the path finders ask about each
+            return Collections.emptyList();
+        }
+        ArrayList<Entity> vector = new ArrayList<Entity>(ids.length);
+        for (int id : ids) {
+            Entity e = getEntity(id);
+            if ((e != null) && (e.isTargetable() || ignore)) {
+                vector.add(e);
             }
         }
         return Collections.unmodifiableList(vector);
     }
 
+    /**
+     * Returns the entities that are in at least one hex within the given
+     * distance of the center, in the order of their ids. Units that take up
+     * several hexes are only returned once.
+     *
+     * @param center the hex to search around
+     * @param range  the greatest distance from the center, in hexes
+     * @param ignore whether units that can't be targeted are returned too
+     */
+    public List<Entity> getEntitiesWithin(Coords center, int range,
+            boolean ignore) {
+        return getEntitiesWithin(center, range, ignore, null);
+    }
+
+    /**
+     * Returns the targetable enemies of the given entity that are in at least
+     * one hex within the given distance of the center, in the order of their
+     * ids.
+     *
+     * @param center        the hex to search around
+     * @param range         the greatest distance from the center, in hexes
+     * @param currentEntity the <code>Entity</code> whose enemies are needed
+     */
+    public List<Entity> getEnemyEntitiesWithin(Coords center, int range,
+            Entity currentEntity) {
+        return getEntitiesWithin(center, range, false, currentEntity);
+    }
+
+    private List<Entity> getEntitiesWithin(Coords center, int range,
+            final boolean ignore, final Entity enemyOf) {
+        final Set<Integer> found = new TreeSet<Integer>();
+        getPositionIndex().visitWithin(center, range,
+                new EntityPositionIndex.IdVisitor() {
+                    public void visit(int[] ids) {
+                        for (int id : ids) {
+                            found.add(id);
+                        }
+                    }
+                });
+        List<Entity> result = new ArrayList<Entity>(found.size());
+        for (Integer id : found) {
+            Entity e = getEntity(id);
+            if ((e != null) && (e.isTargetable() || ignore)
+                && ((enemyOf == null) || e.isEnemyOf(enemyOf))) {
+                result.add(e);
+            }
+        }
+        return result;
+    }
+
     /**
      * Return a Vector of gun emplacements at Coords <code>c</code>
      *
@@ -1604,8 +1668,9 @@ public class Game implements Serializable, IGame {
 
         // Only build the list if the coords are on the board.
         if (board.contains(c)) {
-            for (Entity entity : entities) {
-                if (c.equals(entity.getPosition())
+            for (int id : getPositionIndex().getIds(c)) {
+                Entity entity = getEntity(id);
+                if ((entity != null) && c.equals(entity.getPosition())
                     && (entity instanceof GunEmplacement)) {
                     vector.addElement((GunEmplacement) entity);
                 }
@@ -1655,19 +1720,15 @@ public class Game implements Serializable, IGame {
      */
     public Iterator<Entity> getEnemyEntities(final Coords c,
                                                 final Entity currentEntity) {
-        // Use an EntitySelector to avoid walking the entities vector twice.
-        return getSelectedEntities(new EntitySelector() {
-            private Coords coords = c;
-            private Entity friendly = currentEntity;
-
-            public boolean accept(Entity entity) {
-                if (coords.equals(entity.getPosition())
-                    && entity.isTargetable() && entity.isEnemyOf(friendly)) {
-                    return true;
-                }
-                return false;
+        List<Entity> enemies = new ArrayList<Entity>();
+        for (int id : getPositionIndex().getIds(c)) {
+            Entity entity = getEntity(id);
+            if ((entity != null) && c.equals(entity.getPosition())
+                && entity.isTargetable() && entity.isEnemyOf(currentEntity)) {
+                enemies.add(entity);
             }
-        });
+        }
+        return enemies.iterator();
     }
 
     /**
@@ -1681,19 +1742,15 @@ public class Game implements Serializable, IGame {
      */
     public Iterator<Entity> getFriendlyEntities(final Coords c,
                                                    final Entity currentEntity) {
-        // Use an EntitySelector to avoid walking the entities vector twice.
-        return getSelectedEntities(new EntitySelector() {
-            private Coords coords = c;
-            private Entity friendly = currentEntity;
-
-            public boolean accept(Entity entity) {
-                if (coords.equals(entity.getPosition())
-                    && entity.isTargetable() && !entity.isEnemyOf(friendly)) {
-                    return true;
-                }
-                return false;
+        List<Entity> friends = new ArrayList<Entity>();
+        for (int id : getPositionIndex().getIds(c)) {
+            Entity entity = getEntity(id);
+            if ((entity != null) && c.equals(entity.getPosition())
+                && entity.isTargetable() && !entity.isEnemyOf(currentEntity)) {
+                friends.add(entity);
             }
-        });
+        }
+        return friends.iterator();
     }
 
     /**
@@ -2669,6 +2726,14 @@ public class Game implements Serializable, IGame {
         this.forceVictory = forceVictory;
     }
 
+    public long[] getRandomState() {
+        return randomState;
+    }
+
+    public void setRandomState(long[] randomState) {
+        this.randomState = randomState;
+    }
+
     public void addReports(Vector<Report> v) {
         if (v.size() == 0) {
             System.out.println("Game.addReports() received blank vector.");
@@ -2681,6 +2746,14 @@ public class Game implements Serializable, IGame {
         return gameReports.get(r);
     }
 
+    public boolean hasReports(int r) {
+        return gameReports.has(r);
+    }
+
+    public void setReports(int r, Vector<Report> v) {
+        gameReports.set(r, v);
+    }
+
     public Vector<Vector<Report>> getAllReports() {
         return gameReports.get();
     }
@@ -3455,127 +3528,245 @@ public class Game implements Serializable, IGame {
      * position.
      *
      * @param e
+     * @param oldPositions not needed any more, the index knows where the
+     *            entity was before
      */
     public synchronized void updateEntityPositionLookup(Entity e,
             HashSet<Coords> oldPositions) {
-        HashSet<Coords> newPositions = e.getOccupiedCoords();
-        // Check to see that the position has actually changed
-        if (newPositions.equals(oldPositions)) {
-            return;
+        EntityPositionIndex index = positionIndex;
+        if (index != null) {
+            index.update(e.getId(), e.getOccupiedCoords());
         }
+        updateGroundedDropships(e, false);
+    }
 
-        // Remove the old cached location(s)
-        if (oldPositions != null) {
-            for (Coords pos : oldPositions) {
-                HashSet<Integer> posEntities = entityPosLookup.get(pos);
-                if (posEntities != null) {
-                    posEntities.remove(e.getId());
-                }
-            }
+    private synchronized void removeEntityPositionLookup(Entity e) {
+        EntityPositionIndex index = positionIndex;
+        if (index != null) {
+            index.remove(e.getId());
         }
+        updateGroundedDropships(e, true);
+    }
 
-        // Add Entity for each position
-        for (Coords pos : newPositions) {
-            HashSet<Integer> posEntities = entityPosLookup.get(pos);
-            if (posEntities == null) {
-                posEntities = new HashSet<Integer>();
-                posEntities.add(e.getId());
-                entityPosLookup.put(pos, posEntities);
-            } else {
-                posEntities.add(e.getId());
-            }
-        }
+    private static boolean isGroundedDropship(Entity e) {
+        return (e instanceof Dropship) && !e.isAirborne() && !e.isSpaceborne();
     }
 
-    private void removeEntityPositionLookup(Entity e) {
-        // Remove Entity from cache
-        for (Coords pos : e.getOccupiedCoords()) {
-            HashSet<Integer> posEntities = entityPosLookup.get(pos);
-            if (posEntities != null) {
-                posEntities.remove(e.getId());
+    /**
+     * Notes that the entity was moved, or removed from the game, if that
+     * changes the dropships on the ground
+     */
+    private synchronized void updateGroundedDropships(Entity e,
+            boolean removed) {
+        Set<Integer> grounded = groundedDropships;
+        if (grounded == null) {
+            // built from scratch when it is asked for
+            return;
+        }
+        if (!removed && isGroundedDropship(e) && (getEntity(e.getId()) != null)) {
+            // a dropship that moves on the ground changes line of sight as
+            // well
+            grounded.add(e.getId());
+            groundedDropshipsVersion++;
+        } else if (grounded.remove(e.getId())) {
+            groundedDropshipsVersion++;
+        }
+    }
+
+    private Set<Integer> getGroundedDropships() {
+        Set<Integer> grounded = groundedDropships;
+        if (grounded == null) {
+            synchronized (this) {
+                grounded = groundedDropships;
+                if (grounded == null) {
+                    grounded = Collections
+                            .newSetFromMap(new ConcurrentHashMap<Integer, Boolean>());
+                    for (Entity e : entities) {
+                        if (isGroundedDropship(e)) {
+                            grounded.add(e.getId());
+                        }
+                    }
+                    groundedDropshipsVersion++;
+                    groundedDropships = grounded;
+                }
             }
         }
+        return grounded;
     }
 
-    private void resetEntityPositionLookup() {
-        entityPosLookup.clear();
-        for (Entity e : entities) {
-            updateEntityPositionLookup(e, null);
-        }
+    public boolean hasGroundedDropships() {
+        return !getGroundedDropships().isEmpty();
     }
 
-    private int countEntitiesInCache(List<Integer> entitiesInCache) {
-        int count = 0;
-        for (Coords c : entityPosLookup.keySet()) {
-            count += entityPosLookup.get(c).size();
-            entitiesInCache.addAll(entityPosLookup.get(c));
-        }
-        return count;
+    public int getGroundedDropshipsVersion() {
+        getGroundedDropships();
+        return groundedDropshipsVersion;
     }
-    
+
     /**
-     * A check to ensure that the position cache is properly updated.  This 
-     * is only used for debugging purposes, and will cause a number of things
-     * to slow down.
-     */
-    @SuppressWarnings("unused")
-    private void checkPositionCacheConsistency() {
-        // Sanity check on the position cache
-        //  This could be removed once we are confident the cache is working
-        List<Integer> entitiesInCache = new ArrayList<Integer>();
-        List<Integer> entitiesInVector = new ArrayList<Integer>();
-        int entitiesInCacheCount = countEntitiesInCache(entitiesInCache);
-        int entityVectorSize = 0;
-        for (Entity e : entities) {
-            if (e.getPosition() != null) {
-                entityVectorSize++;
-                entitiesInVector.add(e.getId());
-            }
-        }
-        Collections.sort(entitiesInCache);
-        Collections.sort(entitiesInVector);
-        if ((entitiesInCacheCount != entityVectorSize)
-                && (getPhase() != Phase.PHASE_DEPLOYMENT)
-                && (getPhase() != Phase.PHASE_EXCHANGE)
-                && (getPhase() != Phase.PHASE_LOUNGE)
-                && (getPhase() != Phase.PHASE_INITIATIVE_REPORT)
-                && (getPhase() != Phase.PHASE_INITIATIVE)) {
-            System.out.println("Entities vector has " + entities.size()
-                    + " but pos lookup cache has " + entitiesInCache.size()
-                    + " entities!");
-            List<Integer> missingIds = new ArrayList<Integer>();
-            for (Integer id : entitiesInVector) {
-                if (!entitiesInCache.contains(id)) {
-                    missingIds.add(id);
+     * Returns the index of the hexes the entities are in, building it first if
+     * there is none for the current board yet. The index is built holding the
+     * same lock as moves update it, so a move made while it is being built
+     * isn't lost.
+     */
+    public EntityPositionIndex getPositionIndex() {
+        EntityPositionIndex index = positionIndex;
+        if ((index == null) || (index.getWidth() != board.getWidth())
+            || (index.getHeight() != board.getHeight())) {
+            synchronized (this) {
+                index = positionIndex;
+                if ((index == null) || (index.getWidth() != board.getWidth())
+                    || (index.getHeight() != board.getHeight())) {
+                    index = new EntityPositionIndex(board.getWidth(),
+                            board.getHeight());
+                    for (Entity e : entities) {
+                        index.update(e.getId(), e.getOccupiedCoords());
+                    }
+                    positionIndex = index;
                 }
             }
-            System.out.println("Missing ids: " + missingIds);
         }
-        for (Entity e : entities) {
-            HashSet<Coords> positions = e.getOccupiedCoords();
-            for (Coords c : positions) {
-                HashSet<Integer> ents = entityPosLookup.get(c);
-                if ((ents != null) && !ents.contains(e.getId())) {
-                    System.out.println("Entity " + e.getId() + " is in "
-                            + e.getPosition() + " however the position cache "
-                            + "does not have it in that position!");
+        return index;
+    }
+
+    /**
+     * The <code>Hashtable</code> handed out by {@link #getPositionMap()}, which
+     * looks up the entities at a position the first time it is asked for.
+     * Everything that needs more than single positions fills the whole map
+     * first.
+     */
+    private static class PositionMap extends Hashtable<Coords, Vector<Entity>> {
+        private static final long serialVersionUID = -3146482716224578023L;
+
+        private transient Game game;
+
+        private final Set<Coords> lookedUp = new HashSet<Coords>();
+
+        PositionMap(Game game) {
+            this.game = game;
+        }
+
+        private void lookUp(Object key) {
+            if ((game != null) && (key instanceof Coords)
+                && lookedUp.add((Coords) key)) {
+                Vector<Entity> atPos = game.getEntitiesAtPosition((Coords) key);
+                if (atPos != null) {
+                    super.put((Coords) key, atPos);
                 }
             }
         }
-        for (Coords c : entityPosLookup.keySet()) {
-            for (Integer eId : entityPosLookup.get(c)) {
-                Entity e = getEntity(eId);
-                if (e == null) {
-                    continue;
-                }
-                HashSet<Coords> positions = e.getOccupiedCoords();
-                if (!positions.contains(c)) {
-                    System.out.println("Entity Position Cache thinks Entity "
-                            + eId + "is in " + c
-                            + " but the Entity thinks it's in "
-                            + e.getPosition());
+
+        private void fill() {
+            if (game != null) {
+                for (Entity entity : game.entities) {
+                    lookUp(entity.getPosition());
                 }
+                game = null;
+            }
+        }
+
+        @Override
+        public synchronized Vector<Entity> get(Object key) {
+            lookUp(key);
+            return super.get(key);
+        }
+
+        @Override
+        public synchronized boolean containsKey(Object key) {
+            lookUp(key);
+            return super.containsKey(key);
+        }
+
+        @Override
+        public synchronized boolean isEmpty() {
+            // every entity with a position is in the index
+            if ((game != null) && super.isEmpty()
+                && !game.getPositionIndex().isEmpty()) {
+                fill();
             }
+            return super.isEmpty();
+        }
+
+        @Override
+        public synchronized int size() {
+            fill();
+            return super.size();
+        }
+
+        @Override
+        public synchronized Enumeration<Coords> keys() {
+            fill();
+            return super.keys();
+        }
+
+        @Override
+        public synchronized Enumeration<Vector<Entity>> elements() {
+            fill();
+            return super.elements();
+        }
+
+        @Override
+        public synchronized boolean contains(Object value) {
+            fill();
+            return super.contains(value);
+        }
+
+        @Override
+        public synchronized Vector<Entity> put(Coords key, Vector<Entity> value) {
+            lookUp(key);
+            return super.put(key, value);
+        }
+
+        @Override
+        public synchronized Vector<Entity> remove(Object key) {
+            lookUp(key);
+            return super.remove(key);
+        }
+
+        @Override
+        public synchronized void clear() {
+            game = null;
+            super.clear();
+        }
+
+        @Override
+        public synchronized Set<Coords> keySet() {
+            fill();
+            return super.keySet();
+        }
+
+        @Override
+        public synchronized Collection<Vector<Entity>> values() {
+            fill();
+            return super.values();
+        }
+
+        @Override
+        public synchronized Set<Map.Entry<Coords, Vector<Entity>>> entrySet() {
+            fill();
+            return super.entrySet();
+        }
+
+        @Override
+        public synchronized String toString() {
+            fill();
+            return super.toString();
+        }
+
+        @Override
+        public synchronized boolean equals(Object o) {
+            fill();
+            return super.equals(o);
+        }
+
+        @Override
+        public synchronized int hashCode() {
+            fill();
+            return super.hashCode();
+        }
+
+        private Object writeReplace() {
+            return new Hashtable<Coords, Vector<Entity>>(this);
         }
     }
 
@@ -0,0 +1,427 @@
+/*
+ * MegaMek - Copyright (C) 2016 The MegaMek Team
+ *
+ *  This program is free software; you can redistribute it and/or modify it
+ *  under the terms of the GNU General Public License as published by the Free
+ *  Software Foundation; either version 2 of the License, or (at your option)
+ *  any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ *  or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ *  for more details.
+ */
+
+package megamek.common;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Vector;
+
+/**
+ * An append-only log of the reports of a game, kept as structured records
+ * rather than text: the round and phase they belong to and, for each report,
+ * its message id and tag data.
+ * <p>
+ * Records are encoded into a buffer by the thread that adds them. A
+ * background thread writes the buffer out in batches, once a second or when
+ * it has grown large, so adding a record never waits for the disk. If the log
+ * was given an HTML file, the same thread renders each batch into it as well,
+ * so the HTML game log is readable while the game goes on and survives a
+ * crash. {@link #render(File, File)} renders a whole log file afterwards.
+ * <p>
+ * The file starts with a magic number and a format version. Every record then
+ * has a kind byte, the time it was added, the round and the phase ordinal
+ * (-1 for none), followed by
+ * <ul>
+ * <li>for {@link #RECORD_TEXT}, the length of the text in UTF-8 and the text
+ * itself</li>
+ * <li>for {@link #RECORD_REPORTS}, the number of reports and each report's
+ * {@link Report#writeCompact(java.io.DataOutput) compact} form</li>
+ * </ul>
+ * A record cut off by a crash at the end of the file is ignored.
+ */
+public class GameEventLog {
+
+    public static final int MAGIC = 0x4d4d4c47; // "MMLG"
+
+    public static final int FORMAT_VERSION = 1;
+
+    /**
+     * A piece of text, like a chat message
+     */
+    public static final int RECORD_TEXT = 1;
+
+    /**
+     * The reports of one phase
+     */
+    public static final int RECORD_REPORTS = 2;
+
+    /**
+     * How long records may wait for the writer, in milliseconds
+     */
+    private static final long FLUSH_INTERVAL = 1000;
+
+    /**
+     * The writer is woken up early once this many bytes are waiting
+     */
+    private static final int BATCH_SIZE = 64 * 1024;
+
+    private final File file;
+
+    private final OutputStream out;
+
+    private final Writer html;
+
+    private final Object lock = new Object();
+
+    private ByteArrayOutputStream pending = new ByteArrayOutputStream();
+
+    private DataOutputStream pendingData = new DataOutputStream(pending);
+
+    private final Thread writer;
+
+    private boolean writing;
+
+    private boolean started;
+
+    private boolean closed;
+
+    private IOException failure;
+
+    private volatile long records;
+    private volatile long batches;
+    private volatile long bytesWritten;
+
+    /**
+     * Creates the log, replacing any file of the same name
+     */
+    public GameEventLog(File file) throws IOException {
+        this(file, null);
+    }
+
+    /**
+     * Creates the log and renders it into the given HTML file as it is
+     * written, replacing any files of the same names
+     */
+    public GameEventLog(File file, File htmlFile) throws IOException {
+        this.file = file;
+        out = new FileOutputStream(file);
+        if (htmlFile != null) {
+            try {
+                html = new BufferedWriter(new FileWriter(htmlFile));
+            } catch (IOException e) {
+                out.close();
+                throw e;
+            }
+        } else {
+            html = null;
+        }
+        pendingData.writeInt(MAGIC);
+        pendingData.writeInt(FORMAT_VERSION);
+        writer = new Thread(new Runnable() {
+            public void run() {
+                writeAll();
+            }
+        }, "Game Log Writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Adds a piece of text
+     */
+    public void append(int round, IGame.Phase phase, String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        synchronized (lock) {
+            if (closed) {
+                return;
+            }
+            try {
+                writeHeader(RECORD_TEXT, round, phase);
+                pendingData.writeInt(bytes.length);
+                pendingData.write(bytes);
+            } catch (IOException e) {
+                // can't happen writing to memory
+            }
+            added();
+        }
+    }
+
+    /**
+     * Adds the reports of a phase
+     */
+    public void append(int round, IGame.Phase phase, Vector<Report> reports) {
+        synchronized (lock) {
+            if (closed) {
+                return;
+            }
+            try {
+                writeHeader(RECORD_REPORTS, round, phase);
+                pendingData.writeInt(reports.size());
+                for (Report r : reports) {
+                    r.writeCompact(pendingData);
+                }
+            } catch (IOException e) {
+                // can't happen writing to memory
+            }
+            added();
+        }
+    }
+
+    private void writeHeader(int kind, int round, IGame.Phase phase)
+            throws IOException {
+        pendingData.writeByte(kind);
+        pendingData.writeLong(System.currentTimeMillis());
+        pendingData.writeInt(round);
+        pendingData.writeByte((phase == null) ? -1 : phase.ordinal());
+    }
+
+    private void added() {
+        records++;
+        if (pending.size() >= BATCH_SIZE) {
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * Waits until every record added so far has been written
+     */
+    public void flush() throws IOException {
+        synchronized (lock) {
+            lock.notifyAll();
+            try {
+                while (((pending.size() > 0) || writing) && (failure == null)
+                        && writer.isAlive()) {
+                    lock.wait(FLUSH_INTERVAL);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+
+    /**
+     * Writes the remaining records and closes the file. Records added
+     * afterwards are ignored.
+     */
+    public void close() throws IOException {
+        synchronized (lock) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            lock.notifyAll();
+        }
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        out.close();
+        if (html != null) {
+            html.close();
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private void writeAll() {
+        while (true) {
+            ByteArrayOutputStream batch;
+            boolean last;
+            synchronized (lock) {
+                try {
+                    if (!closed && (pending.size() < BATCH_SIZE)) {
+                        lock.wait(FLUSH_INTERVAL);
+                    }
+                } catch (InterruptedException e) {
+                    return;
+                }
+                last = closed;
+                if (pending.size() == 0) {
+                    lock.notifyAll();
+                    if (last) {
+                        return;
+                    }
+                    continue;
+                }
+                batch = pending;
+                pending = new ByteArrayOutputStream();
+                pendingData = new DataOutputStream(pending);
+                writing = true;
+            }
+            try {
+                batch.writeTo(out);
+                out.flush();
+                batches++;
+                bytesWritten += batch.size();
+                if (html != null) {
+                    renderBatch(batch);
+                }
+            } catch (IOException e) {
+                synchronized (lock) {
+                    failure = e;
+                    closed = true;
+                }
+                System.err.println("GameEventLog: " + e.getMessage());
+                return;
+            } finally {
+                synchronized (lock) {
+                    writing = false;
+                    lock.notifyAll();
+                }
+            }
+            if (last) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Returns the number of records added
+     */
+    public long getRecords() {
+        return records;
+    }
+
+    /**
+     * Returns the number of times the writer wrote to the file
+     */
+    public long getBatches() {
+        return batches;
+    }
+
+    /**
+     * Returns the number of bytes written to the file
+     */
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    /**
+     * Appends the records of a batch that was just written to the HTML file.
+     * Records are never split between batches.
+     */
+    private void renderBatch(ByteArrayOutputStream batch) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(
+                batch.toByteArray()));
+        if (!started) {
+            in.readInt(); // magic
+            in.readInt(); // format version
+            started = true;
+        }
+        renderRecords(in, html);
+        html.flush();
+    }
+
+    /**
+     * Writes the HTML game log for the records of a log file: the text of
+     * each record in its own <code>pre</code> element, one per line.
+     */
+    public static void render(File log, File html) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new FileInputStream(log)));
+        try {
+            Writer w = new BufferedWriter(new FileWriter(html));
+            try {
+                render(in, w);
+            } finally {
+                w.close();
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    private static void render(DataInputStream in, Writer w)
+            throws IOException {
+        if ((in.readInt() != MAGIC) || (in.readInt() != FORMAT_VERSION)) {
+            throw new IOException("Not a game log");
+        }
+        renderRecords(in, w);
+    }
+
+    private static void renderRecords(DataInputStream in, Writer w)
+            throws IOException {
+        StringBuilder text = new StringBuilder();
+        while (true) {
+            text.setLength(0);
+            try {
+                int kind = in.read();
+                if (kind < 0) {
+                    return;
+                }
+                in.readLong(); // time
+                in.readInt(); // round
+                in.readByte(); // phase
+                if (kind == RECORD_TEXT) {
+                    byte[] bytes = new byte[in.readInt()];
+                    in.readFully(bytes);
+                    text.append(new String(bytes, StandardCharsets.UTF_8));
+                } else if (kind == RECORD_REPORTS) {
+                    int count = in.readInt();
+                    for (int i = 0; i < count; i++) {
+                        text.append(Report.readCompact(in).getText());
+                    }
+                } else {
+                    throw new IOException("Unknown record kind " + kind);
+                }
+            } catch (EOFException e) {
+                // the rest was never written
+                return;
+            }
+            w.write("<pre>");
+            w.write(text.toString());
+            w.write("</pre>");
+            w.write(System.getProperty("line.separator"));
+        }
+    }
+
+    /**
+     * Renders a log file as HTML.
+     * <p>
+     * Usage: <code>GameEventLog log [html]</code>
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: GameEventLog log [html]");
+            System.exit(1);
+        }
+        File log = new File(args[0]);
+        File html = (args.length > 1) ? new File(args[1]) : getHtmlFile(log);
+        render(log, html);
+        System.out.println("Wrote " + html);
+    }
+
+    /**
+     * Returns the file name a log is rendered to by default
+     */
+    public static File getHtmlFile(File log) {
+        String name = log.getName();
+        int dot = name.lastIndexOf('.');
+        return new File(log.getParentFile(), ((dot > 0) ? name.substring(0,
+                dot) : name) + ".html");
+    }
+}
@@ -21,16 +21,19 @@
 
 package megamek.common;
 
-import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.util.Date;
+import java.util.Vector;
 
 import megamek.common.preference.PreferenceManager;
 import megamek.common.util.StringUtil;
 
 /**
+ * The game log a client keeps. What is logged goes to a
+ * {@link GameEventLog} next to the log file, which renders the HTML log file
+ * as it goes.
+ *
  * @author Ben
  * @version
  */
@@ -39,9 +42,14 @@ public class GameLog {
     public static final String LOG_DIR = PreferenceManager
             .getClientPreferences().getLogDirectory();
 
+    /**
+     * The extension of the structured log kept alongside the HTML one
+     */
+    public static final String EVENT_LOG_EXTENSION = ".mmlog";
+
     private File logfile;
 
-    BufferedWriter writer;
+    private GameEventLog events;
 
     /**
      * Creates GameLog named
@@ -59,35 +67,50 @@ public class GameLog {
                 filename = StringUtil.addDateTimeStamp(filename);
             }
             logfile = new File(LOG_DIR + File.separator + filename);
-            // writer = new BufferedWriter(new FileWriter(LOG_DIR +
-            // File.separator + filename, append));
-            writer = new BufferedWriter(new FileWriter(logfile));
+            events = new GameEventLog(getEventLogFile(logfile), logfile);
             append("Log file opened " + new Date().toString()); //$NON-NLS-1$
         } catch (IOException ex) {
-            writer = null;
+            events = null;
             System.err.println("GameLog:" + ex.getMessage());
         }
     }
 
     public void append(String toLog) {
-        // if (writer == null || logfile.length() > maxFilesize) {
-        if (writer == null) {
-            return;
+        append(0, null, toLog);
+    }
+
+    public void append(int round, IGame.Phase phase, String toLog) {
+        if (events != null) {
+            events.append(round, phase, toLog);
         }
-        
-        try {
-            writer.write("<pre>"+toLog+"</pre>");
-            writer.newLine();
-            writer.flush();
-        } catch (IOException ex) {
-            // duhhhh...
-            writer = null;
+    }
+
+    /**
+     * Logs the reports of a phase
+     */
+    public void append(int round, IGame.Phase phase, Vector<Report> reports) {
+        if (events != null) {
+            events.append(round, phase, reports);
         }
     }
 
+    /**
+     * Closes the log, writing out what is still waiting
+     */
     public void close() throws java.io.IOException {
-        if (writer != null) {
-            writer.close();
+        if (events != null) {
+            events.close();
+            events = null;
         }
     }
+
+    /**
+     * Returns the structured log kept for an HTML log file
+     */
+    public static File getEventLogFile(File logfile) {
+        String name = logfile.getName();
+        int dot = name.lastIndexOf('.');
+        return new File(logfile.getParentFile(), ((dot > 0) ? name.substring(
+                0, dot) : name) + EVENT_LOG_EXTENSION);
+    }
 }
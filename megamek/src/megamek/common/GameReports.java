@@ -17,12 +17,31 @@ package megamek.common;
 
 import megamek.common.logging.Logger;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
 import java.io.Serializable;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Vector;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
 
 /**
  * This class is a container for the various reports created by the server
  * during a game.
+ * <p>
+ * Only the latest rounds are kept in memory. Older rounds are written,
+ * serialized and compressed, to a temporary file and read back whenever they
+ * are asked for. A client may also know that a round exists without having
+ * its reports; {@link #has(int)} tells, and the round has to be requested
+ * from the server.
  */
 public class GameReports implements Serializable {
 
@@ -30,37 +49,85 @@ public class GameReports implements Serializable {
      * 
      */
     private static final long serialVersionUID = -2388197938278797669L;
+
+    /**
+     * How many of the latest rounds are kept in memory
+     */
+    private static final int ROUNDS_IN_MEMORY = 3;
+
+    /**
+     * The reports of each round. A round is <code>null</code> when it is
+     * only kept packed or on disk, or when it isn't known here at all.
+     */
     private Vector<Vector<Report>> reports;
 
+    /**
+     * The rounds read from a binary saved game, kept serialized until they
+     * are asked for or moved to disk.
+     */
+    private transient List<byte[]> packedRounds;
+
+    /**
+     * Where in the spill file each round moved to disk starts
+     */
+    private transient Map<Integer, Long> spilledRounds;
+
+    private transient SpillFile spillFile;
+
     GameReports() {
         reports = new Vector<Vector<Report>>();
     }
 
-    public void add(int round, Vector<Report> v) {
+    /**
+     * Creates reports whose rounds are only deserialized when they are first
+     * needed
+     *
+     * @param packedRounds the rounds as written by {@link #packRound(int)}
+     */
+    GameReports(List<byte[]> packedRounds) {
+        reports = new Vector<Vector<Report>>();
+        reports.setSize(packedRounds.size());
+        this.packedRounds = packedRounds;
+        spillOldRounds();
+    }
+
+    public synchronized void add(int round, Vector<Report> v) {
         if (round == 0) {
             // Combine round 0 (deployment) with round one's reports.
             round = 1;
         }
         if (round > reports.size()) {
             // First reports for the round.
+            reports.setSize(round - 1);
             reports.addElement(new Vector<Report>(v));
+            spillOldRounds();
         } else {
             // Already have some reports for this round, so we'll append these
             // new ones.
-            reports.elementAt(round - 1).addAll(new Vector<Report>(v));
+            Vector<Report> old = load(round);
+            if (old == null) {
+                old = new Vector<Report>();
+            }
+            old.addAll(new Vector<Report>(v));
+            store(round, old);
         }
     }
 
     /**
-     *  Get a single round's reports.
+     *  Get a single round's reports. Rounds kept on disk are read back every
+     *  time, so changes to them are lost unless they are stored again with
+     *  {@link #set(int, Vector)}.
+     *
+     *  @return the reports, or <code>null</code> if the round isn't known
+     *          here
      */
-    public Vector<Report> get(int round) {
+    public synchronized Vector<Report> get(int round) {
         if (round == 0) {
             // Round 0 (deployment) reports are lumped in with round one.
             round = 1;
         }
         if (round <= reports.size()) {
-            return reports.elementAt(round - 1);
+            return load(round);
         }
         Exception badRound = new RuntimeException(
                 "ERROR: GameReports.get() was asked for reports of a round [" + round + "] which it does not posses.");
@@ -69,22 +136,259 @@ public class GameReports implements Serializable {
     }
 
     /**
-     *  Get all the reports.
+     *  Get all the reports. Rounds that aren't known here are empty.
+     */
+    public synchronized Vector<Vector<Report>> get() {
+        Vector<Vector<Report>> all = new Vector<Vector<Report>>(reports.size());
+        for (int round = 1; round <= reports.size(); round++) {
+            Vector<Report> v = load(round);
+            all.addElement((v == null) ? new Vector<Report>() : v);
+        }
+        return all;
+    }
+
+    /**
+     * Returns <code>true</code> if the reports of the given round are known
+     * here, in memory or on disk
      */
-    public Vector<Vector<Report>> get() {
-        return reports;
+    public synchronized boolean has(int round) {
+        if (round == 0) {
+            round = 1;
+        }
+        return (round >= 1) && (round <= reports.size())
+                && ((reports.elementAt(round - 1) != null)
+                        || ((packedRounds != null) && (packedRounds.get(round - 1) != null))
+                        || ((spilledRounds != null) && spilledRounds.containsKey(round)));
+    }
+
+    /**
+     * Returns the number of rounds that have reports
+     */
+    public synchronized int size() {
+        return reports.size();
     }
 
     /**
      * Set the reports vector from outside all at once.
      * @param v
      */
-    public void set(Vector<Vector<Report>> v) {
-        reports = v;
+    public synchronized void set(Vector<Vector<Report>> v) {
+        reset();
+        reports = new Vector<Vector<Report>>(v);
+        spillOldRounds();
+    }
+
+    /**
+     * Sets the reports of a single round, e.g. when a client has fetched
+     * them from the server. Rounds before it that aren't known yet are left
+     * empty.
+     */
+    public synchronized void set(int round, Vector<Report> v) {
+        if (round == 0) {
+            round = 1;
+        }
+        if (round > reports.size()) {
+            reports.setSize(round);
+        }
+        store(round, new Vector<Report>(v));
     }
 
-    public void clear() {
+    public synchronized void clear() {
+        reset();
         reports = new Vector<Vector<Report>>();
     }
 
+    /**
+     * Returns the reports of a round in serialized form. Rounds that haven't
+     * been deserialized since they were loaded are returned as they are.
+     */
+    synchronized byte[] packRound(int round) throws IOException {
+        if ((packedRounds != null) && (packedRounds.get(round - 1) != null)) {
+            return packedRounds.get(round - 1);
+        }
+        if ((spilledRounds != null) && spilledRounds.containsKey(round)) {
+            return spillFile.read(spilledRounds.get(round));
+        }
+        Vector<Report> v = reports.elementAt(round - 1);
+        return pack((v == null) ? new Vector<Report>() : v);
+    }
+
+    /**
+     * Returns the reports of the given round from wherever they are kept, or
+     * <code>null</code> if the round isn't known here
+     */
+    private Vector<Report> load(int round) {
+        Vector<Report> v = reports.elementAt(round - 1);
+        if (v != null) {
+            return v;
+        }
+        try {
+            if ((packedRounds != null) && (packedRounds.get(round - 1) != null)) {
+                return unpack(packedRounds.get(round - 1));
+            }
+            if ((spilledRounds != null) && spilledRounds.containsKey(round)) {
+                return unpack(spillFile.read(spilledRounds.get(round)));
+            }
+        } catch (Exception ex) {
+            new Logger().log(getClass(), "load(int)", ex);
+            return new Vector<Report>();
+        }
+        return null;
+    }
+
+    /**
+     * Keeps the reports of the round in memory, dropping any other copy, and
+     * then moves old rounds to disk
+     */
+    private void store(int round, Vector<Report> v) {
+        reports.setElementAt(v, round - 1);
+        if (packedRounds != null) {
+            packedRounds.set(round - 1, null);
+        }
+        if (spilledRounds != null) {
+            spilledRounds.remove(round);
+        }
+        spillOldRounds();
+    }
+
+    /**
+     * Writes the rounds before the ones kept in memory to the spill file. A
+     * round that can't be written stays where it is.
+     */
+    private void spillOldRounds() {
+        for (int round = reports.size() - ROUNDS_IN_MEMORY; round >= 1; round--) {
+            Vector<Report> v = reports.elementAt(round - 1);
+            byte[] packed = (packedRounds == null) ? null : packedRounds.get(round - 1);
+            if ((v == null) && (packed == null)) {
+                continue;
+            }
+            try {
+                if (spillFile == null) {
+                    spillFile = new SpillFile();
+                    spilledRounds = new HashMap<Integer, Long>();
+                }
+                long position = spillFile.write((packed != null) ? packed : pack(v));
+                spilledRounds.put(round, position);
+                reports.setElementAt(null, round - 1);
+                if (packed != null) {
+                    packedRounds.set(round - 1, null);
+                }
+            } catch (IOException ex) {
+                new Logger().log(getClass(), "spillOldRounds()", ex);
+                return;
+            }
+        }
+    }
+
+    private void reset() {
+        packedRounds = null;
+        spilledRounds = null;
+        if (spillFile != null) {
+            spillFile.close();
+            spillFile = null;
+        }
+    }
+
+    private static byte[] pack(Vector<Report> v) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(v);
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Vector<Report> unpack(byte[] packed) throws IOException,
+            ClassNotFoundException {
+        ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(
+                packed));
+        try {
+            return (Vector<Report>) in.readObject();
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Puts all rounds back into memory before the reports are written
+     * anywhere else, without keeping them there
+     */
+    private synchronized Object writeReplace() {
+        GameReports copy = new GameReports();
+        copy.reports = get();
+        return copy;
+    }
+
+    /**
+     * A temporary file that packed rounds are appended to, compressed. It is
+     * deleted when the reports are cleared or the program ends.
+     */
+    private static class SpillFile {
+        private final File path;
+        private final RandomAccessFile file;
+        private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        private final Inflater inflater = new Inflater();
+
+        SpillFile() throws IOException {
+            path = File.createTempFile("megamek-reports", ".tmp");
+            path.deleteOnExit();
+            file = new RandomAccessFile(path, "rw");
+        }
+
+        /**
+         * Appends the data and returns where it starts
+         */
+        long write(byte[] data) throws IOException {
+            deflater.reset();
+            deflater.setInput(data);
+            deflater.finish();
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(
+                    data.length / 4);
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                int n = deflater.deflate(buffer);
+                compressed.write(buffer, 0, n);
+            }
+            long position = file.length();
+            file.seek(position);
+            file.writeInt(data.length);
+            file.writeInt(compressed.size());
+            file.write(compressed.toByteArray());
+            return position;
+        }
+
+        byte[] read(long position) throws IOException {
+            file.seek(position);
+            byte[] data = new byte[file.readInt()];
+            byte[] compressed = new byte[file.readInt()];
+            file.readFully(compressed);
+            inflater.reset();
+            inflater.setInput(compressed);
+            try {
+                int n = 0;
+                while (n < data.length) {
+                    int read = inflater.inflate(data, n, data.length - n);
+                    if ((read == 0) && (inflater.finished() || inflater.needsInput())) {
+                        throw new IOException("Truncated report round");
+                    }
+                    n += read;
+                }
+            } catch (DataFormatException ex) {
+                throw new IOException(ex);
+            }
+            return data;
+        }
+
+        void close() {
+            deflater.end();
+            inflater.end();
+            try {
+                file.close();
+            } catch (IOException ex) {
+                // nothing more to do with it
+            }
+            path.delete();
+        }
+    }
+
 }
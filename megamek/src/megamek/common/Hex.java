@@ -46,6 +46,7 @@ public class Hex implements IHex, Serializable {
     private String theme;
     private int fireTurn;
     private Coords coords;
+    private transient int modificationCount;
     /** Constructs clear, plain hex at level 0. */
     public Hex() {
         this(0);
@@ -127,6 +128,7 @@ public class Hex implements IHex, Serializable {
      */
     public void setLevel(int level) {
         this.level = level;
+        modificationCount++;
     }
 
     /*
@@ -415,6 +417,7 @@ public class Hex implements IHex, Serializable {
     public void addTerrain(ITerrain terrain) {
         terrains[terrain.getType()] = terrain;
         hsTerrains.add(terrain.getType());
+        modificationCount++;
     }
 
     /*
@@ -425,6 +428,7 @@ public class Hex implements IHex, Serializable {
     public void removeTerrain(int type) {
         terrains[type] = null;
         hsTerrains.remove(type);
+        modificationCount++;
     }
 
     /*
@@ -437,6 +441,7 @@ public class Hex implements IHex, Serializable {
             terrains[i] = null;
         }
         hsTerrains.clear();
+        modificationCount++;
     }
 
     /*
@@ -603,6 +608,10 @@ public class Hex implements IHex, Serializable {
         fireTurn = 0;
     }
 
+    public void setFireTurn(int fireTurn) {
+        this.fireTurn = fireTurn;
+    }
+
     /**
      * get any modifiers to a bog-down roll in this hex. Takes the worst
      * modifier.
@@ -649,4 +658,12 @@ public class Hex implements IHex, Serializable {
     	coords = c;
     }
 
+    /*
+     * (non-Javadoc)
+     *
+     * @see megamek.common.IHex#getModificationCount()
+     */
+    public int getModificationCount() {
+        return modificationCount;
+    }
 }
@@ -413,4 +413,21 @@ public interface IBoard {
     public abstract void resetStoredElevation();
 
     boolean containsBridges();
+
+    /**
+     * Returns the version of the hex at the given coordinates. The version
+     * changes whenever the hex is replaced, changed in place or the building
+     * in it is updated, so anything derived from the hex can be kept for as
+     * long as its version stays the same.
+     *
+     * @param c the Coords.
+     * @return the version of the hex, or -1 if the board doesn't contain the
+     *         coords
+     */
+    public abstract long getHexVersion(Coords c);
+
+    /**
+     * Returns the cache of terrain line of sight effects for this board.
+     */
+    public abstract LosCache getLosCache();
 }
\ No newline at end of file
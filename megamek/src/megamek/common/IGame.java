@@ -734,6 +734,41 @@ public interface IGame {
      */
     public abstract List<Entity> getEntitiesVector(Coords c, boolean ignore);
 
+    /**
+     * Returns the entities that are in at least one hex within the given
+     * distance of the center. Units that take up several hexes are only
+     * returned once.
+     *
+     * @param center the hex to search around
+     * @param range the greatest distance from the center, in hexes
+     * @param ignore whether units that can't be targeted are returned too
+     */
+    public abstract List<Entity> getEntitiesWithin(Coords center, int range,
+            boolean ignore);
+
+    /**
+     * Returns <code>true</code> if there are dropships on the ground, which
+     * block line of sight like buildings
+     */
+    public abstract boolean hasGroundedDropships();
+
+    /**
+     * Returns a number that changes whenever a dropship lands, lifts off or
+     * moves on the ground, or one on the ground enters or leaves the game
+     */
+    public abstract int getGroundedDropshipsVersion();
+
+    /**
+     * Returns the targetable enemies of the given entity that are in at least
+     * one hex within the given distance of the center.
+     *
+     * @param center the hex to search around
+     * @param range the greatest distance from the center, in hexes
+     * @param currentEntity the <code>Entity</code> whose enemies are needed
+     */
+    public abstract List<Entity> getEnemyEntitiesWithin(Coords center,
+            int range, Entity currentEntity);
+
     /**
      * Returns a Vector of the gun emplacements at the given coordinates.
      */
@@ -1156,6 +1191,14 @@ public interface IGame {
      */
     public abstract void setForceVictory(boolean forceVictory);
 
+    /**
+     * Returns the state of the seeded random number generators when the game
+     * was saved, or <code>null</code> if they weren't seeded
+     */
+    public abstract long[] getRandomState();
+
+    public abstract void setRandomState(long[] randomState);
+
     /**
      * Adds the given reports vector to the GameReport collection.
      *
@@ -1170,6 +1213,23 @@ public interface IGame {
      */
     public abstract Vector<Report> getReports(int r);
 
+    /**
+     * Returns <code>true</code> if the reports of the given round are known,
+     * as opposed to having to be requested from the server.
+     *
+     * @param r Round number
+     */
+    public boolean hasReports(int r);
+
+    /**
+     * Sets the reports of a single round, e.g. after they were requested from
+     * the server.
+     *
+     * @param r Round number
+     * @param v Vector of reports
+     */
+    public void setReports(int r, Vector<Report> v);
+
     /**
      * Returns a vector of all the reports.
      */
@@ -292,4 +292,10 @@ public interface IHex extends Cloneable {
     public abstract Coords getCoords();
 
     public abstract void setCoords(Coords c);
+
+    /**
+     * Returns a number that changes whenever the level or the terrains of
+     * this hex are changed in place.
+     */
+    public abstract int getModificationCount();
 }
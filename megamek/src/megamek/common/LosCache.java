@@ -0,0 +1,176 @@
+/*
+ * MegaMek - Copyright (C) 2016 The MegaMek Team
+ *
+ *  This program is free software; you can redistribute it and/or modify it
+ *  under the terms of the GNU General Public License as published by the Free
+ *  Software Foundation; either version 2 of the License, or (at your option)
+ *  any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ *  or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ *  for more details.
+ */
+
+package megamek.common;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Remembers the effects of the terrain between two hexes on line of sight,
+ * so that the same hex pair at the same heights doesn't have to be traced
+ * hex by hex again. An entry stays valid as long as none of the hexes on the
+ * line have changed, as told by {@link IBoard#getHexVersion(Coords)}.
+ * <p>
+ * Only the terrain part of <code>LosEffects</code> is kept; the modifiers
+ * that depend on the attacking and target units are still worked out from it
+ * on every call.
+ */
+public class LosCache {
+
+    /**
+     * The cache is dropped as a whole when it grows beyond this many entries
+     */
+    private static final int MAX_ENTRIES = 50000;
+
+    private final IBoard board;
+
+    private final ConcurrentMap<Key, Entry> entries = new ConcurrentHashMap<Key, Entry>();
+
+    LosCache(IBoard board) {
+        this.board = board;
+    }
+
+    /**
+     * Returns a copy of the line of sight effects stored for the given
+     * attack, or <code>null</code> if there are none or the terrain has
+     * changed since. On success the minimum water depth of the attack is
+     * updated just like tracing the line would have.
+     */
+    LosEffects get(Key key, LosEffects.AttackInfo ai) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        for (int i = 0; i < entry.hexes.length; i++) {
+            if (board.getHexVersion(entry.hexes[i]) != entry.versions[i]) {
+                entries.remove(key, entry);
+                return null;
+            }
+        }
+        ai.minimumWaterDepth = entry.minimumWaterDepth;
+        return entry.los.duplicate();
+    }
+
+    /**
+     * Stores the line of sight effects calculated for the attack
+     */
+    void put(Key key, LosEffects.AttackInfo ai, LosEffects los) {
+        if (entries.size() >= MAX_ENTRIES) {
+            entries.clear();
+        }
+        // Tracing the line in either direction, divided or not, must not
+        // touch any hex we don't check
+        Set<Coords> line = new LinkedHashSet<Coords>();
+        line.addAll(Coords.intervening(ai.attackPos, ai.targetPos));
+        line.addAll(Coords.intervening(ai.attackPos, ai.targetPos, true));
+        line.addAll(Coords.intervening(ai.targetPos, ai.attackPos, true));
+        Coords[] hexes = line.toArray(new Coords[line.size()]);
+        long[] versions = new long[hexes.length];
+        for (int i = 0; i < hexes.length; i++) {
+            versions[i] = board.getHexVersion(hexes[i]);
+        }
+        entries.put(key, new Entry(hexes, versions, los.duplicate(),
+                ai.minimumWaterDepth));
+    }
+
+    /**
+     * Drops all entries
+     */
+    public void clear() {
+        entries.clear();
+    }
+
+    /**
+     * Everything about an attack that the terrain effects on line of sight
+     * depend on
+     */
+    static final class Key {
+        private final Coords attackPos;
+        private final Coords targetPos;
+        private final int attackAbsHeight;
+        private final int targetAbsHeight;
+        private final int attackHeight;
+        private final int targetHeight;
+        private final int minimumWaterDepth;
+        private final int flags;
+
+        Key(LosEffects.AttackInfo ai, boolean diagramLos,
+                boolean partialCover, boolean deadZones) {
+            attackPos = ai.attackPos;
+            targetPos = ai.targetPos;
+            attackAbsHeight = ai.attackAbsHeight;
+            targetAbsHeight = ai.targetAbsHeight;
+            attackHeight = ai.attackHeight;
+            targetHeight = ai.targetHeight;
+            minimumWaterDepth = ai.minimumWaterDepth;
+            boolean[] bits = { ai.attUnderWater, ai.attInWater, ai.attOnLand,
+                    ai.targetUnderWater, ai.targetInWater, ai.targetOnLand,
+                    ai.underWaterCombat, ai.targetEntity, ai.targetInfantry,
+                    ai.targetIsMech, ai.attackerIsMech, ai.attOffBoard,
+                    diagramLos, partialCover, deadZones };
+            int value = 0;
+            for (int i = 0; i < bits.length; i++) {
+                if (bits[i]) {
+                    value |= 1 << i;
+                }
+            }
+            flags = value;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return (attackAbsHeight == other.attackAbsHeight)
+                    && (targetAbsHeight == other.targetAbsHeight)
+                    && (attackHeight == other.attackHeight)
+                    && (targetHeight == other.targetHeight)
+                    && (minimumWaterDepth == other.minimumWaterDepth)
+                    && (flags == other.flags)
+                    && attackPos.equals(other.attackPos)
+                    && targetPos.equals(other.targetPos);
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = attackPos.hashCode();
+            hash = (31 * hash) + targetPos.hashCode();
+            hash = (31 * hash) + attackAbsHeight;
+            hash = (31 * hash) + targetAbsHeight;
+            hash = (31 * hash) + attackHeight;
+            hash = (31 * hash) + targetHeight;
+            return (31 * hash) + flags;
+        }
+    }
+
+    private static final class Entry {
+        final Coords[] hexes;
+        final long[] versions;
+        final LosEffects los;
+        final int minimumWaterDepth;
+
+        Entry(Coords[] hexes, long[] versions, LosEffects los,
+                int minimumWaterDepth) {
+            this.hexes = hexes;
+            this.versions = versions;
+            this.los = los;
+            this.minimumWaterDepth = minimumWaterDepth;
+        }
+    }
+}
@@ -529,7 +529,36 @@ public class LosEffects {
             return los;
         }
 
-        if(game.getOptions().booleanOption("tacops_dead_zones") && isDeadZone(game, ai)) {
+        boolean deadZones = game.getOptions().booleanOption("tacops_dead_zones");
+        boolean diagramLos = game.getOptions().booleanOption("tacops_LOS1");
+        boolean partialCover = game.getOptions().booleanOption("tacops_partial_cover");
+
+        // Grounded dropships block line of sight like buildings, but they
+        // can move without changing any hex
+        LosCache cache = game.hasGroundedDropships() ? null : game.getBoard()
+                .getLosCache();
+        LosCache.Key key = null;
+        if (cache != null) {
+            key = new LosCache.Key(ai, diagramLos, partialCover, deadZones);
+            LosEffects cached = cache.get(key, ai);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        LosEffects finalLoS = traceLos(game, ai, diagramLos, partialCover,
+                deadZones);
+        if (cache != null) {
+            cache.put(key, ai, finalLoS);
+        }
+        return finalLoS;
+    }
+
+    /**
+     * Traces the line of sight of the attack hex by hex
+     */
+    private static LosEffects traceLos(IGame game, AttackInfo ai,
+            boolean diagramLos, boolean partialCover, boolean deadZones) {
+        if(deadZones && isDeadZone(game, ai)) {
             LosEffects los = new LosEffects();
             los.blocked = true;
             los.blockedByHill = true;
@@ -538,9 +567,7 @@ public class LosEffects {
             los.targetLoc = ai.targetPos;
             return los;
         }
-        
-        boolean diagramLos = game.getOptions().booleanOption("tacops_LOS1");
-        boolean partialCover = game.getOptions().booleanOption("tacops_partial_cover");
+
         double degree = ai.attackPos.degree(ai.targetPos);
         LosEffects finalLoS;
         if (degree % 60 == 30) {
@@ -561,6 +588,46 @@ public class LosEffects {
         return finalLoS;
     }
 
+    /**
+     * Returns a copy of these effects that can be changed without affecting
+     * this one.
+     */
+    LosEffects duplicate() {
+        LosEffects los = new LosEffects();
+        los.blocked = blocked;
+        los.deadZone = deadZone;
+        los.infProtected = infProtected;
+        los.hasLoS = hasLoS;
+        los.plantedFields = plantedFields;
+        los.heavyIndustrial = heavyIndustrial;
+        los.lightWoods = lightWoods;
+        los.heavyWoods = heavyWoods;
+        los.ultraWoods = ultraWoods;
+        los.lightSmoke = lightSmoke;
+        los.heavySmoke = heavySmoke;
+        los.screen = screen;
+        los.softBuildings = softBuildings;
+        los.hardBuildings = hardBuildings;
+        los.buildingLevelsOrHexes = buildingLevelsOrHexes;
+        los.blockedByHill = blockedByHill;
+        los.blockedByWater = blockedByWater;
+        los.targetCover = targetCover;
+        los.attackerCover = attackerCover;
+        los.thruBldg = thruBldg;
+        los.targetLoc = targetLoc;
+        los.damagableCoverTypePrimary = damagableCoverTypePrimary;
+        los.damagableCoverTypeSecondary = damagableCoverTypeSecondary;
+        los.coverBuildingPrimary = coverBuildingPrimary;
+        los.coverBuildingSecondary = coverBuildingSecondary;
+        los.coverDropshipPrimary = coverDropshipPrimary;
+        los.coverDropshipSecondary = coverDropshipSecondary;
+        los.coverLocPrimary = coverLocPrimary;
+        los.coverLocSecondary = coverLocSecondary;
+        los.minimumWaterDepth = minimumWaterDepth;
+        los.arcedShot = arcedShot;
+        return los;
+    }
+
     /**
      * Returns ToHitData indicating the modifiers to fire for the specified LOS
      * effects data.
@@ -36,6 +36,7 @@ public abstract class MMRandom {
     public static final int R_SUN = 0;
     public static final int R_CRYPTO = 1;
     public static final int R_POOL36 = 2;
+    public static final int R_SPLITMIX = 3;
 
     /**
      * Gives you the type asked for, defaulting to SunRandom if there are any
@@ -49,6 +50,8 @@ public abstract class MMRandom {
                     return new MMRandom.CryptoRandom();
                 case R_POOL36:
                     return new MMRandom.Pool36Random();
+                case R_SPLITMIX:
+                    return new MMRandom.SplitMixRandom(randomSeed());
                 case R_SUN:
                 default:
                     return new MMRandom.SunRandom();
@@ -62,6 +65,33 @@ public abstract class MMRandom {
         }
     }
 
+    /**
+     * Gives you a generator whose numbers only depend on the seed, for dice
+     * that have to be rolled the same way again.
+     */
+    public static MMRandom seeded(long seed) {
+        return new MMRandom.SplitMixRandom(seed);
+    }
+
+    /**
+     * Returns a seed that is different every time
+     */
+    static long randomSeed() {
+        return mixSeed(System.nanoTime(), System.currentTimeMillis());
+    }
+
+    /**
+     * Derives a seed from another one, so that every value of the salt gives
+     * an unrelated sequence of numbers. This is the SplitMix64 mixing
+     * function.
+     */
+    public static long mixSeed(long seed, long salt) {
+        long z = seed + ((salt + 1) * 0x9E3779B97F4A7C15L);
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
     /**
      * Simulates six-sided die rolls.
      * 
@@ -124,7 +154,15 @@ public abstract class MMRandom {
      * Uses com.sun.java.util.collections.Random
      */
     static class SunRandom extends MMRandom {
-        Random random = new Random();
+        Random random;
+
+        SunRandom() {
+            random = new Random();
+        }
+
+        SunRandom(long seed) {
+            random = new Random(seed);
+        }
 
         @Override
         public int randomInt(int maxValue) {
@@ -163,6 +201,78 @@ public abstract class MMRandom {
         }
     }
 
+    /**
+     * A fast generator that gives the same numbers again for the same seed:
+     * xoshiro256** with its state set up by SplitMix64. Its state can be read
+     * and restored, so a saved game goes on rolling the numbers it would have
+     * rolled, and it can be split into generators of its own.
+     */
+    static class SplitMixRandom extends MMRandom {
+        private final long[] state = new long[4];
+
+        SplitMixRandom(long seed) {
+            long x = seed;
+            for (int i = 0; i < state.length; i++) {
+                x += 0x9E3779B97F4A7C15L;
+                long z = x;
+                z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+                z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+                state[i] = z ^ (z >>> 31);
+            }
+        }
+
+        SplitMixRandom(long[] state) {
+            setState(state);
+        }
+
+        synchronized long nextLong() {
+            long result = Long.rotateLeft(state[1] * 5, 7) * 9;
+            long t = state[1] << 17;
+            state[2] ^= state[0];
+            state[3] ^= state[1];
+            state[1] ^= state[2];
+            state[0] ^= state[3];
+            state[2] ^= t;
+            state[3] = Long.rotateLeft(state[3], 45);
+            return result;
+        }
+
+        /**
+         * Works like <code>java.util.Random#nextInt(int)</code>, so every
+         * value is equally likely
+         */
+        @Override
+        synchronized int randomInt(int maxValue) {
+            if (maxValue <= 0) {
+                throw new IllegalArgumentException(
+                        "maxValue must be positive, not " + maxValue);
+            }
+            int bits;
+            int value;
+            do {
+                bits = (int) (nextLong() >>> 33);
+                value = bits % maxValue;
+            } while (((bits - value) + (maxValue - 1)) < 0);
+            return value;
+        }
+
+        /**
+         * Returns a new generator whose numbers are unrelated to the ones of
+         * this one
+         */
+        SplitMixRandom split() {
+            return new SplitMixRandom(nextLong());
+        }
+
+        synchronized long[] getState() {
+            return state.clone();
+        }
+
+        synchronized void setState(long[] newState) {
+            System.arraycopy(newState, 0, state, 0, state.length);
+        }
+    }
+
     /**
      * Behaves like SunRandom for everything but d6(2) calls. Then, it takes
      * numbers from an array of the 36 possible results of two dice, shuffled.
@@ -19,7 +19,6 @@ import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
@@ -863,31 +862,8 @@ public class MechFileParser {
 
         // Check if it's canon; if it is, mark it as such.
         ent.setCanon(false);// Guilty until proven innocent
-        try {
-            if (canonUnitNames == null) {
-                canonUnitNames = new Vector<String>();
-                // init the list.
-                BufferedReader br = null;
-                try {
-                    br = new BufferedReader(new FileReader(new File(
-                            Configuration.docsDir(), FILENAME_OFFICIAL_UNITS)));
-                    String s;
-                    String name;
-                    while ((s = br.readLine()) != null) {
-                        int nIndex1 = s.indexOf('|');
-                        if (nIndex1 > -1) {
-                            name = s.substring(0, nIndex1);
-                            canonUnitNames.addElement(name);
-                        }
-                    }
-                    Collections.sort(canonUnitNames);
-                } catch (FileNotFoundException e) {
-                }
-            }
-        } catch (IOException e) {
-        }
-        int index = Collections.binarySearch(canonUnitNames,
-                ent.getShortNameRaw()); 
+        int index = Collections.binarySearch(getCanonUnitNames(),
+                ent.getShortNameRaw());
         if (index >= 0) {
             ent.setCanon(true);
         }        
@@ -895,6 +871,44 @@ public class MechFileParser {
 
     } // End private void postLoadInit(Entity) throws EntityLoadingException
 
+    /**
+     * Returns the sorted names of the official units, reading them the first
+     * time. Several threads parse units at once while the unit cache is built,
+     * so the list is only shared once it is complete.
+     */
+    private static synchronized Vector<String> getCanonUnitNames() {
+        if (canonUnitNames == null) {
+            Vector<String> names = new Vector<String>();
+            // init the list.
+            BufferedReader br = null;
+            try {
+                br = new BufferedReader(new FileReader(new File(
+                        Configuration.docsDir(), FILENAME_OFFICIAL_UNITS)));
+                String s;
+                String name;
+                while ((s = br.readLine()) != null) {
+                    int nIndex1 = s.indexOf('|');
+                    if (nIndex1 > -1) {
+                        name = s.substring(0, nIndex1);
+                        names.addElement(name);
+                    }
+                }
+            } catch (IOException e) {
+                // without the list, no unit is canon
+            } finally {
+                if (br != null) {
+                    try {
+                        br.close();
+                    } catch (IOException e) {
+                    }
+                }
+            }
+            Collections.sort(names);
+            canonUnitNames = names;
+        }
+        return canonUnitNames;
+    }
+
     public static void main(String[] args) {
         if (args.length == 0) {
             System.out
@@ -979,7 +993,7 @@ public class MechFileParser {
         return entity;
     }
 
-    public static void dispose() {
+    public static synchronized void dispose() {
         canonUnitNames = null;
     }
 }
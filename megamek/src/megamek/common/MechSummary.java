@@ -358,6 +358,19 @@ public class MechSummary implements Serializable {
         
     }
     
+    /**
+     * Sets the unique list of equipment names and how often each appears, as
+     * read back from the unit cache.
+     *
+     * @param names      The names of the equipment.
+     * @param quantities The number of times each name appears.
+     */
+    void setEquipment(Vector<String> names, Vector<Integer> quantities)
+    {
+        equipmentNames = names;
+        equipmentQuantities = quantities;
+    }
+
     public Vector<String> getEquipmentNames()
     {
         return equipmentNames;
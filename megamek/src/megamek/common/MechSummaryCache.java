@@ -15,25 +15,27 @@
 
 package megamek.common;
 
-import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Enumeration;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
-import java.util.Set;
 import java.util.Vector;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 
@@ -63,7 +65,7 @@ public class MechSummaryCache {
 
     static MechSummaryCache m_instance;
     private static boolean disposeInstance = false;
-    private static boolean interrupted = false;
+    private static volatile boolean interrupted = false;
 
     private boolean initialized = false;
     private boolean initializing = false;
@@ -185,9 +187,6 @@ public class MechSummaryCache {
     }
 
     public void loadMechData(boolean ignoreUnofficial) {
-        Vector<MechSummary> vMechs = new Vector<MechSummary>();
-        Set<String> sKnownFiles = new HashSet<String>();
-        long lLastCheck = 0;
         entityVerifier = new EntityVerifier(new File(getUnitCacheDir(),
                 EntityVerifier.CONFIG_FILENAME));
         hFailedFiles = new HashMap<String, String>();
@@ -197,43 +196,14 @@ public class MechSummaryCache {
         loadReport.append("\n");
         loadReport.append("Reading unit files:\n");
 
-        if (!ignoreUnofficial) {
-            File unit_cache_path = new File(getUnitCacheDir(),
-                    FILENAME_UNITS_CACHE);
-            // check the cache
+        File unit_cache_path = new File(getUnitCacheDir(), FILENAME_UNITS_CACHE);
+        String stamp = getCacheStamp();
+        UnitCacheFile cache = null;
+        // check the cache
+        if (unit_cache_path.exists()) {
             try {
-                if (unit_cache_path.exists()
-                        && (unit_cache_path.lastModified() >= megamek.MegaMek.TIMESTAMP)) {
-                    loadReport.append("  Reading from unit cache file...\n");
-                    lLastCheck = unit_cache_path.lastModified();
-                    InputStream istream = new BufferedInputStream(
-                            new FileInputStream(unit_cache_path));
-                    ObjectInputStream fin = new ObjectInputStream(istream);
-                    Integer num_units = (Integer) fin.readObject();
-                    for (int i = 0; i < num_units; i++) {
-                        if (interrupted) {
-                            done();
-                            fin.close();
-                            istream.close();
-                            return;
-                        }
-                        MechSummary ms = (MechSummary) fin.readObject();
-                        // Verify that this file still exists and is older than
-                        // the cache.
-                        File fSource = ms.getSourceFile();
-                        if (fSource.exists()) {
-                            vMechs.addElement(ms);
-                            if (null == ms.getEntryName()) {
-                                sKnownFiles.add(fSource.toString());
-                            } else {
-                                sKnownFiles.add(ms.getEntryName());
-                            }
-                            cacheCount++;
-                        }
-                    }
-                    fin.close();
-                    istream.close();
-                }
+                loadReport.append("  Reading from unit cache file...\n");
+                cache = UnitCacheFile.read(unit_cache_path, stamp);
             } catch (Exception e) {
                 loadReport.append("  Unable to load unit cache: ")
                         .append(e.getMessage()).append("\n");
@@ -241,9 +211,54 @@ public class MechSummaryCache {
             }
         }
 
-        // load any changes since the last check time
-        boolean bNeedsUpdate = loadMechsFromDirectory(vMechs, sKnownFiles,
-                lLastCheck, Configuration.unitsDir(), ignoreUnofficial);
+        // find the unit files, taking the summaries of those that haven't
+        // changed from the cache
+        List<UnitFile> unitFiles = new ArrayList<UnitFile>();
+        List<Object> reportParts = new ArrayList<Object>();
+        findUnitFiles(cache, Configuration.unitsDir(), ignoreUnofficial,
+                unitFiles, reportParts);
+
+        // parse the others
+        try {
+            parseUnitFiles(unitFiles);
+        } catch (InterruptedException e) {
+            interrupted = true;
+        }
+        if (interrupted) {
+            done();
+            return;
+        }
+
+        // merge the results in the order the files were found, so they don't
+        // depend on which file was parsed first
+        Vector<MechSummary> vMechs = new Vector<MechSummary>();
+        for (Object part : reportParts) {
+            if (part instanceof UnitFile) {
+                UnitFile unitFile = (UnitFile) part;
+                loadReport.append(unitFile.report);
+                if (unitFile.summary != null) {
+                    vMechs.addElement(unitFile.summary);
+                    if (unitFile.cached) {
+                        cacheCount++;
+                    } else if (unitFile.entryName == null) {
+                        fileCount++;
+                    } else {
+                        zipCount++;
+                    }
+                } else if (unitFile.failure != null) {
+                    hFailedFiles.put((unitFile.entryName == null)
+                            ? unitFile.file.toString() : unitFile.entryName,
+                            unitFile.failure);
+                }
+            } else if (part instanceof LoadedCount) {
+                loadReport.append("  ...loaded ")
+                        .append(((LoadedCount) part).count()).append(" files.\n");
+            } else {
+                loadReport.append(part);
+            }
+        }
+        boolean bNeedsUpdate = (cache == null) || (fileCount > 0)
+                || (zipCount > 0) || (cacheCount != cache.size());
 
         // convert to array
         m_data = new MechSummary[vMechs.size()];
@@ -276,10 +291,11 @@ public class MechSummaryCache {
             }
         }
 
-        // save updated cache back to disk
-        if (bNeedsUpdate) {
+        // save updated cache back to disk; without the unofficial units it
+        // would be incomplete
+        if (bNeedsUpdate && !ignoreUnofficial) {
             try {
-                saveCache();
+                saveCache(stamp);
             } catch (Exception e) {
                 loadReport.append("  Unable to save mech cache\n");
             }
@@ -322,18 +338,20 @@ public class MechSummaryCache {
         }
     }
 
-    private void saveCache() throws Exception {
+    private void saveCache(String stamp) throws Exception {
         loadReport.append("Saving unit cache.\n");
         File unit_cache_path = new File(getUnitCacheDir(), FILENAME_UNITS_CACHE);
-        ObjectOutputStream wr = new ObjectOutputStream(
-                new BufferedOutputStream(new FileOutputStream(unit_cache_path)));
-        Integer length = new Integer(m_data.length);
-        wr.writeObject(length);
-        for (MechSummary element : m_data) {
-            wr.writeObject(element);
-        }
-        wr.flush();
-        wr.close();
+        UnitCacheFile.write(unit_cache_path, stamp, Arrays.asList(m_data));
+    }
+
+    /**
+     * The cached summaries are only used by the same version of MegaMek with
+     * the same unit verifier options, as both change the summaries.
+     */
+    private String getCacheStamp() {
+        File options = new File(getUnitCacheDir(),
+                EntityVerifier.CONFIG_FILENAME);
+        return megamek.MegaMek.VERSION + " " + options.lastModified();
     }
 
     private MechSummary getSummary(Entity e, File f, String entry) {
@@ -472,29 +490,28 @@ public class MechSummaryCache {
     }
 
     /**
-     * Loading a complete mech object for each summary is a bear and should be
-     * changed, but it lets me use the existing parsers
+     * Finds the unit files below a directory. Files that are in the cache
+     * and haven't changed get their summary from it, the others are left for
+     * {@link #parseUnitFiles(List)}.
      *
-     * @param vMechs
-     * @param sKnownFiles
-     * @param lLastCheck
-     * @param fDir
-     * @return
+     * @param cache       The cached summaries, or <code>null</code>.
+     * @param fDir        The directory to look in.
+     * @param unitFiles   The unit files found, in order.
+     * @param reportParts The load report for the directory; strings, the
+     *                    unit files whose reports go there once they are
+     *                    parsed, and the number of files loaded.
      */
-    private boolean loadMechsFromDirectory(Vector<MechSummary> vMechs,
-            Set<String> sKnownFiles, long lLastCheck, File fDir,
-            boolean ignoreUnofficial) {
-        boolean bNeedsUpdate = false;
-        loadReport.append("  Looking in ").append(fDir.getPath())
-                .append("...\n");
-        int thisDirectoriesFileCount = 0;
+    private void findUnitFiles(UnitCacheFile cache, File fDir,
+            boolean ignoreUnofficial, List<UnitFile> unitFiles,
+            List<Object> reportParts) {
+        reportParts.add("  Looking in " + fDir.getPath() + "...\n");
+        LoadedCount loaded = new LoadedCount();
         String[] sa = fDir.list();
 
         if (sa != null) {
             for (String element : sa) {
                 if (interrupted) {
-                    done();
-                    return false;
+                    return;
                 }
                 File f = new File(fDir, element);
                 if (f.equals(new File(getUnitCacheDir(), FILENAME_UNITS_CACHE))) {
@@ -517,8 +534,8 @@ public class MechSummaryCache {
                         continue;
                     }
                     // recursion is fun
-                    bNeedsUpdate |= loadMechsFromDirectory(vMechs, sKnownFiles,
-                            lLastCheck, f, ignoreUnofficial);
+                    findUnitFiles(cache, f, ignoreUnofficial, unitFiles,
+                            reportParts);
                     continue;
                 }
                 if (f.getName().indexOf('.') == -1) {
@@ -543,149 +560,247 @@ public class MechSummaryCache {
                     continue;
                 }
                 if (f.getName().toLowerCase().endsWith(".zip")) {
-                    bNeedsUpdate |= loadMechsFromZipFile(vMechs, sKnownFiles,
-                            lLastCheck, f);
+                    findUnitsInZipFile(cache, f, unitFiles, reportParts);
                     continue;
                 }
-                if ((f.lastModified() < lLastCheck)
-                        && sKnownFiles.contains(f.toString())) {
-                    continue;
+                UnitFile unitFile = new UnitFile(f, null, null,
+                        f.lastModified());
+                if (cache != null) {
+                    unitFile.summary = cache.get(f, null, unitFile.modified);
+                    unitFile.cached = (unitFile.summary != null);
                 }
-                try {
-                    MechFileParser mfp = new MechFileParser(f);
-                    Entity e = mfp.getEntity();
-                    MechSummary ms = getSummary(e, f, null);
-                    // if this is unit's MechSummary is already known,
-                    // remove it first, so we don't get duplicates
-                    if (sKnownFiles.contains(f.toString())) {
-                        vMechs.removeElement(ms);
-                    }
-                    vMechs.addElement(ms);
-                    sKnownFiles.add(f.toString());
-                    bNeedsUpdate = true;
-                    thisDirectoriesFileCount++;
-                    fileCount++;
-                    Iterator<String> failedEquipment = e.getFailedEquipment();
-                    if (failedEquipment.hasNext()) {
-                        loadReport.append("    Loading from ").append(f)
-                                .append("\n");
-                        while (failedEquipment.hasNext()) {
-                            loadReport
-                                    .append("      Failed to load equipment: ")
-                                    .append(failedEquipment.next())
-                                    .append("\n");
-                        }
-                    }
-                } catch (EntityLoadingException ex) {
-                    loadReport.append("    Loading from ").append(f)
-                            .append("\n");
-                    loadReport.append("***   Unable to load file: ");
-                    StringWriter stringWriter = new StringWriter();
-                    PrintWriter printWriter = new PrintWriter(stringWriter);
-                    ex.printStackTrace(printWriter);
-                    loadReport.append(stringWriter.getBuffer()).append("\n");
-                    hFailedFiles.put(f.toString(), ex.getMessage());
-                    continue;
+                if (!unitFile.cached) {
+                    loaded.files.add(unitFile);
                 }
+                unitFiles.add(unitFile);
+                reportParts.add(unitFile);
             }
         }
 
-        loadReport.append("  ...loaded ").append(thisDirectoriesFileCount)
-                .append(" files.\n");
-
-        return bNeedsUpdate;
+        reportParts.add(loaded);
     }
 
-    private boolean loadMechsFromZipFile(Vector<MechSummary> vMechs,
-            Set<String> sKnownFiles, long lLastCheck, File fZipFile) {
-        boolean bNeedsUpdate = false;
+    /**
+     * Finds the units in a zip file, reading the ones that have to be parsed
+     * into memory.
+     *
+     * @see #findUnitFiles(UnitCacheFile, File, boolean, List, List)
+     */
+    private void findUnitsInZipFile(UnitCacheFile cache, File fZipFile,
+            List<UnitFile> unitFiles, List<Object> reportParts) {
         ZipFile zFile;
-        int thisZipFileCount = 0;
         try {
             zFile = new ZipFile(fZipFile);
         } catch (Exception ex) {
-            loadReport.append("  Unable to load file ")
-                    .append(fZipFile.getName()).append(": ");
             StringWriter stringWriter = new StringWriter();
             PrintWriter printWriter = new PrintWriter(stringWriter);
             ex.printStackTrace(printWriter);
-            loadReport.append(stringWriter.getBuffer()).append("\n");
-            return false;
+            reportParts.add("  Unable to load file " + fZipFile.getName()
+                    + ": " + stringWriter.getBuffer() + "\n");
+            return;
         }
-        loadReport.append("  Looking in zip file ").append(fZipFile.getPath())
-                .append("...\n");
+        reportParts.add("  Looking in zip file " + fZipFile.getPath()
+                + "...\n");
+        LoadedCount loaded = new LoadedCount();
+        // every entry is parsed again when the zip file changes
+        long modified = fZipFile.lastModified();
 
         for (Enumeration<?> i = zFile.entries(); i.hasMoreElements();) {
             if (interrupted) {
-                done();
-                try {
-                    zFile.close();
-                    return false;
-                } catch (IOException e) {
-                }
+                break;
             }
             ZipEntry zEntry = (ZipEntry) i.nextElement();
 
             if (zEntry.isDirectory()) {
                 if (zEntry.getName().toLowerCase().equals("unsupported")) {
-                    loadReport
-                            .append("  Do not place special 'unsupported' type folders in zip files, they must\n    be uncompressed directories to work properly.  Note that you may place\n    zip files inside of 'unsupported' type folders, though.\n");
+                    reportParts
+                            .add("  Do not place special 'unsupported' type folders in zip files, they must\n    be uncompressed directories to work properly.  Note that you may place\n    zip files inside of 'unsupported' type folders, though.\n");
                 }
                 continue;
             }
             if (zEntry.getName().toLowerCase().endsWith(".txt")) {
                 continue;
             }
-            if ((Math.max(fZipFile.lastModified(), zEntry.getTime()) < lLastCheck)
-                    && sKnownFiles.contains(zEntry.getName())) {
-                continue;
+
+            MechSummary ms = (cache == null) ? null : cache.get(fZipFile,
+                    zEntry.getName(), modified);
+            UnitFile unitFile;
+            if (ms != null) {
+                unitFile = new UnitFile(fZipFile, zEntry.getName(), null,
+                        modified);
+                unitFile.summary = ms;
+                unitFile.cached = true;
+            } else {
+                byte[] data = null;
+                try {
+                    data = readFully(zFile.getInputStream(zEntry));
+                } catch (IOException ex) {
+                    // left for parsing, which reports it
+                    data = new byte[0];
+                }
+                unitFile = new UnitFile(fZipFile, zEntry.getName(), data,
+                        modified);
+                loaded.files.add(unitFile);
             }
+            unitFiles.add(unitFile);
+            reportParts.add(unitFile);
+        }
 
+        try {
+            zFile.close();
+        } catch (Exception ex) {
+            // whatever.
+        }
+
+        reportParts.add(loaded);
+    }
+
+    private static byte[] readFully(InputStream in) throws IOException {
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Loading a complete mech object for each summary is a bear and should be
+     * changed, but it lets me use the existing parsers
+     * <p>
+     * Parses the unit files that had no summary in the cache, using a thread
+     * per processor. Each file keeps its own summary and report, so the
+     * results can be merged in the order the files were found.
+     *
+     * @throws InterruptedException if loading is stopped while waiting for
+     *                              the files to be parsed
+     */
+    private void parseUnitFiles(List<UnitFile> unitFiles)
+            throws InterruptedException {
+        List<UnitFile> toParse = new ArrayList<UnitFile>();
+        for (UnitFile unitFile : unitFiles) {
+            if (unitFile.summary == null) {
+                toParse.add(unitFile);
+            }
+        }
+        int threads = Math.min(Runtime.getRuntime().availableProcessors(),
+                toParse.size());
+        if (threads <= 1) {
+            for (UnitFile unitFile : toParse) {
+                if (interrupted) {
+                    return;
+                }
+                parse(unitFile);
+            }
+            return;
+        }
+
+        final AtomicInteger threadCount = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(threads,
+                new ThreadFactory() {
+                    public Thread newThread(Runnable r) {
+                        Thread thread = new Thread(r, "Mech Cache Parser "
+                                + threadCount.incrementAndGet());
+                        thread.setDaemon(true);
+                        thread.setPriority(Thread.NORM_PRIORITY - 1);
+                        return thread;
+                    }
+                });
+        try {
+            List<Future<?>> results = new ArrayList<Future<?>>(toParse.size());
+            for (final UnitFile unitFile : toParse) {
+                results.add(pool.submit(new Runnable() {
+                    public void run() {
+                        if (!interrupted) {
+                            parse(unitFile);
+                        }
+                    }
+                }));
+            }
+            for (Future<?> result : results) {
+                try {
+                    result.get();
+                } catch (ExecutionException e) {
+                    // as if the file had been parsed on this thread
+                    if (e.getCause() instanceof RuntimeException) {
+                        throw (RuntimeException) e.getCause();
+                    }
+                    throw (Error) e.getCause();
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Parses a unit file and summarizes the unit. This runs on several
+     * threads at once, so it only changes the unit file.
+     */
+    private void parse(UnitFile unitFile) {
+        StringBuilder report = new StringBuilder();
+        if (unitFile.entryName == null) {
+            File f = unitFile.file;
+            try {
+                MechFileParser mfp = new MechFileParser(f);
+                Entity e = mfp.getEntity();
+                MechSummary ms = getSummary(e, f, null);
+                ms.setModified(unitFile.modified);
+                unitFile.summary = ms;
+                Iterator<String> failedEquipment = e.getFailedEquipment();
+                if (failedEquipment.hasNext()) {
+                    report.append("    Loading from ").append(f).append("\n");
+                    while (failedEquipment.hasNext()) {
+                        report.append("      Failed to load equipment: ")
+                                .append(failedEquipment.next()).append("\n");
+                    }
+                }
+            } catch (EntityLoadingException ex) {
+                report.append("    Loading from ").append(f).append("\n");
+                report.append("***   Unable to load file: ");
+                StringWriter stringWriter = new StringWriter();
+                PrintWriter printWriter = new PrintWriter(stringWriter);
+                ex.printStackTrace(printWriter);
+                report.append(stringWriter.getBuffer()).append("\n");
+                unitFile.failure = ex.getMessage();
+            }
+        } else {
             try {
                 MechFileParser mfp = new MechFileParser(
-                        zFile.getInputStream(zEntry), zEntry.getName());
+                        new ByteArrayInputStream(unitFile.data),
+                        unitFile.entryName);
                 Entity e = mfp.getEntity();
-                MechSummary ms = getSummary(e, fZipFile, zEntry.getName());
-                vMechs.addElement(ms);
-                sKnownFiles.add(zEntry.getName());
-                bNeedsUpdate = true;
-                thisZipFileCount++;
-                zipCount++;
+                MechSummary ms = getSummary(e, unitFile.file,
+                        unitFile.entryName);
+                ms.setModified(unitFile.modified);
+                unitFile.summary = ms;
                 Iterator<String> failedEquipment = e.getFailedEquipment();
                 if (failedEquipment.hasNext()) {
-                    loadReport.append("    Loading from zip file")
-                            .append(" >> ").append(zEntry.getName())
-                            .append("\n");
+                    report.append("    Loading from zip file").append(" >> ")
+                            .append(unitFile.entryName).append("\n");
                     while (failedEquipment.hasNext()) {
-                        loadReport.append("      Failed to load equipment: ")
+                        report.append("      Failed to load equipment: ")
                                 .append(failedEquipment.next()).append("\n");
                     }
                 }
             } catch (Exception ex) {
-                loadReport.append("    Loading from zip file").append(" >> ")
-                        .append(zEntry.getName()).append("\n");
-                loadReport.append("      Unable to load file: ");
+                report.append("    Loading from zip file").append(" >> ")
+                        .append(unitFile.entryName).append("\n");
+                report.append("      Unable to load file: ");
                 StringWriter stringWriter = new StringWriter();
                 PrintWriter printWriter = new PrintWriter(stringWriter);
                 ex.printStackTrace(printWriter);
-                loadReport.append(stringWriter.getBuffer()).append("\n");
-                if (!(ex.getMessage() == null)) {
-                    hFailedFiles.put(zEntry.getName(), ex.getMessage());
-                }
-                continue;
+                report.append(stringWriter.getBuffer()).append("\n");
+                unitFile.failure = ex.getMessage();
             }
         }
-
-        try {
-            zFile.close();
-        } catch (Exception ex) {
-            // whatever.
-        }
-
-        loadReport.append("  ...loaded ").append(thisZipFileCount)
-                .append(" files.\n");
-
-        return bNeedsUpdate;
+        unitFile.data = null;
+        unitFile.report = report.toString();
     }
 
     public int getCacheCount() {
@@ -699,5 +814,51 @@ public class MechSummaryCache {
     public int getZipCount() {
         return zipCount;
     }
+    /**
+     * A unit file, or a unit in a zip file, and what became of it
+     */
+    private static class UnitFile {
+        final File file;
+        final String entryName;
+        final long modified;
+
+        /**
+         * The contents of a unit in a zip file, until it is parsed
+         */
+        byte[] data;
+
+        MechSummary summary;
+        boolean cached;
+        String report = "";
+
+        /**
+         * Why the file couldn't be parsed
+         */
+        String failure;
+
+        UnitFile(File file, String entryName, byte[] data, long modified) {
+            this.file = file;
+            this.entryName = entryName;
+            this.data = data;
+            this.modified = modified;
+        }
+    }
 
+    /**
+     * The files parsed in a directory or zip file, to report how many of
+     * them loaded
+     */
+    private static class LoadedCount {
+        final List<UnitFile> files = new ArrayList<UnitFile>();
+
+        int count() {
+            int count = 0;
+            for (UnitFile unitFile : files) {
+                if (unitFile.summary != null) {
+                    count++;
+                }
+            }
+            return count;
+        }
+    }
 }
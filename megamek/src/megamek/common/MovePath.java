@@ -1191,7 +1191,9 @@ public class MovePath implements Cloneable, Serializable {
     @Override
     public MovePath clone() {
         final MovePath copy = new MovePath(getGame(), getEntity());
-        copy.steps = new Vector<MoveStep>(steps);
+        // Leave room for the step the path finders add to every clone
+        copy.steps = new Vector<MoveStep>(steps.size() + 1);
+        copy.steps.addAll(steps);
         copy.careful = careful;
         return copy;
     }
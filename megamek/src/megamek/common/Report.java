@@ -15,8 +15,12 @@
 
 package megamek.common;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.io.Serializable;
 import java.util.Enumeration;
+import java.util.Map;
 import java.util.Hashtable;
 import java.util.Vector;
 
@@ -558,6 +562,77 @@ public class Report implements Serializable {
         return false;
     }
 
+    /**
+     * Internal method. Not for typical use.
+     * <p>
+     * Writes the non-transient state of this report in the compact binary
+     * form used by the <code>CompactBinaryMarshaller</code>. This carries
+     * exactly the data that native serialization would send.
+     *
+     * @param out the <code>DataOutput</code> to write to
+     * @throws IOException
+     */
+    public void writeCompact(DataOutput out) throws IOException {
+        out.writeInt(messageId);
+        out.writeInt(indentation);
+        out.writeInt(newlines);
+        writeNullableString(out, tagTranslate);
+        out.writeInt(tagData.size());
+        for (String data : tagData) {
+            writeNullableString(out, data);
+        }
+        out.writeInt(obscuredIndexes.size());
+        for (Map.Entry<Integer, Boolean> entry : obscuredIndexes.entrySet()) {
+            out.writeInt(entry.getKey());
+            out.writeBoolean(entry.getValue());
+        }
+        out.writeInt(obscuredRecipients.size());
+        for (String recipient : obscuredRecipients) {
+            writeNullableString(out, recipient);
+        }
+    }
+
+    /**
+     * Internal method. Not for typical use.
+     * <p>
+     * Reads a report written by {@link #writeCompact(DataOutput)}.
+     *
+     * @param in the <code>DataInput</code> to read from
+     * @return the new <code>Report</code>
+     * @throws IOException
+     */
+    public static Report readCompact(DataInput in) throws IOException {
+        Report r = new Report(in.readInt());
+        r.indentation = in.readInt();
+        r.newlines = in.readInt();
+        r.tagTranslate = readNullableString(in);
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            r.tagData.addElement(readNullableString(in));
+        }
+        count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            r.obscuredIndexes.put(in.readInt(), in.readBoolean());
+        }
+        count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            r.obscuredRecipients.addElement(readNullableString(in));
+        }
+        return r;
+    }
+
+    private static void writeNullableString(DataOutput out, String s)
+            throws IOException {
+        out.writeBoolean(s != null);
+        if (s != null) {
+            out.writeUTF(s);
+        }
+    }
+
+    private static String readNullableString(DataInput in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
     /**
      * Useful for debugging purposes.
      *
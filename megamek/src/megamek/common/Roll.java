@@ -20,6 +20,8 @@
 
 package megamek.common;
 
+import java.util.concurrent.atomic.AtomicLong;
+
 /**
  * Encapsulate all information known about a requested roll. This information
  * can be logged for full statistical analysis and auditing, so hopefully people
@@ -32,7 +34,7 @@ public abstract class Roll {
     /**
      * Make sure that all rolls are uniquely identified.
      */
-    private static long nextId = 1;
+    private static final AtomicLong nextId = new AtomicLong(1);
 
     /**
      * Get the next unique identifier.
@@ -40,7 +42,7 @@ public abstract class Roll {
      * @return the next unique <code>long</code> identifier.
      */
     private static long getNextId() {
-        return nextId++;
+        return nextId.getAndIncrement();
     }
 
     /**
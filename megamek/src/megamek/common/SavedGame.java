@@ -0,0 +1,449 @@
+/*
+ * MegaMek - Copyright (C) 2016 The MegaMek Team
+ *
+ *  This program is free software; you can redistribute it and/or modify it
+ *  under the terms of the GNU General Public License as published by the Free
+ *  Software Foundation; either version 2 of the License, or (at your option)
+ *  any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ *  or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ *  for more details.
+ */
+
+package megamek.common;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectStreamException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import megamek.MegaMek;
+
+import com.thoughtworks.xstream.XStream;
+
+/**
+ * Reads and writes saved games. Games are saved in a binary format that is
+ * split into sections: the board, the entities, the turns, the minefields,
+ * the reports of each round and finally the rest of the game. Each section is
+ * serialized on its own, and the game section only refers to the objects of
+ * the other sections, so the sections can be read one after the other and
+ * the reports of a round are only deserialized when they are first needed.
+ * <p>
+ * The whole file is compressed with gzip, just like the XStream XML saved
+ * games, which can still be loaded and written for import and export.
+ * <p>
+ * The layout after the gzip header is:
+ *
+ * <pre>
+ * int     magic number
+ * int     format version
+ * UTF     MegaMek version that wrote the file
+ * section ...
+ * byte    end of sections
+ * </pre>
+ *
+ * where each section is its type as a byte, the length of its data as an int
+ * and the data.
+ * <p>
+ * The sections hold plain Java serialization, so a binary saved game can only
+ * be read by a MegaMek whose classes are still serialization compatible with
+ * those that wrote it, which in general means the same release. When it
+ * can't be read, the error names the version that wrote it. Games that have
+ * to move between versions are exported as XML with /export, which this
+ * class keeps loading.
+ */
+public class SavedGame {
+
+    private static final int MAGIC = 0x4d4d5347; // "MMSG"
+
+    private static final int FORMAT_VERSION = 1;
+
+    private static final byte SECTION_END = 0;
+    private static final byte SECTION_BOARD = 1;
+    private static final byte SECTION_ENTITIES = 2;
+    private static final byte SECTION_TURNS = 3;
+    private static final byte SECTION_MINEFIELDS = 4;
+    private static final byte SECTION_REPORTS = 5;
+    private static final byte SECTION_GAME = 6;
+
+    private SavedGame() {
+    }
+
+    /**
+     * Serializes the game into a snapshot that can be written to disk later,
+     * even while the game goes on. Has to be called while nobody changes the
+     * game.
+     */
+    public static Snapshot snapshot(IGame game) throws IOException {
+        game.setRandomState(Compute.getRandomState());
+        Snapshot snapshot = new Snapshot();
+        SectionWriter gameWriter = new SectionWriter(game.getBoard());
+        gameWriter.writeSection(game);
+        byte[] gameSection = gameWriter.finish();
+
+        SectionWriter boardWriter = new SectionWriter(game.getBoard());
+        boardWriter.writeSection(game.getBoard());
+        snapshot.add(SECTION_BOARD, boardWriter.finish());
+        snapshot.add(SECTION_ENTITIES,
+                writeAll(game.getBoard(), gameWriter.entities));
+        snapshot.add(SECTION_TURNS, writeAll(game.getBoard(), gameWriter.turns));
+        snapshot.add(SECTION_MINEFIELDS,
+                writeAll(game.getBoard(), gameWriter.minefields));
+        snapshot.add(SECTION_REPORTS, writeReports(gameWriter.reports));
+        snapshot.add(SECTION_GAME, gameSection);
+        return snapshot;
+    }
+
+    /**
+     * Saves the game to the given file in the binary format
+     */
+    public static void save(IGame game, File file) throws IOException {
+        snapshot(game).save(file);
+    }
+
+    /**
+     * Saves the game to the given file as XStream XML
+     */
+    public static void exportXml(IGame game, File file) throws IOException {
+        game.setRandomState(Compute.getRandomState());
+        OutputStream out = new GZIPOutputStream(new FileOutputStream(file));
+        try {
+            createXStream().toXML(game, out);
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Loads a saved game in either the binary format or XStream XML
+     */
+    public static IGame load(File file) throws IOException,
+            ClassNotFoundException {
+        InputStream in = new BufferedInputStream(new GZIPInputStream(
+                new FileInputStream(file)));
+        try {
+            in.mark(4);
+            DataInputStream din = new DataInputStream(in);
+            int magic = din.readInt();
+            if (magic != MAGIC) {
+                in.reset();
+                return (IGame) createXStream().fromXML(in);
+            }
+            return read(din);
+        } finally {
+            in.close();
+        }
+    }
+
+    private static XStream createXStream() {
+        XStream xstream = new XStream();
+        // older saved games still have the old position cache of the game
+        xstream.omitField(Game.class, "entityPosLookup");
+        return xstream;
+    }
+
+    private static IGame read(DataInputStream in) throws IOException,
+            ClassNotFoundException {
+        int version = in.readInt();
+        if (version > FORMAT_VERSION) {
+            throw new IOException("Saved game format " + version
+                    + " is newer than this version of MegaMek can read");
+        }
+        String writtenBy = in.readUTF();
+        try {
+            return readSections(in);
+        } catch (ObjectStreamException ex) {
+            throw incompatible(writtenBy, ex);
+        } catch (ClassNotFoundException ex) {
+            throw incompatible(writtenBy, ex);
+        }
+    }
+
+    /**
+     * Returns the error for a saved game whose classes don't match ours
+     */
+    private static IOException incompatible(String writtenBy, Exception ex) {
+        return new IOException("Saved game was written by MegaMek "
+                + writtenBy + " and can't be read by MegaMek "
+                + MegaMek.VERSION + "; export it as XML with the version"
+                + " that wrote it to load it here", ex);
+    }
+
+    private static IGame readSections(DataInputStream in) throws IOException,
+            ClassNotFoundException {
+        Map<Byte, List<Object>> sections = new HashMap<Byte, List<Object>>();
+        IGame game = null;
+        byte type;
+        while ((type = in.readByte()) != SECTION_END) {
+            byte[] data = new byte[in.readInt()];
+            in.readFully(data);
+            switch (type) {
+                case SECTION_REPORTS:
+                    sections.put(type, readReports(data));
+                    break;
+                case SECTION_GAME:
+                    game = (IGame) new SectionReader(data, sections).readObject();
+                    break;
+                default:
+                    // board, entities, turns and minefields
+                    SectionReader reader = new SectionReader(data, sections);
+                    List<Object> objects = new ArrayList<Object>();
+                    int count = (type == SECTION_BOARD) ? 1 : reader.readInt();
+                    for (int i = 0; i < count; i++) {
+                        objects.add(reader.readObject());
+                    }
+                    sections.put(type, objects);
+                    break;
+            }
+        }
+        if (game == null) {
+            throw new IOException("Saved game has no game section");
+        }
+        return game;
+    }
+
+    private static byte[] writeAll(IBoard board, List<?> objects)
+            throws IOException {
+        SectionWriter writer = new SectionWriter(board);
+        writer.writeInt(objects.size());
+        for (Object o : objects) {
+            writer.writeSection(o);
+        }
+        return writer.finish();
+    }
+
+    private static byte[] writeReports(List<GameReports> reports)
+            throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(reports.size());
+        for (GameReports r : reports) {
+            out.writeInt(r.size());
+            for (int round = 1; round <= r.size(); round++) {
+                byte[] packed = r.packRound(round);
+                out.writeInt(packed.length);
+                out.write(packed);
+            }
+        }
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    private static List<Object> readReports(byte[] data) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+        List<Object> reports = new ArrayList<Object>();
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            List<byte[]> rounds = new ArrayList<byte[]>();
+            int size = in.readInt();
+            for (int round = 0; round < size; round++) {
+                byte[] packed = new byte[in.readInt()];
+                in.readFully(packed);
+                rounds.add(packed);
+            }
+            reports.add(new GameReports(rounds));
+        }
+        return reports;
+    }
+
+    /**
+     * A saved game that has been serialized but not yet written anywhere
+     */
+    public static class Snapshot {
+        private final List<Byte> types = new ArrayList<Byte>();
+        private final List<byte[]> sections = new ArrayList<byte[]>();
+
+        private void add(byte type, byte[] data) {
+            types.add(type);
+            sections.add(data);
+        }
+
+        /**
+         * Returns the size of the serialized sections before compression
+         */
+        public long getSize() {
+            long size = 0;
+            for (byte[] data : sections) {
+                size += data.length;
+            }
+            return size;
+        }
+
+        /**
+         * Compresses the saved game and writes it to the stream, which is
+         * left open
+         */
+        public void writeTo(OutputStream stream) throws IOException {
+            GZIPOutputStream gzo = new GZIPOutputStream(stream, 65536);
+            DataOutputStream out = new DataOutputStream(gzo);
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeUTF(MegaMek.VERSION);
+            for (int i = 0; i < sections.size(); i++) {
+                out.writeByte(types.get(i));
+                out.writeInt(sections.get(i).length);
+                out.write(sections.get(i));
+            }
+            out.writeByte(SECTION_END);
+            out.flush();
+            gzo.finish();
+        }
+
+        /**
+         * Writes the saved game to the given file
+         */
+        public void save(File file) throws IOException {
+            OutputStream out = new BufferedOutputStream(new FileOutputStream(
+                    file));
+            try {
+                writeTo(out);
+            } finally {
+                out.close();
+            }
+        }
+    }
+
+    /**
+     * Stands in for an object that is written in another section
+     */
+    private static class SectionRef implements Serializable {
+        private static final long serialVersionUID = 3517286129384921751L;
+
+        final byte section;
+        final int index;
+
+        SectionRef(byte section, int index) {
+            this.section = section;
+            this.index = index;
+        }
+    }
+
+    /**
+     * Serializes the objects of one section, replacing every object that
+     * belongs to another section with a reference to it. The objects found
+     * that way are collected, so the game section tells what the other
+     * sections have to hold.
+     */
+    private static class SectionWriter extends ObjectOutputStream {
+        private final ByteArrayOutputStream bytes;
+        private final IBoard board;
+        private Object current;
+
+        final List<Entity> entities = new ArrayList<Entity>();
+        final List<GameTurn> turns = new ArrayList<GameTurn>();
+        final List<Minefield> minefields = new ArrayList<Minefield>();
+        final List<GameReports> reports = new ArrayList<GameReports>();
+        private final Map<Object, SectionRef> refs = new IdentityHashMap<Object, SectionRef>();
+
+        SectionWriter(IBoard board) throws IOException {
+            this(new ByteArrayOutputStream(), board);
+        }
+
+        private SectionWriter(ByteArrayOutputStream bytes, IBoard board)
+                throws IOException {
+            super(bytes);
+            this.bytes = bytes;
+            this.board = board;
+            enableReplaceObject(true);
+        }
+
+        /**
+         * Writes one of the objects that make up this section
+         */
+        void writeSection(Object o) throws IOException {
+            current = o;
+            writeObject(o);
+            current = null;
+        }
+
+        byte[] finish() throws IOException {
+            close();
+            return bytes.toByteArray();
+        }
+
+        @Override
+        protected Object replaceObject(Object obj) throws IOException {
+            if ((obj == current) || (obj == null)) {
+                return obj;
+            }
+            SectionRef ref = refs.get(obj);
+            if (ref != null) {
+                return ref;
+            }
+            if (obj == board) {
+                ref = new SectionRef(SECTION_BOARD, 0);
+            } else if (obj instanceof GameReports) {
+                ref = new SectionRef(SECTION_REPORTS, reports.size());
+                reports.add((GameReports) obj);
+            } else if (current instanceof IGame) {
+                // only the game section hands objects to the other sections;
+                // they keep their own references to each other
+                if (obj instanceof Entity) {
+                    ref = new SectionRef(SECTION_ENTITIES, entities.size());
+                    entities.add((Entity) obj);
+                } else if (obj instanceof GameTurn) {
+                    ref = new SectionRef(SECTION_TURNS, turns.size());
+                    turns.add((GameTurn) obj);
+                } else if (obj instanceof Minefield) {
+                    ref = new SectionRef(SECTION_MINEFIELDS, minefields.size());
+                    minefields.add((Minefield) obj);
+                }
+            }
+            if (ref == null) {
+                return obj;
+            }
+            refs.put(obj, ref);
+            return ref;
+        }
+    }
+
+    /**
+     * Deserializes the objects of one section, putting back the objects of
+     * the sections read before it
+     */
+    private static class SectionReader extends ObjectInputStream {
+        private final Map<Byte, List<Object>> sections;
+
+        SectionReader(byte[] data, Map<Byte, List<Object>> sections)
+                throws IOException {
+            super(new ByteArrayInputStream(data));
+            this.sections = sections;
+            enableResolveObject(true);
+        }
+
+        @Override
+        protected Object resolveObject(Object obj) throws IOException {
+            if (!(obj instanceof SectionRef)) {
+                return obj;
+            }
+            SectionRef ref = (SectionRef) obj;
+            List<Object> objects = sections.get(ref.section);
+            if ((objects == null) || (ref.index >= objects.size())) {
+                throw new IOException("Saved game refers to object "
+                        + ref.index + " of missing section " + ref.section);
+            }
+            return objects.get(ref.index);
+        }
+    }
+}
@@ -0,0 +1,413 @@
+/*
+ * MegaMek - Copyright (C) 2016 The MegaMek Team
+ *
+ *  This program is free software; you can redistribute it and/or modify it
+ *  under the terms of the GNU General Public License as published by the Free
+ *  Software Foundation; either version 2 of the License, or (at your option)
+ *  any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ *  or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ *  for more details.
+ */
+
+package megamek.common;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Vector;
+
+/**
+ * The file the unit summaries are kept in between runs.
+ * <p>
+ * The file starts with a header holding a stamp, which tells whether the
+ * summaries were made by the same version of MegaMek with the same settings.
+ * Then come all strings the records use, each only once, as names of
+ * equipment, engines and so on repeat a lot. One record per summary
+ * follows: the unit file, the name of the entry for units in zip files, the
+ * modification time of the unit file when it was read and the length of the
+ * rest of the record, which holds the summary itself.
+ * <p>
+ * Reading the file only indexes the records. A summary is decoded when it is
+ * asked for with the modification time it was read with, so the records of
+ * changed unit files are skipped without being decoded.
+ */
+class UnitCacheFile {
+
+    /**
+     * "MMUC"
+     */
+    private static final int MAGIC = 0x4D4D5543;
+
+    /**
+     * Changed whenever the layout of the records changes
+     */
+    private static final int FORMAT_VERSION = 1;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8"); //$NON-NLS-1$
+
+    private final ByteBuffer buffer;
+
+    /**
+     * Every string is stored once, records refer to them by index
+     */
+    private final String[] strings;
+
+    /**
+     * The position of each record's summary, by {@link #key(File, String)}
+     */
+    private final Map<String, Record> records = new HashMap<String, Record>();
+
+    private UnitCacheFile(ByteBuffer buffer, String[] strings) {
+        this.buffer = buffer;
+        this.strings = strings;
+    }
+
+    /**
+     * Reads the index of a cache file.
+     *
+     * @param file  The cache file.
+     * @param stamp The stamp the file must have been written with.
+     * @return The cache, or <code>null</code> if it was written with another
+     * stamp or in another format.
+     * @throws IOException if the file can't be read or is damaged
+     */
+    static UnitCacheFile read(File file, String stamp) throws IOException {
+        // The file is read in one go rather than mapped, as a mapped file
+        // can't be replaced on some systems until the mapping is collected.
+        ByteBuffer buffer;
+        FileInputStream in = new FileInputStream(file);
+        try {
+            FileChannel channel = in.getChannel();
+            buffer = ByteBuffer.allocate((int) channel.size());
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) {
+                    throw new IOException("Unexpected end of unit cache");
+                }
+            }
+            buffer.flip();
+        } finally {
+            in.close();
+        }
+
+        try {
+            if ((buffer.getInt() != MAGIC)
+                    || (buffer.getInt() != FORMAT_VERSION)
+                    || !stamp.equals(readString(buffer))) {
+                return null;
+            }
+            String[] strings = new String[buffer.getInt()];
+            for (int i = 0; i < strings.length; i++) {
+                strings[i] = readString(buffer);
+            }
+            UnitCacheFile cache = new UnitCacheFile(buffer, strings);
+            int count = buffer.getInt();
+            for (int i = 0; i < count; i++) {
+                String source = cache.getString(buffer);
+                String entryName = cache.getString(buffer);
+                long modified = buffer.getLong();
+                int length = buffer.getInt();
+                cache.records.put(key(new File(source), entryName),
+                        new Record(modified, buffer.position()));
+                buffer.position(buffer.position() + length);
+            }
+            return cache;
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Unit cache is damaged");
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Unit cache is damaged");
+        }
+    }
+
+    /**
+     * @return The number of summaries in the file.
+     */
+    int size() {
+        return records.size();
+    }
+
+    /**
+     * Decodes the summary of a unit, if the unit file hasn't changed since it
+     * was read.
+     *
+     * @param source    The unit file, or the zip file the unit is in.
+     * @param entryName The name of the unit in the zip file, or
+     *                  <code>null</code>.
+     * @param modified  The modification time of the file.
+     * @return The summary, or <code>null</code> if there is none for the file
+     * or the file has changed.
+     */
+    MechSummary get(File source, String entryName, long modified) {
+        Record record = records.get(key(source, entryName));
+        if ((record == null) || (record.modified != modified)) {
+            return null;
+        }
+        ByteBuffer in = buffer.duplicate();
+        in.position(record.position);
+        try {
+            MechSummary ms = decode(in);
+            ms.setSourceFile(source);
+            ms.setEntryName(entryName);
+            ms.setModified(modified);
+            return ms;
+        } catch (BufferUnderflowException e) {
+            return null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Writes a cache file. The modification time of each summary must be the
+     * one of its unit file.
+     *
+     * @param file      The cache file.
+     * @param stamp     The stamp to read the file with.
+     * @param summaries The summaries.
+     */
+    static void write(File file, String stamp,
+            Collection<MechSummary> summaries) throws IOException {
+        // the records come after the strings they use, so they are collected
+        // first, and each record is collected so its length can be written
+        // before it
+        Map<String, Integer> strings = new LinkedHashMap<String, Integer>();
+        ByteArrayOutputStream records = new ByteArrayOutputStream();
+        DataOutputStream recordsOut = new DataOutputStream(records);
+        ByteArrayOutputStream record = new ByteArrayOutputStream(512);
+        DataOutputStream recordOut = new DataOutputStream(record);
+        for (MechSummary ms : summaries) {
+            record.reset();
+            encode(recordOut, ms, strings);
+            recordOut.flush();
+            putString(recordsOut, ms.getSourceFile().getPath(), strings);
+            putString(recordsOut, ms.getEntryName(), strings);
+            recordsOut.writeLong(ms.getModified());
+            recordsOut.writeInt(record.size());
+            record.writeTo(recordsOut);
+        }
+        recordsOut.flush();
+
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(file)));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            writeString(out, stamp);
+            out.writeInt(strings.size());
+            for (String s : strings.keySet()) {
+                writeString(out, s);
+            }
+            out.writeInt(summaries.size());
+            records.writeTo(out);
+        } finally {
+            out.close();
+        }
+    }
+
+    private static String key(File source, String entryName) {
+        return (entryName == null) ? source.getPath() : source.getPath()
+                + '\0' + entryName;
+    }
+
+    private static void encode(DataOutputStream out, MechSummary ms,
+            Map<String, Integer> strings) throws IOException {
+        putString(out, ms.getName(), strings);
+        putString(out, ms.getChassis(), strings);
+        putString(out, ms.getModel(), strings);
+        putString(out, ms.getUnitType(), strings);
+        putString(out, ms.getUnitSubType(), strings);
+        out.writeInt(ms.getYear());
+        out.writeInt(ms.getType());
+        out.writeFloat(ms.getTons());
+        out.writeFloat(ms.getSuitWeight());
+        out.writeInt(ms.getBV());
+        out.writeInt(ms.getGMBV());
+        out.writeInt(ms.getRHBV());
+        out.writeInt(ms.getRHGMBV());
+        out.writeLong(ms.getCost());
+        out.writeLong(ms.getUnloadedCost());
+        out.writeLong(ms.getAlternateCost());
+        putString(out, ms.getLevel(), strings);
+        out.writeBoolean(ms.isCanon());
+        out.writeBoolean(ms.isClan());
+        out.writeBoolean(ms.isSupport());
+        out.writeInt(ms.getWalkMp());
+        out.writeInt(ms.getRunMp());
+        out.writeInt(ms.getJumpMp());
+        out.writeInt(ms.getTotalArmor());
+        out.writeInt(ms.getTotalInternal());
+        out.writeInt(ms.getInternalsType());
+        out.writeInt(ms.getCockpitType());
+        putString(out, ms.getEngineName(), strings);
+        out.writeInt(ms.getGyroType());
+        putString(out, ms.getMyomerName(), strings);
+        putInts(out, ms.getArmorTypes());
+        putInts(out, ms.getArmorTechTypes());
+        Vector<String> names = ms.getEquipmentNames();
+        Vector<Integer> quantities = ms.getEquipmentQuantities();
+        if ((names == null) || (quantities == null)) {
+            out.writeInt(-1);
+        } else {
+            out.writeInt(names.size());
+            for (int i = 0; i < names.size(); i++) {
+                putString(out, names.get(i), strings);
+                out.writeInt(quantities.get(i));
+            }
+        }
+    }
+
+    private MechSummary decode(ByteBuffer in) {
+        MechSummary ms = new MechSummary();
+        ms.setName(getString(in));
+        ms.setChassis(getString(in));
+        ms.setModel(getString(in));
+        ms.setUnitType(getString(in));
+        ms.setUnitSubType(getString(in));
+        ms.setYear(in.getInt());
+        ms.setType(in.getInt());
+        ms.setTons(in.getFloat());
+        ms.setSuitWeight(in.getFloat());
+        ms.setBV(in.getInt());
+        ms.setGMBV(in.getInt());
+        ms.setRHBV(in.getInt());
+        ms.setRHGMBV(in.getInt());
+        ms.setCost(in.getLong());
+        ms.setUnloadedCost(in.getLong());
+        ms.setAlternateCost(in.getLong());
+        ms.setLevel(getString(in));
+        ms.setCanon(in.get() != 0);
+        ms.setClan(in.get() != 0);
+        ms.setSupport(in.get() != 0);
+        ms.setWalkMp(in.getInt());
+        ms.setRunMp(in.getInt());
+        ms.setJumpMp(in.getInt());
+        ms.setTotalArmor(in.getInt());
+        ms.setTotalInternal(in.getInt());
+        ms.setInternalsType(in.getInt());
+        ms.setCockpitType(in.getInt());
+        ms.setEngineName(getString(in));
+        ms.setGyroType(in.getInt());
+        ms.setMyomerName(getString(in));
+        int[] armorTypes = getInts(in);
+        if (armorTypes != null) {
+            ms.setArmorType(armorTypes);
+        }
+        ms.setArmorTypes(armorTypes);
+        ms.setArmorTechTypes(getInts(in));
+        int count = in.getInt();
+        if (count >= 0) {
+            Vector<String> names = new Vector<String>(count);
+            Vector<Integer> quantities = new Vector<Integer>(count);
+            for (int i = 0; i < count; i++) {
+                names.add(getString(in));
+                quantities.add(in.getInt());
+            }
+            ms.setEquipment(names, quantities);
+        }
+        return ms;
+    }
+
+    /**
+     * Writes a reference to a string, adding it to the strings if it is new
+     */
+    private static void putString(DataOutputStream out, String s,
+            Map<String, Integer> strings) throws IOException {
+        if (s == null) {
+            out.writeInt(-1);
+            return;
+        }
+        Integer index = strings.get(s);
+        if (index == null) {
+            index = strings.size();
+            strings.put(s, index);
+        }
+        out.writeInt(index);
+    }
+
+    private String getString(ByteBuffer in) {
+        int index = in.getInt();
+        if (index < 0) {
+            return null;
+        }
+        if (index >= strings.length) {
+            throw new IllegalArgumentException("No string " + index);
+        }
+        return strings[index];
+    }
+
+    private static void writeString(DataOutputStream out, String s)
+            throws IOException {
+        if (s == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = s.getBytes(UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0) {
+            return null;
+        }
+        if (length > in.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        String s = new String(in.array(), in.arrayOffset() + in.position(),
+                length, UTF_8);
+        in.position(in.position() + length);
+        return s;
+    }
+
+    private static void putInts(DataOutputStream out, int[] values)
+            throws IOException {
+        if (values == null) {
+            out.writeInt(-1);
+            return;
+        }
+        out.writeInt(values.length);
+        for (int value : values) {
+            out.writeInt(value);
+        }
+    }
+
+    private static int[] getInts(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0) {
+            return null;
+        }
+        if (length > in.remaining() / 4) {
+            throw new BufferUnderflowException();
+        }
+        int[] values = new int[length];
+        for (int i = 0; i < length; i++) {
+            values[i] = in.getInt();
+        }
+        return values;
+    }
+
+    private static class Record {
+        final long modified;
+        final int position;
+
+        Record(long modified, int position) {
+            this.modified = modified;
+            this.position = position;
+        }
+    }
+}
@@ -35,9 +35,17 @@ public class Logger {
         this.verbosity = verbosity;
     }
 
+    /**
+     * Returns true if messages of the given level are logged. Check this
+     * before building a message that is expensive to describe.
+     */
+    public boolean isLoggable(LogLevel level) {
+        return level.getLevel() <= verbosity.getLevel();
+    }
+
     public void log(Class<?> callingClass, String methodName, LogLevel level,
                     String msg) {
-        if (level.getLevel() > verbosity.getLevel()) {
+        if (!isLoggable(level)) {
             return;
         }
         StringBuilder out = new StringBuilder(DateFormat.getDateTimeInstance().format(new Date()));
@@ -49,22 +57,38 @@ public class Logger {
     }
 
     public void log(Class<?> callingClass, String methodName, LogLevel level, StringBuilder msg) {
+        if ((msg == null) || !isLoggable(level)) {
+            return;
+        }
         log(callingClass, methodName, level, msg.toString());
     }
 
+    /**
+     * Logs a message built by {@link String#format(String, Object...)}. The
+     * message is only formatted if the level is logged, so pass the objects to
+     * describe as arguments rather than their descriptions.
+     */
+    public void log(Class<?> callingClass, String methodName, LogLevel level,
+                    String format, Object... args) {
+        if (!isLoggable(level)) {
+            return;
+        }
+        log(callingClass, methodName, level, String.format(format, args));
+    }
+
     public void log(Class<?> callingClass, String methodName, String msg) {
         log(callingClass, methodName, LogLevel.DEBUG, msg);
     }
 
     public void log(Class<?> callingClass, String methodName, StringBuilder msg) {
-        log(callingClass, methodName, msg.toString());
+        log(callingClass, methodName, LogLevel.DEBUG, msg);
     }
 
     public void log(Class<?> callingClass, String methodName, LogLevel level, Throwable t) {
         if (t == null) {
             return;
         }
-        if (level.getLevel() > verbosity.getLevel()) {
+        if (!isLoggable(level)) {
             return;
         }
         StringBuilder msg = new StringBuilder(t.getMessage());
@@ -14,8 +14,6 @@
 
 package megamek.common.net;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
@@ -25,8 +23,7 @@ import java.net.SocketException;
 import java.util.Enumeration;
 import java.util.LinkedList;
 import java.util.Vector;
-import java.util.zip.GZIPInputStream;
-import java.util.zip.GZIPOutputStream;
+import java.util.zip.Inflater;
 
 import megamek.common.net.marshall.PacketMarshaller;
 import megamek.common.net.marshall.PacketMarshallerFactory;
@@ -77,6 +74,12 @@ public abstract class AbstractConnection implements IConnection {
      */
     private long bytesReceived;
 
+    /**
+     * Packets sent and received, per command
+     */
+    private TrafficStatistics sentTraffic = new TrafficStatistics();
+    private TrafficStatistics receivedTraffic = new TrafficStatistics();
+
     /**
      * Queue of <code>Packets</code> to send
      */
@@ -110,9 +113,14 @@ public abstract class AbstractConnection implements IConnection {
     protected PacketMarshaller marshaller;
 
     /**
-     * Indicates the need to compress sent data
+     * Decides which sent packets are compressed
      */
-    private boolean zipData = true;
+    private CompressionPolicy compressionPolicy = CompressionPolicy.ADAPTIVE_GZIP;
+
+    /**
+     * Inflater for received packets; only used by the receiving thread
+     */
+    private Inflater inflater;
 
     /**
      * Creates new client (connection from client to server) connection
@@ -154,7 +162,7 @@ public abstract class AbstractConnection implements IConnection {
      * 
      * @return the type of the marshalling used to send packets
      */
-    protected int getMarshallingType() {
+    public int getMarshallingType() {
         return marshallingType;
     }
 
@@ -163,7 +171,7 @@ public abstract class AbstractConnection implements IConnection {
      * 
      * @param marshallingType new marhalling type
      */
-    protected void setMarshallingType(int marshallingType) {
+    public synchronized void setMarshallingType(int marshallingType) {
         PacketMarshaller pm = marshallerFactory.getMarshaller(marshallingType);
         assert (pm != null) : "Unknown marshalling type";
         this.marshallingType = marshallingType;
@@ -179,7 +187,7 @@ public abstract class AbstractConnection implements IConnection {
         if (!open) {
             if (socket == null) {
                 try {
-                    socket = new Socket(host, port);
+                    socket = createSocket(host, port);
                 } catch (Exception e) {
                     return false;
                 }
@@ -189,6 +197,18 @@ public abstract class AbstractConnection implements IConnection {
         return true;
     }
 
+    /**
+     * Creates the socket of a client connection
+     *
+     * @param host target host
+     * @param port target port
+     * @return the connected socket
+     * @throws IOException
+     */
+    protected Socket createSocket(String host, int port) throws IOException {
+        return new Socket(host, port);
+    }
+
     /**
      * Closes the socket and shuts down the receiver and sender threads
      */
@@ -250,7 +270,7 @@ public abstract class AbstractConnection implements IConnection {
      * @return <code>true</code> if this connection compress the sent data
      */
     public boolean isCompressed() {
-        return zipData;
+        return compressionPolicy != CompressionPolicy.NONE;
     }
 
     /**
@@ -259,14 +279,48 @@ public abstract class AbstractConnection implements IConnection {
      * @param compress
      */
     public void setCompression(boolean compress) {
-        zipData = compress;
+        setCompressionPolicy(compress ? CompressionPolicy.ADAPTIVE_GZIP
+                : CompressionPolicy.NONE);
+    }
+
+    /**
+     * Returns the policy deciding which sent packets are compressed
+     * 
+     * @return the compression policy of this connection
+     */
+    public CompressionPolicy getCompressionPolicy() {
+        return compressionPolicy;
+    }
+
+    /**
+     * Sets the policy deciding which sent packets are compressed
+     * 
+     * @param policy the new compression policy
+     */
+    public synchronized void setCompressionPolicy(CompressionPolicy policy) {
+        assert (policy != null) : "No compression policy";
+        compressionPolicy = policy;
     }
 
     /**
      * Adds a packet to the send queue to be send on a seperate thread.
      */
     public synchronized void send(Packet packet) {
-        sendQueue.addPacket(new SendPacket(packet));
+        send(EncodedPacket.encode(packet, marshallingType, compressionPolicy));
+    }
+
+    /**
+     * Adds an already encoded packet to the send queue. The packet must have
+     * been encoded with this connection's marshalling and compression policy.
+     */
+    public synchronized void send(EncodedPacket packet) {
+        if (packet == null) {
+            return;
+        }
+        bytesSent += packet.getData().length;
+        sentTraffic.count(packet.getCommand(), packet.getRawLength(),
+                packet.getData().length);
+        sendQueue.addPacket(packet);
         // Send right now
         flush();
     }
@@ -274,9 +328,10 @@ public abstract class AbstractConnection implements IConnection {
     /**
      * Send packet now; This is the blocking call.
      */
-    public void sendNow(SendPacket packet) {
+    public void sendNow(EncodedPacket packet) {
         try {
-            sendNetworkPacket(packet.getData(), packet.isCompressed());
+            sendNetworkPacket(packet.getMarshallingType(), packet.getData(),
+                    packet.getCompression());
             debugLastFewCommandsSent.push(packet.getCommand());
         } catch (Exception e) {
             e.printStackTrace();
@@ -310,6 +365,24 @@ public abstract class AbstractConnection implements IConnection {
         return bytesReceived;
     }
 
+    /**
+     * Returns the sizes of the sent packets, per command
+     * 
+     * @return the sizes of the sent packets, per command
+     */
+    public TrafficStatistics getSentTraffic() {
+        return sentTraffic;
+    }
+
+    /**
+     * Returns the sizes of the received packets, per command
+     * 
+     * @return the sizes of the received packets, per command
+     */
+    public TrafficStatistics getReceivedTraffic() {
+        return receivedTraffic;
+    }
+
     /**
      * Adds the specified connection listener to receive connection events from
      * connection.
@@ -335,7 +408,7 @@ public abstract class AbstractConnection implements IConnection {
      * @param ex <code>Exception</code>
      * @param packet <code>Packet</code>
      */
-    protected void reportSendException(Exception ex, SendPacket packet) {
+    protected void reportSendException(Exception ex, EncodedPacket packet) {
         System.err.print(getConnectionTypeAbbrevation());
         System.err.print(" error sending command #");
         System.err.print(packet.getCommand()); 
@@ -475,7 +548,7 @@ public abstract class AbstractConnection implements IConnection {
      * the non-thread-safe send queue.
      */
     public synchronized void flush() {
-        SendPacket packet = null;
+        EncodedPacket packet = null;
         try {
             while ((packet = sendQueue.getPacket()) != null) {
                 processPacket(packet);
@@ -496,16 +569,17 @@ public abstract class AbstractConnection implements IConnection {
         Packet packet = null;
         byte[] data = np.getData();
         bytesReceived += data.length;
-        ByteArrayInputStream bis = new ByteArrayInputStream(data);
-        InputStream in;
-        if (np.isCompressed()) {
-            in = new GZIPInputStream(bis);
-        } else {
-            in = bis;
+        if ((np.getCompression() >= CompressionPolicy.CODEC_DEFLATE)
+                && (inflater == null)) {
+            inflater = new Inflater();
         }
-        packet = pm.unmarshall(in);
+        byte[] raw = CompressionPolicy.decompress(np.getCompression(), data,
+                inflater);
+        packet = pm.unmarshall(raw);
         if (packet != null) {
             debugLastFewCommandsReceived.push(packet.getCommand());
+            receivedTraffic.count(packet.getCommand(), raw.length,
+                    data.length);
             processConnectionEvent(new PacketReceivedEvent(
                     AbstractConnection.this, packet));
         }
@@ -514,7 +588,7 @@ public abstract class AbstractConnection implements IConnection {
     /**
      * process a packet to be sent
      */
-    protected void processPacket(SendPacket packet) throws Exception {
+    protected void processPacket(EncodedPacket packet) throws Exception {
         sendNow(packet);
     }
 
@@ -529,12 +603,13 @@ public abstract class AbstractConnection implements IConnection {
     /**
      * Sends the data must not block for too long
      * 
+     * @param marshallingType marshalling type the data was written with
      * @param data data to send
-     * @param zipped should the data be compressed
+     * @param compression codec the data was compressed with
      * @throws Exception
      */
-    protected abstract void sendNetworkPacket(byte[] data, boolean zipped)
-            throws Exception;
+    protected abstract void sendNetworkPacket(int marshallingType, byte[] data,
+            int compression) throws Exception;
 
     /**
      * Wrapper around a <code>LinkedList</code> for keeping a queue of packets
@@ -542,11 +617,11 @@ public abstract class AbstractConnection implements IConnection {
      */
     static class SendQueue {
 
-        private LinkedList<SendPacket> queue = 
-        		new LinkedList<SendPacket>();
+        private LinkedList<EncodedPacket> queue = 
+        		new LinkedList<EncodedPacket>();
         private boolean finished = false;
 
-        public void addPacket(SendPacket packet) {
+        public void addPacket(EncodedPacket packet) {
             queue.add(packet);
         }
 
@@ -560,7 +635,7 @@ public abstract class AbstractConnection implements IConnection {
          * 
          * @return the first available packet in the queue or null if none
          */
-        public SendPacket getPacket() {
+        public EncodedPacket getPacket() {
             if (!finished) {
                 return queue.poll();
             } 
@@ -576,8 +651,8 @@ public abstract class AbstractConnection implements IConnection {
 
         public void reportContents() {
             System.err.print("Contents of Send Queue: ");
-            for (SendPacket p : queue) {
-                System.err.print(p.command);
+            for (EncodedPacket p : queue) {
+                System.err.print(p.getCommand());
             }
             System.err.println();
         }
@@ -607,48 +682,6 @@ public abstract class AbstractConnection implements IConnection {
         }
     }
 
-    private class SendPacket implements INetworkPacket {
-        byte[] data;
-        boolean zipped = false;
-        int command;
-
-        public SendPacket(Packet packet) {
-            command = packet.getCommand();
-            ByteArrayOutputStream bos = new ByteArrayOutputStream();
-            OutputStream out;
-            try {
-                if (zipData && packet.getData() != null) {
-                    out = new GZIPOutputStream(bos);
-                    zipped = true;
-                } else {
-                    out = bos;
-                }
-                marshaller.marshall(packet, out);
-                out.close();
-                data = bos.toByteArray();
-                bytesSent += data.length;
-            } catch (Exception e) {
-                e.printStackTrace();
-            }
-        }
-
-        public int getMarshallingType() {
-            return marshallingType;
-        }
-
-        public byte[] getData() {
-            return data;
-        }
-
-        public boolean isCompressed() {
-            return zipped;
-        }
-
-        public int getCommand() {
-            return command;
-        }
-    }
-
     /**
      * Connection layer data packet.
      */
@@ -669,10 +702,11 @@ public abstract class AbstractConnection implements IConnection {
         public abstract byte[] getData();
 
         /**
-         * Returns <code>true</code> if data is compressed
+         * Returns the codec the data is compressed with, one of the
+         * <code>CODEC_</code> constants of {@link CompressionPolicy}
          * 
-         * @return <code>true</code> if data is compressed
+         * @return the codec the data is compressed with
          */
-        public abstract boolean isCompressed();
+        public abstract int getCompression();
     }
 }
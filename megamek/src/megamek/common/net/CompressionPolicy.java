@@ -0,0 +1,330 @@
+/*
+ * MegaMek - Copyright (C) 2016 The MegaMek Team
+ *
+ *  This program is free software; you can redistribute it and/or modify it
+ *  under the terms of the GNU General Public License as published by the Free
+ *  Software Foundation; either version 2 of the License, or (at your option)
+ *  any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ *  or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ *  for more details.
+ */
+
+package megamek.common.net;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectOutputStream;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.Inflater;
+
+import megamek.common.BipedMech;
+import megamek.common.Coords;
+import megamek.common.CriticalSlot;
+import megamek.common.Crew;
+import megamek.common.Mounted;
+import megamek.common.QuadMech;
+import megamek.common.Tank;
+import megamek.common.options.Option;
+import megamek.common.options.PilotOptions;
+import megamek.common.options.Quirks;
+
+/**
+ * Decides whether and how the marshalled data of a packet is compressed
+ * before it is sent. Packets smaller than the threshold of the policy are
+ * always sent raw, since the compression overhead would make them larger,
+ * and so is anything that doesn't get smaller when compressed.
+ * <p>
+ * The codec is sent along with every packet, so the receiving side never
+ * has to know the policy of the sender. The old boolean compression flag is
+ * the same as {@link #CODEC_NONE} and {@link #CODEC_GZIP}, so only the
+ * deflate codecs need a peer that knows them; see {@link #isLegacy()}.
+ */
+public final class CompressionPolicy {
+
+    /**
+     * Codecs, as sent in the packet header
+     */
+    public static final int CODEC_NONE = 0;
+    public static final int CODEC_GZIP = 1;
+    public static final int CODEC_DEFLATE = 2;
+    public static final int CODEC_DEFLATE_DICTIONARY = 3;
+
+    /**
+     * Packets below this many bytes aren't worth compressing
+     */
+    public static final int DEFAULT_THRESHOLD = 256;
+
+    /**
+     * Never compresses anything
+     */
+    public static final CompressionPolicy NONE = new CompressionPolicy(0,
+            CODEC_NONE, Integer.MAX_VALUE);
+
+    /**
+     * GZIPs every packet that has data; what older versions always did
+     */
+    public static final CompressionPolicy GZIP = new CompressionPolicy(1,
+            CODEC_GZIP, 0);
+
+    /**
+     * GZIPs packets above the default threshold. Understood by every peer,
+     * so this is what connections start with.
+     */
+    public static final CompressionPolicy ADAPTIVE_GZIP = new CompressionPolicy(
+            2, CODEC_GZIP, DEFAULT_THRESHOLD);
+
+    /**
+     * Fast, low level deflate for packets above the default threshold
+     */
+    public static final CompressionPolicy FAST = new CompressionPolicy(3,
+            CODEC_DEFLATE, DEFAULT_THRESHOLD);
+
+    /**
+     * Fast deflate primed with the {@link #getDictionary() dictionary}
+     */
+    public static final CompressionPolicy FAST_DICTIONARY = new CompressionPolicy(
+            4, CODEC_DEFLATE_DICTIONARY, DEFAULT_THRESHOLD);
+
+    private static final CompressionPolicy[] POLICIES = { NONE, GZIP,
+            ADAPTIVE_GZIP, FAST, FAST_DICTIONARY };
+
+    /**
+     * Classes whose serialized descriptors make up the preset dictionary.
+     * Entities and their equipment are sent through serialization, so every
+     * entity packet repeats these descriptors. Only descriptors are used,
+     * since they are the same on every JVM running the same version.
+     */
+    private static final Class<?>[] DICTIONARY_CLASSES = {
+            java.util.Vector.class, java.util.ArrayList.class,
+            java.util.HashMap.class, java.util.HashSet.class, Coords.class,
+            Mounted.class, Crew.class, CriticalSlot.class, Quirks.class,
+            PilotOptions.class, Option.class, Tank.class, QuadMech.class,
+            BipedMech.class };
+
+    /**
+     * Deflate keeps a window of 32K, anything before that is useless
+     */
+    private static final int MAX_DICTIONARY_SIZE = 32 * 1024;
+
+    private static byte[] dictionary;
+
+    /**
+     * Deflaters are expensive to create, so every sending thread keeps one.
+     * An encoded packet may be shared by many connections, so they can't
+     * belong to a connection.
+     */
+    private static final ThreadLocal<Deflater> deflaters = new ThreadLocal<Deflater>() {
+        @Override
+        protected Deflater initialValue() {
+            return new Deflater(Deflater.BEST_SPEED);
+        }
+    };
+
+    private final int id;
+
+    private final int codec;
+
+    private final int threshold;
+
+    private CompressionPolicy(int id, int codec, int threshold) {
+        this.id = id;
+        this.codec = codec;
+        this.threshold = threshold;
+    }
+
+    /**
+     * Returns the policy with the given id
+     *
+     * @param id the id of the policy
+     * @return the policy, or <code>null</code> if the id is unknown
+     */
+    public static CompressionPolicy getPolicy(int id) {
+        if ((id < 0) || (id >= POLICIES.length)) {
+            return null;
+        }
+        return POLICIES[id];
+    }
+
+    /**
+     * Returns the id of this policy, which is also sent to the server to
+     * ask for it
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Returns the codec this policy uses for big enough packets
+     */
+    public int getCodec() {
+        return codec;
+    }
+
+    /**
+     * Returns the size in bytes below which packets are sent raw
+     */
+    public int getThreshold() {
+        return threshold;
+    }
+
+    /**
+     * Returns <code>true</code> if peers that only know the old boolean
+     * compression flag understand everything sent with this policy
+     */
+    public boolean isLegacy() {
+        return codec <= CODEC_GZIP;
+    }
+
+    /**
+     * Returns the codec to use for data of the given size
+     *
+     * @param size the size of the marshalled data
+     * @return the codec to use
+     */
+    public int selectCodec(int size) {
+        return (size < threshold) ? CODEC_NONE : codec;
+    }
+
+    /**
+     * Compresses the given data
+     *
+     * @param codec the codec to use
+     * @param data the data to compress
+     * @return the compressed data
+     * @throws IOException
+     */
+    static byte[] compress(int codec, byte[] data) throws IOException {
+        switch (codec) {
+            case CODEC_NONE:
+                return data;
+            case CODEC_GZIP:
+                ByteArrayOutputStream bos = new ByteArrayOutputStream(
+                        data.length / 2);
+                GZIPOutputStream out = new GZIPOutputStream(bos);
+                out.write(data);
+                out.close();
+                return bos.toByteArray();
+            case CODEC_DEFLATE:
+            case CODEC_DEFLATE_DICTIONARY:
+                Deflater deflater = deflaters.get();
+                deflater.reset();
+                if (codec == CODEC_DEFLATE_DICTIONARY) {
+                    deflater.setDictionary(getDictionary());
+                }
+                deflater.setInput(data);
+                deflater.finish();
+                byte[] buffer = new byte[Math.max(64, data.length / 2)];
+                int length = 0;
+                while (!deflater.finished()) {
+                    if (length == buffer.length) {
+                        buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                    }
+                    length += deflater.deflate(buffer, length, buffer.length
+                            - length);
+                }
+                return Arrays.copyOf(buffer, length);
+            default:
+                throw new IOException("Unknown compression codec " + codec);
+        }
+    }
+
+    /**
+     * Decompresses the given data
+     *
+     * @param codec the codec the data was compressed with
+     * @param data the compressed data
+     * @param inflater inflater to use for the deflate codecs; it is reset
+     *            before use, so connections can keep one around
+     * @return the decompressed data
+     * @throws IOException
+     */
+    static byte[] decompress(int codec, byte[] data, Inflater inflater)
+            throws IOException {
+        switch (codec) {
+            case CODEC_NONE:
+                return data;
+            case CODEC_GZIP:
+                InputStream in = new GZIPInputStream(new ByteArrayInputStream(
+                        data));
+                ByteArrayOutputStream out = new ByteArrayOutputStream(
+                        data.length * 4);
+                byte[] chunk = new byte[8192];
+                int read;
+                while ((read = in.read(chunk)) > 0) {
+                    out.write(chunk, 0, read);
+                }
+                in.close();
+                return out.toByteArray();
+            case CODEC_DEFLATE:
+            case CODEC_DEFLATE_DICTIONARY:
+                inflater.reset();
+                inflater.setInput(data);
+                byte[] buffer = new byte[Math.max(64, data.length * 4)];
+                int length = 0;
+                try {
+                    while (!inflater.finished()) {
+                        if (length == buffer.length) {
+                            buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                        }
+                        int count = inflater.inflate(buffer, length,
+                                buffer.length - length);
+                        if ((count == 0) && inflater.needsDictionary()) {
+                            inflater.setDictionary(getDictionary());
+                        } else if ((count == 0) && inflater.needsInput()) {
+                            throw new IOException("Truncated packet data");
+                        }
+                        length += count;
+                    }
+                } catch (DataFormatException e) {
+                    throw new IOException(e.getMessage());
+                } catch (IllegalArgumentException e) {
+                    // wrong dictionary
+                    throw new IOException(e.getMessage());
+                }
+                return Arrays.copyOf(buffer, length);
+            default:
+                throw new IOException("Unknown compression codec " + codec);
+        }
+    }
+
+    /**
+     * Returns the preset dictionary of the
+     * {@link #CODEC_DEFLATE_DICTIONARY} codec, building it on first use.
+     */
+    static synchronized byte[] getDictionary() {
+        if (dictionary == null) {
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            try {
+                ObjectOutputStream out = new ObjectOutputStream(bos);
+                for (Class<?> c : DICTIONARY_CLASSES) {
+                    out.writeObject(c);
+                }
+                out.close();
+            } catch (IOException e) {
+                // can't happen with a byte array
+                e.printStackTrace();
+            }
+            byte[] data = bos.toByteArray();
+            // The end of the dictionary is the cheapest to refer to
+            dictionary = Arrays.copyOfRange(data,
+                    Math.max(0, data.length - MAX_DICTIONARY_SIZE),
+                    data.length);
+        }
+        return dictionary;
+    }
+
+    @Override
+    public String toString() {
+        return "CompressionPolicy[codec=" + codec + ", threshold=" + threshold
+                + "]";
+    }
+}
@@ -13,7 +13,17 @@
  */
 package megamek.common.net;
 
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.NetworkInterface;
+import java.net.ServerSocket;
 import java.net.Socket;
+import java.nio.channels.ServerSocketChannel;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import megamek.common.preference.PreferenceManager;
 
 /**
  * Connections factory. Creates the Client/Server connections
@@ -22,6 +32,11 @@ public class ConnectionFactory {
 
     private static ConnectionFactory instance = new ConnectionFactory();
 
+    /**
+     * The servers running in this virtual machine, by port
+     */
+    private final ConcurrentMap<Integer, ILocalServer> localServers = new ConcurrentHashMap<Integer, ILocalServer>();
+
     private ConnectionFactory() {
     }
 
@@ -35,7 +50,9 @@ public class ConnectionFactory {
     }
 
     /**
-     * Creates new Client (Client-Server) connection
+     * Creates new Client (Client-Server) connection. Connections to a server
+     * running in this virtual machine are {@link LocalConnection local} ones,
+     * unless they are turned off in the client preferences.
      * 
      * @param host server host
      * @param port server port
@@ -43,6 +60,14 @@ public class ConnectionFactory {
      * @return new client (client-server) connection
      */
     public IConnection createClientConnection(String host, int port, int id) {
+        ILocalServer localServer = localServers.get(port);
+        if ((localServer != null) && isUsingLocalConnections()
+                && isLocalHost(host)) {
+            return localServer.connectLocal();
+        }
+        if (isUsingNio()) {
+            return new NioConnection(host, port, id);
+        }
         return new DataStreamConnection(host, port, id);
     }
 
@@ -54,6 +79,108 @@ public class ConnectionFactory {
      * @return new Server coinnection
      */
     public IConnection createServerConnection(Socket socket, int id) {
+        if (socket.getChannel() != null) {
+            return new NioConnection(socket.getChannel(), id);
+        }
         return new DataStreamConnection(socket, id);
     }
+
+    /**
+     * Makes clients in this virtual machine that connect to the given port
+     * connect to the server directly, see
+     * {@link #createClientConnection(String, int, int)}
+     *
+     * @param port the port the server listens on
+     * @param server the server
+     */
+    public void registerLocalServer(int port, ILocalServer server) {
+        localServers.put(port, server);
+    }
+
+    /**
+     * Stops clients from connecting to the server directly
+     *
+     * @param port the port the server listens on
+     * @param server the server
+     */
+    public void unregisterLocalServer(int port, ILocalServer server) {
+        localServers.remove(port, server);
+    }
+
+    /**
+     * Returns <code>true</code> if connections to servers in this virtual
+     * machine skip the network
+     *
+     * @return <code>true</code> if local connections are used
+     */
+    public boolean isUsingLocalConnections() {
+        return PreferenceManager.getClientPreferences().useLocalConnections();
+    }
+
+    /**
+     * Returns <code>true</code> if the host name is one of this machine
+     */
+    private static boolean isLocalHost(String host) {
+        try {
+            InetAddress address = InetAddress.getByName(host);
+            return address.isLoopbackAddress() || address.isAnyLocalAddress()
+                    || (NetworkInterface.getByInetAddress(address) != null);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Creates a connection between a client and a server in the same virtual
+     * machine, which passes packets without a socket.
+     *
+     * @param clientId connection ID of the client's end
+     * @param serverId connection ID of the server's end
+     * @return the client's end of the connection; the server's end is its
+     *         {@link LocalConnection#getPeer() peer}
+     */
+    public LocalConnection createLocalConnection(int clientId, int serverId) {
+        return LocalConnection.createPair(clientId, serverId);
+    }
+
+    /**
+     * Creates the server socket to accept connections on. When NIO
+     * connections are enabled the socket is backed by a channel, and the
+     * connections accepted from it will be NIO connections as well.
+     *
+     * @param port the port to listen on
+     * @return the new server socket
+     * @throws IOException
+     */
+    public ServerSocket createServerSocket(int port) throws IOException {
+        if (!isUsingNio()) {
+            return new ServerSocket(port);
+        }
+        ServerSocket serverSocket = ServerSocketChannel.open().socket();
+        serverSocket.setReuseAddress(true);
+        serverSocket.bind(new InetSocketAddress(port));
+        return serverSocket;
+    }
+
+    /**
+     * Returns <code>true</code> if new connections use non-blocking channels
+     * serviced by a shared selector instead of blocking streams.
+     *
+     * @return <code>true</code> if new connections use NIO
+     */
+    public boolean isUsingNio() {
+        return PreferenceManager.getClientPreferences().useNioConnections();
+    }
+
+    /**
+     * Returns <code>true</code> if the given connection is serviced by a
+     * shared selector thread, in which case it needs no thread calling
+     * {@link IConnection#update()} and {@link IConnection#flush()}.
+     *
+     * @param connection the connection to check
+     * @return <code>true</code> if the connection drives itself
+     */
+    public boolean isSelectorDriven(IConnection connection) {
+        return connection instanceof NioConnection;
+    }
 }
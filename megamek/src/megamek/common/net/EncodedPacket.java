@@ -0,0 +1,142 @@
+/*
+ * MegaMek - Copyright (C) 2016 The MegaMek Team
+ *
+ *  This program is free software; you can redistribute it and/or modify it
+ *  under the terms of the GNU General Public License as published by the Free
+ *  Software Foundation; either version 2 of the License, or (at your option)
+ *  any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ *  or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ *  for more details.
+ */
+
+package megamek.common.net;
+
+import java.io.IOException;
+
+import megamek.common.net.marshall.PacketMarshaller;
+import megamek.common.net.marshall.PacketMarshallerFactory;
+
+/**
+ * A <code>Packet</code> that has already been marshalled and, optionally,
+ * compressed. Instances are immutable, so a single encoded packet can be
+ * queued on any number of connections that use the same marshalling and
+ * compression policy.
+ */
+public final class EncodedPacket implements AbstractConnection.INetworkPacket {
+
+    private final int command;
+
+    private final int marshallingType;
+
+    private final int compression;
+
+    private final byte[] data;
+
+    /**
+     * Size of the data before compression
+     */
+    private final int rawLength;
+
+    /**
+     * The packet that was encoded
+     */
+    private final Packet packet;
+
+    private EncodedPacket(Packet packet, int marshallingType, int compression,
+            byte[] data, int rawLength) {
+        this.packet = packet;
+        this.command = packet.getCommand();
+        this.marshallingType = marshallingType;
+        this.compression = compression;
+        this.data = data;
+        this.rawLength = rawLength;
+    }
+
+    /**
+     * Marshals the given packet and compresses it as the policy says. The
+     * data is sent raw whenever compressing it doesn't pay off.
+     *
+     * @param packet the <code>Packet</code> to encode
+     * @param marshallingType the marshalling type to use
+     * @param policy the compression policy to follow
+     * @return the encoded packet, or <code>null</code> if the packet could not
+     *         be marshalled
+     */
+    public static EncodedPacket encode(Packet packet, int marshallingType,
+            CompressionPolicy policy) {
+        PacketMarshaller marshaller = PacketMarshallerFactory.getInstance()
+                .getMarshaller(marshallingType);
+        assert (marshaller != null) : "Unknown marshalling type";
+        byte[] raw = marshaller.marshall(packet);
+        if (raw == null) {
+            return null;
+        }
+        try {
+            int codec = (packet.getData() == null) ? CompressionPolicy.CODEC_NONE
+                    : policy.selectCodec(raw.length);
+            byte[] data = CompressionPolicy.compress(codec, raw);
+            if (data.length >= raw.length) {
+                codec = CompressionPolicy.CODEC_NONE;
+                data = raw;
+            }
+            return new EncodedPacket(packet, marshallingType, codec, data,
+                    raw.length);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Returns a key that is equal for all connections that would encode a
+     * packet identically, so encoded packets can be shared between them.
+     *
+     * @param conn the connection
+     * @return the encoding key of the connection
+     */
+    public static int encodingKey(IConnection conn) {
+        return (conn.getMarshallingType() << 8)
+                | conn.getCompressionPolicy().getId();
+    }
+
+    /**
+     * Returns the command of the encoded packet
+     *
+     * @return the command of the encoded packet
+     */
+    public int getCommand() {
+        return command;
+    }
+
+    public int getMarshallingType() {
+        return marshallingType;
+    }
+
+    /**
+     * Returns the encoded data. The array is shared and must not be modified.
+     */
+    public byte[] getData() {
+        return data;
+    }
+
+    public int getCompression() {
+        return compression;
+    }
+
+    /**
+     * Returns the size of the marshalled data before compression
+     */
+    public int getRawLength() {
+        return rawLength;
+    }
+
+    /**
+     * Returns the packet that was encoded, which must not be modified
+     */
+    Packet getPacket() {
+        return packet;
+    }
+}
@@ -0,0 +1,287 @@
+/*
+ * MegaMek - Copyright (C) 2016 The MegaMek Team
+ *
+ *  This program is free software; you can redistribute it and/or modify it
+ *  under the terms of the GNU General Public License as published by the Free
+ *  Software Foundation; either version 2 of the License, or (at your option)
+ *  any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ *  or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ *  for more details.
+ */
+
+package megamek.common.net;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.zip.CRC32;
+
+import megamek.common.Entity;
+
+/**
+ * The difference between two serialized states of an <code>Entity</code>.
+ * <p>
+ * Sender and receiver both remember the last state they exchanged for an
+ * entity (the <i>base</i>), so an update only needs to carry the parts of
+ * the serialized entity that changed. Most updates only change a few
+ * primitive fields (position, facing, heat, armor, ammo, critical slots and
+ * damage flags), which doesn't change the layout of the serialized form, so
+ * they come down to a handful of small edits. Working on the serialized form
+ * means nothing of the entity can be missed, and the receiver ends up with
+ * exactly the same object as if it had been sent whole.
+ * <p>
+ * A delta without a base carries the whole state and starts a new base. A
+ * delta with a base carries the base's length and CRC-32, so a receiver whose
+ * base went stale notices it instead of patching the wrong bytes.
+ */
+public final class EntityDelta implements Serializable {
+
+    private static final long serialVersionUID = -2981720443315287512L;
+
+    /**
+     * Equal runs shorter than this are folded into the surrounding edits,
+     * since an edit costs about as much
+     */
+    private static final int MIN_GAP = 12;
+
+    /**
+     * The length of the base this delta applies to, or -1 if it carries the
+     * whole state
+     */
+    private final int baseLength;
+
+    /**
+     * The CRC-32 of the base this delta applies to
+     */
+    private final long baseChecksum;
+
+    /**
+     * Triples of base offset, bytes removed from the base at that offset and
+     * bytes inserted from <code>data</code>, ordered by offset
+     */
+    private final int[] edits;
+
+    /**
+     * The inserted bytes of all the edits, or the whole state
+     */
+    private final byte[] data;
+
+    private EntityDelta(int baseLength, long baseChecksum, int[] edits,
+            byte[] data) {
+        this.baseLength = baseLength;
+        this.baseChecksum = baseChecksum;
+        this.edits = edits;
+        this.data = data;
+    }
+
+    /**
+     * Returns a delta that carries the whole given state
+     */
+    public static EntityDelta full(byte[] state) {
+        return new EntityDelta(-1, 0, null, state);
+    }
+
+    /**
+     * Creates the delta that turns <code>base</code> into <code>state</code>.
+     * If the delta wouldn't be much smaller than the state itself, the whole
+     * state is sent instead.
+     *
+     * @param base the state the receiver has, may be <code>null</code>
+     * @param state the new state
+     * @return the delta
+     */
+    public static EntityDelta create(byte[] base, byte[] state) {
+        if (base == null) {
+            return full(state);
+        }
+        int shorter = Math.min(base.length, state.length);
+        int prefix = 0;
+        while ((prefix < shorter) && (base[prefix] == state[prefix])) {
+            prefix++;
+        }
+        int suffix = 0;
+        while ((suffix < (shorter - prefix))
+                && (base[base.length - 1 - suffix] == state[state.length - 1
+                        - suffix])) {
+            suffix++;
+        }
+
+        int[] edits;
+        ByteArrayOutputStream inserted = new ByteArrayOutputStream();
+        if (base.length != state.length) {
+            // The layout changed; replace everything between the common
+            // prefix and suffix
+            int removed = base.length - suffix - prefix;
+            int insertedLength = state.length - suffix - prefix;
+            edits = new int[] { prefix, removed, insertedLength };
+            inserted.write(state, prefix, insertedLength);
+        } else {
+            // Same layout; collect the runs that differ
+            int[] found = new int[3 * 8];
+            int count = 0;
+            int end = base.length - suffix;
+            int i = prefix;
+            while (i < end) {
+                int start = i;
+                int lastDiff = i;
+                while (i < end) {
+                    if (base[i] != state[i]) {
+                        lastDiff = i;
+                    } else if ((i - lastDiff) >= MIN_GAP) {
+                        break;
+                    }
+                    i++;
+                }
+                int length = lastDiff + 1 - start;
+                if (count == found.length) {
+                    int[] bigger = new int[found.length * 2];
+                    System.arraycopy(found, 0, bigger, 0, found.length);
+                    found = bigger;
+                }
+                found[count++] = start;
+                found[count++] = length;
+                found[count++] = length;
+                inserted.write(state, start, length);
+                // skip to the next difference
+                while ((i < end) && (base[i] == state[i])) {
+                    i++;
+                }
+            }
+            edits = new int[count];
+            System.arraycopy(found, 0, edits, 0, count);
+        }
+        if ((inserted.size() + (edits.length * 4)) > (state.length / 2)) {
+            return full(state);
+        }
+        return new EntityDelta(base.length, checksum(base), edits,
+                inserted.toByteArray());
+    }
+
+    private static long checksum(byte[] bytes) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, bytes.length);
+        return crc.getValue();
+    }
+
+    /**
+     * Returns <code>true</code> if this delta carries the whole state and
+     * doesn't need a base
+     */
+    public boolean isFull() {
+        return baseLength < 0;
+    }
+
+    /**
+     * Returns the approximate number of bytes this delta adds to a packet
+     */
+    public int size() {
+        return data.length + ((edits == null) ? 0 : (edits.length * 4));
+    }
+
+    /**
+     * Applies this delta to the given base
+     *
+     * @param base the last state that was exchanged for the entity
+     * @return the new state
+     * @throws IOException if the base isn't the one this delta was made for
+     */
+    public byte[] apply(byte[] base) throws IOException {
+        if (isFull()) {
+            return data;
+        }
+        if ((base == null) || (base.length != baseLength)
+                || (checksum(base) != baseChecksum)) {
+            throw new IOException("Entity delta doesn't match its base");
+        }
+        int length = base.length;
+        for (int i = 0; i < edits.length; i += 3) {
+            length += edits[i + 2] - edits[i + 1];
+        }
+        byte[] state = new byte[length];
+        int from = 0;
+        int to = 0;
+        int next = 0;
+        for (int i = 0; i < edits.length; i += 3) {
+            int copied = edits[i] - from;
+            System.arraycopy(base, from, state, to, copied);
+            to += copied;
+            System.arraycopy(data, next, state, to, edits[i + 2]);
+            to += edits[i + 2];
+            next += edits[i + 2];
+            from = edits[i] + edits[i + 1];
+        }
+        System.arraycopy(base, from, state, to, base.length - from);
+        return state;
+    }
+
+    /**
+     * Writes this delta in the compact binary form used by the
+     * <code>CompactBinaryMarshaller</code>
+     */
+    public void writeCompact(DataOutput out) throws IOException {
+        out.writeInt(baseLength);
+        if (!isFull()) {
+            out.writeLong(baseChecksum);
+            out.writeInt(edits.length);
+            for (int edit : edits) {
+                out.writeInt(edit);
+            }
+        }
+        out.writeInt(data.length);
+        out.write(data);
+    }
+
+    /**
+     * Reads a delta written by {@link #writeCompact(DataOutput)}
+     */
+    public static EntityDelta readCompact(DataInput in) throws IOException {
+        int baseLength = in.readInt();
+        long baseChecksum = 0;
+        int[] edits = null;
+        if (baseLength >= 0) {
+            baseChecksum = in.readLong();
+            edits = new int[in.readInt()];
+            for (int i = 0; i < edits.length; i++) {
+                edits[i] = in.readInt();
+            }
+        }
+        byte[] data = new byte[in.readInt()];
+        in.readFully(data);
+        return new EntityDelta(baseLength, baseChecksum, edits, data);
+    }
+
+    /**
+     * Returns the serialized form of the given entity that deltas are made
+     * of
+     */
+    public static byte[] serialize(Entity entity) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bos);
+        out.writeObject(entity);
+        out.close();
+        return bos.toByteArray();
+    }
+
+    /**
+     * Restores an entity from its serialized form
+     */
+    public static Entity deserialize(byte[] state) throws IOException {
+        ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(
+                state));
+        try {
+            return (Entity) in.readObject();
+        } catch (ClassNotFoundException e) {
+            throw new IOException(e.getMessage());
+        } finally {
+            in.close();
+        }
+    }
+}
@@ -58,6 +58,21 @@ public interface IConnection {
      */
     public String getInetAddress();
 
+    /**
+     * Returns the type of the marshalling used to send packets
+     *
+     * @return the type of the marshalling used to send packets
+     */
+    public int getMarshallingType();
+
+    /**
+     * Sets the type of the marshalling used to send packets. Packets that are
+     * already queued keep the marshalling they were created with.
+     *
+     * @param marshallingType new marshalling type
+     */
+    public void setMarshallingType(int marshallingType);
+
     /**
      * Process all incoming data, blocking on the input stream until new input
      * is available.
@@ -75,6 +90,36 @@ public interface IConnection {
      */
     public void send(Packet packet);
 
+    /**
+     * Adds an already encoded packet to the send queue. The packet must have
+     * been encoded with this connection's marshalling type and compression
+     * policy, see {@link EncodedPacket#encodingKey(IConnection)}.
+     */
+    public void send(EncodedPacket packet);
+
+    /**
+     * Returns <code>true</code> if this connection compresses the sent data
+     *
+     * @return <code>true</code> if this connection compresses the sent data
+     */
+    public boolean isCompressed();
+
+    /**
+     * Returns the policy deciding which sent packets are compressed
+     *
+     * @return the compression policy of this connection
+     */
+    public CompressionPolicy getCompressionPolicy();
+
+    /**
+     * Sets the policy deciding which sent packets are compressed. Only use
+     * policies that aren't {@link CompressionPolicy#isLegacy() legacy} when
+     * the peer is known to understand them.
+     *
+     * @param policy the new compression policy
+     */
+    public void setCompressionPolicy(CompressionPolicy policy);
+
     /**
      * Returns <code>true</code> if there are (send)pending packets
      * 
@@ -96,6 +141,22 @@ public interface IConnection {
      */
     public long bytesReceived();
 
+    /**
+     * Returns the packets sent so far, per command, with their size before
+     * and after compression
+     *
+     * @return the sizes of the sent packets, per command
+     */
+    public TrafficStatistics getSentTraffic();
+
+    /**
+     * Returns the packets received so far, per command, with their size
+     * before and after compression
+     *
+     * @return the sizes of the received packets, per command
+     */
+    public TrafficStatistics getReceivedTraffic();
+
     /**
      * Adds the specified connection listener to receive connection events from
      * connection.
@@ -0,0 +1,30 @@
+/*
+ * MegaMek - Copyright (C) 2016 The MegaMek Team
+ *
+ *  This program is free software; you can redistribute it and/or modify it
+ *  under the terms of the GNU General Public License as published by the Free
+ *  Software Foundation; either version 2 of the License, or (at your option)
+ *  any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ *  or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ *  for more details.
+ */
+
+package megamek.common.net;
+
+/**
+ * A server running in this virtual machine that clients can connect to
+ * without a socket, see
+ * {@link ConnectionFactory#registerLocalServer(int, ILocalServer)}
+ */
+public interface ILocalServer {
+
+    /**
+     * Accepts a new client
+     *
+     * @return the client's end of a {@link LocalConnection}
+     */
+    public IConnection connectLocal();
+}
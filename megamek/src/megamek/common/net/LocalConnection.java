@@ -0,0 +1,293 @@
+/*
+ * MegaMek - Copyright (C) 2016 The MegaMek Team
+ *
+ *  This program is free software; you can redistribute it and/or modify it
+ *  under the terms of the GNU General Public License as published by the Free
+ *  Software Foundation; either version 2 of the License, or (at your option)
+ *  any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ *  or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ *  for more details.
+ */
+
+package megamek.common.net;
+
+import java.io.EOFException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Vector;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import megamek.common.Coords;
+
+/**
+ * One end of a connection between a client and a server running in the same
+ * virtual machine. Sent packets are put straight into the queue of the other
+ * end, without a socket in between.
+ * <p>
+ * The receiver must never share objects with the sender, as both change the
+ * ones they get. Packets that only hold immutable values, like numbers,
+ * strings and coordinates, or lists and arrays of them, are copied by
+ * copying those lists and arrays. Everything else, like entities, boards and
+ * reports, is marshalled, but not compressed.
+ * <p>
+ * Like <code>DataStreamConnection</code>, each end needs a thread calling
+ * {@link #update()}, which hands the received packets to the listeners.
+ */
+public class LocalConnection extends AbstractConnection {
+
+    /**
+     * How long {@link #update()} waits for a packet before it returns
+     */
+    private static final long POLL_MILLIS = 100;
+
+    /**
+     * Returned by {@link #copyValue(Object)} for values it can't copy
+     */
+    private static final Object NOT_COPYABLE = new Object();
+
+    private final LinkedBlockingQueue<INetworkPacket> inbound = new LinkedBlockingQueue<INetworkPacket>();
+
+    private LocalConnection peer;
+
+    private volatile boolean closed;
+
+    private LocalConnection(String host, int id) {
+        super(host, 0, id);
+        setCompressionPolicy(CompressionPolicy.NONE);
+    }
+
+    /**
+     * Creates both ends of a connection
+     *
+     * @param clientId the id of the client's end
+     * @param serverId the id of the server's end
+     * @return the client's end; the server's end is its {@link #getPeer()
+     *         peer}
+     */
+    static LocalConnection createPair(int clientId, int serverId) {
+        LocalConnection client = new LocalConnection("localhost", clientId); //$NON-NLS-1$
+        LocalConnection server = new LocalConnection(null, serverId);
+        client.peer = server;
+        server.peer = client;
+        return client;
+    }
+
+    /**
+     * Returns the other end of this connection
+     */
+    public LocalConnection getPeer() {
+        return peer;
+    }
+
+    /**
+     * There is nothing to connect to
+     */
+    @Override
+    public synchronized boolean open() {
+        return !closed;
+    }
+
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
+        super.close();
+    }
+
+    @Override
+    public boolean isClosed() {
+        return closed;
+    }
+
+    @Override
+    public String getInetAddress() {
+        return "local"; //$NON-NLS-1$
+    }
+
+    @Override
+    public synchronized void send(Packet packet) {
+        if (!sendCopy(packet)) {
+            super.send(EncodedPacket.encode(packet, getMarshallingType(),
+                    getCompressionPolicy()));
+        }
+    }
+
+    @Override
+    public synchronized void send(EncodedPacket packet) {
+        if ((packet == null) || !sendCopy(packet.getPacket())) {
+            super.send(packet);
+        }
+    }
+
+    /**
+     * Hands the other end a copy of the packet, if it can be made without
+     * marshalling the packet. Packets sent before have already been handed
+     * over, as sending flushes right away.
+     *
+     * @return <code>false</code> if the packet has to be marshalled
+     */
+    private boolean sendCopy(Packet packet) {
+        Packet copy = copy(packet);
+        if (copy == null) {
+            return false;
+        }
+        getSentTraffic().count(packet.getCommand(), 0, 0);
+        if (!peer.closed) {
+            peer.inbound.add(new CopiedPacket(copy));
+        }
+        return true;
+    }
+
+    /**
+     * Returns a copy of the packet that shares nothing mutable with it, or
+     * <code>null</code> if it would have to be marshalled for that
+     */
+    static Packet copy(Packet packet) {
+        Object[] data = packet.getData();
+        if (data == null) {
+            return new Packet(packet.getCommand(), (Object[]) null);
+        }
+        Object[] copy = new Object[data.length];
+        for (int i = 0; i < data.length; i++) {
+            copy[i] = copyValue(data[i]);
+            if (copy[i] == NOT_COPYABLE) {
+                return null;
+            }
+        }
+        return new Packet(packet.getCommand(), copy);
+    }
+
+    private static Object copyValue(Object value) {
+        if (isImmutable(value)) {
+            return value;
+        }
+        if (value instanceof int[]) {
+            return ((int[]) value).clone();
+        }
+        if ((value.getClass() == Vector.class)
+                || (value.getClass() == ArrayList.class)) {
+            List<?> list = (List<?>) value;
+            for (Object element : list) {
+                if (!isImmutable(element)) {
+                    return NOT_COPYABLE;
+                }
+            }
+            return (value instanceof Vector) ? new Vector<Object>(list)
+                    : new ArrayList<Object>(list);
+        }
+        return NOT_COPYABLE;
+    }
+
+    private static boolean isImmutable(Object value) {
+        return (value == null) || (value instanceof String)
+                || (value instanceof Integer) || (value instanceof Long)
+                || (value instanceof Double) || (value instanceof Float)
+                || (value instanceof Short) || (value instanceof Byte)
+                || (value instanceof Boolean) || (value instanceof Character)
+                || (value instanceof Enum) || (value instanceof Coords);
+    }
+
+    @Override
+    protected void processPacket(INetworkPacket np) throws Exception {
+        if (!(np instanceof CopiedPacket)) {
+            super.processPacket(np);
+            return;
+        }
+        Packet packet = ((CopiedPacket) np).packet;
+        getReceivedTraffic().count(packet.getCommand(), 0, 0);
+        processConnectionEvent(new PacketReceivedEvent(this, packet));
+    }
+
+    /**
+     * Waits a little for the next packet from the other end
+     *
+     * @return the packet, or <code>null</code> if none arrived
+     * @throws EOFException when the other end has been closed and everything
+     *             it sent has been read
+     */
+    @Override
+    protected INetworkPacket readNetworkPacket() throws Exception {
+        INetworkPacket packet = inbound.poll();
+        if (packet != null) {
+            return packet;
+        }
+        if (closed || peer.closed) {
+            throw new EOFException();
+        }
+        try {
+            return inbound.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    @Override
+    protected void sendNetworkPacket(int marshallingType, byte[] data,
+            int compression) throws Exception {
+        if (peer.closed) {
+            // like on a socket, what is sent to a closed end is lost
+            return;
+        }
+        peer.inbound.add(new NetworkPacket(marshallingType, data, compression));
+    }
+
+    /**
+     * A packet handed over without marshalling
+     */
+    private static class CopiedPacket implements INetworkPacket {
+
+        final Packet packet;
+
+        CopiedPacket(Packet packet) {
+            this.packet = packet;
+        }
+
+        public int getMarshallingType() {
+            return -1;
+        }
+
+        public byte[] getData() {
+            return null;
+        }
+
+        public int getCompression() {
+            return CompressionPolicy.CODEC_NONE;
+        }
+    }
+
+    private static class NetworkPacket implements INetworkPacket {
+
+        private final int marshallingType;
+
+        private final byte[] data;
+
+        private final int compression;
+
+        NetworkPacket(int marshallingType, byte[] data, int compression) {
+            this.marshallingType = marshallingType;
+            this.data = data;
+            this.compression = compression;
+        }
+
+        public int getMarshallingType() {
+            return marshallingType;
+        }
+
+        public byte[] getData() {
+            return data;
+        }
+
+        public int getCompression() {
+            return compression;
+        }
+    }
+}
@@ -0,0 +1,256 @@
+/*
+ * MegaMek - Copyright (C) 2016 The MegaMek Team
+ *
+ *  This program is free software; you can redistribute it and/or modify it
+ *  under the terms of the GNU General Public License as published by the Free
+ *  Software Foundation; either version 2 of the License, or (at your option)
+ *  any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ *  or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ *  for more details.
+ */
+
+package megamek.common.net;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Implementation of the <code>Connection</code> on top of a non-blocking
+ * <code>SocketChannel</code>. Reads and writes are driven by a shared
+ * {@link NioSelectorLoop} instead of a thread per connection, so
+ * {@link #update()} never has anything to do.
+ * <p>
+ * The framing is the same as the one of <code>DataStreamConnection</code>: a
+ * one byte compression codec, the marshalling type and the data length as
+ * big-endian ints, followed by the data. Both connection types can talk to
+ * each other.
+ */
+class NioConnection extends AbstractConnection {
+
+    /**
+     * Size of the frame header: compression codec, marshalling type, length
+     */
+    private static final int HEADER_SIZE = 9;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private SocketChannel channel;
+
+    /**
+     * The selector loop this connection is registered with
+     */
+    private NioSelectorLoop loop;
+
+    /**
+     * Buffers used by the selector thread only
+     */
+    private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private final ByteBuffer writeBuffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+
+    /**
+     * State of the packet being received; <code>data</code> is
+     * <code>null</code> while the header is read
+     */
+    private int compression;
+    private int encoding;
+    private byte[] data;
+    private int dataRead;
+
+    /**
+     * Frames waiting to be written, and the one being written right now
+     */
+    private final ConcurrentLinkedQueue<ByteBuffer> outbound = new ConcurrentLinkedQueue<ByteBuffer>();
+    private ByteBuffer current;
+
+    /**
+     * Creates new server connection
+     *
+     * @param channel the accepted channel
+     * @param id
+     */
+    public NioConnection(SocketChannel channel, int id) {
+        super(channel.socket(), id);
+        this.channel = channel;
+    }
+
+    /**
+     * Creates new Client connection
+     *
+     * @param host
+     * @param port
+     * @param id
+     */
+    public NioConnection(String host, int port, int id) {
+        super(host, port, id);
+    }
+
+    @Override
+    protected Socket createSocket(String host, int port) throws IOException {
+        channel = SocketChannel.open(new InetSocketAddress(host, port));
+        return channel.socket();
+    }
+
+    @Override
+    public synchronized boolean open() {
+        if (!super.open()) {
+            return false;
+        }
+        if (loop == null) {
+            try {
+                channel.configureBlocking(false);
+                channel.socket().setTcpNoDelay(true);
+                loop = NioSelectorLoop.next();
+            } catch (IOException e) {
+                e.printStackTrace();
+                return false;
+            }
+            loop.register(this);
+        }
+        return true;
+    }
+
+    SocketChannel getChannel() {
+        return channel;
+    }
+
+    /**
+     * All reading is done by the selector loop, so there is never a packet
+     * waiting here.
+     */
+    @Override
+    protected INetworkPacket readNetworkPacket() throws Exception {
+        return null;
+    }
+
+    @Override
+    protected void sendNetworkPacket(int packetMarshallingType, byte[] data,
+            int compression) throws Exception {
+        ByteBuffer frameHeader = ByteBuffer.allocate(HEADER_SIZE);
+        frameHeader.put((byte) compression);
+        frameHeader.putInt(packetMarshallingType);
+        frameHeader.putInt(data.length);
+        frameHeader.flip();
+        outbound.add(frameHeader);
+        outbound.add(ByteBuffer.wrap(data));
+        if (loop != null) {
+            loop.requestWrite(this);
+        }
+    }
+
+    /**
+     * Reads whatever is available on the channel and processes every packet
+     * that is complete. Called by the selector thread only.
+     */
+    void handleRead() throws Exception {
+        readBuffer.clear();
+        if (channel.read(readBuffer) < 0) {
+            close();
+            return;
+        }
+        readBuffer.flip();
+        while (readBuffer.hasRemaining()) {
+            if (data == null) {
+                while (header.hasRemaining() && readBuffer.hasRemaining()) {
+                    header.put(readBuffer.get());
+                }
+                if (header.hasRemaining()) {
+                    return;
+                }
+                header.flip();
+                compression = header.get() & 0xff;
+                encoding = header.getInt();
+                data = new byte[header.getInt()];
+                dataRead = 0;
+                header.clear();
+            }
+            int count = Math.min(readBuffer.remaining(), data.length
+                    - dataRead);
+            readBuffer.get(data, dataRead, count);
+            dataRead += count;
+            if (dataRead == data.length) {
+                INetworkPacket np = new NetworkPacket(compression, encoding, data);
+                data = null;
+                processPacket(np);
+            }
+        }
+    }
+
+    /**
+     * Writes as much of the queued data as the channel accepts. Called by the
+     * selector thread only.
+     *
+     * @return <code>true</code> if everything queued has been written
+     */
+    boolean handleWrite() throws IOException {
+        while (true) {
+            while (writeBuffer.hasRemaining()) {
+                if (current == null) {
+                    current = outbound.poll();
+                    if (current == null) {
+                        break;
+                    }
+                }
+                int count = Math.min(writeBuffer.remaining(),
+                        current.remaining());
+                ByteBuffer chunk = current.duplicate();
+                chunk.limit(chunk.position() + count);
+                writeBuffer.put(chunk);
+                current.position(current.position() + count);
+                if (!current.hasRemaining()) {
+                    current = null;
+                }
+            }
+            writeBuffer.flip();
+            if (!writeBuffer.hasRemaining()) {
+                writeBuffer.clear();
+                return true;
+            }
+            channel.write(writeBuffer);
+            boolean drained = !writeBuffer.hasRemaining();
+            writeBuffer.compact();
+            if (!drained) {
+                return false;
+            }
+        }
+    }
+
+    @Override
+    public boolean hasPending() {
+        return super.hasPending() || !outbound.isEmpty();
+    }
+
+    private static class NetworkPacket implements INetworkPacket {
+
+        private final int compression;
+
+        private final int marshallingType;
+
+        private final byte[] data;
+
+        NetworkPacket(int compression, int marshallingType, byte[] data) {
+            this.compression = compression;
+            this.marshallingType = marshallingType;
+            this.data = data;
+        }
+
+        public int getMarshallingType() {
+            return marshallingType;
+        }
+
+        public byte[] getData() {
+            return data;
+        }
+
+        public int getCompression() {
+            return compression;
+        }
+    }
+}
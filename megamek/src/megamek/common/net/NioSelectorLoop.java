@@ -0,0 +1,153 @@
+/*
+ * MegaMek - Copyright (C) 2016 The MegaMek Team
+ *
+ *  This program is free software; you can redistribute it and/or modify it
+ *  under the terms of the GNU General Public License as published by the Free
+ *  Software Foundation; either version 2 of the License, or (at your option)
+ *  any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ *  or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ *  for more details.
+ */
+
+package megamek.common.net;
+
+import java.io.IOException;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * A thread that services any number of {@link NioConnection}s through a
+ * single <code>Selector</code>. Connections are spread over a small, lazily
+ * started pool of loops.
+ */
+class NioSelectorLoop implements Runnable {
+
+    private static final int POOL_SIZE = Math.max(1, Math.min(4, Runtime
+            .getRuntime().availableProcessors() / 2));
+
+    private static NioSelectorLoop[] pool = new NioSelectorLoop[POOL_SIZE];
+
+    private static int nextLoop = 0;
+
+    private final Selector selector;
+
+    /**
+     * Connections waiting to be registered with the selector
+     */
+    private final ConcurrentLinkedQueue<NioConnection> registrations = new ConcurrentLinkedQueue<NioConnection>();
+
+    /**
+     * Connections that have queued new data to write
+     */
+    private final ConcurrentLinkedQueue<NioConnection> writeRequests = new ConcurrentLinkedQueue<NioConnection>();
+
+    private NioSelectorLoop(int index) throws IOException {
+        selector = Selector.open();
+        Thread thread = new Thread(this, "NIO Selector " + index);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Returns the loop the next connection should be registered with
+     */
+    static synchronized NioSelectorLoop next() throws IOException {
+        int index = nextLoop;
+        nextLoop = (nextLoop + 1) % POOL_SIZE;
+        if (pool[index] == null) {
+            pool[index] = new NioSelectorLoop(index);
+        }
+        return pool[index];
+    }
+
+    /**
+     * Starts servicing the given connection
+     */
+    void register(NioConnection conn) {
+        registrations.add(conn);
+        selector.wakeup();
+    }
+
+    /**
+     * Tells the loop that the given connection has new data to write
+     */
+    void requestWrite(NioConnection conn) {
+        writeRequests.add(conn);
+        selector.wakeup();
+    }
+
+    @Override
+    public void run() {
+        while (true) {
+            try {
+                NioConnection conn;
+                while ((conn = registrations.poll()) != null) {
+                    try {
+                        conn.getChannel().register(selector,
+                                SelectionKey.OP_READ, conn);
+                        writeRequests.add(conn);
+                    } catch (IOException e) {
+                        conn.close();
+                    }
+                }
+                while ((conn = writeRequests.poll()) != null) {
+                    SelectionKey key = conn.getChannel().keyFor(selector);
+                    if ((key != null) && key.isValid()) {
+                        write(key, conn);
+                    }
+                }
+                selector.select();
+                Iterator<SelectionKey> keys = selector.selectedKeys()
+                        .iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    conn = (NioConnection) key.attachment();
+                    try {
+                        if (key.isValid() && key.isReadable()) {
+                            conn.handleRead();
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            write(key, conn);
+                        }
+                    } catch (CancelledKeyException e) {
+                        // The connection was closed in the meantime
+                    } catch (IOException e) {
+                        // Happens when the socket closes
+                        conn.close();
+                    } catch (Exception e) {
+                        e.printStackTrace();
+                        conn.reportReceiveException(e);
+                        conn.close();
+                    }
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Writes the pending data of the connection and only asks for write
+     * readiness while the socket can't take everything.
+     */
+    private void write(SelectionKey key, NioConnection conn) {
+        try {
+            if (conn.handleWrite()) {
+                key.interestOps(SelectionKey.OP_READ);
+            } else {
+                key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+            }
+        } catch (CancelledKeyException e) {
+            // The connection was closed in the meantime
+        } catch (IOException e) {
+            conn.close();
+        }
+    }
+}
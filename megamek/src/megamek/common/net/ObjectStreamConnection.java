@@ -69,15 +69,16 @@ class ObjectStreamConnection extends AbstractConnection {
     }
 
     @Override
-    protected void sendNetworkPacket(byte[] data, boolean zipped)
-            throws Exception {
+    protected void sendNetworkPacket(int packetMarshallingType, byte[] data,
+            int compression) throws Exception {
         if (out == null) {
             out = new ObjectOutputStream(getOutputStream());
             out.flush();
         }
 
         out.reset(); // write each packet fresh
-        out.writeObject(new NetworkPacket(zipped, marshallingType, data));
+        out.writeObject(new NetworkPacket(compression, packetMarshallingType,
+                data));
         out.flush();
     }
 
@@ -86,12 +87,12 @@ class ObjectStreamConnection extends AbstractConnection {
         /**
          * 
          */
-        private static final long serialVersionUID = -6526944082619874044L;
+        private static final long serialVersionUID = -1722356287190352174L;
 
         /**
-         * Is data compressed
+         * Compression codec of the data
          */
-        private boolean compressed;
+        private int compression;
 
         /**
          * Data marshalling type
@@ -106,12 +107,12 @@ class ObjectStreamConnection extends AbstractConnection {
         /**
          * Creates new packet
          * 
-         * @param compressed
+         * @param compression
          * @param marshallingType
          * @param data
          */
-        NetworkPacket(boolean compressed, int marshallingType, byte[] data) {
-            this.compressed = compressed;
+        NetworkPacket(int compression, int marshallingType, byte[] data) {
+            this.compression = compression;
             this.marshallingType = marshallingType;
             this.data = data;
         }
@@ -124,8 +125,8 @@ class ObjectStreamConnection extends AbstractConnection {
             return data;
         }
 
-        public boolean isCompressed() {
-            return compressed;
+        public int getCompression() {
+            return compression;
         }
     }
 
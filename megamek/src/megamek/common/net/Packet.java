@@ -41,6 +41,7 @@ public class Packet {
     public static final int COMMAND_ENTITY_ATTACK = 130;
     public static final int COMMAND_ENTITY_GTA_HEX_SELECT = 135;
     public static final int COMMAND_ENTITY_UPDATE = 140;
+    public static final int COMMAND_ENTITY_UPDATE_REQUEST = 141;
     public static final int COMMAND_ENTITY_WORDER_UPDATE = 145;
     public static final int COMMAND_ENTITY_MODECHANGE = 150;
     public static final int COMMAND_ENTITY_AMMOCHANGE = 160;
@@ -72,6 +73,8 @@ public class Packet {
     public static final int COMMAND_SENDING_REPORTS_SPECIAL = 320;
     public static final int COMMAND_SENDING_REPORTS_TACTICAL_GENIUS = 330;
     public static final int COMMAND_SENDING_REPORTS_ALL = 340;
+    public static final int COMMAND_SENDING_REPORTS_ROUND = 341;
+    public static final int COMMAND_REQUEST_REPORTS = 342;
 
     public static final int COMMAND_SENDING_GAME_SETTINGS = 350;
     public static final int COMMAND_SENDING_MAP_DIMENSIONS = 360;
@@ -0,0 +1,103 @@
+/*
+ * MegaMek - Copyright (C) 2016 The MegaMek Team
+ *
+ *  This program is free software; you can redistribute it and/or modify it
+ *  under the terms of the GNU General Public License as published by the Free
+ *  Software Foundation; either version 2 of the License, or (at your option)
+ *  any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ *  or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ *  for more details.
+ */
+
+package megamek.common.net;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Counts the packets going one way over a connection, per packet command,
+ * along with their size before compression and the size that actually went
+ * over the wire.
+ */
+public final class TrafficStatistics {
+
+    private static final int PACKETS = 0;
+    private static final int RAW_BYTES = 1;
+    private static final int WIRE_BYTES = 2;
+
+    private final Map<Integer, long[]> counters = new TreeMap<Integer, long[]>();
+
+    /**
+     * Counts a packet
+     *
+     * @param command the command of the packet
+     * @param rawBytes the size of the packet data before compression
+     * @param wireBytes the size of the packet data as sent
+     */
+    synchronized void count(int command, int rawBytes, int wireBytes) {
+        long[] counter = counters.get(command);
+        if (counter == null) {
+            counter = new long[3];
+            counters.put(command, counter);
+        }
+        counter[PACKETS]++;
+        counter[RAW_BYTES] += rawBytes;
+        counter[WIRE_BYTES] += wireBytes;
+    }
+
+    /**
+     * Returns the commands that were counted so far, in ascending order
+     */
+    public synchronized int[] getCommands() {
+        int[] commands = new int[counters.size()];
+        int i = 0;
+        for (Integer command : counters.keySet()) {
+            commands[i++] = command;
+        }
+        return commands;
+    }
+
+    /**
+     * Returns the number of packets with the given command
+     */
+    public long getPackets(int command) {
+        return get(command, PACKETS);
+    }
+
+    /**
+     * Returns the bytes of the packets with the given command before
+     * compression
+     */
+    public long getRawBytes(int command) {
+        return get(command, RAW_BYTES);
+    }
+
+    /**
+     * Returns the bytes of the packets with the given command after
+     * compression
+     */
+    public long getWireBytes(int command) {
+        return get(command, WIRE_BYTES);
+    }
+
+    private synchronized long get(int command, int index) {
+        long[] counter = counters.get(command);
+        return (counter == null) ? 0 : counter[index];
+    }
+
+    @Override
+    public synchronized String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<Integer, long[]> entry : counters.entrySet()) {
+            long[] counter = entry.getValue();
+            sb.append(entry.getKey()).append(": ").append(counter[PACKETS])
+                    .append(" packets, ").append(counter[RAW_BYTES])
+                    .append(" -> ").append(counter[WIRE_BYTES])
+                    .append(" bytes\n");
+        }
+        return sb.toString();
+    }
+}
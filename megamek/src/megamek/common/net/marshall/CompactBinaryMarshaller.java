@@ -0,0 +1,500 @@
+/*
+ * MegaMek - Copyright (C) 2016 The MegaMek Team
+ *
+ *  This program is free software; you can redistribute it and/or modify it
+ *  under the terms of the GNU General Public License as published by the Free
+ *  Software Foundation; either version 2 of the License, or (at your option)
+ *  any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ *  or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ *  for more details.
+ */
+
+package megamek.common.net.marshall;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.Hashtable;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Vector;
+
+import megamek.common.Board;
+import megamek.common.Building;
+import megamek.common.Coords;
+import megamek.common.GameTurn;
+import megamek.common.Hex;
+import megamek.common.IHex;
+import megamek.common.ITerrain;
+import megamek.common.InfernoTracker;
+import megamek.common.Report;
+import megamek.common.SpecialHexDisplay;
+import megamek.common.Terrain;
+import megamek.common.Terrains;
+import megamek.common.UnitLocation;
+import megamek.common.net.EntityDelta;
+import megamek.common.net.Packet;
+
+/**
+ * Marshaller that writes the hot packet payloads in a schema-based binary
+ * form. Every element of the packet data is written with a one byte type tag
+ * followed by its fields. Values of the common payload types (reports, turns,
+ * hexes, boards, entity deltas, unit locations, coordinates and the
+ * collections holding them) are encoded field by field; anything else falls
+ * back to native serialization. That includes whole entities and move paths,
+ * whose state is spread over too many classes to be written by hand, and the
+ * buildings and infernos of a board, though its hexes are compact. All
+ * fallback objects of a packet share a single
+ * <code>ObjectOutputStream</code>, so class descriptors and shared references
+ * are written only once per packet.
+ * <p>
+ * The packet is laid out as the command, the length of the serialized
+ * fallback section, the fallback section itself and then the tagged values.
+ * The fallback section comes first so that the values can refer to the
+ * already decoded objects by index while they are read.
+ */
+class CompactBinaryMarshaller extends PacketMarshaller {
+
+    private static final byte TAG_NULL = 0;
+    private static final byte TAG_FALLBACK = 1;
+    private static final byte TAG_INTEGER = 2;
+    private static final byte TAG_BOOLEAN = 3;
+    private static final byte TAG_LONG = 4;
+    private static final byte TAG_STRING = 5;
+    private static final byte TAG_INT_ARRAY = 6;
+    private static final byte TAG_COORDS = 7;
+    private static final byte TAG_UNIT_LOCATION = 8;
+    private static final byte TAG_REPORT = 9;
+    private static final byte TAG_HEX = 10;
+    private static final byte TAG_GAME_TURN = 11;
+    private static final byte TAG_VECTOR = 12;
+    private static final byte TAG_ARRAY_LIST = 13;
+    private static final byte TAG_HASH_SET = 14;
+    private static final byte TAG_LINKED_HASH_SET = 15;
+    private static final byte TAG_UNMODIFIABLE_LIST = 16;
+    private static final byte TAG_BOARD = 17;
+    private static final byte TAG_ENTITY_DELTA = 18;
+
+    /**
+     * The game hands out its entity and turn lists wrapped in these
+     */
+    private static final Class<?> UNMODIFIABLE_RANDOM_ACCESS_LIST = Collections
+            .unmodifiableList(new ArrayList<Object>()).getClass();
+    private static final Class<?> UNMODIFIABLE_LIST = Collections
+            .unmodifiableList(new LinkedList<Object>()).getClass();
+
+    private static final byte TURN_GENERIC = 0;
+    private static final byte TURN_SPECIFIC_ENTITY = 1;
+    private static final byte TURN_ENTITY_CLASS = 2;
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see megamek.common.net.marshall.PacketMarshaller#marshall(megamek.common.net.Packet,
+     *      java.io.OutputStream)
+     */
+    @Override
+    public void marshall(Packet packet, OutputStream stream) throws Exception {
+        ByteArrayOutputStream values = new ByteArrayOutputStream();
+        DataOutputStream vout = new DataOutputStream(values);
+        List<Object> fallback = new ArrayList<Object>();
+        Object[] data = packet.getData();
+        if (data == null) {
+            vout.writeInt(-1);
+        } else {
+            vout.writeInt(data.length);
+            for (Object o : data) {
+                writeValue(vout, o, fallback);
+            }
+        }
+        vout.flush();
+
+        DataOutputStream out = new DataOutputStream(stream);
+        out.writeInt(packet.getCommand());
+        if (fallback.isEmpty()) {
+            out.writeInt(0);
+        } else {
+            ByteArrayOutputStream objects = new ByteArrayOutputStream();
+            ObjectOutputStream oout = new ObjectOutputStream(objects);
+            oout.writeInt(fallback.size());
+            for (Object o : fallback) {
+                oout.writeObject(o);
+            }
+            oout.close();
+            out.writeInt(objects.size());
+            objects.writeTo(out);
+        }
+        values.writeTo(out);
+        out.flush();
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see megamek.common.net.marshall.PacketMarshaller#unmarshall(java.io.InputStream)
+     */
+    @Override
+    public Packet unmarshall(InputStream stream) throws Exception {
+        DataInputStream in = new DataInputStream(stream);
+        int command = in.readInt();
+        int fallbackLength = in.readInt();
+        Object[] fallback = null;
+        if (fallbackLength > 0) {
+            byte[] objects = new byte[fallbackLength];
+            in.readFully(objects);
+            ObjectInputStream oin = new ObjectInputStream(
+                    new ByteArrayInputStream(objects));
+            fallback = new Object[oin.readInt()];
+            for (int i = 0; i < fallback.length; i++) {
+                fallback[i] = oin.readObject();
+            }
+        }
+        int count = in.readInt();
+        Object[] data = null;
+        if (count >= 0) {
+            data = new Object[count];
+            for (int i = 0; i < count; i++) {
+                data[i] = readValue(in, fallback);
+            }
+        }
+        return new Packet(command, data);
+    }
+
+    /**
+     * Writes a single tagged value. Values without a compact form are added
+     * to the fallback list and only their index is written.
+     */
+    private void writeValue(DataOutputStream out, Object value,
+            List<Object> fallback) throws IOException {
+        if (value == null) {
+            out.writeByte(TAG_NULL);
+            return;
+        }
+        Class<?> c = value.getClass();
+        if (c == Integer.class) {
+            out.writeByte(TAG_INTEGER);
+            out.writeInt((Integer) value);
+        } else if (c == Boolean.class) {
+            out.writeByte(TAG_BOOLEAN);
+            out.writeBoolean((Boolean) value);
+        } else if (c == Long.class) {
+            out.writeByte(TAG_LONG);
+            out.writeLong((Long) value);
+        } else if (c == String.class) {
+            out.writeByte(TAG_STRING);
+            writeString(out, (String) value);
+        } else if (c == int[].class) {
+            int[] array = (int[]) value;
+            out.writeByte(TAG_INT_ARRAY);
+            out.writeInt(array.length);
+            for (int i : array) {
+                out.writeInt(i);
+            }
+        } else if (c == Coords.class) {
+            out.writeByte(TAG_COORDS);
+            writeCoords(out, (Coords) value);
+        } else if (c == UnitLocation.class) {
+            UnitLocation loc = (UnitLocation) value;
+            out.writeByte(TAG_UNIT_LOCATION);
+            out.writeInt(loc.getId());
+            writeCoords(out, loc.getCoords());
+            out.writeInt(loc.getFacing());
+            out.writeInt(loc.getElevation());
+        } else if (c == Report.class) {
+            out.writeByte(TAG_REPORT);
+            ((Report) value).writeCompact(out);
+        } else if (c == Hex.class) {
+            out.writeByte(TAG_HEX);
+            writeHex(out, (Hex) value);
+        } else if ((c == GameTurn.class)
+                || (c == GameTurn.SpecificEntityTurn.class)
+                || (c == GameTurn.EntityClassTurn.class)) {
+            out.writeByte(TAG_GAME_TURN);
+            writeGameTurn(out, (GameTurn) value);
+        } else if (c == Vector.class) {
+            out.writeByte(TAG_VECTOR);
+            writeCollection(out, (Collection<?>) value, fallback);
+        } else if (c == ArrayList.class) {
+            out.writeByte(TAG_ARRAY_LIST);
+            writeCollection(out, (Collection<?>) value, fallback);
+        } else if (c == HashSet.class) {
+            out.writeByte(TAG_HASH_SET);
+            writeCollection(out, (Collection<?>) value, fallback);
+        } else if (c == LinkedHashSet.class) {
+            out.writeByte(TAG_LINKED_HASH_SET);
+            writeCollection(out, (Collection<?>) value, fallback);
+        } else if ((c == UNMODIFIABLE_RANDOM_ACCESS_LIST)
+                || (c == UNMODIFIABLE_LIST)) {
+            out.writeByte(TAG_UNMODIFIABLE_LIST);
+            writeCollection(out, (Collection<?>) value, fallback);
+        } else if (c == Board.class) {
+            out.writeByte(TAG_BOARD);
+            writeBoard(out, (Board) value, fallback);
+        } else if (c == EntityDelta.class) {
+            out.writeByte(TAG_ENTITY_DELTA);
+            ((EntityDelta) value).writeCompact(out);
+        } else {
+            out.writeByte(TAG_FALLBACK);
+            out.writeInt(fallback.size());
+            fallback.add(value);
+        }
+    }
+
+    private Object readValue(DataInputStream in, Object[] fallback)
+            throws IOException {
+        byte tag = in.readByte();
+        switch (tag) {
+            case TAG_NULL:
+                return null;
+            case TAG_FALLBACK:
+                return fallback[in.readInt()];
+            case TAG_INTEGER:
+                return in.readInt();
+            case TAG_BOOLEAN:
+                return in.readBoolean();
+            case TAG_LONG:
+                return in.readLong();
+            case TAG_STRING:
+                return readString(in);
+            case TAG_INT_ARRAY:
+                int[] array = new int[in.readInt()];
+                for (int i = 0; i < array.length; i++) {
+                    array[i] = in.readInt();
+                }
+                return array;
+            case TAG_COORDS:
+                return readCoords(in);
+            case TAG_UNIT_LOCATION:
+                int id = in.readInt();
+                Coords coords = readCoords(in);
+                int facing = in.readInt();
+                return new UnitLocation(id, coords, facing, in.readInt());
+            case TAG_REPORT:
+                return Report.readCompact(in);
+            case TAG_HEX:
+                return readHex(in);
+            case TAG_GAME_TURN:
+                return readGameTurn(in);
+            case TAG_VECTOR:
+                int size = in.readInt();
+                return readCollection(in, new Vector<Object>(size), size,
+                        fallback);
+            case TAG_ARRAY_LIST:
+                size = in.readInt();
+                return readCollection(in, new ArrayList<Object>(size), size,
+                        fallback);
+            case TAG_HASH_SET:
+                size = in.readInt();
+                return readCollection(in, new HashSet<Object>(), size,
+                        fallback);
+            case TAG_LINKED_HASH_SET:
+                size = in.readInt();
+                return readCollection(in, new LinkedHashSet<Object>(), size,
+                        fallback);
+            case TAG_UNMODIFIABLE_LIST:
+                size = in.readInt();
+                return Collections.unmodifiableList((List<Object>) readCollection(
+                        in, new ArrayList<Object>(size), size, fallback));
+            case TAG_BOARD:
+                return readBoard(in, fallback);
+            case TAG_ENTITY_DELTA:
+                return EntityDelta.readCompact(in);
+            default:
+                throw new IOException("Unknown compact value tag " + tag);
+        }
+    }
+
+    private void writeCollection(DataOutputStream out, Collection<?> values,
+            List<Object> fallback) throws IOException {
+        out.writeInt(values.size());
+        for (Object o : values) {
+            writeValue(out, o, fallback);
+        }
+    }
+
+    private Collection<Object> readCollection(DataInputStream in,
+            Collection<Object> values, int size, Object[] fallback)
+            throws IOException {
+        for (int i = 0; i < size; i++) {
+            values.add(readValue(in, fallback));
+        }
+        return values;
+    }
+
+    private static void writeString(DataOutputStream out, String s)
+            throws IOException {
+        // writeUTF is limited to 64k, which long chat lines can exceed
+        byte[] bytes = s.getBytes("UTF-8");
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, "UTF-8");
+    }
+
+    private static void writeCoords(DataOutputStream out, Coords coords)
+            throws IOException {
+        out.writeBoolean(coords != null);
+        if (coords != null) {
+            out.writeInt(coords.getX());
+            out.writeInt(coords.getY());
+        }
+    }
+
+    private static Coords readCoords(DataInputStream in) throws IOException {
+        if (!in.readBoolean()) {
+            return null;
+        }
+        int x = in.readInt();
+        return new Coords(x, in.readInt());
+    }
+
+    private static void writeHex(DataOutputStream out, Hex hex)
+            throws IOException {
+        out.writeInt(hex.getLevel());
+        out.writeBoolean(hex.getTheme() != null);
+        if (hex.getTheme() != null) {
+            out.writeUTF(hex.getTheme());
+        }
+        out.writeInt(hex.getFireTurn());
+        writeCoords(out, hex.getCoords());
+        int[] types = hex.getTerrainTypes();
+        out.writeInt(types.length);
+        for (int type : types) {
+            ITerrain terrain = hex.getTerrain(type);
+            out.writeInt(terrain.getType());
+            out.writeInt(terrain.getLevel());
+            out.writeBoolean(terrain.hasExitsSpecified());
+            out.writeInt(terrain.getExits());
+            out.writeInt(terrain.getTerrainFactor());
+        }
+    }
+
+    private static Hex readHex(DataInputStream in) throws IOException {
+        int level = in.readInt();
+        String theme = in.readBoolean() ? in.readUTF() : null;
+        int fireTurn = in.readInt();
+        Coords coords = readCoords(in);
+        ITerrain[] terrains = new ITerrain[Terrains.SIZE];
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            int type = in.readInt();
+            int terrainLevel = in.readInt();
+            boolean exitsSpecified = in.readBoolean();
+            int exits = in.readInt();
+            Terrain terrain = new Terrain(type, terrainLevel, exitsSpecified,
+                    exits);
+            terrain.setTerrainFactor(in.readInt());
+            terrains[type] = terrain;
+        }
+        Hex hex = new Hex(level, terrains, theme, coords);
+        hex.setFireTurn(fireTurn);
+        return hex;
+    }
+
+    /**
+     * Writes the size, type and hexes of a board field by field. Its
+     * buildings, infernos and special hex displays go into the fallback
+     * section.
+     */
+    private void writeBoard(DataOutputStream out, Board board,
+            List<Object> fallback) throws IOException {
+        int width = board.getWidth();
+        int height = board.getHeight();
+        out.writeInt(width);
+        out.writeInt(height);
+        out.writeInt(board.getType());
+        out.writeBoolean(board.getRoadsAutoExit());
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                writeValue(out, board.getHex(x, y), fallback);
+            }
+        }
+        Vector<Building> buildings = new Vector<Building>();
+        for (Enumeration<Building> e = board.getBuildings(); e
+                .hasMoreElements(); ) {
+            buildings.add(e.nextElement());
+        }
+        writeValue(out, buildings, fallback);
+        writeValue(out, board.getInfernos(), fallback);
+        writeValue(out, board.getSpecialHexDisplayTable(), fallback);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Board readBoard(DataInputStream in, Object[] fallback)
+            throws IOException {
+        int width = in.readInt();
+        int height = in.readInt();
+        int type = in.readInt();
+        boolean roadsAutoExit = in.readBoolean();
+        IHex[] hexes = new IHex[width * height];
+        for (int i = 0; i < hexes.length; i++) {
+            hexes[i] = (IHex) readValue(in, fallback);
+        }
+        Vector<Building> buildings = (Vector<Building>) readValue(in,
+                fallback);
+        Hashtable<Coords, InfernoTracker> infernos = (Hashtable<Coords, InfernoTracker>) readValue(
+                in, fallback);
+        Board board = new Board(width, height, hexes, buildings, infernos);
+        board.setSpecialHexDisplayTable((Hashtable<Coords, Collection<SpecialHexDisplay>>) readValue(
+                in, fallback));
+        board.setType(type);
+        board.setRoadsAutoExit(roadsAutoExit);
+        return board;
+    }
+
+    private static void writeGameTurn(DataOutputStream out, GameTurn turn)
+            throws IOException {
+        if (turn instanceof GameTurn.SpecificEntityTurn) {
+            out.writeByte(TURN_SPECIFIC_ENTITY);
+            out.writeInt(((GameTurn.SpecificEntityTurn) turn).getEntityNum());
+        } else if (turn instanceof GameTurn.EntityClassTurn) {
+            out.writeByte(TURN_ENTITY_CLASS);
+            out.writeInt(((GameTurn.EntityClassTurn) turn).getTurnCode());
+        } else {
+            out.writeByte(TURN_GENERIC);
+        }
+        out.writeInt(turn.getPlayerNum());
+        out.writeBoolean(turn.isMultiTurn());
+    }
+
+    private static GameTurn readGameTurn(DataInputStream in)
+            throws IOException {
+        byte kind = in.readByte();
+        int extra = (kind == TURN_GENERIC) ? 0 : in.readInt();
+        int playerId = in.readInt();
+        GameTurn turn;
+        switch (kind) {
+            case TURN_SPECIFIC_ENTITY:
+                turn = new GameTurn.SpecificEntityTurn(playerId, extra);
+                break;
+            case TURN_ENTITY_CLASS:
+                turn = new GameTurn.EntityClassTurn(playerId, extra);
+                break;
+            default:
+                turn = new GameTurn(playerId);
+                break;
+        }
+        turn.setMultiTurn(in.readBoolean());
+        return turn;
+    }
+
+}
@@ -31,6 +31,12 @@ public abstract class PacketMarshaller {
      */
     public static final int NATIVE_SERIALIZATION_MARSHALING = 0;
 
+    /**
+     * Compact binary marshalling of the common payloads, falling back to
+     * native serialization for everything else
+     */
+    public static final int COMPACT_BINARY_MARSHALING = 1;
+
     /**
      * Marshalls the packet data into the <code>byte[]</code>
      *
@@ -20,6 +20,8 @@ public class PacketMarshallerFactory {
 
     private NativeSerializationMarshaller nativeSerializationMarshaller;
 
+    private CompactBinaryMarshaller compactBinaryMarshaller;
+
     private PacketMarshallerFactory() {
     }
 
@@ -34,6 +36,11 @@ public class PacketMarshallerFactory {
                     nativeSerializationMarshaller = new NativeSerializationMarshaller();
                 }
                 return nativeSerializationMarshaller;
+            case PacketMarshaller.COMPACT_BINARY_MARSHALING:
+                if (compactBinaryMarshaller == null) {
+                    compactBinaryMarshaller = new CompactBinaryMarshaller();
+                }
+                return compactBinaryMarshaller;
             default:
                 return null;
         }
@@ -55,6 +55,9 @@ class ClientPreferences extends PreferenceStoreProxy implements
         store.setDefault(MAP_HEIGHT, 1);
         store.setDefault(DEBUG_OUTPUT_ON,false);
         store.setDefault(MEMORY_DUMP_ON,false);
+        store.setDefault(USE_NIO_CONNECTIONS, false);
+        store.setDefault(USE_LOCAL_CONNECTIONS, true);
+        store.setDefault(AUTOSAVE_GENERATIONS, 3);
         setLocale(store.getString(LOCALE));
         setMekHitLocLog();
     }
@@ -336,4 +339,28 @@ class ClientPreferences extends PreferenceStoreProxy implements
         return store.getInt(MAP_HEIGHT);
     }
 
+    public boolean useNioConnections() {
+        return store.getBoolean(USE_NIO_CONNECTIONS);
+    }
+
+    public void setUseNioConnections(boolean state) {
+        store.setValue(USE_NIO_CONNECTIONS, state);
+    }
+
+    public boolean useLocalConnections() {
+        return store.getBoolean(USE_LOCAL_CONNECTIONS);
+    }
+
+    public void setUseLocalConnections(boolean state) {
+        store.setValue(USE_LOCAL_CONNECTIONS, state);
+    }
+
+    public int getAutosaveGenerations() {
+        return store.getInt(AUTOSAVE_GENERATIONS);
+    }
+
+    public void setAutosaveGenerations(int generations) {
+        store.setValue(AUTOSAVE_GENERATIONS, generations);
+    }
+
 }
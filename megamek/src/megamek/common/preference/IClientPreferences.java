@@ -57,6 +57,9 @@ public interface IClientPreferences extends IPreferenceStore {
     public static final String BOARD_HEIGHT = "BoardHeight";
     public static final String MAP_WIDTH = "MapWidth";
     public static final String MAP_HEIGHT = "MapHeight";
+    public static final String USE_NIO_CONNECTIONS = "UseNioConnections";
+    public static final String USE_LOCAL_CONNECTIONS = "UseLocalConnections";
+    public static final String AUTOSAVE_GENERATIONS = "AutosaveGenerations";
 
     boolean getPrintEntityChange();
 
@@ -172,4 +175,16 @@ public interface IClientPreferences extends IPreferenceStore {
 
     int getMapHeight();
 
+    boolean useNioConnections();
+
+    void setUseNioConnections(boolean state);
+
+    boolean useLocalConnections();
+
+    void setUseLocalConnections(boolean state);
+
+    int getAutosaveGenerations();
+
+    void setAutosaveGenerations(int generations);
+
 }
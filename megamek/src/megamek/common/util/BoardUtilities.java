@@ -29,6 +29,7 @@ import megamek.common.IHex;
 import megamek.common.ITerrain;
 import megamek.common.ITerrainFactory;
 import megamek.common.MapSettings;
+import megamek.common.MMRandom;
 import megamek.common.PlanetaryConditions;
 import megamek.common.Terrains;
 
@@ -95,11 +96,21 @@ public class BoardUtilities {
     }
 
     /**
-     * Generates a Random Board
+     * Generates a Random Board. The random numbers come from the map stream of
+     * {@link Compute}, so generating maps doesn't change the dice of the game.
      *
      * @param mapSettings The parameters for random board creation.
      */
     public static IBoard generateRandom(MapSettings mapSettings) {
+        MMRandom previous = Compute.useStream(Compute.RandomStream.MAP);
+        try {
+            return generateRandomBoard(mapSettings);
+        } finally {
+            Compute.setThreadRNG(previous);
+        }
+    }
+
+    private static IBoard generateRandomBoard(MapSettings mapSettings) {
         int elevationMap[][] = new int[mapSettings.getBoardWidth()][mapSettings
                 .getBoardHeight()];
         double sizeScale = (double) (mapSettings.getBoardWidth() * mapSettings
@@ -68,4 +68,16 @@ public interface AttackHandler {
     
     public void setStrafingFirstShot(boolean isFirstShotStrafing);
 
+    /**
+     * The seed the dice of this attack are rolled from, or 0 if it rolls from
+     * the common generator. When the host chose the seedable generator,
+     * every attack rolls from its own generator, so its results don't depend
+     * on how many dice other attacks rolled before it.
+     * 
+     * @return
+     */
+    public long getRollSeed();
+
+    public void setRollSeed(long rollSeed);
+
 }
@@ -112,6 +112,12 @@ public class WeaponHandler implements AttackHandler, Serializable {
      */
     protected boolean isStrafingFirstShot = false;
 
+    /**
+     * The seed of the dice this attack rolls, see
+     * {@link AttackHandler#getRollSeed()}
+     */
+    protected long rollSeed;
+
     /**
      * return the <code>int</code> Id of the attacking <code>Entity</code>
      */
@@ -1470,4 +1476,12 @@ public class WeaponHandler implements AttackHandler, Serializable {
         this.isStrafingFirstShot = isStrafingFirstShot;
     }
 
+    public long getRollSeed() {
+        return rollSeed;
+    }
+
+    public void setRollSeed(long rollSeed) {
+        this.rollSeed = rollSeed;
+    }
+
 }
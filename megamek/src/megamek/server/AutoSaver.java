@@ -0,0 +1,348 @@
+/*
+ * MegaMek - Copyright (C) 2016 The MegaMek Team
+ *
+ *  This program is free software; you can redistribute it and/or modify it
+ *  under the terms of the GNU General Public License as published by the Free
+ *  Software Foundation; either version 2 of the License, or (at your option)
+ *  any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ *  or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ *  for more details.
+ */
+
+package megamek.server;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import megamek.common.IGame;
+import megamek.common.SavedGame;
+
+/**
+ * Saves the game in the background. The game is serialized into a snapshot
+ * on the calling thread, which is cheap compared to compressing it and
+ * writing it out; that is left to a low priority writer thread, so the server
+ * doesn't hold its lock while the disk is busy.
+ * <p>
+ * Snapshots wait for the writer in the order they were taken. Only the newest
+ * snapshot for each file waits: if the writer is still busy when the game is
+ * saved to a file again, the older snapshot for that file is dropped, while
+ * snapshots for other files are all written. The writer tells an optional
+ * {@link Listener} whether each write worked.
+ * <p>
+ * Files are written under a temporary name and renamed when complete, so a
+ * saved game is never left half written. The previous saves to the same name
+ * are kept as numbered generations, <code>autosave.1.sav.gz</code> being the
+ * one before <code>autosave.sav.gz</code>.
+ */
+public class AutoSaver {
+
+    private final Object lock = new Object();
+
+    private final Map<File, Pending> pending = new LinkedHashMap<File, Pending>();
+
+    private Thread writer;
+
+    private boolean writing;
+
+    private boolean shutdown;
+
+    private volatile long snapshots;
+    private volatile long writes;
+    private volatile long dropped;
+    private volatile long failures;
+    private volatile long lastSnapshotNanos;
+    private volatile long totalSnapshotNanos;
+    private volatile long lastWriteNanos;
+    private volatile long totalWriteNanos;
+    private volatile long lastBytesWritten;
+    private volatile long totalBytesWritten;
+
+    /**
+     * Takes a snapshot of the game and has it written to the file in the
+     * background. Has to be called while nobody changes the game.
+     *
+     * @param game        the game to save
+     * @param file        the file to write
+     * @param generations how many saves to the same file are kept, including
+     *                    the new one
+     */
+    public void save(IGame game, File file, int generations) throws IOException {
+        save(game, file, generations, null);
+    }
+
+    /**
+     * Takes a snapshot of the game and has it written to the file in the
+     * background. Has to be called while nobody changes the game.
+     *
+     * @param game        the game to save
+     * @param file        the file to write
+     * @param generations how many saves to the same file are kept, including
+     *                    the new one
+     * @param listener    told by the writer thread whether the file was
+     *                    written, may be <code>null</code>. It isn't told
+     *                    about a snapshot that was dropped for a newer one.
+     */
+    public void save(IGame game, File file, int generations, Listener listener)
+            throws IOException {
+        long start = System.nanoTime();
+        SavedGame.Snapshot snapshot = SavedGame.snapshot(game);
+        long time = System.nanoTime() - start;
+        lastSnapshotNanos = time;
+        totalSnapshotNanos += time;
+        snapshots++;
+
+        synchronized (lock) {
+            if (shutdown) {
+                return;
+            }
+            // a newer snapshot for the same file takes the place of the
+            // waiting one, so the files are still written in order
+            if (pending.remove(file) != null) {
+                dropped++;
+            }
+            pending.put(file, new Pending(snapshot, file, generations,
+                    listener));
+            if (writer == null) {
+                writer = new Thread(new Runnable() {
+                    public void run() {
+                        writeAll();
+                    }
+                }, "Autosave Writer");
+                writer.setDaemon(true);
+                writer.setPriority(Thread.MIN_PRIORITY);
+                writer.start();
+            }
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * Waits until every snapshot taken so far has been written
+     */
+    public void flush() throws InterruptedException {
+        synchronized (lock) {
+            while (!pending.isEmpty() || writing) {
+                lock.wait();
+            }
+        }
+    }
+
+    /**
+     * Stops the writer once it has written the waiting snapshots
+     */
+    public void shutdown() {
+        synchronized (lock) {
+            shutdown = true;
+            lock.notifyAll();
+        }
+    }
+
+    private void writeAll() {
+        while (true) {
+            Pending next;
+            synchronized (lock) {
+                while (pending.isEmpty() && !shutdown) {
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (pending.isEmpty()) {
+                    return;
+                }
+                Iterator<Pending> first = pending.values().iterator();
+                next = first.next();
+                first.remove();
+                writing = true;
+            }
+            long start = System.nanoTime();
+            try {
+                write(next.snapshot, next.file, next.generations);
+                long time = System.nanoTime() - start;
+                lastWriteNanos = time;
+                totalWriteNanos += time;
+                lastBytesWritten = next.file.length();
+                totalBytesWritten += lastBytesWritten;
+                writes++;
+                if (next.listener != null) {
+                    next.listener.saved(next.file);
+                }
+            } catch (Exception e) {
+                failures++;
+                System.err.println("Unable to save file: " + next.file);
+                e.printStackTrace();
+                if (next.listener != null) {
+                    next.listener.failed(next.file, e);
+                }
+            } finally {
+                synchronized (lock) {
+                    writing = false;
+                    lock.notifyAll();
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes the snapshot to a temporary file, moves the earlier saves one
+     * generation back and then renames the new file into place.
+     */
+    public static void write(SavedGame.Snapshot snapshot, File file,
+            int generations) throws IOException {
+        File temp = new File(file.getPath() + ".tmp");
+        snapshot.save(temp);
+        if (file.exists() && (generations > 1)) {
+            for (int i = generations - 1; i > 1; i--) {
+                File older = getGeneration(file, i - 1);
+                if (older.exists()) {
+                    Files.move(older.toPath(), getGeneration(file, i).toPath(),
+                            StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+            // copied rather than moved, so there always is a saved game
+            Files.copy(file.toPath(), getGeneration(file, 1).toPath(),
+                    StandardCopyOption.REPLACE_EXISTING);
+        }
+        try {
+            Files.move(temp.toPath(), file.toPath(),
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp.toPath(), file.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Returns the file that the given earlier save to a file is kept in
+     *
+     * @param generation 1 for the save before the current one, 2 for the one
+     *                   before that and so on
+     */
+    public static File getGeneration(File file, int generation) {
+        String name = file.getName();
+        int dot = name.endsWith(".sav.gz") ? name.length() - 7 : name.length();
+        return new File(file.getParentFile(), name.substring(0, dot) + "."
+                + generation + name.substring(dot));
+    }
+
+    /**
+     * Returns the number of snapshots taken
+     */
+    public long getSnapshots() {
+        return snapshots;
+    }
+
+    /**
+     * Returns the number of snapshots written to disk
+     */
+    public long getWrites() {
+        return writes;
+    }
+
+    /**
+     * Returns the number of snapshots that were replaced by a newer one for
+     * the same file before they could be written
+     */
+    public long getDropped() {
+        return dropped;
+    }
+
+    /**
+     * Returns the number of snapshots that could not be written
+     */
+    public long getFailures() {
+        return failures;
+    }
+
+    /**
+     * Returns how long the last snapshot took, in milliseconds
+     */
+    public double getLastSnapshotMillis() {
+        return lastSnapshotNanos / 1e6;
+    }
+
+    /**
+     * Returns how long all snapshots took together, in milliseconds
+     */
+    public double getTotalSnapshotMillis() {
+        return totalSnapshotNanos / 1e6;
+    }
+
+    /**
+     * Returns how long writing the last snapshot took, in milliseconds
+     */
+    public double getLastWriteMillis() {
+        return lastWriteNanos / 1e6;
+    }
+
+    /**
+     * Returns how long writing all snapshots took together, in milliseconds
+     */
+    public double getTotalWriteMillis() {
+        return totalWriteNanos / 1e6;
+    }
+
+    /**
+     * Returns the size of the last file written
+     */
+    public long getLastBytesWritten() {
+        return lastBytesWritten;
+    }
+
+    /**
+     * Returns the size of all files written together
+     */
+    public long getTotalBytesWritten() {
+        return totalBytesWritten;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d snapshots (last %.1f ms, total %.1f ms), "
+                + "%d written (last %.1f ms, %d bytes; total %.1f ms, "
+                + "%d bytes), %d dropped, %d failed", snapshots,
+                getLastSnapshotMillis(), getTotalSnapshotMillis(), writes,
+                getLastWriteMillis(), lastBytesWritten, getTotalWriteMillis(),
+                totalBytesWritten, dropped, failures);
+    }
+
+    /**
+     * Is told by the writer thread how writing a snapshot went
+     */
+    public interface Listener {
+        /**
+         * The snapshot was written to the file
+         */
+        void saved(File file);
+
+        /**
+         * The snapshot could not be written to the file
+         */
+        void failed(File file, Exception e);
+    }
+
+    private static class Pending {
+        final SavedGame.Snapshot snapshot;
+        final File file;
+        final int generations;
+        final Listener listener;
+
+        Pending(SavedGame.Snapshot snapshot, File file, int generations,
+                Listener listener) {
+            this.snapshot = snapshot;
+            this.file = file;
+            this.generations = generations;
+            this.listener = listener;
+        }
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * MegaMek - Copyright (C) 2016 The MegaMek Team
+ *
+ *  This program is free software; you can redistribute it and/or modify it
+ *  under the terms of the GNU General Public License as published by the Free
+ *  Software Foundation; either version 2 of the License, or (at your option)
+ *  any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ *  or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ *  for more details.
+ */
+
+package megamek.server;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import megamek.common.net.EntityDelta;
+import megamek.common.net.IConnection;
+
+/**
+ * Remembers, for every connection that accepts {@link EntityDelta}s, the
+ * last serialized state of each entity that was sent over it. Connections
+ * that were sent the same update share the same state array.
+ */
+class EntityDeltaTracker {
+
+    private final Map<IConnection, Map<Integer, byte[]>> bases = new HashMap<IConnection, Map<Integer, byte[]>>();
+
+    /**
+     * Starts sending entity deltas to the given connection
+     */
+    synchronized void enable(IConnection conn) {
+        if (!bases.containsKey(conn)) {
+            bases.put(conn, new HashMap<Integer, byte[]>());
+        }
+    }
+
+    /**
+     * Returns <code>true</code> if the given connection accepts entity deltas
+     */
+    synchronized boolean isEnabled(IConnection conn) {
+        return bases.containsKey(conn);
+    }
+
+    /**
+     * Forgets everything about the given connection
+     */
+    synchronized void remove(IConnection conn) {
+        bases.remove(conn);
+    }
+
+    /**
+     * Returns the last state of the entity sent over the connection, or
+     * <code>null</code> if there is none
+     */
+    synchronized byte[] getBase(IConnection conn, int entityId) {
+        Map<Integer, byte[]> states = bases.get(conn);
+        return (states == null) ? null : states.get(entityId);
+    }
+
+    /**
+     * Records the state of the entity that was just sent over the connection
+     */
+    synchronized void setBase(IConnection conn, int entityId, byte[] state) {
+        Map<Integer, byte[]> states = bases.get(conn);
+        if (states != null) {
+            states.put(entityId, state);
+        }
+    }
+
+    /**
+     * Forgets the state of the entity on the connection, so the next update
+     * sends it whole
+     */
+    synchronized void clearBase(IConnection conn, int entityId) {
+        Map<Integer, byte[]> states = bases.get(conn);
+        if (states != null) {
+            states.remove(entityId);
+        }
+    }
+
+    /**
+     * Forgets the state of the entity on every connection, for when it
+     * leaves the game. Its id may be given to another entity later.
+     */
+    synchronized void clearEntity(int entityId) {
+        for (Map<Integer, byte[]> states : bases.values()) {
+            states.remove(entityId);
+        }
+    }
+
+    /**
+     * Forgets the states of all entities, but keeps sending deltas to the
+     * connections that accept them, for when the game is reset or replaced
+     */
+    synchronized void clearAll() {
+        for (Map<Integer, byte[]> states : bases.values()) {
+            states.clear();
+        }
+    }
+}
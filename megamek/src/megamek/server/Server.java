@@ -42,7 +42,9 @@ import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Hashtable;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
@@ -51,11 +53,15 @@ import java.util.Set;
 import java.util.Timer;
 import java.util.TimerTask;
 import java.util.TreeMap;
-import java.util.TreeSet;
 import java.util.Vector;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentLinkedQueue;
-import java.util.zip.GZIPInputStream;
-import java.util.zip.GZIPOutputStream;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 import megamek.MegaMek;
 import megamek.client.ui.swing.util.PlayerColors;
@@ -65,6 +71,7 @@ import megamek.common.BattleArmor;
 import megamek.common.Bay;
 import megamek.common.BipedMech;
 import megamek.common.Board;
+import megamek.common.BoardCatalogue;
 import megamek.common.BoardDimensions;
 import megamek.common.BombType;
 import megamek.common.Building;
@@ -114,6 +121,7 @@ import megamek.common.Jumpship;
 import megamek.common.LargeSupportTank;
 import megamek.common.LocationFullException;
 import megamek.common.LosEffects;
+import megamek.common.MMRandom;
 import megamek.common.MapSettings;
 import megamek.common.Mech;
 import megamek.common.MechWarrior;
@@ -132,6 +140,7 @@ import megamek.common.Protomech;
 import megamek.common.QuadMech;
 import megamek.common.Report;
 import megamek.common.Roll;
+import megamek.common.SavedGame;
 import megamek.common.SmallCraft;
 import megamek.common.SpaceStation;
 import megamek.common.SpecialHexDisplay;
@@ -190,21 +199,28 @@ import megamek.common.actions.UnjamTurretAction;
 import megamek.common.actions.UnloadStrandedAction;
 import megamek.common.actions.WeaponAttackAction;
 import megamek.common.containers.PlayerIDandList;
+import megamek.common.event.GameEntityRemoveEvent;
 import megamek.common.event.GameListener;
+import megamek.common.event.GameListenerAdapter;
 import megamek.common.event.GameVictoryEvent;
+import megamek.common.net.CompressionPolicy;
 import megamek.common.net.ConnectionFactory;
 import megamek.common.net.ConnectionListenerAdapter;
 import megamek.common.net.DisconnectedEvent;
+import megamek.common.net.EncodedPacket;
+import megamek.common.net.EntityDelta;
 import megamek.common.net.IConnection;
+import megamek.common.net.ILocalServer;
+import megamek.common.net.LocalConnection;
 import megamek.common.net.Packet;
 import megamek.common.net.PacketReceivedEvent;
+import megamek.common.net.marshall.PacketMarshallerFactory;
 import megamek.common.options.GameOptions;
 import megamek.common.options.IBasicOption;
 import megamek.common.options.IOption;
 import megamek.common.options.OptionsConstants;
 import megamek.common.preference.PreferenceManager;
 import megamek.common.util.BoardUtilities;
-import megamek.common.util.HashCodeUtil;
 import megamek.common.util.StringUtil;
 import megamek.common.verifier.EntityVerifier;
 import megamek.common.verifier.TestAero;
@@ -228,6 +244,7 @@ import megamek.server.commands.AssignNovaNetServerCommand;
 import megamek.server.commands.CheckBVCommand;
 import megamek.server.commands.CheckBVTeamCommand;
 import megamek.server.commands.DefeatCommand;
+import megamek.server.commands.ExportGameCommand;
 import megamek.server.commands.ExportListCommand;
 import megamek.server.commands.FixElevationCommand;
 import megamek.server.commands.HelpCommand;
@@ -255,43 +272,11 @@ import megamek.server.commands.VictoryCommand;
 import megamek.server.commands.WhoCommand;
 import megamek.server.victory.Victory;
 
-import com.thoughtworks.xstream.XStream;
-
 /**
  * @author Ben Mazur
  */
-public class Server implements Runnable {
-
-    private static class EntityTargetPair {
-        Entity ent;
-
-        Targetable target;
-
-        EntityTargetPair (Entity e, Targetable t) {
-            ent = e;
-            target = t;
-        }
-
-        @Override
-        public boolean equals(Object o) {
-            if (!(o instanceof EntityTargetPair)) {
-                return false;
-            }
-            EntityTargetPair other = (EntityTargetPair)o;
-            return ent.equals(other.ent)
-                    && (((target != null) && target.equals(other.target))
-                            || ((target == null) && (other.target == null)));
-        }
+public class Server implements Runnable, ILocalServer {
 
-        @Override
-        public int hashCode() {
-            int hashCode = HashCodeUtil.SEED;
-            hashCode = HashCodeUtil.hash(hashCode, ent.getId());
-            hashCode = HashCodeUtil.hash(hashCode, target);
-            return hashCode;
-        }
-
-    }
     /**
      * The DamageType enumeration is used for the damageEntity function.
      */
@@ -416,6 +401,16 @@ public class Server implements Runnable {
 
     private Timer serverBrowserUpdateTimer = null;
 
+    /**
+     * Writes autosaves to disk, so the game doesn't wait for the disk
+     */
+    private final AutoSaver autoSaver = new AutoSaver();
+
+    /**
+     * Works out the weapon attacks of different units at the same time
+     */
+    private ForkJoinPool attackPool;
+
     /**
      * Keeps track of what team a player requested to join.
      */
@@ -437,6 +432,16 @@ public class Server implements Runnable {
      */
     private Set<Coords> hexUpdateSet = new LinkedHashSet<Coords>();
 
+    /**
+     * The entity states the clients that accept entity deltas already have
+     */
+    private EntityDeltaTracker entityDeltas = new EntityDeltaTracker();
+
+    /**
+     * Line of sight between entities, for double-blind visibility
+     */
+    private VisibilityMatrix visibility = new VisibilityMatrix();
+
     private ConnectionListenerAdapter connectionListener = new ConnectionListenerAdapter() {
 
         /**
@@ -454,6 +459,7 @@ public class Server implements Runnable {
                 connections.removeElement(conn);
                 connectionsPending.removeElement(conn);
                 connectionIds.remove(conn.getId());
+                entityDeltas.remove(conn);
                 ConnectionHandler ch = connectionHandlers.get(conn.getId());
                 if (ch != null) {
                     ch.signalStop();
@@ -512,13 +518,22 @@ public class Server implements Runnable {
         this.metaServerUrl = metaServerUrl;
         this.password = password.length() > 0 ? password : null;
         // initialize server socket
-        serverSocket = new ServerSocket(port);
+        serverSocket = ConnectionFactory.getInstance().createServerSocket(port);
 
         motd = createMotd();
 
         game.getOptions().initialize();
         game.getOptions().loadOptions();
 
+        // entity ids are given out again, so the states of removed entities
+        // must not be used as the base of another entity's delta
+        game.addGameListener(new GameListenerAdapter() {
+            @Override
+            public void gameEntityRemove(GameEntityRemoveEvent e) {
+                entityDeltas.clearEntity(e.getEntity().getId());
+            }
+        });
+
         changePhase(IGame.Phase.PHASE_LOUNGE);
 
         // display server start text
@@ -553,6 +568,7 @@ public class Server implements Runnable {
         registerCommand(new ResetCommand(this));
         registerCommand(new RollCommand(this));
         registerCommand(new SaveGameCommand(this));
+        registerCommand(new ExportGameCommand(this));
         registerCommand(new LoadGameCommand(this));
         registerCommand(new SeeAllCommand(this));
         registerCommand(new SkipCommand(this));
@@ -603,6 +619,8 @@ public class Server implements Runnable {
         // Fully initialised, now accept connections
         connector = new Thread(this, "Connection Listener");
         connector.start();
+        ConnectionFactory.getInstance().registerLocalServer(
+                serverSocket.getLocalPort(), this);
 
         serverInstance = this;
     }
@@ -620,6 +638,11 @@ public class Server implements Runnable {
         }
 
         game = g;
+        entityDeltas.clearAll();
+        if (game.getRandomState() != null) {
+            // go on with the numbers the seeded game would have rolled
+            Compute.setRandomState(game.getRandomState());
+        }
 
         for (GameListener listener : gameListenersClone) {
             getGame().addGameListener(listener);
@@ -713,8 +736,15 @@ public class Server implements Runnable {
      */
     public void die() {
         watchdogTimer.cancel();
+        // finish writing any autosave that is still going
+        autoSaver.shutdown();
+        if (attackPool != null) {
+            attackPool.shutdown();
+        }
 
         // kill thread accepting new connections
+        ConnectionFactory.getInstance().unregisterLocalServer(
+                serverSocket.getLocalPort(), this);
         connector = null;
         packetPump.signalEnd();
         packetPumpThread.interrupt();
@@ -886,6 +916,43 @@ public class Server implements Runnable {
         } else {
             System.out.println("SUCCESS: Client/Server Version ("+version+") and Checksum ("+clientChecksum+") matched");
         }
+
+        // Newer clients tell us which marshalling and compression they would
+        // prefer to receive. Only honor it when both sides run the same
+        // build, since the compact formats aren't guaranteed to be stable
+        // across builds, even of the same version.
+        if (needs) {
+            return;
+        }
+        IConnection conn = getConnection(connId);
+        if (conn == null) {
+            conn = getPendingConnection(connId);
+        }
+        if (conn == null) {
+            return;
+        }
+        if (packet.getData().length > 2) {
+            int marshallingType = packet.getIntValue(2);
+            if (PacketMarshallerFactory.getInstance().getMarshaller(
+                    marshallingType) != null) {
+                conn.setMarshallingType(marshallingType);
+                System.out.println("s: connection " + connId
+                                   + " switched to marshalling type "
+                                   + marshallingType);
+            }
+        }
+        if (packet.getData().length > 3) {
+            CompressionPolicy policy = CompressionPolicy.getPolicy(packet
+                    .getIntValue(3));
+            if (policy != null) {
+                conn.setCompressionPolicy(policy);
+                System.out.println("s: connection " + connId
+                                   + " switched to " + policy);
+            }
+        }
+        if ((packet.getData().length > 4) && packet.getBooleanValue(4)) {
+            entityDeltas.enable(conn);
+        }
     }
 
     /**
@@ -1051,7 +1118,9 @@ public class Server implements Runnable {
                     send(connId, new Packet(Packet.COMMAND_ROUND_UPDATE,
                                             new Integer(game.getRoundCount())));
                     send(connId, createBoardPacket());
-                    send(connId, createAllReportsPacket(player));
+                    // Earlier rounds are only sent when the client asks
+                    send(connId, createRoundReportsPacket(game.getRoundCount(),
+                                                          player));
 
                     // Send entities *before* other phase changes.
                     if (doBlind()) {
@@ -1094,7 +1163,7 @@ public class Server implements Runnable {
      */
     public void sendEntities(int connId) {
         if (doBlind()) {
-            send(connId, createFilteredEntitiesPacket(getPlayer(connId), null));
+            send(connId, createFilteredEntitiesPacket(getPlayer(connId)));
         } else {
             send(connId, createEntitiesPacket());
         }
@@ -1216,6 +1285,7 @@ public class Server implements Runnable {
     public void resetGame() {
         // remove all entities
         game.reset();
+        entityDeltas.clearAll();
         send(createEntitiesPacket());
         send(new Packet(Packet.COMMAND_SENDING_MINEFIELDS, new Vector<Object>()));
 
@@ -1251,14 +1321,46 @@ public class Server implements Runnable {
     }
 
     /**
-     * automatically save the game
+     * automatically save the game. The game is serialized right away, but
+     * written to disk in the background, keeping the last few autosaves. The
+     * players are told once the file has been written, if they want to be.
      */
     public void autoSave() {
         String fileName = "autosave";
         if (PreferenceManager.getClientPreferences().stampFilenames()) {
             fileName = StringUtil.addDateTimeStamp(fileName);
         }
-        saveGame(fileName, game.getOptions().booleanOption("autosave_msg"));
+        File file = getSaveGameFile(fileName);
+        AutoSaver.Listener listener = null;
+        if (game.getOptions().booleanOption("autosave_msg")) {
+            listener = new AutoSaver.Listener() {
+                public void saved(File f) {
+                    sendChat("MegaMek", "Game saved to " + f);
+                }
+
+                public void failed(File f, Exception e) {
+                    sendChat("MegaMek", "Unable to save game to " + f);
+                }
+            };
+        }
+        try {
+            autoSaver.save(game, file, PreferenceManager.getClientPreferences()
+                    .getAutosaveGenerations(), listener);
+        } catch (Exception e) {
+            System.err.println("Unable to save file: " + file);
+            e.printStackTrace();
+            if (listener != null) {
+                listener.failed(file, e);
+            }
+        }
+    }
+
+    /**
+     * Returns the background writer of the autosaves, which knows how long
+     * they take
+     */
+    public AutoSaver getAutoSaver() {
+        return autoSaver;
     }
 
     /**
@@ -1307,35 +1409,59 @@ public class Server implements Runnable {
      *                 saving to the server chat.
      */
     public void saveGame(String sFile, boolean sendChat) {
+        File file = getSaveGameFile(sFile);
+        try {
+            AutoSaver.write(SavedGame.snapshot(game), file, 1);
+        } catch (Exception e) {
+            System.err.println("Unable to save file: " + file);
+            e.printStackTrace();
+            if (sendChat) {
+                sendChat("MegaMek", "Unable to save game to " + file);
+            }
+            return;
+        }
+
+        if (sendChat) {
+            sendChat("MegaMek", "Game saved to " + file);
+        }
+    }
+
+    /**
+     * export the game as XStream XML, which can be loaded just like a saved
+     * game
+     *
+     * @param sFile The <code>String</code> filename to use
+     */
+    public void exportGame(String sFile) {
+        File file = getSaveGameFile(sFile);
+        try {
+            SavedGame.exportXml(game, file);
+        } catch (Exception e) {
+            System.err.println("Unable to save file: " + file);
+            e.printStackTrace();
+        }
+        sendChat("MegaMek", "Game exported to " + file);
+    }
+
+    /**
+     * Returns the file in the savegames directory that a game saved under
+     * the given name goes to, creating the directory if needed
+     */
+    private File getSaveGameFile(String sFile) {
         // We need to strip the .gz if it exists,
         // otherwise we'll double up on it.
         if (sFile.endsWith(".gz")) {
             sFile = sFile.replace(".gz", "");
         }
-        XStream xstream = new XStream();
         String sFinalFile = sFile;
         if (!sFinalFile.endsWith(".sav")) {
             sFinalFile = sFile + ".sav";
         }
-        try {
-            File sDir = new File("savegames");
-            if (!sDir.exists()) {
-                sDir.mkdir();
-            }
-
-            sFinalFile = sDir + File.separator + sFinalFile;
-            GZIPOutputStream gzo = new GZIPOutputStream(new FileOutputStream(
-                    sFinalFile + ".gz"));
-            xstream.toXML(game, gzo);
-            gzo.close();
-        } catch (Exception e) {
-            System.err.println("Unable to save file: " + sFinalFile);
-            e.printStackTrace();
-        }
-
-        if (sendChat) {
-            sendChat("MegaMek", "Game saved to " + sFinalFile);
+        File sDir = new File("savegames");
+        if (!sDir.exists()) {
+            sDir.mkdir();
         }
+        return new File(sDir, sFinalFile + ".gz");
     }
 
     /**
@@ -1376,9 +1502,7 @@ public class Server implements Runnable {
         System.out.println("s: loading saved game file '" + f + '\'');
         IGame newGame;
         try {
-            XStream xstream = new XStream();
-            newGame = (IGame) xstream.fromXML(new GZIPInputStream(
-                    new FileInputStream(f)));
+            newGame = SavedGame.load(f);
         } catch (Exception e) {
             System.err.println("Unable to load file: " + f);
             e.printStackTrace();
@@ -2297,7 +2421,7 @@ public class Server implements Runnable {
             case PHASE_OFFBOARD:
                 // Update visibility indications if using double blind.
                 if (doBlind()) {
-                    updateVisibilityIndicator(null);
+                    updateVisibilityIndicator();
                 }
                 resetEntityPhase(phase);
                 checkForObservers();
@@ -3127,7 +3251,7 @@ public class Server implements Runnable {
                 break;
             case PHASE_MOVEMENT:
                 if (toSkip != null) {
-                    processMovement(toSkip, new MovePath(game, toSkip), null);
+                    processMovement(toSkip, new MovePath(game, toSkip));
                 }
                 endCurrentTurn(toSkip);
                 break;
@@ -4797,7 +4921,6 @@ public class Server implements Runnable {
      * the current turn.
      */
     private void receiveMovement(Packet packet, int connId) {
-        Map<EntityTargetPair, LosEffects> losCache = new HashMap<>();
         Entity entity = game.getEntity(packet.getIntValue(0));
         MovePath md = (MovePath) packet.getObject(1);
 
@@ -4819,7 +4942,7 @@ public class Server implements Runnable {
         }
 
         // looks like mostly everything's okay
-        processMovement(entity, md, losCache);
+        processMovement(entity, md);
 
         // The attacker may choose to break a chain whip grapple by expending MP
         if ((entity.getGrappled() != Entity.NONE)
@@ -4859,7 +4982,7 @@ public class Server implements Runnable {
 
         // Update visibility indications if using double blind.
         if (doBlind()) {
-            updateVisibilityIndicator(losCache);
+            updateVisibilityIndicator();
         }
 
         // This entity's turn is over.
@@ -5784,7 +5907,7 @@ public class Server implements Runnable {
                     }
                     game.removeTurnFor(target);
                     send(createTurnVectorPacket());
-                    processMovement(target, md, null);
+                    processMovement(target, md);
                     // for some reason it is not clearing out turn
                 } else {
                     // what needs to get checked?
@@ -6295,17 +6418,8 @@ public class Server implements Runnable {
      *
      * @param entity   The Entity that is moving
      * @param md       The MovePath that defines how the Entity moves
-     * @param losCache A cache that stores Los between various Entities and
-     *                 targets.  In doubleblind games, we may need to compute a
-     *                 lot of LosEffects, so caching them can really speed
-     *                 things up.
      */
-    private void processMovement(Entity entity, MovePath md,
-            Map<EntityTargetPair, LosEffects> losCache) {
-        // Make sure the cache isn't null
-        if (losCache == null) {
-            losCache = new HashMap<>();
-        }
+    private void processMovement(Entity entity, MovePath md) {
         Report r;
         boolean sideslipped = false; // for VTOL sideslipping
         PilotingRollData rollTarget;
@@ -8842,7 +8956,7 @@ public class Server implements Runnable {
         // Update the entitiy's position,
         // unless it is off the game map.
         if (!game.isOutOfGame(entity)) {
-            entityUpdate(entity.getId(), movePath, true, losCache);
+            entityUpdate(entity.getId(), movePath, true);
             if (entity.isDoomed()) {
                 send(createRemoveEntityPacket(entity.getId(),
                                               entity.getRemovalCondition()));
@@ -8899,7 +9013,7 @@ public class Server implements Runnable {
         // if using double blind, update the player on new units he might see
         if (doBlind()) {
             send(entity.getOwner().getId(),
-                 createFilteredEntitiesPacket(entity.getOwner(), losCache));
+                 createFilteredEntitiesPacket(entity.getOwner()));
         }
 
         // if we generated a charge attack, report it now
@@ -11929,7 +12043,7 @@ public class Server implements Runnable {
 
         // Update visibility indications if using double blind.
         if (doBlind()) {
-            updateVisibilityIndicator(null);
+            updateVisibilityIndicator();
         }
 
         endCurrentTurn(entity);
@@ -12290,7 +12404,7 @@ public class Server implements Runnable {
 
         // Update visibility indications if using double blind.
         if (doBlind()) {
-            updateVisibilityIndicator(null);
+            updateVisibilityIndicator();
         }
 
         endCurrentTurn(entity);
@@ -12621,17 +12735,16 @@ public class Server implements Runnable {
             allECMInfo = ComputeECM.computeAllEntitiesECMInfo(game
                     .getEntitiesVector());
         }
-        Map<EntityTargetPair, LosEffects> losCache = new HashMap<>();
         for (Entity entity : game.getEntitiesVector()) {
             // We are hidden once again!
             entity.clearSeenBy();
             entity.clearDetectedBy();
             // Handle visual spotting
-            for (IPlayer p : whoCanSee(entity, false, losCache)) {
+            for (IPlayer p : whoCanSee(entity, false)) {
                 entity.addBeenSeenBy(p);
             }
             // Handle detection by sensors
-            for (IPlayer p : whoCanDetect(entity, allECMInfo, losCache)) {
+            for (IPlayer p : whoCanDetect(entity, allECMInfo)) {
                     entity.addBeenDetectedBy(p);
             }
         }
@@ -12878,28 +12991,28 @@ public class Server implements Runnable {
      */
     private void resolveOnlyWeaponAttacks() {
         // loop thru received attack actions, getting attack handlers
+        List<WeaponAttackAction> attacks = new ArrayList<WeaponAttackAction>();
         for (Enumeration<EntityAction> i = game.getActions(); i
                 .hasMoreElements(); ) {
             EntityAction ea = i.nextElement();
             if (ea instanceof WeaponAttackAction) {
-                WeaponAttackAction waa = (WeaponAttackAction) ea;
-                Entity ae = game.getEntity(waa.getEntityId());
-                Mounted m = ae.getEquipment(waa.getWeaponId());
-                Weapon w = (Weapon) m.getType();
-                // Track attacks original target, for things like swarm LRMs
-                waa.setOriginalTargetId(waa.getTargetId());
-                waa.setOriginalTargetType(waa.getTargetType());
-                AttackHandler ah = w.fire(waa, game, this);
-                if (ah != null) {
-                    ah.setStrafing(waa.isStrafing());
-                    ah.setStrafingFirstShot(waa.isStrafingFirstShot());
-                    game.addAttack(ah);
-                    // check for aero elevation loss
-                    if ((ae instanceof Aero)
-                        && (waa.getAltitudeLoss(game) > ((Aero) ae)
-                            .getAltLoss())) {
-                        ((Aero) ae).setAltLoss(waa.getAltitudeLoss(game));
-                    }
+                attacks.add((WeaponAttackAction) ea);
+            }
+        }
+        AttackHandler[] handlers = fireWeapons(attacks, Compute.randomLong());
+        for (int i = 0; i < attacks.size(); i++) {
+            WeaponAttackAction waa = attacks.get(i);
+            Entity ae = game.getEntity(waa.getEntityId());
+            AttackHandler ah = handlers[i];
+            if (ah != null) {
+                ah.setStrafing(waa.isStrafing());
+                ah.setStrafingFirstShot(waa.isStrafingFirstShot());
+                game.addAttack(ah);
+                // check for aero elevation loss
+                if ((ae instanceof Aero)
+                    && (waa.getAltitudeLoss(game) > ((Aero) ae)
+                        .getAltLoss())) {
+                    ((Aero) ae).setAltLoss(waa.getAltitudeLoss(game));
                 }
             }
         }
@@ -12907,6 +13020,169 @@ public class Server implements Runnable {
         game.resetActions();
     }
 
+    /**
+     * Gets the attack handlers for the weapon attacks, working out their
+     * to-hit numbers and to-hit rolls. Firing a weapon only changes the
+     * state of the unit firing it, so the weapons of different units are
+     * fired at the same time, while each unit fires its weapons one by one
+     * in the order they were declared.
+     * <p>
+     * If the host chose the seedable generator, each attack rolls from its
+     * own generator, seeded from the given seed and the attack's position in
+     * the list, so the results are the same however the work is spread.
+     * Otherwise the attacks roll from the chosen generator as before, and
+     * which attack gets which numbers depends on the timing of the threads,
+     * as it doesn't matter for a generator that can't be replayed anyway.
+     * <p>
+     * Everything is done on this thread when the rolls are logged, since
+     * the log would then be out of order, when the chosen generator can't be
+     * used by several threads, or when a unit is under water, as working out
+     * its to-hit numbers briefly changes its elevation.
+     *
+     * @return the handler of each attack, or <code>null</code> where the
+     *         attack is impossible
+     */
+    private AttackHandler[] fireWeapons(final List<WeaponAttackAction> attacks,
+            final long seed) {
+        final AttackHandler[] handlers = new AttackHandler[attacks.size()];
+        Map<Integer, List<Integer>> byAttacker = new LinkedHashMap<Integer, List<Integer>>();
+        final boolean seeded = Compute.isSeedable();
+        boolean parallel = !game.getOptions().booleanOption("rng_log")
+                && (seeded || Compute.isThreadSafe());
+        for (int i = 0; i < attacks.size(); i++) {
+            Entity ae = game.getEntity(attacks.get(i).getEntityId());
+            if (ae.getElevation() < 0) {
+                parallel = false;
+            }
+            List<Integer> indexes = byAttacker.get(ae.getId());
+            if (indexes == null) {
+                indexes = new ArrayList<Integer>();
+                byAttacker.put(ae.getId(), indexes);
+            }
+            indexes.add(i);
+        }
+        if (!parallel || (byAttacker.size() < 2)) {
+            for (int i = 0; i < attacks.size(); i++) {
+                handlers[i] = fireWeapon(attacks.get(i), seeded, seed, i);
+            }
+            return handlers;
+        }
+        // Each unit's weapons are fired by whoever claims them first: a pool
+        // thread or, if this thread is interrupted while waiting, this one.
+        final List<List<Integer>> groups = new ArrayList<List<Integer>>(
+                byAttacker.values());
+        final AtomicBoolean[] claimed = new AtomicBoolean[groups.size()];
+        final CountDownLatch[] fired = new CountDownLatch[groups.size()];
+        final AtomicReference<RuntimeException> failure = new AtomicReference<RuntimeException>();
+        List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+        for (int g = 0; g < groups.size(); g++) {
+            claimed[g] = new AtomicBoolean();
+            fired[g] = new CountDownLatch(1);
+            final int group = g;
+            tasks.add(new Callable<Void>() {
+                public Void call() {
+                    if (claimed[group].compareAndSet(false, true)) {
+                        fireUnitWeapons(attacks, groups.get(group), seeded,
+                                seed, handlers, fired[group], failure);
+                    }
+                    return null;
+                }
+            });
+        }
+        try {
+            for (Future<Void> result : getAttackPool().invokeAll(tasks)) {
+                result.get();
+            }
+        } catch (InterruptedException e) {
+            // invokeAll cancelled the tasks that hadn't started; fire those
+            // weapons here and wait for the ones that had
+            for (int g = 0; g < groups.size(); g++) {
+                if (claimed[g].compareAndSet(false, true)) {
+                    fireUnitWeapons(attacks, groups.get(g), seeded, seed,
+                            handlers, fired[g], failure);
+                } else {
+                    awaitUninterruptibly(fired[g]);
+                }
+            }
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            // runtime exceptions are kept in failure, so this is an error
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
+        }
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+        return handlers;
+    }
+
+    /**
+     * Fires the weapons of one unit one by one
+     */
+    private void fireUnitWeapons(List<WeaponAttackAction> attacks,
+            List<Integer> indexes, boolean seeded, long seed,
+            AttackHandler[] handlers, CountDownLatch fired,
+            AtomicReference<RuntimeException> failure) {
+        try {
+            for (int i : indexes) {
+                handlers[i] = fireWeapon(attacks.get(i), seeded, seed, i);
+            }
+        } catch (RuntimeException e) {
+            failure.compareAndSet(null, e);
+        } finally {
+            fired.countDown();
+        }
+    }
+
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        while (true) {
+            try {
+                latch.await();
+                return;
+            } catch (InterruptedException e) {
+                // the interrupt is restored by the caller
+            }
+        }
+    }
+
+    /**
+     * Fires a single weapon, rolling from the generator of the attack if the
+     * dice are seeded
+     */
+    private AttackHandler fireWeapon(WeaponAttackAction waa, boolean seeded,
+            long seed, int index) {
+        long rollSeed = seeded ? MMRandom.mixSeed(seed, index) : 0;
+        MMRandom previous = seeded ? Compute.setThreadRNG(MMRandom
+                .seeded(rollSeed)) : null;
+        try {
+            Entity ae = game.getEntity(waa.getEntityId());
+            Mounted m = ae.getEquipment(waa.getWeaponId());
+            Weapon w = (Weapon) m.getType();
+            // Track attacks original target, for things like swarm LRMs
+            waa.setOriginalTargetId(waa.getTargetId());
+            waa.setOriginalTargetType(waa.getTargetType());
+            AttackHandler ah = w.fire(waa, game, this);
+            if (ah != null) {
+                ah.setRollSeed(rollSeed);
+            }
+            return ah;
+        } finally {
+            if (seeded) {
+                Compute.setThreadRNG(previous);
+            }
+        }
+    }
+
+    private synchronized ForkJoinPool getAttackPool() {
+        if (attackPool == null) {
+            attackPool = new ForkJoinPool(Runtime.getRuntime()
+                    .availableProcessors());
+        }
+        return attackPool;
+    }
+
     /**
      * Trigger the indicated AP Pod of the entity.
      *
@@ -26747,109 +27023,13 @@ public class Server implements Runnable {
         createSmoke(coords, smokeLevel, 0);
     }
 
-    /**
-     * Scans the boards directory for map boards of the appropriate size and
-     * returns them.
-     *
-     * @return A list of relative paths to the board files, without the '.board'
-     * extension.
-     */
-    private ArrayList<String> scanForBoardsInDir(final File boardDir,
-                                                 final String basePath, final BoardDimensions dimensions,
-                                                 ArrayList<String> boards) {
-        if (boardDir == null) {
-            throw new IllegalArgumentException("must provide searchDir");
-        }
-
-        if (basePath == null) {
-            throw new IllegalArgumentException("must provide basePath");
-        }
-
-        if (dimensions == null) {
-            throw new IllegalArgumentException("must provide dimensions");
-        }
-
-        if (boards == null) {
-            throw new IllegalArgumentException("must provide boards");
-        }
-
-        String fileList[] = boardDir.list();
-        for (String filename : fileList) {
-            File filepath = new File(boardDir, filename);
-            if (filepath.isDirectory()) {
-                scanForBoardsInDir(new File(boardDir, filename), basePath
-                                           .concat(File.separator).concat(filename), dimensions,
-                                   boards);
-            } else {
-                if (filename.endsWith(".board")) { //$NON-NLS-1$
-                    if (Board.boardIsSize(filepath, dimensions)) {
-                        boards.add(basePath.concat(File.separator)
-                                           .concat(filename.substring(0,
-                                                                      filename.lastIndexOf("."))));
-                    }
-                }
-            }
-        }
-        return boards;
-    }
-
-    /**
-     * Recursively scan the specified path to determine the board sizes
-     * available.
-     *
-     * @param searchDir The directory to search below this path (may be null for all
-     *                  in base path).
-     * @return
-     */
-    private void getBoardSizesInDir(final File searchDir,
-                                    TreeSet<BoardDimensions> sizes) {
-        if (searchDir == null) {
-            throw new IllegalArgumentException("must provide searchDir");
-        }
-
-        if (sizes == null) {
-            throw new IllegalArgumentException("must provide sizes");
-        }
-
-        String file_list[] = searchDir.list();
-
-        for (String filename : file_list) {
-            File query_file = new File(searchDir, filename);
-
-            if (query_file.isDirectory()) {
-                getBoardSizesInDir(query_file, sizes);
-            } else {
-                try {
-                    if (filename.endsWith(".board")) { //$NON-NLS-1$
-                        BoardDimensions size = Board.getSize(query_file);
-                        if (size == null) {
-                            throw new Exception();
-                        }
-                        sizes.add(Board.getSize(query_file));
-                    }
-                } catch (Exception e) {
-                    System.out.println("Error parsing board: "
-                                       + query_file.getAbsolutePath());
-                }
-            }
-        }
-    }
-
     /**
      * Get a list of the available board sizes from the boards data directory.
      *
      * @return A Set containing all the available board sizes.
      */
     private Set<BoardDimensions> getBoardSizes() {
-        TreeSet<BoardDimensions> board_sizes = new TreeSet<BoardDimensions>();
-
-        File boards_dir = Configuration.boardsDir();
-        // Slightly overkill sanity check...
-        if (boards_dir.isDirectory()) {
-            getBoardSizesInDir(boards_dir, board_sizes);
-        }
-
-        return board_sizes;
+        return BoardCatalogue.getInstance().getBoardSizes();
     }
 
     /**
@@ -26885,9 +27065,9 @@ public class Server implements Runnable {
         }
 
         // scan files
-        ArrayList<String> tempList = new ArrayList<String>();
+        List<String> tempList = BoardCatalogue.getInstance().getBoards(
+                dimensions);
         Comparator<String> sortComp = StringUtil.stringComparator();
-        scanForBoardsInDir(boardDir, "", dimensions, tempList);
         // if there are any boards, add these:
         if (tempList.size() > 0) {
             boards.add(MapSettings.BOARD_RANDOM);
@@ -26922,7 +27102,7 @@ public class Server implements Runnable {
      * everyone
      */
     public void entityUpdate(int nEntityID) {
-        entityUpdate(nEntityID, new Vector<UnitLocation>(), true, null);
+        entityUpdate(nEntityID, new Vector<UnitLocation>(), true);
     }
 
     /**
@@ -26934,8 +27114,7 @@ public class Server implements Runnable {
      *                         double-blind games.
      */
     public void entityUpdate(int nEntityID, Vector<UnitLocation> movePath,
-            boolean updateVisibility,
-            Map<EntityTargetPair, LosEffects> losCache) {
+            boolean updateVisibility) {
         Entity eTarget = game.getEntity(nEntityID);
         if (eTarget == null) {
             if (game.getOutOfGameEntity(nEntityID) != null) {
@@ -26956,7 +27135,7 @@ public class Server implements Runnable {
             Vector<IPlayer> playersVector = game.getPlayersVector();
             Vector<IPlayer> vCanSee;
             if (updateVisibility) {
-                vCanSee = whoCanSee(eTarget, true, losCache);
+                vCanSee = whoCanSee(eTarget, true);
             } else {
                 vCanSee = eTarget.getWhoCanSee();
             }
@@ -26978,25 +27157,16 @@ public class Server implements Runnable {
             }
 
             // send an entity update to everyone who can see
-            Packet pack = createEntityPacket(nEntityID, movePath);
-            for (int x = 0; x < vCanSee.size(); x++) {
-                IPlayer p = vCanSee.elementAt(x);
-                send(p.getId(), pack);
-            }
+            sendEntityUpdate(getConnections(vCanSee), nEntityID, movePath);
             // send an entity delete to everyone else
-            pack = createRemoveEntityPacket(nEntityID,
-                                            eTarget.getRemovalCondition());
-            for (int x = 0; x < playersVector.size(); x++) {
-                if (!vCanSee.contains(playersVector.elementAt(x))) {
-                    IPlayer p = playersVector.elementAt(x);
-                    send(p.getId(), pack);
-                }
-            }
+            sendToPlayers(playersNotIn(playersVector, vCanSee),
+                          createRemoveEntityPacket(nEntityID,
+                                                   eTarget.getRemovalCondition()));
 
             entityUpdateLoadedUnits(eTarget, vCanSee, playersVector);
         } else {
             // But if we're not, then everyone can see.
-            send(createEntityPacket(nEntityID, movePath));
+            sendEntityUpdate(getConnectionsSnapshot(), nEntityID, movePath);
         }
     }
 
@@ -27011,36 +27181,41 @@ public class Server implements Runnable {
      */
     private void entityUpdateLoadedUnits(Entity loader,
                                          Vector<IPlayer> vCanSee, Vector<IPlayer> playersVector) {
-        Packet pack;
-
         // In double-blind, the client may not know about the loaded units,
         // so we need to send them.
+        List<IPlayer> vCantSee = playersNotIn(playersVector, vCanSee);
         for (Entity eLoaded : loader.getLoadedUnits()) {
             // send an entity update to everyone who can see
-            pack = createEntityPacket(eLoaded.getId(), null);
-            for (int x = 0; x < vCanSee.size(); x++) {
-                IPlayer p = vCanSee.elementAt(x);
-                send(p.getId(), pack);
-            }
+            sendEntityUpdate(getConnections(vCanSee), eLoaded.getId(), null);
             // send an entity delete to everyone else
-            pack = createRemoveEntityPacket(eLoaded.getId(),
-                                            eLoaded.getRemovalCondition());
-            for (int x = 0; x < playersVector.size(); x++) {
-                if (!vCanSee.contains(playersVector.elementAt(x))) {
-                    IPlayer p = playersVector.elementAt(x);
-                    send(p.getId(), pack);
-                }
-            }
+            sendToPlayers(vCantSee,
+                          createRemoveEntityPacket(eLoaded.getId(),
+                                                   eLoaded.getRemovalCondition()));
             entityUpdateLoadedUnits(eLoaded, vCanSee, playersVector);
         }
     }
 
+    /**
+     * Returns the players from <code>players</code> that aren't in
+     * <code>excluded</code>.
+     */
+    private List<IPlayer> playersNotIn(List<IPlayer> players,
+                                       List<IPlayer> excluded) {
+        List<IPlayer> result = new ArrayList<IPlayer>(players.size());
+        for (IPlayer p : players) {
+            if (!excluded.contains(p)) {
+                result.add(p);
+            }
+        }
+        return result;
+    }
+
     /**
      * Returns a vector of which players can see this entity, always allowing
      * for sensor detections.
      */
     private Vector<IPlayer> whoCanSee(Entity entity) {
-        return whoCanSee(entity, true, null);
+        return whoCanSee(entity, true);
     }
 
     /**
@@ -27051,15 +27226,12 @@ public class Server implements Runnable {
      * @param useSensors A flag that determines whether sensors are allowed
      * @return A vector of the players who can see the entity
      */
-    private Vector<IPlayer> whoCanSee(Entity entity, boolean useSensors,
-            Map<EntityTargetPair, LosEffects> losCache) {
-        if (losCache == null) {
-            losCache = new HashMap<>();
-        }
+    private Vector<IPlayer> whoCanSee(Entity entity, boolean useSensors) {
         // Some times Null entities are sent to this
         if (entity == null) {
             return new Vector<IPlayer>();
         }
+        visibility.validate(game);
 
         List<ECMInfo> allECMInfo = null;
         if (game.getOptions().booleanOption("tacops_sensors") && useSensors) {
@@ -27095,13 +27267,7 @@ public class Server implements Runnable {
                     || vCanSee.contains(spotter.getOwner())) {
                 continue;
             }
-            // See if the LosEffects is cached, and if not cache it
-            EntityTargetPair etp = new EntityTargetPair(spotter, entity);
-            LosEffects los = losCache.get(etp);
-            if (los == null) {
-                los = LosEffects.calculateLos(game, spotter.getId(), entity);
-                losCache.put(etp, los);
-            }
+            LosEffects los = visibility.getLos(spotter, entity);
             if (Compute.canSee(game, spotter, entity, useSensors, los,
                     allECMInfo)) {
                 if (!vCanSee.contains(spotter.getOwner())) {
@@ -27118,21 +27284,16 @@ public class Server implements Runnable {
 
     /**
      * Determine which players can detect the given entity with sensors.
-     * Because recomputing ECM and LosEffects frequently can get expensive, this
-     * data can be cached and passed in.
+     * Because recomputing ECM frequently can get expensive, this data can be
+     * cached and passed in.
      *
      * @param entity        The Entity being detected.
      * @param allECMInfo    Cached ECMInfo for all Entities in the game.
-     * @param losCache      Cached LosEffects for particular Entity/Targetable
-     *                      pairs.  Can be passed in null.
      * @return
      */
     private Vector<IPlayer> whoCanDetect(Entity entity,
-            List<ECMInfo> allECMInfo,
-            Map<EntityTargetPair, LosEffects> losCache) {
-        if (losCache == null) {
-            losCache = new HashMap<>();
-        }
+            List<ECMInfo> allECMInfo) {
+        visibility.validate(game);
 
         boolean bTeamVision = game.getOptions().booleanOption("team_vision");
         List<Entity> vEntities = game.getEntitiesVector();
@@ -27149,13 +27310,7 @@ public class Server implements Runnable {
                     || vCanDetect.contains(spotter.getOwner())) {
                 continue;
             }
-            // See if the LosEffects is cached, and if not cache it
-            EntityTargetPair etp = new EntityTargetPair(spotter, entity);
-            LosEffects los = losCache.get(etp);
-            if (los == null) {
-                los = LosEffects.calculateLos(game, spotter.getId(), entity);
-                losCache.put(etp, los);
-            }
+            LosEffects los = visibility.getLos(spotter, entity);
             if (Compute.inSensorRange(game, los, spotter, entity, allECMInfo)) {
                 if (!vCanDetect.contains(spotter.getOwner())) {
                     vCanDetect.addElement(spotter.getOwner());
@@ -27204,10 +27359,30 @@ public class Server implements Runnable {
         // If double-blind is in effect, filter each players' list individually,
         // and then quit out...
         if (doBlind()) {
-            Vector<IPlayer> playersVector = game.getPlayersVector();
-            for (int x = 0; x < playersVector.size(); x++) {
-                IPlayer p = playersVector.elementAt(x);
-                send(p.getId(), createFilteredEntitiesPacket(p, null));
+            // Players that see exactly the same entities (team vision,
+            // observers, see-all players) share one encoded packet.
+            Map<List<Integer>, List<IPlayer>> viewers = new LinkedHashMap<List<Integer>, List<IPlayer>>();
+            Map<List<Integer>, List<Entity>> visible = new HashMap<List<Integer>, List<Entity>>();
+            for (IPlayer p : game.getPlayersVector()) {
+                List<Entity> entities = filterEntities(p,
+                        game.getEntitiesVector());
+                List<Integer> ids = new ArrayList<Integer>(entities.size());
+                for (Entity entity : entities) {
+                    ids.add(entity.getId());
+                }
+                List<IPlayer> group = viewers.get(ids);
+                if (group == null) {
+                    group = new ArrayList<IPlayer>();
+                    viewers.put(ids, group);
+                    visible.put(ids, entities);
+                }
+                group.add(p);
+            }
+            for (Map.Entry<List<Integer>, List<IPlayer>> entry : viewers
+                    .entrySet()) {
+                sendToPlayers(entry.getValue(), new Packet(
+                        Packet.COMMAND_SENDING_ENTITIES,
+                        visible.get(entry.getKey())));
             }
             return;
         }
@@ -27220,11 +27395,7 @@ public class Server implements Runnable {
      * Filters an entity vector according to LOS
      */
     private List<Entity> filterEntities(IPlayer pViewer,
-            List<Entity> vEntities,
-            Map<EntityTargetPair, LosEffects> losCache) {
-        if (losCache == null) {
-            losCache = new HashMap<>();
-        }
+            List<Entity> vEntities) {
         Vector<Entity> vCanSee = new Vector<Entity>();
         Vector<Entity> vMyEntities = new Vector<Entity>();
         boolean bTeamVision = game.getOptions().booleanOption("team_vision");
@@ -27234,6 +27405,7 @@ public class Server implements Runnable {
             return vEntities;
         }
 
+        visibility.validate(game);
         List<ECMInfo> allECMInfo = null;
         if (game.getOptions().booleanOption("tacops_sensors")) {
             allECMInfo = ComputeECM.computeAllEntitiesECMInfo(game
@@ -27246,7 +27418,8 @@ public class Server implements Runnable {
             for (Entity a : vMyEntities) {
                 for (Entity b : vMyEntities) {
                     if (a.isEnemyOf(b)
-                        && Compute.canSee(game, b, a, true, null, allECMInfo)) {
+                        && Compute.canSee(game, b, a, true,
+                                          visibility.getLos(b, a), allECMInfo)) {
                         addVisibleEntity(vCanSee, a);
                         break;
                     }
@@ -27284,13 +27457,7 @@ public class Server implements Runnable {
                     continue;
                 }
 
-                // See if the LosEffects is cached, and if not cache it
-                EntityTargetPair etp = new EntityTargetPair(spotter, e);
-                LosEffects los = losCache.get(etp);
-                if (los == null) {
-                    los = LosEffects.calculateLos(game, spotter.getId(), e);
-                    losCache.put(etp, los);
-                }
+                LosEffects los = visibility.getLos(spotter, e);
                 // Otherwise, if they can see the entity in question
                 if (Compute.canSee(game, spotter, e, true, los, allECMInfo)) {
                     addVisibleEntity(vCanSee, e);
@@ -27442,51 +27609,32 @@ public class Server implements Runnable {
     }
 
     /**
-     * Returns a vector which has as it's keys the round number and as it's
-     * elements vectors that contain all the reports for the specified player
-     * that round. The reports returned this way are properly filtered for
-     * double blind.
-     *
-     * @param pastReports
-     * @param p
-     * @return
+     * Returns the reports of a past round that the given player may see. The
+     * reports returned this way are properly filtered for double blind.
      */
-    private Vector<Vector<Report>> filterPastReports(
-            Vector<Vector<Report>> pastReports, IPlayer p) {
+    private Vector<Report> filterPastRoundReports(Vector<Report> roundReports,
+            IPlayer p) {
         // Only actually bother with the filtering if double-blind is in effect.
         if (!doBlind()) {
-            return pastReports;
+            return roundReports;
         }
-        // Perform filtering
-        Vector<Vector<Report>> filteredReports = new Vector<Vector<Report>>();
-        for (Vector<Report> roundReports : pastReports) {
-            Vector<Report> filteredRoundReports = new Vector<Report>();
-            for (Report r : roundReports) {
-                if (r.isObscuredRecipient(p.getName())) {
-                    r = filterReport(r, null, true);
-                }
-                if (r != null) {
-                    filteredRoundReports.addElement(r);
-                }
+        Vector<Report> filteredRoundReports = new Vector<Report>();
+        for (Report r : roundReports) {
+            if (r.isObscuredRecipient(p.getName())) {
+                r = filterReport(r, null, true);
+            }
+            if (r != null) {
+                filteredRoundReports.addElement(r);
             }
-            filteredReports.addElement(filteredRoundReports);
         }
-        return filteredReports;
+        return filteredRoundReports;
     }
 
     /**
      * Updates entities graphical "visibility indications" which are used in
      * double-blind games.
-     *
-     * @param losCache  It can be expensive to have to recompute LoSEffects
-     *                  again and again, so in some cases where this may happen,
-     *                  the LosEffects are cached.   This can safely be null.
      */
-    private void updateVisibilityIndicator(
-            Map<EntityTargetPair, LosEffects> losCache) {
-        if (losCache == null) {
-            losCache = new HashMap<>();
-        }
+    private void updateVisibilityIndicator() {
         List<ECMInfo> allECMInfo = null;
         if (game.getOptions().booleanOption("tacops_sensors")) {
             allECMInfo = ComputeECM.computeAllEntitiesECMInfo(game
@@ -27503,7 +27651,7 @@ public class Server implements Runnable {
             e.setDetectedByEnemy(false);
             e.clearSeenBy();
             e.clearDetectedBy();
-            Vector<IPlayer> vCanSee = whoCanSee(e, false, losCache);
+            Vector<IPlayer> vCanSee = whoCanSee(e, false);
             // Who can See this unit?
             for (IPlayer p : vCanSee) {
                 if (e.getOwner().isEnemyOf(p) && !p.isObserver()) {
@@ -27515,7 +27663,7 @@ public class Server implements Runnable {
                 e.addBeenSeenBy(p);
             }
             // Who can Detect this unit?
-            Vector<IPlayer> vCanDetect = whoCanDetect(e, allECMInfo, losCache);
+            Vector<IPlayer> vCanDetect = whoCanDetect(e, allECMInfo);
             for (IPlayer p : vCanDetect) {
                 if (e.getOwner().isEnemyOf(p) && !p.isObserver()) {
                     e.setDetectedByEnemy(true);
@@ -27527,7 +27675,7 @@ public class Server implements Runnable {
             // possible that the enemy's client doesn't know about the unit
             if ((!previousVisibleValue && e.isVisibleToEnemy())
                 || (!previousDetectedValue && e.isDetectedByEnemy())) {
-                entityUpdate(e.getId(), new Vector<UnitLocation>(), false, losCache);
+                entityUpdate(e.getId(), new Vector<UnitLocation>(), false);
             } else if ((previousVisibleValue != e.isVisibleToEnemy())
                        || (previousSeenValue != e.isEverSeenByEnemy())
                        || (previousDetectedValue != e.isDetectedByEnemy())) {
@@ -28435,6 +28583,89 @@ public class Server implements Runnable {
         return new Packet(Packet.COMMAND_ENTITY_UPDATE, data);
     }
 
+    /**
+     * Sends the whole entity again to a client that couldn't apply a delta
+     * of it. Until then, every delta for the entity would be made against a
+     * state the client no longer has.
+     */
+    private void receiveEntityUpdateRequest(Packet packet, int connId) {
+        IConnection conn = getConnection(connId);
+        if (conn == null) {
+            return;
+        }
+        int entityId = packet.getIntValue(0);
+        entityDeltas.clearBase(conn, entityId);
+        Entity entity = game.getEntity(entityId);
+        IPlayer player = game.getPlayer(connId);
+        if ((entity == null) || (player == null)) {
+            return;
+        }
+        // in double-blind, clients that can't see the entity get the whole
+        // entity with its next update
+        if (!doBlind() || entity.getWhoCanSee().contains(player)) {
+            sendEntityUpdate(Collections.singletonList(conn), entityId, null);
+        }
+    }
+
+    /**
+     * Sends an update of a single entity to the given connections. Clients
+     * that accept entity deltas only get what changed since the last state
+     * they were sent; the others get the whole entity.
+     */
+    private void sendEntityUpdate(Collection<IConnection> targets,
+                                  int entityId, Vector<UnitLocation> movePath) {
+        List<IConnection> fullTargets = new ArrayList<IConnection>();
+        // Connections that were sent the same last state share the same
+        // array, so they can share the delta too
+        Map<byte[], List<IConnection>> byBase = new IdentityHashMap<byte[], List<IConnection>>();
+        for (IConnection conn : targets) {
+            if (!entityDeltas.isEnabled(conn)) {
+                fullTargets.add(conn);
+                continue;
+            }
+            byte[] base = entityDeltas.getBase(conn, entityId);
+            List<IConnection> group = byBase.get(base);
+            if (group == null) {
+                group = new ArrayList<IConnection>();
+                byBase.put(base, group);
+            }
+            group.add(conn);
+        }
+
+        if (!byBase.isEmpty()) {
+            byte[] state = null;
+            try {
+                state = EntityDelta.serialize(game.getEntity(entityId));
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            for (Map.Entry<byte[], List<IConnection>> entry : byBase
+                    .entrySet()) {
+                if (state == null) {
+                    for (IConnection conn : entry.getValue()) {
+                        entityDeltas.clearBase(conn, entityId);
+                    }
+                    fullTargets.addAll(entry.getValue());
+                    continue;
+                }
+                EntityDelta delta = EntityDelta.create(entry.getKey(), state);
+                final Object[] data = new Object[3];
+                data[0] = new Integer(entityId);
+                data[1] = delta;
+                data[2] = movePath;
+                send(entry.getValue(), new Packet(
+                        Packet.COMMAND_ENTITY_UPDATE, data));
+                for (IConnection conn : entry.getValue()) {
+                    entityDeltas.setBase(conn, entityId, state);
+                }
+            }
+        }
+
+        if (!fullTargets.isEmpty()) {
+            send(fullTargets, createEntityPacket(entityId, movePath));
+        }
+    }
+
     /**
      * Creates a packet containing a Vector of Reports
      */
@@ -28468,11 +28699,13 @@ public class Server implements Runnable {
     }
 
     /**
-     * Creates a packet containing all the round reports
+     * Creates a packet containing the reports of a single round
      */
-    private Packet createAllReportsPacket(IPlayer p) {
-        return new Packet(Packet.COMMAND_SENDING_REPORTS_ALL,
-                          filterPastReports(game.getAllReports(), p));
+    private Packet createRoundReportsPacket(int round, IPlayer p) {
+        Vector<Report> reports = game.hasReports(round) ? game
+                .getReports(round) : new Vector<Report>();
+        return new Packet(Packet.COMMAND_SENDING_REPORTS_ROUND, new Object[] {
+                round, filterPastRoundReports(reports, p) });
     }
 
     /**
@@ -28497,10 +28730,9 @@ public class Server implements Runnable {
      * Creates a packet containing all entities visible to the player in a blind
      * game
      */
-    private Packet createFilteredEntitiesPacket(IPlayer p,
-            Map<EntityTargetPair, LosEffects> losCache) {
+    private Packet createFilteredEntitiesPacket(IPlayer p) {
         return new Packet(Packet.COMMAND_SENDING_ENTITIES, filterEntities(p,
-                game.getEntitiesVector(), losCache));
+                game.getEntitiesVector()));
     }
 
     /**
@@ -28509,7 +28741,7 @@ public class Server implements Runnable {
      */
     private Packet createFilteredFullEntitiesPacket(IPlayer p) {
         final Object[] data = new Object[2];
-        data[0] = filterEntities(p, game.getEntitiesVector(), null);
+        data[0] = filterEntities(p, game.getEntitiesVector());
         data[1] = game.getOutOfGameEntitiesVector();
         return new Packet(Packet.COMMAND_SENDING_ENTITIES, data);
     }
@@ -28653,6 +28885,8 @@ public class Server implements Runnable {
      * Sends notification to clients that the specified hex has changed.
      */
     public void sendChangedHex(Coords coords) {
+        // the hex may have been changed in place
+        visibility.clear();
         send(createHexChangePacket(coords, game.getBoard().getHex(coords)));
     }
 
@@ -28670,6 +28904,9 @@ public class Server implements Runnable {
      * Sends notification to clients that the specified hex has changed.
      */
     public void sendChangedHexes(Set<Coords> coords) {
+        if (!coords.isEmpty()) {
+            visibility.clear();
+        }
         Set<IHex> hexes = new LinkedHashSet<IHex>();
         for (Coords coord : coords) {
             hexes.add(game.getBoard().getHex(coord));
@@ -28797,13 +29034,61 @@ public class Server implements Runnable {
         if (connections == null) {
             return;
         }
-        for (Enumeration<IConnection> connEnum = connections.elements(); connEnum
-                .hasMoreElements(); ) {
-            IConnection conn = connEnum.nextElement();
-            conn.send(packet);
+        send(getConnectionsSnapshot(), packet);
+    }
+
+    /**
+     * Returns a copy of the connections of all connected clients. Clients
+     * connect and disconnect on other threads, so the list is iterated by
+     * copying it, which holds its lock, rather than with its fail-fast
+     * iterator.
+     */
+    private List<IConnection> getConnectionsSnapshot() {
+        return new ArrayList<IConnection>(connections);
+    }
+
+    /**
+     * Send a packet to the given connections. The packet is marshalled and
+     * compressed only once for every distinct connection encoding, and the
+     * encoded bytes are shared by all the send queues.
+     */
+    private void send(Collection<IConnection> targets, Packet packet) {
+        Map<Integer, EncodedPacket> encoded = new HashMap<Integer, EncodedPacket>(
+                2);
+        for (IConnection conn : targets) {
+            int key = EncodedPacket.encodingKey(conn);
+            EncodedPacket ep = encoded.get(key);
+            if (ep == null) {
+                ep = EncodedPacket.encode(packet, conn.getMarshallingType(),
+                                          conn.getCompressionPolicy());
+                encoded.put(key, ep);
+            }
+            conn.send(ep);
         }
     }
 
+    /**
+     * Send a packet to the connections of all the given players.
+     */
+    private void sendToPlayers(Collection<IPlayer> players, Packet packet) {
+        send(getConnections(players), packet);
+    }
+
+    /**
+     * Returns the connections of the given players; players without a live
+     * connection are skipped.
+     */
+    private List<IConnection> getConnections(Collection<IPlayer> players) {
+        List<IConnection> conns = new ArrayList<IConnection>(players.size());
+        for (IPlayer p : players) {
+            IConnection conn = getClient(p.getId());
+            if (conn != null) {
+                conns.add(conn);
+            }
+        }
+        return conns;
+    }
+
     // WOR
     public void send_Nova_Change(int ID, String net) {
         Object[] data = {new Integer(ID), new String(net)};
@@ -28824,17 +29109,22 @@ public class Server implements Runnable {
             return;
         }
 
+        // Unless the reports have to be filtered for each player, everyone
+        // gets the same packet, so only encode it once.
+        if (tacticalGeniusReport) {
+            send(createTacticalGeniusReportPacket());
+            return;
+        }
+        if (!doBlind()) {
+            send(createReportPacket(null));
+            return;
+        }
+
         for (Enumeration<IConnection> connEnum = connections.elements(); connEnum
                 .hasMoreElements(); ) {
             IConnection conn = connEnum.nextElement();
             IPlayer p = game.getPlayer(conn.getId());
-            Packet packet;
-            if (tacticalGeniusReport) {
-                packet = createTacticalGeniusReportPacket();
-            } else {
-                packet = createReportPacket(p);
-            }
-            conn.send(packet);
+            conn.send(createReportPacket(p));
         }
     }
 
@@ -29001,6 +29291,9 @@ public class Server implements Runnable {
                 receiveEntityUpdate(packet, connId);
                 resetPlayersDone();
                 break;
+            case Packet.COMMAND_ENTITY_UPDATE_REQUEST:
+                receiveEntityUpdateRequest(packet, connId);
+                break;
             case Packet.COMMAND_ENTITY_LOAD:
                 receiveEntityLoad(packet, connId);
                 resetPlayersDone();
@@ -29121,6 +29414,19 @@ public class Server implements Runnable {
                     send(createPlanetaryConditionsPacket());
                 }
                 break;
+            case Packet.COMMAND_REQUEST_REPORTS:
+                // always answer, so the client stops waiting; a round we
+                // don't have, or a connection without a player, gets none
+                int round = packet.getIntValue(0);
+                if ((player != null) && (round >= 1)
+                    && (round <= game.getRoundCount())) {
+                    send(connId, createRoundReportsPacket(round, player));
+                } else {
+                    send(connId, new Packet(
+                            Packet.COMMAND_SENDING_REPORTS_ROUND,
+                            new Object[] { round, new Vector<Report>() }));
+                }
+                break;
             case Packet.COMMAND_UNLOAD_STRANDED:
                 receiveUnloadStranded(packet, connId);
                 break;
@@ -29178,22 +29484,8 @@ public class Server implements Runnable {
                 Socket s = serverSocket.accept();
                 synchronized (serverLock) {
                     int id = getFreeConnectionId();
-                    System.out.println("s: accepting player connection #" + id
-                            + " ...");
-
-                    IConnection c = ConnectionFactory.getInstance()
-                            .createServerConnection(s, id);
-                    c.addConnectionListener(connectionListener);
-                    c.open();
-                    connectionsPending.addElement(c);
-                    ConnectionHandler ch = new ConnectionHandler(c);
-                    Thread newConnThread = new Thread(ch, "Connection " + id);
-                    newConnThread.start();
-                    connectionHandlers.put(id, ch);
-
-                    greeting(id);
-                    ConnectionWatchdog w = new ConnectionWatchdog(this, id);
-                    watchdogTimer.schedule(w, 1000, 500);
+                    accept(ConnectionFactory.getInstance()
+                            .createServerConnection(s, id));
                 }
             } catch (InterruptedIOException iioe) {
                 // ignore , just SOTimeout blowing..
@@ -29218,6 +29510,46 @@ public class Server implements Runnable {
         }
     }
 
+    /**
+     * Starts talking to a newly connected client. Has to be called while
+     * holding the server lock.
+     */
+    private void accept(IConnection c) {
+        int id = c.getId();
+        System.out.println("s: accepting player connection #" + id + " ...");
+        c.addConnectionListener(connectionListener);
+        c.open();
+        connectionsPending.addElement(c);
+        // NIO connections are serviced by the selector loop
+        if (!ConnectionFactory.getInstance().isSelectorDriven(c)) {
+            ConnectionHandler ch = new ConnectionHandler(c);
+            Thread newConnThread = new Thread(ch, "Connection " + id);
+            newConnThread.start();
+            connectionHandlers.put(id, ch);
+        }
+
+        greeting(id);
+        ConnectionWatchdog w = new ConnectionWatchdog(this, id);
+        watchdogTimer.schedule(w, 1000, 500);
+    }
+
+    /**
+     * Connects a client running in the same virtual machine, without going
+     * through the server socket.
+     *
+     * @return the client's end of the connection, to be handed to
+     *         {@link megamek.client.Client#connect(IConnection)}
+     */
+    @Override
+    public IConnection connectLocal() {
+        synchronized (serverLock) {
+            LocalConnection c = ConnectionFactory.getInstance()
+                    .createLocalConnection(1, getFreeConnectionId());
+            accept(c.getPeer());
+            return c;
+        }
+    }
+
     /**
      * Makes one slot of inferno ammo, determined by certain rules, explode on a
      * mech.
@@ -30533,6 +30865,7 @@ public class Server implements Runnable {
     }
 
     public void sendChangedBuildings(Vector<Building> buildings) {
+        visibility.clear();
         send(createUpdateBuildingPacket(buildings));
     }
 
@@ -33008,7 +33341,7 @@ public class Server implements Runnable {
                     ah.setAnnouncedEntityFiring(true);
                     lastAttackerId = aId;
                 }
-                boolean keep = ah.handle(game.getPhase(), handleAttackReports);
+                boolean keep = handleAttack(ah, handleAttackReports);
                 if (keep) {
                     keptAttacks.add(ah);
                 }
@@ -33046,7 +33379,7 @@ public class Server implements Runnable {
                     ah.setAnnouncedEntityFiring(true);
                     lastAttackerId = aId;
                 }
-                boolean keep = ah.handle(game.getPhase(), handleAttackReports);
+                boolean keep = handleAttack(ah, handleAttackReports);
                 if (keep) {
                     keptAttacks.add(ah);
                 }
@@ -33066,6 +33399,30 @@ public class Server implements Runnable {
         game.setAttacksVector(keptAttacks);
     }
 
+    /**
+     * Lets the attack handler do its work for this phase. If the host chose
+     * the seedable generator, it rolls its dice from its own generator, and
+     * attacks that came from elsewhere than the weapon attacks of the firing
+     * phase are given a seed first. Otherwise it rolls from the chosen
+     * generator.
+     */
+    private boolean handleAttack(AttackHandler ah, Vector<Report> reports) {
+        if (!Compute.isSeedable()) {
+            return ah.handle(game.getPhase(), reports);
+        }
+        if (ah.getRollSeed() == 0) {
+            ah.setRollSeed(Compute.randomLong());
+        }
+        MMRandom previous = Compute.setThreadRNG(MMRandom.seeded(MMRandom.mixSeed(
+                ah.getRollSeed(), (game.getRoundCount() * 64L)
+                        + game.getPhase().ordinal())));
+        try {
+            return ah.handle(game.getPhase(), reports);
+        } finally {
+            Compute.setThreadRNG(previous);
+        }
+    }
+
     /**
      * @return
      */
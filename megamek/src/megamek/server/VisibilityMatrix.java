@@ -0,0 +1,264 @@
+/*
+ * MegaMek - Copyright (C) 2016 The MegaMek Team
+ *
+ *  This program is free software; you can redistribute it and/or modify it
+ *  under the terms of the GNU General Public License as published by the Free
+ *  Software Foundation; either version 2 of the License, or (at your option)
+ *  any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ *  or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ *  for more details.
+ */
+
+package megamek.server;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import megamek.common.Coords;
+import megamek.common.Dropship;
+import megamek.common.Entity;
+import megamek.common.IBoard;
+import megamek.common.IGame;
+import megamek.common.LosEffects;
+import megamek.common.event.BoardEvent;
+import megamek.common.event.BoardListenerAdapter;
+
+/**
+ * Keeps the line of sight between every pair of entities for as long as it
+ * stays valid, so double-blind visibility doesn't have to recompute it for
+ * every spotter and target over and over again.
+ * <p>
+ * An entry is only used while neither of its entities has changed anything
+ * its line of sight depends on (position, height, elevation, altitude,
+ * deployment), so entities that move only invalidate their own row and
+ * column. Changes to the board, to the grounded dropships that block line of
+ * sight like buildings and to the line of sight options drop everything. The
+ * game keeps track of the grounded dropships, so checking for changes doesn't
+ * have to look at every entity; with assertions enabled, it does anyway to
+ * make sure nothing was missed.
+ * <p>
+ * Only the <code>LosEffects</code> are kept; whether the spotter can
+ * actually see the target still depends on light, weather, sensors and ECM,
+ * which are cheap to check and are evaluated on every call.
+ */
+public class VisibilityMatrix {
+
+    private final Map<Long, Entry> entries = new HashMap<Long, Entry>();
+
+    private IGame game;
+
+    private IBoard board;
+
+    /**
+     * The line of sight options as of the last {@link #validate(IGame)}
+     */
+    private int optionFlags;
+
+    /**
+     * The version of the grounded dropships of the game as of the last
+     * {@link #validate(IGame)}
+     */
+    private int dropshipVersion;
+
+    /**
+     * The grounded dropships and where they are, as of the last
+     * {@link #validate(IGame)}; only kept while assertions are enabled
+     */
+    private List<Object> dropshipState;
+
+    private int hits;
+
+    private int misses;
+
+    private final BoardListenerAdapter boardListener = new BoardListenerAdapter() {
+        @Override
+        public void boardNewBoard(BoardEvent b) {
+            clear();
+        }
+
+        @Override
+        public void boardChangedHex(BoardEvent b) {
+            clear();
+        }
+
+        @Override
+        public void boardChangedAllHexes(BoardEvent b) {
+            clear();
+        }
+    };
+
+    /**
+     * Checks whether anything that affects every entry has changed since the
+     * last call, and drops all entries if so. Has to be called before the
+     * matrix is used for a batch of lookups.
+     *
+     * @param currentGame the game the lookups are made for
+     */
+    public void validate(IGame currentGame) {
+        if ((currentGame != game) || (currentGame.getBoard() != board)) {
+            if (board != null) {
+                board.removeBoardListener(boardListener);
+            }
+            game = currentGame;
+            board = currentGame.getBoard();
+            board.addBoardListener(boardListener);
+            dropshipState = null;
+            clear();
+        }
+
+        int flags = 0;
+        if (game.getOptions().booleanOption("tacops_LOS1")) {
+            flags |= 1;
+        }
+        if (game.getOptions().booleanOption("tacops_partial_cover")) {
+            flags |= 2;
+        }
+        if (game.getOptions().booleanOption("tacops_dead_zones")) {
+            flags |= 4;
+        }
+        int version = game.getGroundedDropshipsVersion();
+        assert dropshipsTracked(version) : "Grounded dropships changed"
+                + " without a new version";
+        int entityCount = game.getNoOfEntities();
+        if ((flags != optionFlags) || (version != dropshipVersion)) {
+            optionFlags = flags;
+            dropshipVersion = version;
+            clear();
+        } else if (entries.size() > (2 * entityCount * entityCount)) {
+            // Entries of entities that left the game are never used again
+            clear();
+        }
+    }
+
+    /**
+     * Looks at every entity to check that the grounded dropships haven't
+     * changed since the last call unless their version has. Only called with
+     * assertions enabled.
+     */
+    private boolean dropshipsTracked(int version) {
+        List<Object> state = new ArrayList<Object>();
+        for (Entity entity : game.getEntitiesVector()) {
+            if ((entity instanceof Dropship) && !entity.isAirborne()
+                    && !entity.isSpaceborne()) {
+                state.add(entity);
+                state.add(new LosState(entity));
+            }
+        }
+        boolean tracked = (dropshipState == null)
+                || (version != dropshipVersion) || state.equals(dropshipState);
+        dropshipState = state;
+        return tracked;
+    }
+
+    /**
+     * Returns the line of sight from the spotter to the target, calculating
+     * it only if it isn't known yet or has changed.
+     */
+    public LosEffects getLos(Entity spotter, Entity target) {
+        long key = ((long) spotter.getId() << 32) | (target.getId() & 0xffffffffL);
+        LosState spotterState = new LosState(spotter);
+        LosState targetState = new LosState(target);
+        Entry entry = entries.get(key);
+        if ((entry != null) && (entry.spotter == spotter)
+                && (entry.target == target)
+                && entry.spotterState.equals(spotterState)
+                && entry.targetState.equals(targetState)) {
+            hits++;
+            return entry.los;
+        }
+        misses++;
+        LosEffects los = LosEffects.calculateLos(game, spotter.getId(), target);
+        entries.put(key, new Entry(spotter, target, spotterState, targetState,
+                los));
+        return los;
+    }
+
+    /**
+     * Drops all entries, for example when hexes or buildings changed
+     */
+    public void clear() {
+        entries.clear();
+    }
+
+    /**
+     * Returns the number of lookups that were answered from the matrix
+     */
+    public int getHits() {
+        return hits;
+    }
+
+    /**
+     * Returns the number of lookups that had to calculate line of sight
+     */
+    public int getMisses() {
+        return misses;
+    }
+
+    private static class Entry {
+        final Entity spotter;
+        final Entity target;
+        final LosState spotterState;
+        final LosState targetState;
+        final LosEffects los;
+
+        Entry(Entity spotter, Entity target, LosState spotterState,
+                LosState targetState, LosEffects los) {
+            this.spotter = spotter;
+            this.target = target;
+            this.spotterState = spotterState;
+            this.targetState = targetState;
+            this.los = los;
+        }
+    }
+
+    /**
+     * The parts of an entity that its line of sight depends on
+     */
+    private static class LosState {
+        final Coords position;
+        final int relHeight;
+        final int height;
+        final int altitude;
+        final boolean offBoard;
+        final Map<Integer, Coords> secondaryPositions;
+
+        LosState(Entity entity) {
+            position = entity.getPosition();
+            relHeight = entity.relHeight();
+            height = entity.getHeight();
+            altitude = entity.getAltitude();
+            offBoard = entity.isOffBoard();
+            Map<Integer, Coords> secondary = entity.getSecondaryPositions();
+            secondaryPositions = ((secondary == null) || secondary.isEmpty()) ? null
+                    : new HashMap<Integer, Coords>(secondary);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof LosState)) {
+                return false;
+            }
+            LosState other = (LosState) o;
+            return (relHeight == other.relHeight)
+                    && (height == other.height)
+                    && (altitude == other.altitude)
+                    && (offBoard == other.offBoard)
+                    && ((position == null) ? (other.position == null)
+                            : position.equals(other.position))
+                    && ((secondaryPositions == null) ? (other.secondaryPositions == null)
+                            : secondaryPositions
+                                    .equals(other.secondaryPositions));
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = (position == null) ? 0 : position.hashCode();
+            return (31 * hash) + relHeight;
+        }
+    }
+}
@@ -0,0 +1,41 @@
+/*
+ * MegaMek - Copyright (C) 2016 The MegaMek Team
+ *
+ *  This program is free software; you can redistribute it and/or modify it
+ *  under the terms of the GNU General Public License as published by the Free
+ *  Software Foundation; either version 2 of the License, or (at your option)
+ *  any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ *  or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ *  for more details.
+ */
+
+package megamek.server.commands;
+
+import megamek.server.Server;
+
+/**
+ * Saves the current game as XML, which other tools can read and which can be
+ * loaded again just like a saved game.
+ */
+public class ExportGameCommand extends ServerCommand {
+
+    public ExportGameCommand(Server server) {
+        super(server, "export",
+                "Saves the game to a file as XML.  Usage: /export [filename]");
+    }
+
+    /**
+     * Run this command with the arguments supplied
+     */
+    @Override
+    public void run(int connId, String[] args) {
+        String fileName = "export.sav";
+        if (args.length > 1) {
+            fileName = args[1];
+        }
+        server.exportGame(fileName);
+    }
+}
@@ -0,0 +1,297 @@
+/*
+ * MegaMek - Copyright (C) 2016 The MegaMek Team
+ *
+ *  This program is free software; you can redistribute it and/or modify it
+ *  under the terms of the GNU General Public License as published by the Free
+ *  Software Foundation; either version 2 of the License, or (at your option)
+ *  any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ *  or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ *  for more details.
+ */
+
+package megamek.test;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Vector;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import megamek.client.bot.princess.Princess;
+import megamek.common.Board;
+import megamek.common.BoardDimensions;
+import megamek.common.Compute;
+import megamek.common.Configuration;
+import megamek.common.Entity;
+import megamek.common.EntityListFile;
+import megamek.common.IGame;
+import megamek.common.IPlayer;
+import megamek.common.MapSettings;
+import megamek.common.event.GameListenerAdapter;
+import megamek.common.event.GamePhaseChangeEvent;
+import megamek.common.logging.LogLevel;
+import megamek.server.Server;
+
+/**
+ * Plays a game between Princess bots without a user interface or sockets, and
+ * measures how fast it goes. The server and the bots run in this virtual
+ * machine and talk through local connections. Every bot gets its own copy of
+ * the units in the MUL file and a team and home edge of its own.
+ * <p>
+ * The game runs until one team is left or the round limit is reached. Then
+ * the rounds per second, the wall time spent in each phase, the time each bot
+ * took to make its decisions and the allocation rate are reported.
+ * Allocations are counted on the packet pump thread, where the server handles
+ * packets and resolves the phases, and on the threads the bots calculate
+ * their turns on; they are only reported on virtual machines that can
+ * measure them per thread.
+ * <p>
+ * Usage:
+ * <code>BotGameBenchmark mulfile [board] [bots] [maxrounds] [seed]</code>
+ */
+public class BotGameBenchmark {
+
+    private static final String DEFAULT_BOARD = "data/boards/buildings_no_basement/32x34 FCCW6.board";
+
+    /**
+     * The home edges of the bots, in the order they are handed out
+     */
+    private static final int[] START_POSITIONS = { 2, 6, 4, 8, 1, 5, 3, 7 };
+
+    private static final long WAIT_MILLIS = 10;
+
+    private final Map<IGame.Phase, PhaseStats> phases = new EnumMap<IGame.Phase, PhaseStats>(
+            IGame.Phase.class);
+
+    private final CountDownLatch finished = new CountDownLatch(1);
+
+    private volatile boolean victory;
+
+    private long phaseStart;
+
+    private long phaseBytes;
+
+    private long gameStart;
+
+    private long gameEnd;
+
+    private long pumpThreadId = -1;
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("Usage: BotGameBenchmark mulfile [board] [bots] [maxrounds] [seed]");
+            System.exit(1);
+        }
+        File mulFile = new File(args[0]);
+        File boardFile = new File((args.length > 1) ? args[1] : DEFAULT_BOARD);
+        int bots = (args.length > 2) ? Integer.parseInt(args[2]) : 2;
+        int maxRounds = (args.length > 3) ? Integer.parseInt(args[3]) : 50;
+        if (args.length > 4) {
+            Compute.setSeed(Long.parseLong(args[4]));
+        }
+        new BotGameBenchmark().run(mulFile, boardFile, bots, maxRounds);
+        System.exit(0);
+    }
+
+    private void run(File mulFile, File boardFile, int botCount,
+            final int maxRounds) throws Exception {
+        final Server server = new Server("", 0);
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if ("Packet Pump".equals(thread.getName())) {
+                pumpThreadId = thread.getId();
+            }
+        }
+
+        TimedPrincess[] bots = new TimedPrincess[botCount];
+        for (int i = 0; i < botCount; i++) {
+            bots[i] = new TimedPrincess("Bot " + (i + 1), server.getPort());
+            bots[i].connect(server.connectLocal());
+        }
+        for (TimedPrincess bot : bots) {
+            while (bot.getLocalPlayer() == null) {
+                Thread.sleep(WAIT_MILLIS);
+            }
+        }
+
+        String boardName = Configuration.boardsDir().getAbsoluteFile().toURI()
+                .relativize(boardFile.getAbsoluteFile().toURI()).getPath();
+        boardName = boardName.substring(0, boardName.length()
+                - ".board".length());
+        BoardDimensions size = Board.getSize(boardFile);
+        MapSettings mapSettings = new MapSettings();
+        mapSettings.setBoardSize(size.width(), size.height());
+        mapSettings.setMapSize(1, 1);
+        ArrayList<String> boards = new ArrayList<String>();
+        boards.add(boardName);
+        mapSettings.setBoardsSelectedVector(boards);
+        bots[0].sendMapSettings(mapSettings);
+
+        int units = 0;
+        for (int i = 0; i < botCount; i++) {
+            IPlayer player = bots[i].getLocalPlayer();
+            player.setTeam(i + 1);
+            player.setStartingPos(START_POSITIONS[i % START_POSITIONS.length]);
+            bots[i].sendPlayerInfo();
+            Vector<Entity> entities = EntityListFile.loadFrom(mulFile);
+            for (Entity entity : entities) {
+                entity.setOwner(player);
+            }
+            bots[i].sendAddEntity(entities);
+            units += entities.size();
+        }
+        while (server.getGame().getNoOfEntities() < units) {
+            Thread.sleep(WAIT_MILLIS);
+        }
+
+        server.getGame().addGameListener(new GameListenerAdapter() {
+            @Override
+            public void gamePhaseChange(GamePhaseChangeEvent e) {
+                phaseChanged(e.getOldPhase(), e.getNewPhase(),
+                        server.getGame().getRoundCount(), maxRounds);
+            }
+        });
+        for (TimedPrincess bot : bots) {
+            bot.sendDone(true);
+        }
+
+        finished.await(maxRounds, TimeUnit.MINUTES);
+        int rounds = server.getGame().getRoundCount();
+        server.die();
+        for (TimedPrincess bot : bots) {
+            bot.die();
+        }
+
+        report(mulFile, boardName, bots, units, rounds);
+    }
+
+    private synchronized void phaseChanged(IGame.Phase oldPhase,
+            IGame.Phase newPhase, int round, int maxRounds) {
+        if (gameEnd != 0) {
+            // shutting down
+            return;
+        }
+        long now = System.nanoTime();
+        long bytes = allocatedBytes(pumpThreadId);
+        if (gameStart == 0) {
+            if (newPhase != IGame.Phase.PHASE_DEPLOYMENT) {
+                return;
+            }
+            gameStart = now;
+        } else if (oldPhase != null) {
+            PhaseStats stats = phases.get(oldPhase);
+            if (stats == null) {
+                stats = new PhaseStats();
+                phases.put(oldPhase, stats);
+            }
+            stats.count++;
+            stats.nanos += now - phaseStart;
+            stats.bytes += bytes - phaseBytes;
+        }
+        phaseStart = now;
+        phaseBytes = bytes;
+        if (newPhase == IGame.Phase.PHASE_VICTORY) {
+            victory = true;
+            gameEnd = now;
+            finished.countDown();
+        } else if ((newPhase == IGame.Phase.PHASE_INITIATIVE)
+                && (round > maxRounds)) {
+            gameEnd = now;
+            finished.countDown();
+        }
+    }
+
+    private synchronized void report(File mulFile, String boardName,
+            TimedPrincess[] bots, int units, int rounds) {
+        if (gameEnd == 0) {
+            gameEnd = System.nanoTime();
+        }
+        double seconds = (gameEnd - gameStart) / 1e9;
+        System.out.println();
+        System.out.printf("%s on %s: %d bots, %d units%n", mulFile.getName(),
+                boardName, bots.length, units);
+        System.out.printf("%s after %d rounds in %.1f s, %.2f rounds/s%n",
+                victory ? "Victory" : "Stopped", rounds, seconds, rounds
+                        / seconds);
+
+        long serverBytes = 0;
+        System.out.println();
+        System.out.printf("%-24s %6s %10s %9s %10s%n", "Phase", "count",
+                "total ms", "mean ms", "alloc MB");
+        for (Map.Entry<IGame.Phase, PhaseStats> entry : phases.entrySet()) {
+            PhaseStats stats = entry.getValue();
+            System.out.printf("%-24s %6d %10.1f %9.2f %10.1f%n",
+                    entry.getKey(), stats.count, stats.nanos / 1e6,
+                    stats.nanos / 1e6 / stats.count, stats.bytes / 1e6);
+            serverBytes += stats.bytes;
+        }
+
+        long botBytes = 0;
+        System.out.println();
+        System.out.printf("%-24s %6s %10s %9s %9s %10s%n", "Bot", "turns",
+                "total ms", "mean ms", "max ms", "alloc MB");
+        for (TimedPrincess bot : bots) {
+            synchronized (bot) {
+                System.out.printf("%-24s %6d %10.1f %9.2f %9.1f %10.1f%n",
+                        bot.getName(), bot.turns, bot.nanos / 1e6,
+                        (bot.turns == 0) ? 0 : bot.nanos / 1e6 / bot.turns,
+                        bot.maxNanos / 1e6, bot.bytes / 1e6);
+                botBytes += bot.bytes;
+            }
+        }
+
+        if (allocatedBytes(Thread.currentThread().getId()) >= 0) {
+            System.out.println();
+            System.out.printf("%.1f MB allocated by the server, %.1f MB by "
+                    + "the bots, %.1f MB/s%n", serverBytes / 1e6,
+                    botBytes / 1e6, (serverBytes + botBytes) / 1e6 / seconds);
+        }
+    }
+
+    private static long allocatedBytes(long threadId) {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if ((threadId >= 0) && (bean instanceof com.sun.management.ThreadMXBean)) {
+            return ((com.sun.management.ThreadMXBean) bean)
+                    .getThreadAllocatedBytes(threadId);
+        }
+        return -1;
+    }
+
+    private static class PhaseStats {
+        int count;
+        long nanos;
+        long bytes;
+    }
+
+    /**
+     * Princess, keeping track of how long she thinks about her turns
+     */
+    private static class TimedPrincess extends Princess {
+        int turns;
+        long nanos;
+        long maxNanos;
+        long bytes;
+
+        TimedPrincess(String name, int port) {
+            super(name, "localhost", port, LogLevel.ERROR); //$NON-NLS-1$
+        }
+
+        @Override
+        protected synchronized void calculateMyTurn() {
+            long threadId = Thread.currentThread().getId();
+            long startBytes = allocatedBytes(threadId);
+            long start = System.nanoTime();
+            super.calculateMyTurn();
+            long time = System.nanoTime() - start;
+            turns++;
+            nanos += time;
+            maxNanos = Math.max(maxNanos, time);
+            bytes += allocatedBytes(threadId) - startBytes;
+        }
+    }
+}
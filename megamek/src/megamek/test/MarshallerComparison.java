@@ -0,0 +1,144 @@
+/*
+ * MegaMek - Copyright (C) 2016 The MegaMek Team
+ *
+ *  This program is free software; you can redistribute it and/or modify it
+ *  under the terms of the GNU General Public License as published by the Free
+ *  Software Foundation; either version 2 of the License, or (at your option)
+ *  any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ *  or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ *  for more details.
+ */
+
+package megamek.test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import megamek.common.Entity;
+import megamek.common.IGame;
+import megamek.common.SavedGame;
+import megamek.common.net.Packet;
+import megamek.common.net.marshall.PacketMarshaller;
+import megamek.common.net.marshall.PacketMarshallerFactory;
+
+/**
+ * Compares the size and speed of the available packet marshallers on the
+ * packets a server would send for a saved game. The game may be saved in the
+ * binary format or as XStream XML.
+ * <p>
+ * Usage: <code>MarshallerComparison savegames/game.sav.gz [iterations]</code>
+ */
+public class MarshallerComparison {
+
+    private static final int[] MARSHALLING_TYPES = {
+            PacketMarshaller.NATIVE_SERIALIZATION_MARSHALING,
+            PacketMarshaller.COMPACT_BINARY_MARSHALING };
+
+    private static final String[] MARSHALLING_NAMES = { "native", "compact" };
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.out.println("Usage: MarshallerComparison <savegame> [iterations]");
+            System.out.println("  savegame    a saved game, binary or XStream XML (*.sav.gz)");
+            System.out.println("  iterations  how often each packet is marshalled (default 20)");
+            return;
+        }
+        int iterations = (args.length > 1) ? Integer.parseInt(args[1]) : 20;
+        IGame game = SavedGame.load(new File(args[0]));
+
+        List<Packet> packets = new ArrayList<Packet>();
+        List<String> names = new ArrayList<String>();
+        packets.add(new Packet(Packet.COMMAND_SENDING_BOARD, game.getBoard()));
+        names.add("board");
+        packets.add(new Packet(Packet.COMMAND_SENDING_ENTITIES, game
+                .getEntitiesVector()));
+        names.add("entities");
+        for (Entity entity : game.getEntitiesVector()) {
+            packets.add(new Packet(Packet.COMMAND_ENTITY_UPDATE, new Object[] {
+                    entity.getId(), entity, null }));
+            names.add("entity update");
+        }
+        packets.add(new Packet(Packet.COMMAND_SENDING_REPORTS_ALL, game
+                .getAllReports()));
+        names.add("all reports");
+        packets.add(new Packet(Packet.COMMAND_SENDING_TURNS, game
+                .getTurnVector()));
+        names.add("turns");
+        packets.add(new Packet(Packet.COMMAND_TURN, game.getTurnIndex()));
+        names.add("turn index");
+
+        System.out.printf("%-14s %-8s %12s %12s %12s %12s%n", "packet",
+                "type", "raw bytes", "gzip bytes", "write us", "read us");
+        for (int t = 0; t < MARSHALLING_TYPES.length; t++) {
+            PacketMarshaller pm = PacketMarshallerFactory.getInstance()
+                    .getMarshaller(MARSHALLING_TYPES[t]);
+            long totalRaw = 0;
+            long totalZipped = 0;
+            long totalWrite = 0;
+            long totalRead = 0;
+            String lastName = null;
+            long[] group = new long[4];
+            for (int i = 0; i < packets.size(); i++) {
+                long[] result = measure(pm, packets.get(i), iterations);
+                totalRaw += result[0];
+                totalZipped += result[1];
+                totalWrite += result[2];
+                totalRead += result[3];
+                // Entity updates are summed up into a single row
+                if ((lastName != null) && !lastName.equals(names.get(i))) {
+                    print(lastName, MARSHALLING_NAMES[t], group);
+                    group = new long[4];
+                }
+                for (int j = 0; j < group.length; j++) {
+                    group[j] += result[j];
+                }
+                lastName = names.get(i);
+            }
+            print(lastName, MARSHALLING_NAMES[t], group);
+            print("total", MARSHALLING_NAMES[t], new long[] { totalRaw,
+                    totalZipped, totalWrite, totalRead });
+        }
+    }
+
+    private static void print(String name, String type, long[] values) {
+        System.out.printf("%-14s %-8s %12d %12d %12d %12d%n", name, type,
+                values[0], values[1], values[2] / 1000, values[3] / 1000);
+    }
+
+    /**
+     * @return the raw size, the gzipped size and the average nanoseconds
+     *         spent marshalling and unmarshalling the packet
+     */
+    private static long[] measure(PacketMarshaller pm, Packet packet,
+            int iterations) throws IOException {
+        byte[] raw = pm.marshall(packet);
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        GZIPOutputStream gzo = new GZIPOutputStream(bos);
+        gzo.write(raw);
+        gzo.close();
+
+        // warm up, so that the first marshaller isn't charged for the JIT
+        for (int i = 0; i < iterations; i++) {
+            pm.unmarshall(pm.marshall(packet));
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            pm.marshall(packet);
+        }
+        long write = (System.nanoTime() - start) / iterations;
+        start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            pm.unmarshall(raw);
+        }
+        long read = (System.nanoTime() - start) / iterations;
+        return new long[] { raw.length, bos.size(), write, read };
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * MegaMek - Copyright (C) 2016 The MegaMek Team
+ *
+ *  This program is free software; you can redistribute it and/or modify it
+ *  under the terms of the GNU General Public License as published by the Free
+ *  Software Foundation; either version 2 of the License, or (at your option)
+ *  any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ *  or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ *  for more details.
+ */
+
+package megamek.test;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+
+import megamek.common.Board;
+import megamek.common.Coords;
+import megamek.common.Entity;
+import megamek.common.Game;
+import megamek.common.IBoard;
+import megamek.common.IPlayer;
+import megamek.common.MechFileParser;
+import megamek.common.MovePath;
+import megamek.common.MovePath.MoveStepType;
+import megamek.common.Player;
+import megamek.common.pathfinder.AbstractPathFinder.AdjacencyMap;
+import megamek.common.pathfinder.LongestPathFinder;
+import megamek.common.pathfinder.MovePathFinder;
+import megamek.common.pathfinder.ShortestPathFinder;
+
+/**
+ * Measures how fast the path finders search and how much memory they
+ * allocate while doing so. Every unit gets the running, walking and jumping
+ * searches that the bot runs for it at the start of the movement phase.
+ * <p>
+ * A node is a path the search generated as a neighbour of another path,
+ * whether it was kept or not. Allocated bytes are only reported on virtual
+ * machines that can measure them per thread.
+ * <p>
+ * Usage: <code>PathFinderBenchmark [units] [rounds] [board]</code>
+ */
+public class PathFinderBenchmark {
+
+    private static final String DEFAULT_BOARD = "data/boards/buildings_no_basement/32x34 FCCW6.board";
+
+    private static final String MECH_DIRECTORY = "data/mechfiles/mechs/3039u";
+
+    private static long nodes;
+
+    public static void main(String[] args) throws Exception {
+        int units = (args.length > 0) ? Integer.parseInt(args[0]) : 10;
+        int rounds = (args.length > 1) ? Integer.parseInt(args[1]) : 5;
+        String boardFile = (args.length > 2) ? args[2] : DEFAULT_BOARD;
+
+        Game game = new Game();
+        IBoard board = new Board();
+        board.load(new File(boardFile));
+        game.setBoard(board);
+        IPlayer player = new Player(0, "Player 0");
+        game.addPlayer(0, player);
+
+        // jump capable units are the expensive ones
+        Random random = new Random(units);
+        File[] files = new File(MECH_DIRECTORY).listFiles();
+        Arrays.sort(files);
+        List<Entity> entities = new ArrayList<Entity>();
+        for (int i = 0; (entities.size() < units) && (i < files.length); i++) {
+            Entity entity = new MechFileParser(files[i]).getEntity();
+            if (entity.getJumpMP() == 0) {
+                continue;
+            }
+            entity.setId(entities.size());
+            entity.setOwner(player);
+            entity.setDeployed(true);
+            game.addEntity(entity);
+            entity.setPosition(new Coords(random.nextInt(board.getWidth()),
+                    random.nextInt(board.getHeight())));
+            entities.add(entity);
+        }
+
+        // warm up
+        search(game, entities);
+
+        long paths = 0;
+        nodes = 0;
+        long bytes = allocatedBytes();
+        long start = System.nanoTime();
+        for (int round = 0; round < rounds; round++) {
+            paths += search(game, entities);
+        }
+        long time = System.nanoTime() - start;
+        bytes = allocatedBytes() - bytes;
+
+        System.out.printf("%d units, %d rounds, %d paths found%n",
+                entities.size(), rounds, paths);
+        System.out.printf("%d nodes in %.1f ms, %.0f nodes/s%n", nodes,
+                time / 1e6, nodes / (time / 1e9));
+        if (bytes >= 0) {
+            System.out.printf("%.1f MB allocated, %.0f bytes per node%n",
+                    bytes / 1e6, (double) bytes / nodes);
+        }
+    }
+
+    /**
+     * Runs the searches of every unit once and returns the number of paths
+     * found
+     */
+    private static long search(Game game, List<Entity> entities) {
+        long paths = 0;
+        for (Entity entity : entities) {
+            LongestPathFinder lpf = LongestPathFinder.newInstanceOfLongestPath(
+                    entity.getRunMPwithoutMASC(), MoveStepType.FORWARDS, game);
+            lpf.setAdjacencyMap(new CountingAdjacencyMap(MoveStepType.FORWARDS));
+            lpf.run(new MovePath(game, entity));
+            paths += lpf.getLongestComputedPaths().size();
+
+            lpf = LongestPathFinder.newInstanceOfLongestPath(
+                    entity.getWalkMP(), MoveStepType.BACKWARDS, game);
+            lpf.setAdjacencyMap(new CountingAdjacencyMap(MoveStepType.BACKWARDS));
+            lpf.run(new MovePath(game, entity));
+            paths += lpf.getLongestComputedPaths().size();
+
+            ShortestPathFinder spf = ShortestPathFinder.newInstanceOfOneToAll(
+                    entity.getJumpMP(), MoveStepType.FORWARDS, game);
+            spf.setAdjacencyMap(new CountingAdjacencyMap(MoveStepType.FORWARDS));
+            spf.run(new MovePath(game, entity).addStep(MoveStepType.START_JUMP));
+            paths += spf.getAllComputedPathsUncategorized().size();
+        }
+        return paths;
+    }
+
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) bean)
+                    .getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+
+    private static class CountingAdjacencyMap implements AdjacencyMap<MovePath> {
+        private final AdjacencyMap<MovePath> adjacencyMap;
+
+        CountingAdjacencyMap(MoveStepType stepType) {
+            adjacencyMap = new MovePathFinder.NextStepsAdjacencyMap(stepType);
+        }
+
+        @Override
+        public Collection<MovePath> getAdjacent(MovePath e) {
+            Collection<MovePath> adjacent = adjacencyMap.getAdjacent(e);
+            nodes += adjacent.size();
+            return adjacent;
+        }
+    }
+}
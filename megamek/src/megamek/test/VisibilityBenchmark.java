@@ -0,0 +1,131 @@
+/*
+ * MegaMek - Copyright (C) 2016 The MegaMek Team
+ *
+ *  This program is free software; you can redistribute it and/or modify it
+ *  under the terms of the GNU General Public License as published by the Free
+ *  Software Foundation; either version 2 of the License, or (at your option)
+ *  any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ *  or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ *  for more details.
+ */
+
+package megamek.test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import megamek.common.Board;
+import megamek.common.Coords;
+import megamek.common.Entity;
+import megamek.common.Game;
+import megamek.common.IBoard;
+import megamek.common.IPlayer;
+import megamek.common.LosEffects;
+import megamek.common.MechFileParser;
+import megamek.common.Player;
+import megamek.server.VisibilityMatrix;
+
+/**
+ * Measures how long the double-blind visibility sweep takes with and without
+ * the server's {@link VisibilityMatrix}. Every step moves a single unit by
+ * one hex and then checks the line of sight from every unit to every enemy
+ * unit, the way the server does after each movement.
+ * <p>
+ * Usage: <code>VisibilityBenchmark [units] [moves] [board]</code>
+ */
+public class VisibilityBenchmark {
+
+    private static final String DEFAULT_BOARD = "data/boards/buildings_no_basement/32x34 FCCW6.board";
+
+    private static final String MECH_DIRECTORY = "data/mechfiles/mechs/3039u";
+
+    public static void main(String[] args) throws Exception {
+        int units = (args.length > 0) ? Integer.parseInt(args[0]) : 100;
+        int moves = (args.length > 1) ? Integer.parseInt(args[1]) : 200;
+        String boardFile = (args.length > 2) ? args[2] : DEFAULT_BOARD;
+
+        Game game = new Game();
+        game.getOptions().getOption("double_blind").setValue(true);
+        IBoard board = new Board();
+        board.load(new File(boardFile));
+        game.setBoard(board);
+        IPlayer[] players = new IPlayer[2];
+        for (int i = 0; i < players.length; i++) {
+            players[i] = new Player(i, "Player " + i);
+            players[i].setTeam(i + 1);
+            game.addPlayer(i, players[i]);
+        }
+
+        Random random = new Random(units);
+        File[] files = new File(MECH_DIRECTORY).listFiles();
+        Arrays.sort(files);
+        List<Entity> entities = new ArrayList<Entity>();
+        for (int i = 0; i < units; i++) {
+            Entity entity = new MechFileParser(files[i % files.length])
+                    .getEntity();
+            entity.setId(i);
+            entity.setOwner(players[i % players.length]);
+            entity.setDeployed(true);
+            game.addEntity(entity);
+            entity.setPosition(new Coords(random.nextInt(board.getWidth()),
+                    random.nextInt(board.getHeight())));
+            entities.add(entity);
+        }
+
+        VisibilityMatrix matrix = new VisibilityMatrix();
+        long directTime = 0;
+        long matrixTime = 0;
+        int checks = 0;
+        int mismatches = 0;
+        for (int move = 0; move < moves; move++) {
+            Entity mover = entities.get(random.nextInt(entities.size()));
+            Coords next = mover.getPosition().translated(random.nextInt(6));
+            if (board.contains(next)) {
+                mover.setPosition(next);
+            }
+
+            long start = System.nanoTime();
+            boolean[] direct = new boolean[units * units];
+            for (Entity target : entities) {
+                for (Entity spotter : entities) {
+                    if (spotter.isEnemyOf(target)) {
+                        direct[(spotter.getId() * units) + target.getId()] = LosEffects
+                                .calculateLos(game, spotter.getId(), target)
+                                .canSee();
+                    }
+                }
+            }
+            directTime += System.nanoTime() - start;
+
+            start = System.nanoTime();
+            matrix.validate(game);
+            for (Entity target : entities) {
+                for (Entity spotter : entities) {
+                    if (spotter.isEnemyOf(target)) {
+                        checks++;
+                        if (matrix.getLos(spotter, target).canSee() != direct[(spotter
+                                .getId() * units) + target.getId()]) {
+                            mismatches++;
+                        }
+                    }
+                }
+            }
+            matrixTime += System.nanoTime() - start;
+        }
+
+        System.out.printf("%d units, %d moves, %d line of sight checks%n",
+                units, moves, checks);
+        System.out.printf("direct:  %8.1f ms per sweep%n", directTime
+                / (moves * 1e6));
+        System.out.printf("matrix:  %8.1f ms per sweep%n", matrixTime
+                / (moves * 1e6));
+        System.out.printf("matrix hits %d, misses %d, mismatches %d%n",
+                matrix.getHits(), matrix.getMisses(), mismatches);
+    }
+}
@@ -35,6 +35,7 @@ import megamek.common.Tank;
 import megamek.common.TargetRoll;
 import megamek.common.Targetable;
 import megamek.common.Terrains;
+import megamek.common.logging.LogLevel;
 import megamek.common.options.GameOptions;
 import megamek.common.options.PilotOptions;
 import megamek.common.util.StringUtil;
@@ -92,6 +93,7 @@ public class BasicPathRankerTest {
         Mockito.when(mockPrincess.getFireControl()).thenReturn(mockFireControl);
         Mockito.when(mockPrincess.getHomeEdge()).thenReturn(HomeEdge.NORTH);
         Mockito.when(mockPrincess.getHonorUtil()).thenReturn(mockHonorUtil);
+        Mockito.when(mockPrincess.isLoggable(Mockito.any(LogLevel.class))).thenReturn(true);
     }
 
     private void assertRankedPathEquals(RankedPath expected, RankedPath actual) {
@@ -0,0 +1,165 @@
+/*
+ * MegaMek - Copyright (C) 2016 The MegaMek Team
+ *
+ *  This program is free software; you can redistribute it and/or modify it
+ *  under the terms of the GNU General Public License as published by the Free
+ *  Software Foundation; either version 2 of the License, or (at your option)
+ *  any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ *  or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ *  for more details.
+ */
+package megamek.client.bot.princess;
+
+import megamek.common.Coords;
+import megamek.common.Entity;
+import megamek.common.EntityMovementMode;
+import megamek.common.IBoard;
+import megamek.common.IGame;
+import megamek.common.MovePath;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.Matchers;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@RunWith(JUnit4.class)
+public class PathEnumeratorTest {
+
+    private BehaviorSettings mockBehavior;
+    private IGame mockGame;
+    private final Map<Coords, Long> hexVersions = new ConcurrentHashMap<>();
+    private final Vector<Entity> entities = new Vector<>();
+    private final Map<Integer, AtomicInteger> enumerations = new ConcurrentHashMap<>();
+    private PathEnumerator enumerator;
+
+    @Before
+    public void setUp() {
+        mockBehavior = Mockito.mock(BehaviorSettings.class);
+        Mockito.when(mockBehavior.getEffectiveRankingParallelism()).thenReturn(1);
+        Princess mockPrincess = Mockito.mock(Princess.class);
+        Mockito.when(mockPrincess.getBehaviorSettings()).thenReturn(mockBehavior);
+
+        IBoard mockBoard = Mockito.mock(IBoard.class);
+        Mockito.when(mockBoard.getHexVersion(Matchers.any(Coords.class))).thenAnswer(new Answer<Long>() {
+            @Override
+            public Long answer(InvocationOnMock invocation) {
+                Long version = hexVersions.get(invocation.getArguments()[0]);
+                return (version == null) ? 0L : version;
+            }
+        });
+        mockGame = Mockito.mock(IGame.class);
+        Mockito.when(mockGame.getBoard()).thenReturn(mockBoard);
+        Mockito.when(mockGame.getEntitiesVector()).thenReturn(entities);
+
+        // Every unit can walk two hexes north of where it stands.
+        enumerator = new PathEnumerator(mockPrincess, mockGame) {
+            @Override
+            protected List<MovePath> calculateMoves(Entity mover) {
+                enumerations.get(mover.getId()).incrementAndGet();
+                Coords start = mover.getPosition();
+                MovePath path = Mockito.mock(MovePath.class);
+                Mockito.when(path.getCoordsSet()).thenReturn(new HashSet<>(Arrays.asList(start,
+                        start.translated(0), start.translated(0).translated(0))));
+                Mockito.when(path.getFinalCoords()).thenReturn(start.translated(0).translated(0));
+                Mockito.when(path.getFinalFacing()).thenReturn(0);
+                return new ArrayList<>(Collections.singletonList(path));
+            }
+        };
+    }
+
+    private Entity createUnit(int id, Coords position) {
+        Entity unit = Mockito.mock(Entity.class);
+        Mockito.when(unit.getId()).thenReturn(id);
+        Mockito.when(unit.getDisplayName()).thenReturn("Unit " + id);
+        Mockito.when(unit.getPosition()).thenReturn(position);
+        Mockito.when(unit.getWalkMP()).thenReturn(4);
+        Mockito.when(unit.getRunMPwithoutMASC()).thenReturn(6);
+        Mockito.when(unit.getMovementMode()).thenReturn(EntityMovementMode.BIPED);
+        entities.add(unit);
+        enumerations.put(id, new AtomicInteger());
+        return unit;
+    }
+
+    private int enumerationsOf(Entity unit) {
+        return enumerations.get(unit.getId()).get();
+    }
+
+    @Test
+    public void testUnchangedEnvelopeKeepsPaths() {
+        Entity mover = createUnit(1, new Coords(5, 5));
+        Entity other = createUnit(2, new Coords(15, 15));
+
+        enumerator.recalculateMovesFor(mover);
+        List<MovePath> paths = enumerator.getUnitPaths().get(1);
+        Assert.assertEquals(1, enumerationsOf(mover));
+
+        // Nothing the moves depend on has changed.
+        hexVersions.put(new Coords(12, 12), 1L);
+        Mockito.when(other.getPosition()).thenReturn(new Coords(14, 15));
+        enumerator.recalculateMovesFor(mover);
+        Assert.assertEquals(1, enumerationsOf(mover));
+        Assert.assertSame(paths, enumerator.getUnitPaths().get(1));
+
+        // A hex next to the end of the path changes.
+        hexVersions.put(new Coords(5, 2), 1L);
+        enumerator.recalculateMovesFor(mover);
+        Assert.assertEquals(2, enumerationsOf(mover));
+        Assert.assertNotSame(paths, enumerator.getUnitPaths().get(1));
+        enumerator.recalculateMovesFor(mover);
+        Assert.assertEquals(2, enumerationsOf(mover));
+
+        // Another unit moves into the way.
+        Mockito.when(other.getPosition()).thenReturn(new Coords(5, 4));
+        enumerator.recalculateMovesFor(mover);
+        Assert.assertEquals(3, enumerationsOf(mover));
+
+        // The unit itself turns.
+        Mockito.when(mover.getFacing()).thenReturn(2);
+        enumerator.recalculateMovesFor(mover);
+        Assert.assertEquals(4, enumerationsOf(mover));
+
+        // Forgotten units are calculated again.
+        enumerator.clearUnit(1);
+        enumerator.recalculateMovesFor(mover);
+        Assert.assertEquals(5, enumerationsOf(mover));
+    }
+
+    @Test
+    public void testSeveralUnitsOnSeveralThreads() {
+        Mockito.when(mockBehavior.getEffectiveRankingParallelism()).thenReturn(3);
+        List<Entity> movers = new ArrayList<>();
+        for (int id = 1; id <= 6; id++) {
+            movers.add(createUnit(id, new Coords(id * 3, 10)));
+        }
+
+        enumerator.recalculateMovesFor(movers);
+        for (Entity mover : movers) {
+            Assert.assertEquals(1, enumerationsOf(mover));
+            Assert.assertEquals(1, enumerator.getUnitPaths().get(mover.getId()).size());
+        }
+
+        // Only the unit whose hexes changed is calculated again.
+        hexVersions.put(new Coords(9, 8), 1L);
+        enumerator.recalculateMovesFor(movers);
+        for (Entity mover : movers) {
+            Assert.assertEquals((mover.getId() == 3) ? 2 : 1, enumerationsOf(mover));
+        }
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * MegaMek - Copyright (C) 2016 The MegaMek Team
+ *
+ *  This program is free software; you can redistribute it and/or modify it
+ *  under the terms of the GNU General Public License as published by the Free
+ *  Software Foundation; either version 2 of the License, or (at your option)
+ *  any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ *  or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ *  for more details.
+ */
+package megamek.client.bot.princess;
+
+import megamek.common.BipedMech;
+import megamek.common.Coords;
+import megamek.common.Entity;
+import megamek.common.EntityMovementType;
+import megamek.common.ToHitData;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.Mockito;
+
+@RunWith(JUnit4.class)
+public class ToHitModifierCacheTest {
+
+    @Test
+    public void testGetAndPut() {
+        Entity mockShooter = Mockito.mock(BipedMech.class);
+        Entity mockTarget = Mockito.mock(BipedMech.class);
+        EntityState mockShooterState = Mockito.mock(EntityState.class);
+        Mockito.when(mockShooterState.getPosition()).thenReturn(new Coords(0, 0));
+        Mockito.when(mockShooterState.getMovementType()).thenReturn(EntityMovementType.MOVE_WALK);
+        EntityState mockTargetState = Mockito.mock(EntityState.class);
+        Mockito.when(mockTargetState.getPosition()).thenReturn(new Coords(0, 5));
+        Mockito.when(mockTargetState.getHexesMoved()).thenReturn(3);
+
+        ToHitModifierCache cache = new ToHitModifierCache();
+        ToHitModifierCache.Key key = new ToHitModifierCache.Key(mockShooter, mockShooterState, mockTarget,
+                                                                mockTargetState, 5);
+        Assert.assertNull(cache.get(key));
+
+        ToHitData toHit = new ToHitData(4, FireControl.TH_GUNNERY);
+        toHit.addModifier(1, FireControl.TH_WOODS);
+        cache.put(key, toHit);
+
+        // Changing what was stored or what was returned doesn't change the cache.
+        toHit.addModifier(FireControl.TH_TAR_PRONE_ADJ);
+        ToHitData cached = cache.get(new ToHitModifierCache.Key(mockShooter, mockShooterState, mockTarget,
+                                                                mockTargetState, 5));
+        Assert.assertNotNull(cached);
+        Assert.assertEquals(5, cached.getValue());
+        cached.addModifier(2, FireControl.TH_SMOKE);
+        Assert.assertEquals(5, cache.get(key).getValue());
+
+        // Other states and other units are different keys.
+        Mockito.when(mockTargetState.isProne()).thenReturn(true);
+        Assert.assertNull(cache.get(new ToHitModifierCache.Key(mockShooter, mockShooterState, mockTarget,
+                                                               mockTargetState, 5)));
+        Mockito.when(mockTargetState.isProne()).thenReturn(false);
+        Assert.assertNull(cache.get(new ToHitModifierCache.Key(Mockito.mock(BipedMech.class), mockShooterState,
+                                                               mockTarget, mockTargetState, 5)));
+
+        Assert.assertEquals(2, cache.getHits());
+        Assert.assertEquals(3, cache.getMisses());
+
+        cache.clear();
+        Assert.assertNull(cache.get(key));
+        Assert.assertEquals(0, cache.getHits());
+        Assert.assertEquals(1, cache.getMisses());
+        Assert.assertEquals(0, cache.size());
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * MegaMek - Copyright (C) 2016 The MegaMek Team
+ *
+ *  This program is free software; you can redistribute it and/or modify it
+ *  under the terms of the GNU General Public License as published by the Free
+ *  Software Foundation; either version 2 of the License, or (at your option)
+ *  any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ *  or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ *  for more details.
+ */
+package megamek.common;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class BoardCatalogueTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static void writeBoard(File file, int width, int height)
+            throws IOException {
+        FileWriter writer = new FileWriter(file);
+        writer.write("size " + width + " " + height + "\n");
+        writer.write("end\n");
+        writer.close();
+    }
+
+    @Test
+    public void testUpdates() throws IOException {
+        File boardDir = folder.getRoot();
+        File subDir = new File(boardDir, "sub");
+        Assert.assertTrue(subDir.mkdir());
+        writeBoard(new File(boardDir, "a.board"), 16, 17);
+        writeBoard(new File(subDir, "b.board"), 16, 17);
+        writeBoard(new File(subDir, "c.board"), 32, 17);
+        FileWriter writer = new FileWriter(new File(boardDir, "broken.board"));
+        writer.write("end\n");
+        writer.close();
+
+        BoardCatalogue catalogue = new BoardCatalogue(boardDir);
+        List<String> boards = catalogue.getBoards(new BoardDimensions(16, 17));
+        Collections.sort(boards);
+        Assert.assertEquals(2, boards.size());
+        Assert.assertEquals(File.separator + "a", boards.get(0));
+        Assert.assertEquals(File.separator + "sub" + File.separator + "b",
+                boards.get(1));
+        Assert.assertEquals(2, catalogue.getBoardSizes().size());
+        Assert.assertTrue(new File(boardDir, "boards.cache").exists());
+
+        // A new catalogue reads the same from the cache file.
+        catalogue = new BoardCatalogue(boardDir);
+        Assert.assertEquals(2, catalogue.getBoards(
+                new BoardDimensions(16, 17)).size());
+
+        // Changed and removed boards are noticed.
+        File c = new File(subDir, "c.board");
+        writeBoard(c, 16, 17);
+        c.setLastModified(c.lastModified() + 2000);
+        Assert.assertTrue(new File(boardDir, "a.board").delete());
+        boards = catalogue.getBoards(new BoardDimensions(16, 17));
+        Collections.sort(boards);
+        Assert.assertEquals(2, boards.size());
+        Assert.assertEquals(File.separator + "sub" + File.separator + "c",
+                boards.get(1));
+        Assert.assertTrue(catalogue.getBoards(
+                new BoardDimensions(32, 17)).isEmpty());
+        Assert.assertEquals(1, catalogue.getBoardSizes().size());
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ * MegaMek - Copyright (C) 2016 The MegaMek Team
+ *
+ *  This program is free software; you can redistribute it and/or modify it
+ *  under the terms of the GNU General Public License as published by the Free
+ *  Software Foundation; either version 2 of the License, or (at your option)
+ *  any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ *  or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ *  for more details.
+ */
+package megamek.common;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class EntityPositionIndexTest {
+
+    private static final int WIDTH = 17;
+
+    private static final int HEIGHT = 13;
+
+    private static final int ENTITIES = 30;
+
+    /**
+     * Returns a random position, now and then one off the board
+     */
+    private static Coords randomCoords(Random random) {
+        if (random.nextInt(10) == 0) {
+            return new Coords(random.nextInt(WIDTH + 6) - 3,
+                    random.nextInt(3) - 4);
+        }
+        return new Coords(random.nextInt(WIDTH), random.nextInt(HEIGHT));
+    }
+
+    /**
+     * Returns how often each entity is in a hex within range of the center,
+     * going through every position of every entity
+     */
+    private static Map<Integer, Integer> bruteForce(
+            Map<Integer, List<Coords>> positions, Coords center, int range) {
+        Map<Integer, Integer> counts = new TreeMap<Integer, Integer>();
+        for (Map.Entry<Integer, List<Coords>> entry : positions.entrySet()) {
+            for (Coords c : entry.getValue()) {
+                if (center.distance(c) <= range) {
+                    Integer count = counts.get(entry.getKey());
+                    counts.put(entry.getKey(), (count == null) ? 1 : count + 1);
+                }
+            }
+        }
+        return counts;
+    }
+
+    private static Map<Integer, Integer> visit(EntityPositionIndex index,
+            Coords center, int range) {
+        final Map<Integer, Integer> counts = new TreeMap<Integer, Integer>();
+        index.visitWithin(center, range, new EntityPositionIndex.IdVisitor() {
+            public void visit(int[] ids) {
+                for (int id : ids) {
+                    Integer count = counts.get(id);
+                    counts.put(id, (count == null) ? 1 : count + 1);
+                }
+            }
+        });
+        return counts;
+    }
+
+    private static void check(EntityPositionIndex index,
+            Map<Integer, List<Coords>> positions, Random random) {
+        Assert.assertEquals(positions.isEmpty(), index.isEmpty());
+        for (int x = 0; x < WIDTH; x++) {
+            for (int y = 0; y < HEIGHT; y++) {
+                Coords c = new Coords(x, y);
+                List<Integer> expected = new ArrayList<Integer>();
+                for (Map.Entry<Integer, List<Coords>> entry : positions
+                        .entrySet()) {
+                    if (entry.getValue().contains(c)) {
+                        expected.add(entry.getKey());
+                    }
+                }
+                Collections.sort(expected);
+                List<Integer> actual = new ArrayList<Integer>();
+                for (int id : index.getIds(c)) {
+                    actual.add(id);
+                }
+                Assert.assertEquals(c.toString(), expected, actual);
+            }
+        }
+        for (int i = 0; i < 20; i++) {
+            Coords center = new Coords(random.nextInt(WIDTH + 4) - 2,
+                    random.nextInt(HEIGHT + 4) - 2);
+            int range = random.nextInt(8);
+            Assert.assertEquals(center + " range " + range,
+                    bruteForce(positions, center, range),
+                    visit(index, center, range));
+        }
+        // from a corner at every distance, up to the whole board
+        Coords corner = new Coords(0, 0);
+        for (int range = 0; range < WIDTH + HEIGHT; range++) {
+            Assert.assertEquals(bruteForce(positions, corner, range),
+                    visit(index, corner, range));
+        }
+    }
+
+    @Test
+    public void testRangeMatchesDistance() {
+        Random random = new Random(42);
+        EntityPositionIndex index = new EntityPositionIndex(WIDTH, HEIGHT);
+        Map<Integer, List<Coords>> positions = new HashMap<Integer, List<Coords>>();
+        check(index, positions, random);
+
+        for (int step = 0; step < 300; step++) {
+            int id = random.nextInt(ENTITIES);
+            int action = random.nextInt(10);
+            if (action == 0) {
+                index.remove(id);
+                positions.remove(id);
+            } else if (action == 1) {
+                // moving nowhere takes the entity off the index as well
+                index.update(id, Collections.<Coords> emptyList());
+                positions.remove(id);
+            } else {
+                List<Coords> hexes = new ArrayList<Coords>();
+                Coords first = randomCoords(random);
+                hexes.add(first);
+                if (action == 2) {
+                    // a unit taking up a hex and its neighbours
+                    for (int dir = 0; dir < 6; dir++) {
+                        hexes.add(first.translated(dir));
+                    }
+                }
+                index.update(id, hexes);
+                positions.put(id, hexes);
+            }
+            check(index, positions, random);
+        }
+
+        index.clear();
+        positions.clear();
+        check(index, positions, random);
+    }
+
+    @Test
+    public void testMoveWithinSameHexes() {
+        EntityPositionIndex index = new EntityPositionIndex(WIDTH, HEIGHT);
+        Coords a = new Coords(3, 4);
+        Coords b = new Coords(4, 4);
+        index.update(1, Arrays.asList(a, b));
+        index.update(2, Arrays.asList(a));
+        int[] ids = index.getIds(a);
+        // the same hexes in another order leave the index alone
+        index.update(1, Arrays.asList(b, a));
+        Assert.assertSame(ids, index.getIds(a));
+        Assert.assertArrayEquals(new int[] { 1, 2 }, index.getIds(a));
+        Assert.assertArrayEquals(new int[] { 1 }, index.getIds(b));
+
+        index.remove(1);
+        Assert.assertArrayEquals(new int[] { 2 }, index.getIds(a));
+        Assert.assertEquals(0, index.getIds(b).length);
+        Assert.assertEquals(0, index.getIds(null).length);
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ * MegaMek - Copyright (C) 2016 The MegaMek Team
+ *
+ *  This program is free software; you can redistribute it and/or modify it
+ *  under the terms of the GNU General Public License as published by the Free
+ *  Software Foundation; either version 2 of the License, or (at your option)
+ *  any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ *  or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ *  for more details.
+ */
+package megamek.common;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Vector;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class GameEventLogTest {
+
+    private static final String LINE = System.getProperty("line.separator");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static DataInputStream open(File file) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(
+                Files.readAllBytes(file.toPath())));
+        Assert.assertEquals(GameEventLog.MAGIC, in.readInt());
+        Assert.assertEquals(GameEventLog.FORMAT_VERSION, in.readInt());
+        return in;
+    }
+
+    /**
+     * Reads the header of the next record and checks it
+     */
+    private static void assertHeader(DataInputStream in, int kind, int round,
+            IGame.Phase phase) throws IOException {
+        Assert.assertEquals(kind, in.readByte());
+        Assert.assertTrue(in.readLong() > 0);
+        Assert.assertEquals(round, in.readInt());
+        Assert.assertEquals(phase.ordinal(), in.readByte());
+    }
+
+    private static String readText(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static String read(File file) throws IOException {
+        return new String(Files.readAllBytes(file.toPath()),
+                StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        File file = folder.newFile("game.log");
+        GameEventLog log = new GameEventLog(file);
+        log.append(1, IGame.Phase.PHASE_DEPLOYMENT, "Round #1");
+        Vector<Report> reports = new Vector<Report>();
+        Report report = new Report(2000);
+        report.add(7);
+        reports.add(report);
+        reports.add(new Report(2001));
+        log.append(1, IGame.Phase.PHASE_MOVEMENT, reports);
+        log.append(2, IGame.Phase.PHASE_FIRING, "Sch\u00fcsse");
+        log.close();
+        // nothing is added once the log is closed
+        log.append(3, IGame.Phase.PHASE_END, "too late");
+        Assert.assertEquals(3, log.getRecords());
+        Assert.assertEquals(file.length(), log.getBytesWritten());
+
+        DataInputStream in = open(file);
+        assertHeader(in, GameEventLog.RECORD_TEXT, 1,
+                IGame.Phase.PHASE_DEPLOYMENT);
+        Assert.assertEquals("Round #1", readText(in));
+        assertHeader(in, GameEventLog.RECORD_REPORTS, 1,
+                IGame.Phase.PHASE_MOVEMENT);
+        Assert.assertEquals(2, in.readInt());
+        Assert.assertEquals(2000, Report.readCompact(in).messageId);
+        Assert.assertEquals(2001, Report.readCompact(in).messageId);
+        assertHeader(in, GameEventLog.RECORD_TEXT, 2,
+                IGame.Phase.PHASE_FIRING);
+        Assert.assertEquals("Sch\u00fcsse", readText(in));
+        Assert.assertEquals(-1, in.read());
+    }
+
+    @Test
+    public void testFlushWritesEverythingSoFar() throws IOException {
+        File file = folder.newFile("game.log");
+        File html = folder.newFile("game.html");
+        GameEventLog log = new GameEventLog(file, html);
+        try {
+            log.append(1, IGame.Phase.PHASE_INITIATIVE, "first");
+            log.flush();
+            Assert.assertEquals(file.length(), log.getBytesWritten());
+            Assert.assertEquals("<pre>first</pre>" + LINE, read(html));
+
+            log.append(1, IGame.Phase.PHASE_END, "second");
+            log.flush();
+            DataInputStream in = open(file);
+            assertHeader(in, GameEventLog.RECORD_TEXT, 1,
+                    IGame.Phase.PHASE_INITIATIVE);
+            Assert.assertEquals("first", readText(in));
+            assertHeader(in, GameEventLog.RECORD_TEXT, 1,
+                    IGame.Phase.PHASE_END);
+            Assert.assertEquals("second", readText(in));
+            Assert.assertEquals(-1, in.read());
+            Assert.assertEquals("<pre>first</pre>" + LINE
+                    + "<pre>second</pre>" + LINE, read(html));
+        } finally {
+            log.close();
+        }
+    }
+
+    @Test
+    public void testRenderIgnoresTruncatedRecord() throws IOException {
+        File file = folder.newFile("game.log");
+        GameEventLog log = new GameEventLog(file);
+        log.append(1, IGame.Phase.PHASE_MOVEMENT, "complete");
+        log.append(1, IGame.Phase.PHASE_FIRING, "cut off");
+        log.close();
+
+        // as if the game stopped while the last record was being written
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        File truncated = folder.newFile("truncated.log");
+        FileOutputStream out = new FileOutputStream(truncated);
+        try {
+            out.write(Arrays.copyOf(bytes, bytes.length - 3));
+        } finally {
+            out.close();
+        }
+
+        File html = GameEventLog.getHtmlFile(truncated);
+        Assert.assertEquals(new File(folder.getRoot(), "truncated.html"),
+                html);
+        GameEventLog.render(truncated, html);
+        Assert.assertEquals("<pre>complete</pre>" + LINE, read(html));
+
+        GameEventLog.render(file, html);
+        Assert.assertEquals("<pre>complete</pre>" + LINE
+                + "<pre>cut off</pre>" + LINE, read(html));
+
+        try {
+            GameEventLog.render(html, folder.newFile("other.html"));
+            Assert.fail("Rendered a file that isn't a game log");
+        } catch (IOException ex) {
+            Assert.assertEquals("Not a game log", ex.getMessage());
+        }
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * MegaMek - Copyright (C) 2016 The MegaMek Team
+ *
+ *  This program is free software; you can redistribute it and/or modify it
+ *  under the terms of the GNU General Public License as published by the Free
+ *  Software Foundation; either version 2 of the License, or (at your option)
+ *  any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ *  or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ *  for more details.
+ */
+package megamek.common;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Vector;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class GameReportsTest {
+
+    private static final int ROUNDS = 8;
+
+    /**
+     * Returns a few reports whose message ids tell the round they belong to
+     */
+    private static Vector<Report> reports(int round, int count) {
+        Vector<Report> v = new Vector<Report>();
+        for (int i = 0; i < count; i++) {
+            v.add(new Report((round * 100) + i));
+        }
+        return v;
+    }
+
+    private static List<Integer> ids(Vector<Report> v) {
+        List<Integer> ids = new ArrayList<Integer>();
+        for (Report r : v) {
+            ids.add(r.messageId);
+        }
+        return ids;
+    }
+
+    private static void assertRound(GameReports reports, int round, int count) {
+        Assert.assertTrue("round " + round, reports.has(round));
+        Assert.assertEquals("round " + round, ids(reports(round, count)),
+                ids(reports.get(round)));
+    }
+
+    @Test
+    public void testSpillAndPageBack() {
+        GameReports reports = new GameReports();
+        for (int round = 1; round <= ROUNDS; round++) {
+            reports.add(round, reports(round, round));
+        }
+        Assert.assertEquals(ROUNDS, reports.size());
+        for (int round = 1; round <= ROUNDS; round++) {
+            assertRound(reports, round, round);
+        }
+        // old rounds are read back from disk every time, the latest ones are
+        // kept in memory
+        Assert.assertNotSame(reports.get(1), reports.get(1));
+        Assert.assertSame(reports.get(ROUNDS), reports.get(ROUNDS));
+
+        // adding to a round on disk appends to what was written there
+        reports.add(2, reports(2, 5));
+        Vector<Report> expected = reports(2, 2);
+        expected.addAll(reports(2, 5));
+        Assert.assertEquals(ids(expected), ids(reports.get(2)));
+
+        reports.set(3, reports(3, 1));
+        assertRound(reports, 3, 1);
+        assertRound(reports, 4, 4);
+        Assert.assertEquals(ROUNDS, reports.get().size());
+        Assert.assertEquals(ids(reports(5, 5)), ids(reports.get().get(4)));
+
+        reports.clear();
+        Assert.assertEquals(0, reports.size());
+        Assert.assertFalse(reports.has(1));
+    }
+
+    @Test
+    public void testUnknownRounds() {
+        GameReports reports = new GameReports();
+        // a client that fetched a single round knows nothing of the others
+        reports.set(5, reports(5, 2));
+        Assert.assertEquals(5, reports.size());
+        Assert.assertFalse(reports.has(4));
+        Assert.assertFalse(reports.has(6));
+        assertRound(reports, 5, 2);
+        Assert.assertTrue(reports.get().get(3).isEmpty());
+        Assert.assertNull(reports.get(6));
+    }
+
+    @Test
+    public void testSerializationAndPackedRounds() throws Exception {
+        GameReports reports = new GameReports();
+        for (int round = 1; round <= ROUNDS; round++) {
+            reports.add(round, reports(round, 3));
+        }
+
+        // every round is written out, those on disk included
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(reports);
+        out.close();
+        GameReports copy = (GameReports) new ObjectInputStream(
+                new ByteArrayInputStream(bytes.toByteArray())).readObject();
+        for (int round = 1; round <= ROUNDS; round++) {
+            assertRound(copy, round, 3);
+        }
+
+        // as does a saved game that keeps its rounds packed until needed
+        List<byte[]> packed = new ArrayList<byte[]>();
+        for (int round = 1; round <= ROUNDS; round++) {
+            packed.add(reports.packRound(round));
+        }
+        GameReports lazy = new GameReports(packed);
+        Assert.assertEquals(ROUNDS, lazy.size());
+        for (int round = ROUNDS; round >= 1; round--) {
+            assertRound(lazy, round, 3);
+        }
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * MegaMek - Copyright (C) 2016 The MegaMek Team
+ *
+ *  This program is free software; you can redistribute it and/or modify it
+ *  under the terms of the GNU General Public License as published by the Free
+ *  Software Foundation; either version 2 of the License, or (at your option)
+ *  any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ *  or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ *  for more details.
+ */
+package megamek.common;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class LosCacheTest {
+
+    private static final Coords ATTACKER = new Coords(3, 0);
+
+    private static final Coords TARGET = new Coords(3, 6);
+
+    private IGame game;
+
+    private IBoard board;
+
+    @Before
+    public void setUp() {
+        game = new Game();
+        IHex[] hexes = new IHex[7 * 7];
+        for (int i = 0; i < hexes.length; i++) {
+            hexes[i] = new Hex(0, "", null, new Coords(i % 7, i / 7));
+        }
+        board = new Board(7, 7, hexes);
+        game.setBoard(board);
+    }
+
+    private static LosEffects.AttackInfo attack() {
+        return LosEffects.buildAttackInfo(ATTACKER, TARGET, 1, 1, 0, 0);
+    }
+
+    /**
+     * Returns the line of sight kept for the attack, or <code>null</code>
+     */
+    private LosEffects cached() {
+        LosEffects.AttackInfo ai = attack();
+        return board.getLosCache().get(
+                new LosCache.Key(ai, false, false, false), ai);
+    }
+
+    @Test
+    public void testHexChanges() {
+        LosEffects los = LosEffects.calculateLos(game, attack());
+        Assert.assertFalse(los.isBlocked());
+        Assert.assertNotNull(cached());
+        Assert.assertEquals(0, cached().getHeavyWoods());
+
+        // hexes off the line don't matter
+        board.setHex(0, 3, new Hex(0, "woods:2", null, new Coords(0, 3)));
+        Assert.assertNotNull(cached());
+
+        // a hex on the line that is replaced
+        board.setHex(3, 3, new Hex(0, "woods:2", null, new Coords(3, 3)));
+        Assert.assertNull(cached());
+        Assert.assertEquals(1, LosEffects.calculateLos(game, attack())
+                .getHeavyWoods());
+        Assert.assertEquals(1, cached().getHeavyWoods());
+
+        // or changed in place
+        board.getHex(3, 2).addTerrain(Terrains.getTerrainFactory()
+                .createTerrain(Terrains.WOODS, 2, false, 0));
+        Assert.assertNull(cached());
+        Assert.assertEquals(2, LosEffects.calculateLos(game, attack())
+                .getHeavyWoods());
+    }
+
+    @Test
+    public void testGroundedDropships() {
+        Dropship dropship = new Dropship();
+        dropship.setId(5);
+        dropship.setSpheroid(true);
+        dropship.setPosition(new Coords(0, 0));
+        dropship.land();
+        int version = game.getGroundedDropshipsVersion();
+        Assert.assertFalse(game.hasGroundedDropships());
+
+        // a dropship on the ground blocks like a building without changing a
+        // hex, so nothing is cached while there is one
+        game.addEntity(dropship);
+        Assert.assertTrue(game.hasGroundedDropships());
+        Assert.assertTrue(game.getGroundedDropshipsVersion() != version);
+        LosEffects.calculateLos(game, attack());
+        Assert.assertNull(cached());
+
+        version = game.getGroundedDropshipsVersion();
+        dropship.setPosition(new Coords(5, 5));
+        Assert.assertTrue(game.getGroundedDropshipsVersion() != version);
+
+        version = game.getGroundedDropshipsVersion();
+        dropship.liftOff(3);
+        Assert.assertFalse(game.hasGroundedDropships());
+        Assert.assertTrue(game.getGroundedDropshipsVersion() != version);
+        LosEffects.calculateLos(game, attack());
+        Assert.assertNotNull(cached());
+
+        // moving in the air changes nothing on the ground
+        version = game.getGroundedDropshipsVersion();
+        dropship.setPosition(new Coords(5, 4));
+        Assert.assertEquals(version, game.getGroundedDropshipsVersion());
+
+        dropship.land();
+        Assert.assertTrue(game.hasGroundedDropships());
+        version = game.getGroundedDropshipsVersion();
+        game.removeEntity(dropship.getId(),
+                IEntityRemovalConditions.REMOVE_SALVAGEABLE);
+        Assert.assertFalse(game.hasGroundedDropships());
+        Assert.assertTrue(game.getGroundedDropshipsVersion() != version);
+    }
+}
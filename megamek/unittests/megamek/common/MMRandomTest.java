@@ -0,0 +1,142 @@
+/*
+ * MegaMek - Copyright (C) 2016 The MegaMek Team
+ *
+ *  This program is free software; you can redistribute it and/or modify it
+ *  under the terms of the GNU General Public License as published by the Free
+ *  Software Foundation; either version 2 of the License, or (at your option)
+ *  any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ *  or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ *  for more details.
+ */
+package megamek.common;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import megamek.common.Compute.RandomStream;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class MMRandomTest {
+
+    private static final int ROLLS = 100;
+
+    @After
+    public void tearDown() {
+        Compute.setThreadRNG(null);
+        Compute.clearSeed();
+    }
+
+    private static List<Integer> roll(MMRandom rng) {
+        List<Integer> rolls = new ArrayList<Integer>();
+        for (int i = 0; i < ROLLS; i++) {
+            rolls.add(rng.randomInt(1000));
+        }
+        return rolls;
+    }
+
+    private static List<Integer> roll(RandomStream stream) {
+        List<Integer> rolls = new ArrayList<Integer>();
+        for (int i = 0; i < ROLLS; i++) {
+            rolls.add(Compute.randomInt(stream, 1000));
+        }
+        return rolls;
+    }
+
+    @Test
+    public void testSameSeedSameSequence() {
+        Assert.assertEquals(roll(MMRandom.seeded(42)),
+                roll(MMRandom.seeded(42)));
+        Assert.assertFalse(roll(MMRandom.seeded(42)).equals(
+                roll(MMRandom.seeded(43))));
+
+        Compute.setSeed(7);
+        List<Integer> dice = roll(RandomStream.DICE);
+        List<Integer> bot = roll(RandomStream.BOT);
+        List<Integer> map = roll(RandomStream.MAP);
+        Compute.setSeed(7);
+        Assert.assertEquals(dice, roll(RandomStream.DICE));
+        Assert.assertEquals(bot, roll(RandomStream.BOT));
+        Assert.assertEquals(map, roll(RandomStream.MAP));
+        Assert.assertEquals(Long.valueOf(7), Compute.getSeed());
+    }
+
+    @Test
+    public void testStreamsAreIndependent() {
+        Compute.setSeed(7);
+        List<Integer> dice = roll(RandomStream.DICE);
+        List<Integer> bot = roll(RandomStream.BOT);
+        List<Integer> map = roll(RandomStream.MAP);
+        Assert.assertFalse(dice.equals(bot));
+        Assert.assertFalse(bot.equals(map));
+
+        // however many numbers the other streams give first, or in which
+        // order, each stream gives the same ones
+        Compute.setSeed(7);
+        Assert.assertEquals(map, roll(RandomStream.MAP));
+        for (int i = 0; i < 17; i++) {
+            Compute.d6(RandomStream.BOT, 2);
+        }
+        Assert.assertEquals(dice, roll(RandomStream.DICE));
+
+        Compute.setSeed(7);
+        Assert.assertEquals(bot, roll(RandomStream.BOT));
+
+        // the dice rolled on a thread that uses a stream come from it
+        Compute.setSeed(7);
+        Compute.useStream(RandomStream.BOT);
+        List<Integer> rolls = new ArrayList<Integer>();
+        for (int i = 0; i < ROLLS; i++) {
+            rolls.add(Compute.randomInt(1000));
+        }
+        Compute.setThreadRNG(null);
+        Assert.assertEquals(bot, rolls);
+        Assert.assertEquals(dice, roll(RandomStream.DICE));
+    }
+
+    @Test
+    public void testRestoredStateReplaysRolls() {
+        MMRandom.SplitMixRandom rng = new MMRandom.SplitMixRandom(11);
+        roll(rng);
+        long[] state = rng.getState();
+        List<Integer> rolls = roll(rng);
+        Assert.assertEquals(rolls, roll(new MMRandom.SplitMixRandom(state)));
+
+        Compute.setSeed(9);
+        roll(RandomStream.DICE);
+        roll(RandomStream.MAP);
+        long[] saved = Compute.getRandomState();
+        Assert.assertEquals(9, saved[0]);
+        List<Integer> dice = roll(RandomStream.DICE);
+        List<Integer> bot = roll(RandomStream.BOT);
+        List<Integer> map = roll(RandomStream.MAP);
+
+        Compute.setSeed(1234);
+        Compute.setRandomState(saved);
+        Assert.assertEquals(Long.valueOf(9), Compute.getSeed());
+        Assert.assertEquals(dice, roll(RandomStream.DICE));
+        Assert.assertEquals(bot, roll(RandomStream.BOT));
+        Assert.assertEquals(map, roll(RandomStream.MAP));
+
+        // a seeded game keeps its generators whatever rng_type says
+        Compute.setRNG(MMRandom.R_SUN);
+        Assert.assertTrue(Compute.isSeedable());
+    }
+
+    @Test
+    public void testUnseeded() {
+        Assert.assertNull(Compute.getSeed());
+        Assert.assertNull(Compute.getRandomState());
+        // a state that isn't one is ignored
+        Compute.setRandomState(new long[] { 1, 2 });
+        Assert.assertNull(Compute.getSeed());
+    }
+}
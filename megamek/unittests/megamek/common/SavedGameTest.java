@@ -0,0 +1,198 @@
+/*
+ * MegaMek - Copyright (C) 2016 The MegaMek Team
+ *
+ *  This program is free software; you can redistribute it and/or modify it
+ *  under the terms of the GNU General Public License as published by the Free
+ *  Software Foundation; either version 2 of the License, or (at your option)
+ *  any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ *  or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ *  for more details.
+ */
+package megamek.common;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Vector;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class SavedGameTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Stands in for a class that a later version of MegaMek no longer has
+     */
+    static class Present implements Serializable {
+        private static final long serialVersionUID = 1L;
+    }
+
+    private static IGame createGame() {
+        IGame game = new Game();
+        IHex[] hexes = new IHex[5 * 4];
+        for (int i = 0; i < hexes.length; i++) {
+            hexes[i] = new Hex(i % 3, ((i % 2) == 0) ? "woods:1" : "", null,
+                    new Coords(i % 5, i / 5));
+        }
+        game.setBoard(new Board(5, 4, hexes));
+        game.getOptions().getOption("friendly_fire").setValue(true);
+        game.getOptions().getOption("rng_type").setValue(2);
+        game.setRoundCount(2);
+        IPlayer player = new Player(0, "Tester");
+        game.addPlayer(0, player);
+
+        for (int id = 1; id <= 2; id++) {
+            Entity entity = new BipedMech();
+            entity.setId(id);
+            entity.setChassis("Atlas");
+            entity.setModel("AS7-D");
+            entity.setPosition(new Coords(id, id + 1));
+            entity.setOwner(player);
+            game.addEntity(entity);
+        }
+        game.setTurnVector(new Vector<GameTurn>(Arrays.asList(
+                new GameTurn.SpecificEntityTurn(0, 2),
+                new GameTurn.SpecificEntityTurn(0, 1))));
+        for (int round = 1; round <= 2; round++) {
+            Vector<Report> reports = new Vector<Report>();
+            reports.add(new Report(1000 + round));
+            game.setReports(round, reports);
+        }
+        return game;
+    }
+
+    private static void assertSameGame(IGame expected, IGame actual) {
+        Assert.assertEquals(expected.getRoundCount(), actual.getRoundCount());
+
+        IBoard board = actual.getBoard();
+        Assert.assertEquals(expected.getBoard().getWidth(), board.getWidth());
+        Assert.assertEquals(expected.getBoard().getHeight(), board.getHeight());
+        for (int x = 0; x < board.getWidth(); x++) {
+            for (int y = 0; y < board.getHeight(); y++) {
+                IHex hex = expected.getBoard().getHex(x, y);
+                Assert.assertEquals(hex.getLevel(), board.getHex(x, y)
+                        .getLevel());
+                Assert.assertArrayEquals(hex.getTerrainTypes(), board
+                        .getHex(x, y).getTerrainTypes());
+            }
+        }
+
+        Assert.assertEquals(expected.getNoOfEntities(), actual.getNoOfEntities());
+        for (Entity entity : expected.getEntitiesVector()) {
+            Entity loaded = actual.getEntity(entity.getId());
+            Assert.assertNotNull(loaded);
+            Assert.assertEquals(entity.getChassis(), loaded.getChassis());
+            Assert.assertEquals(entity.getModel(), loaded.getModel());
+            Assert.assertEquals(entity.getPosition(), loaded.getPosition());
+            // the entities are the same objects wherever the game refers
+            // to them
+            Assert.assertTrue(actual.getEntitiesVector().contains(loaded));
+            Assert.assertEquals(Arrays.asList(loaded), actual
+                    .getEntitiesVector(entity.getPosition(), true));
+        }
+        Assert.assertEquals("Tester", actual.getPlayer(0).getName());
+        Assert.assertEquals(2, ((GameTurn.SpecificEntityTurn) actual
+                .getTurnVector().get(0)).getEntityNum());
+
+        Assert.assertTrue(actual.getOptions().booleanOption("friendly_fire"));
+        Assert.assertEquals(2, actual.getOptions().intOption("rng_type"));
+        Assert.assertFalse(actual.getOptions().booleanOption(
+                "skip_ineligable_movement"));
+
+        for (int round = 1; round <= expected.getRoundCount(); round++) {
+            Assert.assertEquals(1000 + round,
+                    actual.getReports(round).get(0).messageId);
+        }
+    }
+
+    /**
+     * Writes a binary saved game with a single game section by hand
+     */
+    private File writeSavedGame(int formatVersion, byte[] gameSection)
+            throws IOException {
+        File file = folder.newFile();
+        DataOutputStream out = new DataOutputStream(new GZIPOutputStream(
+                new FileOutputStream(file)));
+        try {
+            out.writeInt(0x4d4d5347);
+            out.writeInt(formatVersion);
+            out.writeUTF("0.0.1");
+            out.writeByte(6);
+            out.writeInt(gameSection.length);
+            out.write(gameSection);
+            out.writeByte(0);
+        } finally {
+            out.close();
+        }
+        return file;
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        IGame game = createGame();
+        File file = folder.newFile("game.sav.gz");
+        SavedGame.save(game, file);
+        assertSameGame(game, SavedGame.load(file));
+
+        // a snapshot doesn't change when the game goes on
+        SavedGame.Snapshot snapshot = SavedGame.snapshot(game);
+        game.getEntity(1).setPosition(new Coords(4, 3));
+        snapshot.save(file);
+        Assert.assertEquals(new Coords(1, 2), SavedGame.load(file)
+                .getEntity(1).getPosition());
+    }
+
+    @Test
+    public void testXmlExportStillLoads() throws Exception {
+        IGame game = createGame();
+        File file = folder.newFile("game.xml.gz");
+        SavedGame.exportXml(game, file);
+        assertSameGame(game, SavedGame.load(file));
+    }
+
+    @Test
+    public void testIncompatibleClasses() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(new Present());
+        out.close();
+        // rename the class to one that doesn't exist
+        String serialized = new String(bytes.toByteArray(), "ISO-8859-1");
+        byte[] gone = serialized.replace("$Present", "$Missing").getBytes(
+                "ISO-8859-1");
+
+        try {
+            SavedGame.load(writeSavedGame(1, gone));
+            Assert.fail("Loaded a game with a missing class");
+        } catch (IOException ex) {
+            Assert.assertTrue(ex.getMessage(), ex.getMessage().contains(
+                    "written by MegaMek 0.0.1"));
+            Assert.assertTrue(ex.getCause() instanceof ClassNotFoundException);
+        }
+
+        try {
+            SavedGame.load(writeSavedGame(99, bytes.toByteArray()));
+            Assert.fail("Loaded a game of a newer format");
+        } catch (IOException ex) {
+            Assert.assertTrue(ex.getMessage(), ex.getMessage().contains(
+                    "format 99"));
+        }
+    }
+}
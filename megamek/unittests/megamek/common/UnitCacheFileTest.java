@@ -0,0 +1,109 @@
+/*
+ * MegaMek - Copyright (C) 2016 The MegaMek Team
+ *
+ *  This program is free software; you can redistribute it and/or modify it
+ *  under the terms of the GNU General Public License as published by the Free
+ *  Software Foundation; either version 2 of the License, or (at your option)
+ *  any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ *  or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ *  for more details.
+ */
+package megamek.common;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Vector;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class UnitCacheFileTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static MechSummary createSummary(File source, String entryName,
+            String model, long modified) {
+        MechSummary ms = new MechSummary();
+        ms.setName("Atlas " + model);
+        ms.setChassis("Atlas");
+        ms.setModel(model);
+        ms.setUnitType("Mek");
+        ms.setUnitSubType("BattleMech");
+        ms.setSourceFile(source);
+        ms.setEntryName(entryName);
+        ms.setModified(modified);
+        ms.setYear(2755);
+        ms.setTons(100);
+        ms.setBV(1897);
+        ms.setCost(9626000);
+        ms.setLevel("1");
+        ms.setCanon(true);
+        ms.setWalkMp(3);
+        ms.setRunMp(5);
+        ms.setEngineName("300 Fusion Engine");
+        ms.setArmorType(new int[] { 0, 0, 1 });
+        ms.setArmorTypes(new int[] { 0, 0, 1 });
+        ms.setArmorTechTypes(new int[] { 1, 1, 1 });
+        ms.setEquipment(new Vector<String>(Arrays.asList("Medium Laser",
+                "AC/20")), new Vector<Integer>(Arrays.asList(4, 1)));
+        return ms;
+    }
+
+    @Test
+    public void testWriteAndRead() throws IOException {
+        File cacheFile = new File(folder.getRoot(), "units.cache");
+        File mtf = new File(folder.getRoot(), "Atlas AS7-D.mtf");
+        File zip = new File(folder.getRoot(), "units.zip");
+        UnitCacheFile.write(cacheFile, "1.0", Arrays.asList(
+                createSummary(mtf, null, "AS7-D", 1000L),
+                createSummary(zip, "Atlas AS7-K.mtf", "AS7-K", 2000L)));
+
+        Assert.assertNull(UnitCacheFile.read(cacheFile, "1.1"));
+
+        UnitCacheFile cache = UnitCacheFile.read(cacheFile, "1.0");
+        Assert.assertNotNull(cache);
+        Assert.assertEquals(2, cache.size());
+
+        // Changed files aren't decoded.
+        Assert.assertNull(cache.get(mtf, null, 1001L));
+        Assert.assertNull(cache.get(zip, null, 2000L));
+
+        MechSummary ms = cache.get(mtf, null, 1000L);
+        Assert.assertNotNull(ms);
+        Assert.assertEquals("Atlas AS7-D", ms.getName());
+        Assert.assertEquals("AS7-D", ms.getModel());
+        Assert.assertEquals(mtf, ms.getSourceFile());
+        Assert.assertNull(ms.getEntryName());
+        Assert.assertEquals(1000L, ms.getModified());
+        Assert.assertEquals(2755, ms.getYear());
+        Assert.assertEquals(100, ms.getTons(), 0);
+        Assert.assertEquals(1897, ms.getBV());
+        Assert.assertEquals(9626000, ms.getCost());
+        Assert.assertTrue(ms.isCanon());
+        Assert.assertFalse(ms.isClan());
+        Assert.assertEquals(5, ms.getRunMp());
+        Assert.assertEquals("300 Fusion Engine", ms.getEngineName());
+        Assert.assertNull(ms.getMyomerName());
+        Assert.assertEquals(2, ms.getArmorType().size());
+        Assert.assertArrayEquals(new int[] { 0, 0, 1 }, ms.getArmorTypes());
+        Assert.assertArrayEquals(new int[] { 1, 1, 1 }, ms.getArmorTechTypes());
+        Assert.assertEquals(Arrays.asList("Medium Laser", "AC/20"),
+                ms.getEquipmentNames());
+        Assert.assertEquals(Arrays.asList(4, 1), ms.getEquipmentQuantities());
+
+        ms = cache.get(zip, "Atlas AS7-K.mtf", 2000L);
+        Assert.assertNotNull(ms);
+        Assert.assertEquals("AS7-K", ms.getModel());
+        Assert.assertEquals("Atlas AS7-K.mtf", ms.getEntryName());
+    }
+}
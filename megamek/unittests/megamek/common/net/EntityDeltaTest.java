@@ -0,0 +1,106 @@
+/*
+ * MegaMek - Copyright (C) 2016 The MegaMek Team
+ *
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ */
+package megamek.common.net;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class EntityDeltaTest {
+
+    private static byte[] randomState(int length) {
+        byte[] state = new byte[length];
+        new Random(length).nextBytes(state);
+        return state;
+    }
+
+    @Test
+    public void testSameLayout() throws IOException {
+        byte[] base = randomState(4000);
+        byte[] state = Arrays.copyOf(base, base.length);
+        state[0]++;
+        state[100]++;
+        state[105]++;
+        state[2500]++;
+        state[state.length - 1]++;
+
+        EntityDelta delta = EntityDelta.create(base, state);
+        Assert.assertFalse(delta.isFull());
+        Assert.assertTrue(delta.size() < 100);
+        Assert.assertArrayEquals(state, delta.apply(base));
+    }
+
+    @Test
+    public void testChangedLayout() throws IOException {
+        byte[] base = randomState(4000);
+        byte[] state = new byte[base.length + 10];
+        System.arraycopy(base, 0, state, 0, 1000);
+        System.arraycopy(base, 1000, state, 1010, base.length - 1000);
+
+        EntityDelta delta = EntityDelta.create(base, state);
+        Assert.assertFalse(delta.isFull());
+        Assert.assertArrayEquals(state, delta.apply(base));
+
+        // and back again
+        delta = EntityDelta.create(state, base);
+        Assert.assertArrayEquals(base, delta.apply(state));
+    }
+
+    @Test
+    public void testUnchanged() throws IOException {
+        byte[] base = randomState(4000);
+        EntityDelta delta = EntityDelta.create(base, base.clone());
+        Assert.assertEquals(0, delta.size());
+        Assert.assertArrayEquals(base, delta.apply(base));
+    }
+
+    @Test
+    public void testFull() throws IOException {
+        byte[] base = randomState(4000);
+        byte[] state = randomState(3000);
+
+        Assert.assertTrue(EntityDelta.create(null, state).isFull());
+        // everything changed, so it isn't worth a delta
+        EntityDelta delta = EntityDelta.create(base, state);
+        Assert.assertTrue(delta.isFull());
+        Assert.assertArrayEquals(state, delta.apply(null));
+    }
+
+    @Test(expected = IOException.class)
+    public void testWrongBase() throws IOException {
+        byte[] base = randomState(4000);
+        byte[] state = Arrays.copyOf(base, base.length);
+        state[10]++;
+        EntityDelta.create(base, state).apply(randomState(3999));
+    }
+
+    @Test(expected = IOException.class)
+    public void testStaleBaseOfSameLength() throws IOException {
+        byte[] base = randomState(4000);
+        byte[] state = Arrays.copyOf(base, base.length);
+        state[10]++;
+        EntityDelta delta = EntityDelta.create(base, state);
+        Assert.assertFalse(delta.isFull());
+        // the receiver missed an update that changed a byte elsewhere
+        byte[] stale = Arrays.copyOf(base, base.length);
+        stale[3000]++;
+        delta.apply(stale);
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * MegaMek - Copyright (C) 2016 The MegaMek Team
+ *
+ * This program is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free Software
+ * Foundation; either version 2 of the License, or (at your option) any later
+ * version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ */
+package megamek.common.net;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.Vector;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class LocalConnectionTest {
+
+    private static final int SENDERS = 3;
+
+    private static final int PACKETS = 200;
+
+    /**
+     * Collects the packets one end receives
+     */
+    private static class Receiver extends ConnectionListenerAdapter {
+
+        final List<Packet> packets = Collections
+                .synchronizedList(new ArrayList<Packet>());
+
+        @Override
+        public void packetReceived(PacketReceivedEvent e) {
+            packets.add(e.getPacket());
+        }
+    }
+
+    /**
+     * Returns a packet for the <code>n</code>th packet of a sender. Every
+     * third one holds a table, which has to be marshalled, the others are
+     * handed over as copies.
+     */
+    private static Packet createPacket(int sender, int n) {
+        if ((n % 3) == 0) {
+            Hashtable<String, Integer> table = new Hashtable<String, Integer>();
+            table.put("n", n);
+            return new Packet(Packet.COMMAND_CHAT, new Object[] { sender,
+                    table });
+        }
+        return new Packet(Packet.COMMAND_CHAT, new Object[] { sender, n });
+    }
+
+    private static int getNumber(Packet packet) {
+        Object value = packet.getObject(1);
+        if (value instanceof Hashtable) {
+            return (Integer) ((Hashtable<?, ?>) value).get("n");
+        }
+        return (Integer) value;
+    }
+
+    @Test
+    public void testInOrderDelivery() throws Exception {
+        final LocalConnection client = LocalConnection.createPair(1, 2);
+        LocalConnection server = client.getPeer();
+        Receiver receiver = new Receiver();
+        server.addConnectionListener(receiver);
+
+        List<Thread> senders = new ArrayList<Thread>();
+        for (int s = 0; s < SENDERS; s++) {
+            final int sender = s;
+            Thread thread = new Thread(new Runnable() {
+                public void run() {
+                    for (int n = 0; n < PACKETS; n++) {
+                        client.send(createPacket(sender, n));
+                    }
+                }
+            });
+            senders.add(thread);
+            thread.start();
+        }
+        for (Thread thread : senders) {
+            thread.join();
+        }
+        client.close();
+        // reads until everything the client sent has been read
+        server.update();
+        Assert.assertTrue(server.isClosed());
+
+        // packets of different senders may be interleaved, but each sender's
+        // arrive in the order it sent them, copied or marshalled
+        Assert.assertEquals(SENDERS * PACKETS, receiver.packets.size());
+        int[] next = new int[SENDERS];
+        for (Packet packet : receiver.packets) {
+            int sender = packet.getIntValue(0);
+            Assert.assertEquals(next[sender], getNumber(packet));
+            next[sender]++;
+        }
+    }
+
+    @Test
+    public void testCopiesShareNothing() {
+        LocalConnection client = LocalConnection.createPair(1, 2);
+        LocalConnection server = client.getPeer();
+        Receiver receiver = new Receiver();
+        server.addConnectionListener(receiver);
+
+        Vector<Integer> ids = new Vector<Integer>();
+        ids.add(1);
+        int[] values = new int[] { 1, 2 };
+        client.send(new Packet(Packet.COMMAND_ENTITY_REMOVE, new Object[] {
+                ids, values }));
+        ids.add(2);
+        values[0] = 3;
+        client.close();
+        server.update();
+
+        Assert.assertEquals(1, receiver.packets.size());
+        Packet received = receiver.packets.get(0);
+        Assert.assertEquals(Packet.COMMAND_ENTITY_REMOVE,
+                received.getCommand());
+        Assert.assertEquals(1, ((Vector<?>) received.getObject(0)).size());
+        Assert.assertArrayEquals(new int[] { 1, 2 },
+                (int[]) received.getObject(1));
+    }
+}
@@ -0,0 +1,288 @@
+/*
+ * MegaMek - Copyright (C) 2016 The MegaMek Team
+ *
+ *  This program is free software; you can redistribute it and/or modify it
+ *  under the terms of the GNU General Public License as published by the Free
+ *  Software Foundation; either version 2 of the License, or (at your option)
+ *  any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ *  or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ *  for more details.
+ */
+package megamek.common.net.marshall;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Vector;
+
+import megamek.common.BipedMech;
+import megamek.common.Board;
+import megamek.common.Coords;
+import megamek.common.Entity;
+import megamek.common.GameTurn;
+import megamek.common.Hex;
+import megamek.common.IHex;
+import megamek.common.ITerrain;
+import megamek.common.InfernoTracker;
+import megamek.common.Report;
+import megamek.common.Terrains;
+import megamek.common.UnitLocation;
+import megamek.common.net.EntityDelta;
+import megamek.common.net.Packet;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class CompactBinaryMarshallerTest {
+
+    private final CompactBinaryMarshaller marshaller = new CompactBinaryMarshaller();
+
+    /**
+     * Sends the data through the marshaller and back, and checks that
+     * marshalling the result again gives the same bytes
+     */
+    private Object[] roundTrip(Object... data) throws Exception {
+        Packet packet = new Packet(Packet.COMMAND_CHAT, data);
+        byte[] bytes = marshaller.marshall(packet);
+        Packet result = unmarshall(bytes);
+        Assert.assertArrayEquals(bytes, marshaller.marshall(result));
+        return result.getData();
+    }
+
+    private Packet unmarshall(byte[] bytes) {
+        Assert.assertNotNull(bytes);
+        Packet result = marshaller.unmarshall(bytes);
+        Assert.assertNotNull(result);
+        return result;
+    }
+
+    private static void assertSameHex(IHex expected, IHex actual) {
+        Assert.assertEquals(expected.getLevel(), actual.getLevel());
+        Assert.assertEquals(expected.getTheme(), actual.getTheme());
+        Assert.assertEquals(expected.getFireTurn(), actual.getFireTurn());
+        Assert.assertEquals(expected.getCoords(), actual.getCoords());
+        Assert.assertArrayEquals(expected.getTerrainTypes(),
+                actual.getTerrainTypes());
+        for (int type : expected.getTerrainTypes()) {
+            ITerrain terrain = expected.getTerrain(type);
+            Assert.assertEquals(terrain, actual.getTerrain(type));
+            Assert.assertEquals(terrain.getTerrainFactor(), actual
+                    .getTerrain(type).getTerrainFactor());
+        }
+    }
+
+    @Test
+    public void testPrimitives() throws Exception {
+        StringBuilder longChat = new StringBuilder();
+        for (int i = 0; i < 70000; i++) {
+            longChat.append((char) ('a' + (i % 26)));
+        }
+        Object[] data = roundTrip(null, 42, Boolean.TRUE, 1L << 40, "héx",
+                longChat.toString(), new int[] { 1, -2, 3 });
+        Assert.assertNull(data[0]);
+        Assert.assertEquals(42, data[1]);
+        Assert.assertEquals(Boolean.TRUE, data[2]);
+        Assert.assertEquals(1L << 40, data[3]);
+        Assert.assertEquals("héx", data[4]);
+        Assert.assertEquals(longChat.toString(), data[5]);
+        Assert.assertArrayEquals(new int[] { 1, -2, 3 }, (int[]) data[6]);
+
+        Packet noData = marshaller.unmarshall(marshaller.marshall(new Packet(
+                Packet.COMMAND_CLOSE_CONNECTION)));
+        Assert.assertEquals(Packet.COMMAND_CLOSE_CONNECTION,
+                noData.getCommand());
+        Assert.assertNull(noData.getData());
+    }
+
+    @Test
+    public void testCoordsAndUnitLocation() throws Exception {
+        Object[] data = roundTrip(new Coords(3, 7), new UnitLocation(5,
+                new Coords(1, 2), 4, -1), new UnitLocation(6, null, 0, 0));
+        Assert.assertEquals(new Coords(3, 7), data[0]);
+        UnitLocation loc = (UnitLocation) data[1];
+        Assert.assertEquals(5, loc.getId());
+        Assert.assertEquals(new Coords(1, 2), loc.getCoords());
+        Assert.assertEquals(4, loc.getFacing());
+        Assert.assertEquals(-1, loc.getElevation());
+        Assert.assertNull(((UnitLocation) data[2]).getCoords());
+    }
+
+    @Test
+    public void testReport() throws Exception {
+        Report r = new Report(3100);
+        r.indent(2);
+        r.newlines = 0;
+        r.add("Atlas AS7-D");
+        r.add(12, false);
+        r.hideData(0);
+        r.addObscuredRecipient("Player 2");
+        Report result = (Report) roundTrip(r)[0];
+        Assert.assertEquals(3100, result.messageId);
+        Assert.assertEquals(0, result.newlines);
+        Assert.assertEquals(r.toString(), result.toString());
+    }
+
+    @Test
+    public void testHex() throws Exception {
+        Hex hex = new Hex(2, "woods:2;fire:1;road:1:5", "snow", new Coords(4,
+                5));
+        hex.setFireTurn(3);
+        hex.getTerrain(Terrains.WOODS).setTerrainFactor(40);
+        assertSameHex(hex, (IHex) roundTrip(hex)[0]);
+        assertSameHex(new Hex(), (IHex) roundTrip(new Hex())[0]);
+    }
+
+    @Test
+    public void testGameTurns() throws Exception {
+        GameTurn generic = new GameTurn(1);
+        generic.setMultiTurn(true);
+        Object[] data = roundTrip(generic,
+                new GameTurn.SpecificEntityTurn(2, 17),
+                new GameTurn.EntityClassTurn(3, GameTurn.CLASS_INFANTRY));
+        Assert.assertEquals(GameTurn.class, data[0].getClass());
+        Assert.assertEquals(1, ((GameTurn) data[0]).getPlayerNum());
+        Assert.assertTrue(((GameTurn) data[0]).isMultiTurn());
+        GameTurn.SpecificEntityTurn specific = (GameTurn.SpecificEntityTurn) data[1];
+        Assert.assertEquals(2, specific.getPlayerNum());
+        Assert.assertEquals(17, specific.getEntityNum());
+        Assert.assertFalse(specific.isMultiTurn());
+        GameTurn.EntityClassTurn classTurn = (GameTurn.EntityClassTurn) data[2];
+        Assert.assertEquals(3, classTurn.getPlayerNum());
+        Assert.assertEquals(GameTurn.CLASS_INFANTRY, classTurn.getTurnCode());
+    }
+
+    @Test
+    public void testCollections() throws Exception {
+        Vector<Object> vector = new Vector<Object>(Arrays.<Object> asList(1,
+                "two", new Coords(3, 3)));
+        ArrayList<Object> list = new ArrayList<Object>(Arrays.<Object> asList(
+                vector, null));
+        HashSet<Integer> set = new HashSet<Integer>(Arrays.asList(1, 2, 3));
+        LinkedHashSet<String> ordered = new LinkedHashSet<String>(
+                Arrays.asList("c", "a", "b"));
+        List<Integer> unmodifiable = Collections.unmodifiableList(Arrays
+                .asList(4, 5));
+        List<Integer> unmodifiableLinked = Collections
+                .unmodifiableList(new LinkedList<Integer>(Arrays.asList(6)));
+
+        Object[] data = roundTrip(list, set, ordered, unmodifiable,
+                unmodifiableLinked);
+        Assert.assertEquals(ArrayList.class, data[0].getClass());
+        Assert.assertEquals(Vector.class, ((List<?>) data[0]).get(0)
+                .getClass());
+        Assert.assertEquals(list, data[0]);
+        Assert.assertEquals(HashSet.class, data[1].getClass());
+        Assert.assertEquals(set, data[1]);
+        Assert.assertEquals(LinkedHashSet.class, data[2].getClass());
+        Assert.assertEquals(new ArrayList<String>(ordered),
+                new ArrayList<Object>((LinkedHashSet<?>) data[2]));
+        Assert.assertEquals(unmodifiable, data[3]);
+        Assert.assertEquals(unmodifiableLinked, data[4]);
+        try {
+            ((List<Object>) data[3]).add(1);
+            Assert.fail("The list should stay unmodifiable");
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testEntityDelta() throws Exception {
+        byte[] base = new byte[2000];
+        for (int i = 0; i < base.length; i++) {
+            base[i] = (byte) (i * 7);
+        }
+        byte[] state = base.clone();
+        state[100]++;
+        state[1500]--;
+        EntityDelta delta = EntityDelta.create(base, state);
+        Assert.assertFalse(delta.isFull());
+
+        Object[] data = roundTrip(delta, EntityDelta.full(state));
+        Assert.assertArrayEquals(state, ((EntityDelta) data[0]).apply(base));
+        Assert.assertTrue(((EntityDelta) data[1]).isFull());
+        Assert.assertArrayEquals(state, ((EntityDelta) data[1]).apply(null));
+    }
+
+    @Test
+    public void testBoard() throws Exception {
+        IHex[] hexes = new IHex[4 * 3];
+        for (int i = 0; i < hexes.length; i++) {
+            hexes[i] = new Hex(i % 3, (i % 2 == 0) ? "woods:1" : "water:2",
+                    null, new Coords(i % 4, i / 4));
+        }
+        // a board made of other hexes falls back for those
+        hexes[5] = null;
+        Board board = new Board(4, 3, hexes);
+        board.getInfernos().put(new Coords(2, 2), new InfernoTracker());
+        board.setType(Board.T_ATMOSPHERE);
+        board.setRoadsAutoExit(false);
+
+        // the inferno and special hex tables are serialized, and a
+        // deserialized Hashtable is not written back byte for byte
+        Board result = (Board) unmarshall(marshaller.marshall(new Packet(
+                Packet.COMMAND_CHAT, new Object[] { board }))).getData()[0];
+        Assert.assertEquals(board.getWidth(), result.getWidth());
+        Assert.assertEquals(board.getHeight(), result.getHeight());
+        Assert.assertEquals(Board.T_ATMOSPHERE, result.getType());
+        Assert.assertFalse(result.getRoadsAutoExit());
+        for (int y = 0; y < board.getHeight(); y++) {
+            for (int x = 0; x < board.getWidth(); x++) {
+                if (board.getHex(x, y) == null) {
+                    Assert.assertNull(result.getHex(x, y));
+                } else {
+                    assertSameHex(board.getHex(x, y), result.getHex(x, y));
+                }
+            }
+        }
+        Assert.assertFalse(result.getBuildings().hasMoreElements());
+        Assert.assertTrue(result.getInfernos().containsKey(new Coords(2, 2)));
+        Assert.assertTrue(result.getSpecialHexDisplayTable().isEmpty());
+    }
+
+    @Test
+    public void testFallback() throws Exception {
+        Entity entity = new BipedMech();
+        entity.setId(12);
+        entity.setChassis("Atlas");
+        entity.setModel("AS7-D");
+        // the entity goes through serialization, inside compact collections
+        // and next to compact values, and keeps being one object
+        Vector<Object> entities = new Vector<Object>(Arrays.<Object> asList(
+                entity, 3, entity));
+        Object[] data = unmarshall(marshaller.marshall(new Packet(
+                Packet.COMMAND_CHAT, new Object[] { entities, entity,
+                        new Coords(1, 1) }))).getData();
+        Vector<?> result = (Vector<?>) data[0];
+        Entity copy = (Entity) result.get(0);
+        Assert.assertEquals(12, copy.getId());
+        Assert.assertEquals("Atlas", copy.getChassis());
+        Assert.assertEquals("AS7-D", copy.getModel());
+        Assert.assertEquals(3, result.get(1));
+        Assert.assertSame(copy, result.get(2));
+        Assert.assertSame(copy, data[1]);
+        Assert.assertEquals(new Coords(1, 1), data[2]);
+
+        // and reads the same as it would from the native marshaller
+        PacketMarshaller nativeMarshaller = PacketMarshallerFactory
+                .getInstance().getMarshaller(
+                        PacketMarshaller.NATIVE_SERIALIZATION_MARSHALING);
+        Packet packet = new Packet(Packet.COMMAND_ENTITY_UPDATE, entity);
+        Entity nativeCopy = (Entity) nativeMarshaller.unmarshall(
+                nativeMarshaller.marshall(packet)).getObject(0);
+        Entity compactCopy = (Entity) marshaller.unmarshall(
+                marshaller.marshall(packet)).getObject(0);
+        Assert.assertArrayEquals(EntityDelta.serialize(nativeCopy),
+                EntityDelta.serialize(compactCopy));
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * MegaMek - Copyright (C) 2016 The MegaMek Team
+ *
+ *  This program is free software; you can redistribute it and/or modify it
+ *  under the terms of the GNU General Public License as published by the Free
+ *  Software Foundation; either version 2 of the License, or (at your option)
+ *  any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ *  or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ *  for more details.
+ */
+package megamek.server;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import megamek.common.Game;
+import megamek.common.IGame;
+import megamek.common.SavedGame;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class AutoSaverTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testGenerations() throws Exception {
+        File file = new File(folder.getRoot(), "autosave.sav.gz");
+        Assert.assertEquals(new File(folder.getRoot(), "autosave.2.sav.gz"),
+                AutoSaver.getGeneration(file, 2));
+
+        IGame game = new Game();
+        for (int round = 1; round <= 4; round++) {
+            game.setRoundCount(round);
+            AutoSaver.write(SavedGame.snapshot(game), file, 3);
+        }
+        // the newest two saves before the current one are kept
+        Assert.assertEquals(4, SavedGame.load(file).getRoundCount());
+        Assert.assertEquals(3, SavedGame.load(AutoSaver.getGeneration(file, 1))
+                .getRoundCount());
+        Assert.assertEquals(2, SavedGame.load(AutoSaver.getGeneration(file, 2))
+                .getRoundCount());
+        Assert.assertFalse(AutoSaver.getGeneration(file, 3).exists());
+        Assert.assertFalse(new File(file.getPath() + ".tmp").exists());
+    }
+
+    @Test
+    public void testEveryFileIsWritten() throws Exception {
+        final List<File> saved = Collections
+                .synchronizedList(new ArrayList<File>());
+        AutoSaver.Listener listener = new AutoSaver.Listener() {
+            public void saved(File file) {
+                saved.add(file);
+            }
+
+            public void failed(File file, Exception e) {
+                Assert.fail("Failed to write " + file);
+            }
+        };
+
+        AutoSaver saver = new AutoSaver();
+        IGame game = new Game();
+        List<File> files = new ArrayList<File>();
+        for (int i = 0; i < 5; i++) {
+            File file = new File(folder.getRoot(), "autosave_" + i
+                    + ".sav.gz");
+            files.add(file);
+            game.setRoundCount(i);
+            saver.save(game, file, 1, listener);
+        }
+        File same = new File(folder.getRoot(), "autosave.sav.gz");
+        for (int i = 0; i < 5; i++) {
+            game.setRoundCount(10 + i);
+            saver.save(game, same, 1, listener);
+        }
+        saver.flush();
+        saver.shutdown();
+
+        // snapshots for different files are never dropped, in order
+        for (int i = 0; i < files.size(); i++) {
+            Assert.assertEquals(files.get(i), saved.get(i));
+            Assert.assertEquals(i, SavedGame.load(files.get(i))
+                    .getRoundCount());
+        }
+        // repeated saves to one file may be merged, but the last one wins
+        Assert.assertEquals(14, SavedGame.load(same).getRoundCount());
+        Assert.assertEquals(10, saver.getWrites() + saver.getDropped());
+        Assert.assertEquals(saver.getWrites(), saved.size());
+        Assert.assertEquals(0, saver.getFailures());
+    }
+
+    @Test
+    public void testFailureIsReported() throws Exception {
+        final List<File> failed = Collections
+                .synchronizedList(new ArrayList<File>());
+        AutoSaver.Listener listener = new AutoSaver.Listener() {
+            public void saved(File file) {
+                Assert.fail("Wrote " + file);
+            }
+
+            public void failed(File file, Exception e) {
+                failed.add(file);
+            }
+        };
+        AutoSaver saver = new AutoSaver();
+        File file = new File(new File(folder.getRoot(), "missing"),
+                "autosave.sav.gz");
+        saver.save(new Game(), file, 1, listener);
+        saver.flush();
+        saver.shutdown();
+        Assert.assertEquals(Collections.singletonList(file), failed);
+        Assert.assertEquals(1, saver.getFailures());
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * MegaMek - Copyright (C) 2016 The MegaMek Team
+ *
+ *  This program is free software; you can redistribute it and/or modify it
+ *  under the terms of the GNU General Public License as published by the Free
+ *  Software Foundation; either version 2 of the License, or (at your option)
+ *  any later version.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ *  or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ *  for more details.
+ */
+package megamek.server;
+
+import megamek.common.BipedMech;
+import megamek.common.Board;
+import megamek.common.Coords;
+import megamek.common.Dropship;
+import megamek.common.Entity;
+import megamek.common.Game;
+import megamek.common.Hex;
+import megamek.common.IBoard;
+import megamek.common.IGame;
+import megamek.common.IHex;
+import megamek.common.IPlayer;
+import megamek.common.Player;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class VisibilityMatrixTest {
+
+    private IGame game;
+
+    private IBoard board;
+
+    private IPlayer player;
+
+    private Entity north;
+
+    private Entity south;
+
+    private Entity west;
+
+    private final VisibilityMatrix matrix = new VisibilityMatrix();
+
+    @Before
+    public void setUp() {
+        game = new Game();
+        IHex[] hexes = new IHex[7 * 7];
+        for (int i = 0; i < hexes.length; i++) {
+            hexes[i] = new Hex(0, "", null, new Coords(i % 7, i / 7));
+        }
+        board = new Board(7, 7, hexes);
+        game.setBoard(board);
+        player = new Player(0, "Tester");
+        game.addPlayer(0, player);
+        north = addUnit(new BipedMech(), 1, new Coords(3, 0));
+        south = addUnit(new BipedMech(), 2, new Coords(3, 6));
+        west = addUnit(new BipedMech(), 3, new Coords(0, 3));
+    }
+
+    private Entity addUnit(Entity entity, int id, Coords position) {
+        entity.setId(id);
+        entity.setOwner(player);
+        entity.setPosition(position);
+        game.addEntity(entity);
+        return entity;
+    }
+
+    /**
+     * Looks up the line of sight and tells whether it had to be calculated
+     */
+    private boolean calculated(Entity spotter, Entity target) {
+        int misses = matrix.getMisses();
+        matrix.getLos(spotter, target);
+        return matrix.getMisses() > misses;
+    }
+
+    @Test
+    public void testMovesOnlyInvalidateTheirEntries() {
+        matrix.validate(game);
+        Assert.assertTrue(calculated(north, south));
+        Assert.assertTrue(calculated(south, north));
+        Assert.assertTrue(calculated(west, south));
+        Assert.assertFalse(calculated(north, south));
+        Assert.assertFalse(calculated(west, south));
+        Assert.assertEquals(2, matrix.getHits());
+
+        north.setPosition(new Coords(3, 1));
+        matrix.validate(game);
+        Assert.assertTrue(calculated(north, south));
+        Assert.assertTrue(calculated(south, north));
+        Assert.assertFalse(calculated(west, south));
+
+        // changes in height count as well
+        north.setElevation(2);
+        Assert.assertTrue(calculated(north, south));
+        Assert.assertFalse(calculated(north, south));
+    }
+
+    @Test
+    public void testHexChangesInvalidateEverything() {
+        matrix.validate(game);
+        Assert.assertEquals(0, matrix.getLos(north, south).getHeavyWoods());
+        Assert.assertTrue(calculated(west, south));
+
+        board.setHex(3, 3, new Hex(0, "woods:2", null, new Coords(3, 3)));
+        matrix.validate(game);
+        Assert.assertEquals(1, matrix.getLos(north, south).getHeavyWoods());
+        Assert.assertTrue(calculated(west, south));
+        Assert.assertFalse(calculated(west, south));
+    }
+
+    @Test
+    public void testGameChangesInvalidateEverything() {
+        matrix.validate(game);
+        Assert.assertTrue(calculated(north, south));
+
+        game.getOptions().getOption("tacops_LOS1").setValue(true);
+        matrix.validate(game);
+        Assert.assertTrue(calculated(north, south));
+        Assert.assertFalse(calculated(north, south));
+
+        // a grounded dropship blocks like a building, wherever it is
+        Dropship dropship = new Dropship();
+        dropship.setSpheroid(true);
+        dropship.land();
+        addUnit(dropship, 4, new Coords(6, 6));
+        matrix.validate(game);
+        Assert.assertTrue(calculated(north, south));
+        Assert.assertFalse(calculated(north, south));
+        dropship.setPosition(new Coords(5, 6));
+        matrix.validate(game);
+        Assert.assertTrue(calculated(north, south));
+
+        // as does a new board
+        IHex[] hexes = new IHex[7 * 7];
+        for (int i = 0; i < hexes.length; i++) {
+            hexes[i] = new Hex(0, "", null, new Coords(i % 7, i / 7));
+        }
+        game.setBoard(new Board(7, 7, hexes));
+        matrix.validate(game);
+        Assert.assertTrue(calculated(north, south));
+    }
+}